@@ -0,0 +1,486 @@
+package benchmark;
+
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.Set;
+import java.util.SplittableRandom;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+import org.openjdk.jmh.profile.GCProfiler;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.CommandLineOptionException;
+import org.openjdk.jmh.runner.options.CommandLineOptions;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+import components.map.Map;
+import components.map.Map.Pair;
+import components.map.Map2;
+
+/**
+ * JMH benchmarks of {@code Map4} and the open-addressing {@code Map5},
+ * {@code Map6} and {@code Map7} against {@code Map2} and
+ * {@code java.util.HashMap}, over the table sizes used by the JUnit fixtures
+ * and several key counts. Each benchmark reports throughput and sampled
+ * latency percentiles; {@code main} adds the GC profiler for allocation
+ * rates.
+ *
+ * <p>
+ * The maps in {@code ../src} are in the default package, which a JMH
+ * benchmark cannot be in, so they are created by name through their
+ * {@code (int)} constructor and used through {@code components.map.Map}.
+ * Any such class may be benchmarked with {@code -p implementation=<name>}.
+ *
+ * @author Jackson Jiang
+ * @author Jimmy Yuan
+ *
+ */
+@State(Scope.Thread)
+@BenchmarkMode({ Mode.Throughput, Mode.SampleTime })
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class MapBenchmark {
+
+    /**
+     * Seed of the keys, so every run uses the same keys.
+     */
+    private static final long SEED = 42;
+
+    /**
+     * The map under test: a class of {@code ../src}, "Map2" or "HashMap".
+     */
+    @Param({ "Map4", "Map5", "Map6", "Map7", "Map2", "HashMap" })
+    private String implementation;
+
+    /**
+     * Initial hash table size, or initial capacity of {@code Map5},
+     * {@code Map6} and {@code Map7}; ignored by {@code Map2}.
+     */
+    @Param({ "7", "117", "1009", "2003" })
+    private int hashTableSize;
+
+    /**
+     * Number of keys in the map.
+     */
+    @Param({ "100", "1000", "10000" })
+    private int keyCount;
+
+    /**
+     * The keys in the map, in random order.
+     */
+    private Integer[] keys;
+
+    /**
+     * Keys not in the map.
+     */
+    private Integer[] missingKeys;
+
+    /**
+     * Map holding every key of {@code keys}.
+     */
+    private Target map;
+
+    /**
+     * Position in {@code keys} and {@code missingKeys} of the next lookup.
+     */
+    private int cursor;
+
+    /**
+     * Operations of a map under test. Each implementation is benchmarked in
+     * its own fork, so calls through this interface stay monomorphic.
+     */
+    private interface Target {
+
+        /**
+         * Adds the pair ({@code key}, {@code value}).
+         *
+         * @param key
+         *            the key
+         * @param value
+         *            the value
+         */
+        void add(Integer key, Integer value);
+
+        /**
+         * Removes the pair with key {@code key}.
+         *
+         * @param key
+         *            the key
+         * @return the value removed
+         */
+        Integer remove(Integer key);
+
+        /**
+         * Reports the value of {@code key}.
+         *
+         * @param key
+         *            the key
+         * @return the value of key
+         */
+        Integer value(Integer key);
+
+        /**
+         * Reports whether {@code key} is a key.
+         *
+         * @param key
+         *            the key
+         * @return true iff key is a key
+         */
+        boolean hasKey(Integer key);
+
+        /**
+         * Removes every pair, one arbitrary pair at a time.
+         *
+         * @param bh
+         *            sink of the removed pairs
+         */
+        void drain(Blackhole bh);
+
+        /**
+         * Visits every pair.
+         *
+         * @param bh
+         *            sink of the visited values
+         */
+        void iterate(Blackhole bh);
+
+    }
+
+    /**
+     * {@code Target} of a {@code components.map.Map}.
+     */
+    private static final class ComponentsTarget implements Target {
+
+        /**
+         * The map.
+         */
+        private final Map<Integer, Integer> map;
+
+        /**
+         * Constructor from the map.
+         *
+         * @param map
+         *            the map
+         */
+        ComponentsTarget(Map<Integer, Integer> map) {
+            this.map = map;
+        }
+
+        @Override
+        public void add(Integer key, Integer value) {
+            this.map.add(key, value);
+        }
+
+        @Override
+        public Integer remove(Integer key) {
+            return this.map.remove(key).value();
+        }
+
+        @Override
+        public Integer value(Integer key) {
+            return this.map.value(key);
+        }
+
+        @Override
+        public boolean hasKey(Integer key) {
+            return this.map.hasKey(key);
+        }
+
+        @Override
+        public void drain(Blackhole bh) {
+            while (this.map.size() > 0) {
+                bh.consume(this.map.removeAny());
+            }
+        }
+
+        @Override
+        public void iterate(Blackhole bh) {
+            for (Pair<Integer, Integer> p : this.map) {
+                bh.consume(p.value());
+            }
+        }
+
+    }
+
+    /**
+     * {@code Target} of a {@code java.util.HashMap}. Its arbitrary removal is
+     * through an iterator, since taking a fresh iterator for each removal
+     * would rescan the emptied front of the table every time.
+     */
+    private static final class HashMapTarget implements Target {
+
+        /**
+         * The map.
+         */
+        private final HashMap<Integer, Integer> map;
+
+        /**
+         * Constructor from the initial capacity.
+         *
+         * @param capacity
+         *            the initial capacity
+         */
+        HashMapTarget(int capacity) {
+            this.map = new HashMap<Integer, Integer>(capacity);
+        }
+
+        @Override
+        public void add(Integer key, Integer value) {
+            this.map.put(key, value);
+        }
+
+        @Override
+        public Integer remove(Integer key) {
+            return this.map.remove(key);
+        }
+
+        @Override
+        public Integer value(Integer key) {
+            return this.map.get(key);
+        }
+
+        @Override
+        public boolean hasKey(Integer key) {
+            return this.map.containsKey(key);
+        }
+
+        @Override
+        public void drain(Blackhole bh) {
+            Iterator<java.util.Map.Entry<Integer, Integer>> it = this.map
+                    .entrySet().iterator();
+            while (it.hasNext()) {
+                bh.consume(it.next());
+                it.remove();
+            }
+        }
+
+        @Override
+        public void iterate(Blackhole bh) {
+            for (Integer v : this.map.values()) {
+                bh.consume(v);
+            }
+        }
+
+    }
+
+    /**
+     * Returns a new, empty map of {@code implementation}.
+     *
+     * @return the new map
+     */
+    @SuppressWarnings("unchecked")
+    private Target newTarget() {
+        if (this.implementation.equals("HashMap")) {
+            return new HashMapTarget(this.hashTableSize);
+        }
+        if (this.implementation.equals("Map2")) {
+            return new ComponentsTarget(new Map2<Integer, Integer>());
+        }
+        try {
+            Object m = Class.forName(this.implementation)
+                    .getConstructor(int.class).newInstance(this.hashTableSize);
+            return new ComponentsTarget((Map<Integer, Integer>) m);
+        } catch (ReflectiveOperationException e) {
+            throw new IllegalArgumentException(
+                    "No Map with an (int) constructor: " + this.implementation,
+                    e);
+        }
+    }
+
+    /**
+     * Returns a new map of {@code implementation} holding every key.
+     *
+     * @return the filled map
+     */
+    private Target filledTarget() {
+        Target t = this.newTarget();
+        for (Integer k : this.keys) {
+            t.add(k, k);
+        }
+        return t;
+    }
+
+    /**
+     * Returns the position of the next lookup, cycling through the keys.
+     *
+     * @return the position of the next lookup
+     */
+    private int nextPosition() {
+        int position = this.cursor;
+        this.cursor++;
+        if (this.cursor == this.keyCount) {
+            this.cursor = 0;
+        }
+        return position;
+    }
+
+    /**
+     * Draws {@code keyCount} distinct random keys and as many other keys, and
+     * fills {@code map} with the former.
+     */
+    @Setup(Level.Trial)
+    public void setUp() {
+        SplittableRandom random = new SplittableRandom(SEED);
+        Set<Integer> drawn = new HashSet<Integer>();
+        while (drawn.size() < 2 * this.keyCount) {
+            drawn.add(random.nextInt());
+        }
+        Integer[] all = drawn.toArray(new Integer[0]);
+        for (int i = all.length - 1; i > 0; i--) {
+            int j = random.nextInt(i + 1);
+            Integer tmp = all[i];
+            all[i] = all[j];
+            all[j] = tmp;
+        }
+        this.keys = new Integer[this.keyCount];
+        this.missingKeys = new Integer[this.keyCount];
+        System.arraycopy(all, 0, this.keys, 0, this.keyCount);
+        System.arraycopy(all, this.keyCount, this.missingKeys, 0,
+                this.keyCount);
+        this.map = this.filledTarget();
+        this.cursor = 0;
+    }
+
+    /**
+     * Map drained by {@code removeAnyDrain}. It is a separate state so that
+     * only that benchmark pays for refilling it before each call.
+     */
+    @State(Scope.Thread)
+    public static class Drained {
+
+        /**
+         * The map, full before each call.
+         */
+        private Target target;
+
+        /**
+         * Refills the map.
+         *
+         * @param benchmark
+         *            the benchmark state holding the keys
+         */
+        @Setup(Level.Invocation)
+        public void refill(MapBenchmark benchmark) {
+            this.target = benchmark.filledTarget();
+        }
+
+    }
+
+    /**
+     * Adds every key to a new map.
+     *
+     * @return the filled map
+     */
+    @Benchmark
+    public Object add() {
+        return this.filledTarget();
+    }
+
+    /**
+     * Looks up a key in the map.
+     *
+     * @return true
+     */
+    @Benchmark
+    public boolean hasKeyHit() {
+        return this.map.hasKey(this.keys[this.nextPosition()]);
+    }
+
+    /**
+     * Looks up a key not in the map.
+     *
+     * @return false
+     */
+    @Benchmark
+    public boolean hasKeyMiss() {
+        return this.map.hasKey(this.missingKeys[this.nextPosition()]);
+    }
+
+    /**
+     * Reads the value of a key in the map.
+     *
+     * @return the value
+     */
+    @Benchmark
+    public Integer value() {
+        return this.map.value(this.keys[this.nextPosition()]);
+    }
+
+    /**
+     * Removes a key from the map and adds it back, so the map keeps its
+     * size.
+     *
+     * @return the value removed
+     */
+    @Benchmark
+    public Integer remove() {
+        Integer k = this.keys[this.nextPosition()];
+        Integer v = this.map.remove(k);
+        this.map.add(k, v);
+        return v;
+    }
+
+    /**
+     * Empties a full map with {@code removeAny}.
+     *
+     * @param drained
+     *            the full map
+     * @param bh
+     *            sink of the removed pairs
+     */
+    @Benchmark
+    public void removeAnyDrain(Drained drained, Blackhole bh) {
+        drained.target.drain(bh);
+    }
+
+    /**
+     * Iterates over every pair of the map.
+     *
+     * @param bh
+     *            sink of the visited values
+     */
+    @Benchmark
+    public void iterate(Blackhole bh) {
+        this.map.iterate(bh);
+    }
+
+    /**
+     * Runs the benchmarks of this class with the GC profiler, taking any
+     * other JMH options from the command line. A benchmark filter given on
+     * the command line replaces the default of every benchmark of this class.
+     *
+     * @param args
+     *            JMH command-line options
+     * @throws RunnerException
+     *             if a benchmark fails
+     * @throws CommandLineOptionException
+     *             if the options are malformed
+     */
+    public static void main(String[] args)
+            throws RunnerException, CommandLineOptionException {
+        CommandLineOptions options = new CommandLineOptions(args);
+        OptionsBuilder builder = new OptionsBuilder();
+        builder.parent(options).addProfiler(GCProfiler.class);
+        if (options.getIncludes().isEmpty()) {
+            builder.include(MapBenchmark.class.getName());
+        }
+        new Runner(builder.build()).run();
+    }
+
+}
@@ -0,0 +1,657 @@
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Iterator;
+import java.util.List;
+import java.util.NoSuchElementException;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.concurrent.locks.ReentrantLock;
+
+import components.array.Array;
+import components.array.Array1L;
+import components.map.Map;
+import components.map.Map2;
+import components.map.MapSecondary;
+
+/**
+ * {@code Map} represented as a hash table using {@code Map}s for the buckets,
+ * like {@code Map4}, that may be used by several threads at once.
+ *
+ * <p>
+ * The buckets are divided into contiguous ranges, each guarded by its own
+ * lock (a stripe), so threads working on keys in different stripes proceed in
+ * parallel. The size is kept in a striped counter that is updated without
+ * locking. Growing the table takes every stripe lock, in order. Iterators
+ * work on a snapshot taken under every stripe lock, so they never fail but do
+ * not see later changes. {@code clear} and {@code transferFrom} must not run
+ * concurrently with other methods on the maps involved.
+ *
+ * <p>
+ * Keys are hashed and compared by a {@code HashingStrategy}, which is
+ * {@code hashCode} and {@code equals} unless one is given to the constructor.
+ * The buckets are {@code Map2}s, which compare keys with {@code equals}; under
+ * another strategy a lookup first scans its bucket for the stored key
+ * equivalent to the one given, and then uses that key with the bucket. This
+ * needs every two keys that are {@code equals} to be equivalent, as they are
+ * under the strategies of {@code HashingStrategy}.
+ *
+ * @param <K>
+ *            type of {@code Map} domain (key) entries
+ * @param <V>
+ *            type of {@code Map} range (associated value) entries
+ * @convention <pre>
+ * |$this.hashTable.entries| > 0  and
+ * |$this.locks| > 0  and
+ * for all i: integer, pf: PARTIAL_FUNCTION, x: K
+ *     where (0 <= i  and  i < |$this.hashTable.entries|  and
+ *            <pf> = $this.hashTable.entries[i, i+1)  and
+ *            x is in DOMAIN(pf))
+ *   ([computed result of $this.strategy.hash(x)]
+ *      mod |$this.hashTable.entries| = i))  and
+ * [no two keys in buckets are equivalent under $this.strategy]  and
+ * |$this.hashTable.examinableIndices| = |$this.hashTable.entries|  and
+ * [when no stripe lock is held,
+ *  $this.size = sum i: integer, pf: PARTIAL_FUNCTION
+ *     where (0 <= i  and  i < |$this.hashTable.entries|  and
+ *            <pf> = $this.hashTable.entries[i, i+1))
+ *   (|pf|)]  and
+ * [bucket i of $this.hashTable is accessed only while holding
+ *  $this.locks[i * |$this.locks| / |$this.hashTable.entries|], and
+ *  $this.hashTable is replaced only while holding every lock]  and
+ * |$this.firstCandidates| = |$this.locks|  and
+ * [every bucket of stripe s before bucket $this.firstCandidates[s] is
+ *  empty, and $this.firstCandidates[s] is accessed only while holding
+ *  $this.locks[s]]
+ * </pre>
+ * @correspondence <pre>
+ * this = union i: integer, pf: PARTIAL_FUNCTION
+ *            where (0 <= i  and  i < |$this.hashTable.entries|  and
+ *                   <pf> = $this.hashTable.entries[i, i+1))
+ *          (pf)
+ * </pre>
+ *
+ * @author Jackson Jiang
+ * @author Jimmy Yuan
+ *
+ */
+public class ConcurrentMap4<K, V> extends MapSecondary<K, V> {
+
+    /*
+     * Private members --------------------------------------------------------
+     */
+
+    /**
+     * Default size of hash table.
+     */
+    private static final int DEFAULT_HASH_TABLE_SIZE = 101;
+
+    /**
+     * Default number of stripes.
+     */
+    private static final int DEFAULT_STRIPES = 16;
+
+    /**
+     * Maximum ratio of size to hash table size before rehashing.
+     */
+    private static final double MAX_LOAD_FACTOR = 0.75;
+
+    /**
+     * Buckets for hashing.
+     */
+    private volatile Array<Map<K, V>> hashTable;
+
+    /**
+     * Stripe locks, each guarding a contiguous range of buckets.
+     */
+    private ReentrantLock[] locks;
+
+    /**
+     * For each stripe, a bucket before which every bucket of the stripe is
+     * empty; {@code removeAny} starts its scan of the stripe there.
+     */
+    private int[] firstCandidates;
+
+    /**
+     * Total size of abstract {@code this}.
+     */
+    private LongAdder size;
+
+    /**
+     * Hash function and equivalence of keys.
+     */
+    private HashingStrategy<? super K> strategy;
+
+    /**
+     * Computes {@code a} mod {@code b} as % should have been defined to work.
+     *
+     * @param a
+     *            the number being reduced
+     * @param b
+     *            the modulus
+     * @return the result of a mod b, which satisfies 0 <= {@code mod} < b
+     * @requires b > 0
+     * @ensures <pre>
+     * 0 <= mod  and  mod < b  and
+     * there exists k: integer (a = k * b + mod)
+     * </pre>
+     */
+    private static int mod(int a, int b) {
+        assert b > 0 : "Violation of: b > 0";
+
+        int result = a % b;
+        if (result < 0) {
+            result += b;
+        }
+        return result;
+    }
+
+    /**
+     * Creates a hash table of size {@code hashTableSize} with every bucket
+     * empty.
+     *
+     * @param <K>
+     *            type of {@code Map} domain (key) entries
+     * @param <V>
+     *            type of {@code Map} range (associated value) entries
+     * @param hashTableSize
+     *            the size of the hash table
+     * @return the new hash table
+     * @requires hashTableSize > 0
+     */
+    private static <K, V> Array<Map<K, V>> newHashTable(int hashTableSize) {
+        Array<Map<K, V>> hashTable = new Array1L<Map<K, V>>(hashTableSize);
+        for (int i = 0; i < hashTableSize; i++) {
+            hashTable.setEntry(i, new Map2<K, V>());
+        }
+        return hashTable;
+    }
+
+    /**
+     * Creator of initial representation.
+     *
+     * @param hashTableSize
+     *            the size of the hash table
+     * @requires hashTableSize > 0  and  [no lock is held]
+     * @ensures this = {}
+     */
+    private void createNewRep(int hashTableSize) {
+        this.size = new LongAdder();
+        this.hashTable = newHashTable(hashTableSize);
+        Arrays.fill(this.firstCandidates, 0);
+    }
+
+    /**
+     * Returns the stripe guarding bucket {@code bucket} of a hash table of
+     * size {@code hashTableSize}.
+     *
+     * @param bucket
+     *            the bucket
+     * @param hashTableSize
+     *            the size of the hash table
+     * @return the stripe of bucket
+     */
+    private int stripeOf(int bucket, int hashTableSize) {
+        return (int) ((long) bucket * this.locks.length / hashTableSize);
+    }
+
+    /**
+     * Returns the first bucket guarded by stripe {@code stripe} in a hash
+     * table of size {@code hashTableSize}; stripe {@code stripe + 1} starts
+     * where it ends.
+     *
+     * @param stripe
+     *            the stripe
+     * @param hashTableSize
+     *            the size of the hash table
+     * @return the first bucket of stripe
+     * @ensures <pre>
+     * firstBucketOf = min{i: integer where
+     *   (stripeOf(i, hashTableSize) >= stripe)}
+     * </pre>
+     */
+    private int firstBucketOf(int stripe, int hashTableSize) {
+        long stripes = this.locks.length;
+        return (int) ((stripe * (long) hashTableSize + stripes - 1) / stripes);
+    }
+
+    /**
+     * Locks the stripe guarding the bucket of {@code key} in the current hash
+     * table and returns it.
+     *
+     * @param key
+     *            the key
+     * @return the stripe locked
+     * @ensures <pre>
+     * [the current thread holds $this.locks[lockFor]]  and
+     * [$this.locks[lockFor] guards the bucket of key in $this.hashTable]
+     * </pre>
+     */
+    private int lockFor(K key) {
+        int hashCode = this.strategy.hash(key);
+        while (true) {
+            Array<Map<K, V>> table = this.hashTable;
+            int length = table.length();
+            int stripe = this.stripeOf(mod(hashCode, length), length);
+            this.locks[stripe].lock();
+            /*
+             * The table may have been replaced while waiting; if so, the
+             * key's bucket may now be guarded by another stripe.
+             */
+            if (table == this.hashTable) {
+                return stripe;
+            }
+            this.locks[stripe].unlock();
+        }
+    }
+
+    /**
+     * Returns the bucket of {@code key} in the current hash table.
+     *
+     * @param key
+     *            the key
+     * @return the bucket of key
+     * @requires [the current thread holds the stripe lock of that bucket]
+     */
+    private Map<K, V> bucket(K key) {
+        Array<Map<K, V>> table = this.hashTable;
+        return table.entry(mod(this.strategy.hash(key), table.length()));
+    }
+
+    /**
+     * Returns the key of {@code bucket} equivalent to {@code key}, or
+     * {@code null} if there is none. Under the natural strategy that key is
+     * {@code key} itself whenever it is in the bucket.
+     *
+     * @param bucket
+     *            the bucket of key
+     * @param key
+     *            the key
+     * @return the stored key equivalent to key, or null
+     * @requires [the current thread holds the stripe lock of bucket]
+     * @ensures <pre>
+     * if there exists k: K (k is in DOMAIN(bucket)  and
+     *                       $this.strategy.equivalent(k, key))
+     * then storedKey is in DOMAIN(bucket)  and
+     *      $this.strategy.equivalent(storedKey, key)
+     * else storedKey = null
+     * </pre>
+     */
+    private K storedKey(Map<K, V> bucket, K key) {
+        if (this.strategy.isNatural()) {
+            if (bucket.hasKey(key)) {
+                return key;
+            }
+            return null;
+        }
+        for (Pair<K, V> p : bucket) {
+            if (this.strategy.equivalent(key, p.key())) {
+                return p.key();
+            }
+        }
+        return null;
+    }
+
+    /**
+     * Takes every stripe lock, in order.
+     */
+    private void lockAll() {
+        for (ReentrantLock lock : this.locks) {
+            lock.lock();
+        }
+    }
+
+    /**
+     * Releases every stripe lock.
+     */
+    private void unlockAll() {
+        for (int i = this.locks.length - 1; i >= 0; i--) {
+            this.locks[i].unlock();
+        }
+    }
+
+    /**
+     * Grows and rehashes the hash table if the size of {@code this} exceeds
+     * the maximum load factor.
+     *
+     * @requires [the current thread holds no stripe lock]
+     * @ensures this = #this
+     */
+    private void growIfNeeded() {
+        if (this.size.sum() > MAX_LOAD_FACTOR * this.hashTable.length()) {
+            this.lockAll();
+            try {
+                Array<Map<K, V>> oldHashTable = this.hashTable;
+                int length = oldHashTable.length();
+                if (this.size.sum() > MAX_LOAD_FACTOR * length) {
+                    int newLength = 2 * length + 1;
+                    Array<Map<K, V>> newHashTable = newHashTable(newLength);
+                    for (int i = 0; i < length; i++) {
+                        Map<K, V> bucket = oldHashTable.entry(i);
+                        while (bucket.size() > 0) {
+                            Pair<K, V> p = bucket.removeAny();
+                            int index = mod(this.strategy.hash(p.key()),
+                                    newLength);
+                            newHashTable.entry(index).add(p.key(), p.value());
+                        }
+                    }
+                    this.hashTable = newHashTable;
+                    Arrays.fill(this.firstCandidates, 0);
+                }
+            } finally {
+                this.unlockAll();
+            }
+        }
+    }
+
+    /*
+     * Constructors -----------------------------------------------------------
+     */
+
+    /**
+     * No-argument constructor.
+     */
+    public ConcurrentMap4() {
+
+        this(DEFAULT_HASH_TABLE_SIZE, DEFAULT_STRIPES,
+                HashingStrategy.natural());
+
+    }
+
+    /**
+     * Constructor resulting in a hash table of initial size
+     * {@code hashTableSize} guarded by {@code stripes} locks.
+     *
+     * @param hashTableSize
+     *            initial size of hash table
+     * @param stripes
+     *            number of stripe locks
+     * @requires hashTableSize > 0  and  stripes > 0
+     * @ensures this = {}
+     */
+    public ConcurrentMap4(int hashTableSize, int stripes) {
+
+        this(hashTableSize, stripes, HashingStrategy.natural());
+
+    }
+
+    /**
+     * Constructor resulting in keys being hashed and compared by
+     * {@code strategy}.
+     *
+     * @param strategy
+     *            hash function and equivalence of keys
+     * @requires [strategy.equivalent(a, b) whenever a.equals(b)]
+     * @ensures this = {}
+     */
+    public ConcurrentMap4(HashingStrategy<? super K> strategy) {
+
+        this(DEFAULT_HASH_TABLE_SIZE, DEFAULT_STRIPES, strategy);
+
+    }
+
+    /**
+     * Constructor resulting in a hash table of initial size
+     * {@code hashTableSize} guarded by {@code stripes} locks, whose keys are
+     * hashed and compared by {@code strategy}.
+     *
+     * @param hashTableSize
+     *            initial size of hash table
+     * @param stripes
+     *            number of stripe locks
+     * @param strategy
+     *            hash function and equivalence of keys
+     * @requires <pre>
+     * hashTableSize > 0  and  stripes > 0  and
+     * [strategy.equivalent(a, b) whenever a.equals(b)]
+     * </pre>
+     * @ensures this = {}
+     */
+    public ConcurrentMap4(int hashTableSize, int stripes,
+            HashingStrategy<? super K> strategy) {
+        assert hashTableSize > 0 : "Violation of: hashTableSize > 0";
+        assert stripes > 0 : "Violation of: stripes > 0";
+        assert strategy != null : "Violation of: strategy is not null";
+
+        this.strategy = strategy;
+        this.locks = new ReentrantLock[stripes];
+        this.firstCandidates = new int[stripes];
+        for (int i = 0; i < stripes; i++) {
+            this.locks[i] = new ReentrantLock();
+        }
+        this.createNewRep(hashTableSize);
+
+    }
+
+    /*
+     * Standard methods -------------------------------------------------------
+     */
+
+    @SuppressWarnings("unchecked")
+    @Override
+    public final Map<K, V> newInstance() {
+        try {
+            return this.getClass().getConstructor().newInstance();
+        } catch (ReflectiveOperationException e) {
+            throw new AssertionError(
+                    "Cannot construct object of type " + this.getClass());
+        }
+    }
+
+    @Override
+    public final void clear() {
+        this.lockAll();
+        try {
+            this.hashTable = newHashTable(DEFAULT_HASH_TABLE_SIZE);
+            this.size.reset();
+            Arrays.fill(this.firstCandidates, 0);
+        } finally {
+            this.unlockAll();
+        }
+    }
+
+    @Override
+    public final void transferFrom(Map<K, V> source) {
+        assert source != null : "Violation of: source is not null";
+        assert source != this : "Violation of: source is not this";
+        assert source instanceof ConcurrentMap4<?, ?> : ""
+                + "Violation of: source is of dynamic type ConcurrentMap4<?,?>";
+        /*
+         * This cast cannot fail since the assert above would have stopped
+         * execution in that case: source must be of dynamic type
+         * ConcurrentMap4<?,?>, and the ?,? must be K,V or the call would not
+         * have compiled.
+         */
+        ConcurrentMap4<K, V> localSource = (ConcurrentMap4<K, V>) source;
+        this.lockAll();
+        localSource.lockAll();
+        try {
+            this.hashTable = localSource.hashTable;
+            this.size = localSource.size;
+            this.strategy = localSource.strategy;
+            Arrays.fill(this.firstCandidates, 0);
+            localSource.createNewRep(DEFAULT_HASH_TABLE_SIZE);
+        } finally {
+            localSource.unlockAll();
+            this.unlockAll();
+        }
+    }
+
+    /*
+     * Kernel methods ---------------------------------------------------------
+     */
+
+    @Override
+    public final void add(K key, V value) {
+        assert key != null : "Violation of: key is not null";
+        assert value != null : "Violation of: value is not null";
+
+        int stripe = this.lockFor(key);
+        try {
+            Array<Map<K, V>> table = this.hashTable;
+            int index = mod(this.strategy.hash(key), table.length());
+            Map<K, V> bucket = table.entry(index);
+            assert this.storedKey(bucket,
+                    key) == null : "Violation of: key is not in DOMAIN(this)";
+            bucket.add(key, value);
+            if (index < this.firstCandidates[stripe]) {
+                this.firstCandidates[stripe] = index;
+            }
+            this.size.increment();
+        } finally {
+            this.locks[stripe].unlock();
+        }
+        this.growIfNeeded();
+    }
+
+    @Override
+    public final Pair<K, V> remove(K key) {
+        assert key != null : "Violation of: key is not null";
+
+        int stripe = this.lockFor(key);
+        try {
+            Map<K, V> bucket = this.bucket(key);
+            K stored = this.storedKey(bucket, key);
+            assert stored != null : "Violation of: key is in DOMAIN(this)";
+            Pair<K, V> result = bucket.remove(stored);
+            this.size.decrement();
+            return result;
+        } finally {
+            this.locks[stripe].unlock();
+        }
+    }
+
+    @Override
+    public final Pair<K, V> removeAny() {
+        assert this.size() > 0 : "Violation of: this /= empty_set";
+
+        /*
+         * Other threads may empty this map after the caller checked its size,
+         * so the scan gives up, rather than spinning, once a full pass over
+         * every stripe finds nothing while the size is 0.
+         */
+        while (true) {
+            for (int stripe = 0; stripe < this.locks.length; stripe++) {
+                this.locks[stripe].lock();
+                try {
+                    Array<Map<K, V>> table = this.hashTable;
+                    int length = table.length();
+                    int end = this.firstBucketOf(stripe + 1, length);
+                    int i = Math.max(this.firstCandidates[stripe],
+                            this.firstBucketOf(stripe, length));
+                    while (i < end && table.entry(i).size() == 0) {
+                        i++;
+                    }
+                    this.firstCandidates[stripe] = i;
+                    if (i < end) {
+                        Pair<K, V> result = table.entry(i).removeAny();
+                        this.size.decrement();
+                        return result;
+                    }
+                } finally {
+                    this.locks[stripe].unlock();
+                }
+            }
+            if (this.size.sum() == 0) {
+                throw new NoSuchElementException(
+                        "Violation of: this /= empty_set");
+            }
+        }
+    }
+
+    @Override
+    public final V value(K key) {
+        assert key != null : "Violation of: key is not null";
+
+        int stripe = this.lockFor(key);
+        try {
+            Map<K, V> bucket = this.bucket(key);
+            K stored = this.storedKey(bucket, key);
+            assert stored != null : "Violation of: key is in DOMAIN(this)";
+            return bucket.value(stored);
+        } finally {
+            this.locks[stripe].unlock();
+        }
+    }
+
+    @Override
+    public final boolean hasKey(K key) {
+        assert key != null : "Violation of: key is not null";
+
+        int stripe = this.lockFor(key);
+        try {
+            return this.storedKey(this.bucket(key), key) != null;
+        } finally {
+            this.locks[stripe].unlock();
+        }
+    }
+
+    @Override
+    public final int size() {
+        return (int) this.size.sum();
+    }
+
+    @Override
+    public final Iterator<Pair<K, V>> iterator() {
+        List<Pair<K, V>> snapshot = new ArrayList<Pair<K, V>>();
+        this.lockAll();
+        try {
+            Array<Map<K, V>> table = this.hashTable;
+            for (int i = 0; i < table.length(); i++) {
+                for (Pair<K, V> p : table.entry(i)) {
+                    snapshot.add(p);
+                }
+            }
+        } finally {
+            this.unlockAll();
+        }
+        return new ConcurrentMap4Iterator(snapshot.iterator());
+    }
+
+    /**
+     * Implementation of {@code Iterator} interface for {@code ConcurrentMap4}
+     * over a snapshot of its entries.
+     */
+    private final class ConcurrentMap4Iterator implements Iterator<Pair<K, V>> {
+
+        /**
+         * Iterator over the snapshot.
+         */
+        private final Iterator<Pair<K, V>> snapshotIterator;
+
+        /**
+         * Constructor from an iterator over a snapshot.
+         *
+         * @param snapshotIterator
+         *            iterator over the snapshot
+         */
+        ConcurrentMap4Iterator(Iterator<Pair<K, V>> snapshotIterator) {
+            this.snapshotIterator = snapshotIterator;
+        }
+
+        @Override
+        public boolean hasNext() {
+            return this.snapshotIterator.hasNext();
+        }
+
+        @Override
+        public Pair<K, V> next() {
+            assert this.hasNext() : "Violation of: ~this.unseen /= <>";
+            if (!this.hasNext()) {
+                /*
+                 * Exception is supposed to be thrown in this case, but with
+                 * assertion-checking enabled it cannot happen because of assert
+                 * above.
+                 */
+                throw new NoSuchElementException();
+            }
+            return this.snapshotIterator.next();
+        }
+
+        @Override
+        public void remove() {
+            throw new UnsupportedOperationException(
+                    "remove operation not supported");
+        }
+
+    }
+
+}
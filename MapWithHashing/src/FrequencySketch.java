@@ -0,0 +1,185 @@
+/**
+ * Count-min sketch estimating how often each hash code has been recorded,
+ * used by {@code TinyLfuCache4} to decide which entries to admit. Counters
+ * are four bits wide, sixteen to a {@code long}, and every hash code has one
+ * counter in each of four rows. The estimate is the smallest of its
+ * counters. After {@code 10 * |table|} recordings every counter is halved,
+ * so old popularity fades.
+ *
+ * @convention <pre>
+ * |$this.table| is a power of two  and
+ * 0 <= $this.additions < $this.sampleSize = SAMPLE_FACTOR * |$this.table|
+ * </pre>
+ *
+ * @author Jackson Jiang
+ * @author Jimmy Yuan
+ *
+ */
+final class FrequencySketch {
+
+    /**
+     * Smallest number of words of the table.
+     */
+    private static final int MIN_WORDS = 16;
+
+    /**
+     * Largest number of words of the table.
+     */
+    private static final int MAX_WORDS = 1 << 26;
+
+    /**
+     * Recordings per word of the table between two halvings.
+     */
+    private static final int SAMPLE_FACTOR = 10;
+
+    /**
+     * Largest value of a counter.
+     */
+    private static final int MAX_COUNT = 15;
+
+    /**
+     * Mask of a counter.
+     */
+    private static final long COUNTER_MASK = 0xFL;
+
+    /**
+     * Mask keeping the low three bits of every counter, applied after a right
+     * shift by one to halve every counter.
+     */
+    private static final long HALVING_MASK = 0x7777777777777777L;
+
+    /**
+     * Number of bits of a half of a {@code long}.
+     */
+    private static final int HALF_LONG_BITS = 32;
+
+    /**
+     * Base-2 logarithm of the number of bits of a counter.
+     */
+    private static final int LOG_COUNTER_BITS = 2;
+
+    /**
+     * Odd multipliers giving each row an independent hash function.
+     */
+    private static final long[] SEEDS = { 0xC3A5C85C97CB3127L,
+            0xB492B66FBE98F273L, 0x9AE16A3B2F90404FL, 0xCBF29CE484222325L };
+
+    /**
+     * The counters.
+     */
+    private long[] table;
+
+    /**
+     * Recordings between two halvings.
+     */
+    private int sampleSize;
+
+    /**
+     * Recordings since the last halving.
+     */
+    private int additions;
+
+    /**
+     * Constructor resulting in every estimate 0.
+     */
+    FrequencySketch() {
+        this.table = new long[MIN_WORDS];
+        this.sampleSize = SAMPLE_FACTOR * MIN_WORDS;
+    }
+
+    /**
+     * Grows the table, if needed, to about one word per expected distinct
+     * hash code, so that collisions stay rare. Growing forgets every
+     * recording.
+     *
+     * @param expectedItems
+     *            the expected number of distinct hash codes
+     * @updates this
+     */
+    void ensureCapacity(int expectedItems) {
+        int items = Math.min(MAX_WORDS, Math.max(MIN_WORDS, expectedItems));
+        int words = Integer.highestOneBit(items - 1) << 1;
+        if (words > this.table.length) {
+            this.table = new long[words];
+            this.sampleSize = SAMPLE_FACTOR * words;
+            this.additions = 0;
+        }
+    }
+
+    /**
+     * Returns the position of the counter of {@code hash} in row {@code row}:
+     * the word index in the high half, and the bit offset in the low half.
+     *
+     * @param hash
+     *            the hash code
+     * @param row
+     *            the row
+     * @return the word index and bit offset of the counter
+     */
+    private long position(int hash, int row) {
+        long h = (hash + SEEDS[row]) * SEEDS[row];
+        return h ^ (h >>> HALF_LONG_BITS);
+    }
+
+    /**
+     * Reports the estimated number of recordings of {@code hash}.
+     *
+     * @param hash
+     *            the hash code
+     * @return the estimated frequency of hash, at most 15
+     */
+    int frequency(int hash) {
+        int result = MAX_COUNT;
+        int mask = this.table.length - 1;
+        for (int row = 0; row < SEEDS.length; row++) {
+            long p = this.position(hash, row);
+            int index = (int) (p >>> HALF_LONG_BITS) & mask;
+            int shift = ((int) p & MAX_COUNT) << LOG_COUNTER_BITS;
+            int count = (int) ((this.table[index] >>> shift) & COUNTER_MASK);
+            result = Math.min(result, count);
+        }
+        return result;
+    }
+
+    /**
+     * Records one occurrence of {@code hash}, halving every counter once the
+     * sample is complete.
+     *
+     * @param hash
+     *            the hash code
+     * @updates this
+     */
+    void increment(int hash) {
+        boolean added = false;
+        int mask = this.table.length - 1;
+        for (int row = 0; row < SEEDS.length; row++) {
+            long p = this.position(hash, row);
+            int index = (int) (p >>> HALF_LONG_BITS) & mask;
+            int shift = ((int) p & MAX_COUNT) << LOG_COUNTER_BITS;
+            if (((this.table[index] >>> shift) & COUNTER_MASK) < MAX_COUNT) {
+                this.table[index] += 1L << shift;
+                added = true;
+            }
+        }
+        if (added) {
+            this.additions++;
+            if (this.additions == this.sampleSize) {
+                this.halve();
+            }
+        }
+    }
+
+    /**
+     * Halves every counter and the number of recordings since the last
+     * halving.
+     *
+     * @updates this
+     */
+    private void halve() {
+        for (int i = 0; i < this.table.length; i++) {
+            this.table[i] = (this.table[i] >>> 1) & HALVING_MASK;
+        }
+        this.additions /= 2;
+    }
+
+}
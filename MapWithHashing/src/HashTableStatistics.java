@@ -0,0 +1,199 @@
+import java.util.Arrays;
+
+/**
+ * Immutable snapshot of how the entries of a hash table are distributed over
+ * its buckets, returned by {@code Map4.statistics()}. Only the bucket-size
+ * histogram is kept, so a snapshot takes space proportional to the largest
+ * bucket rather than to the table.
+ *
+ * @author Jackson Jiang
+ * @author Jimmy Yuan
+ *
+ */
+public final class HashTableStatistics {
+
+    /**
+     * Number of buckets of the hash table.
+     */
+    private final int tableLength;
+
+    /**
+     * Number of entries in the hash table.
+     */
+    private final int entries;
+
+    /**
+     * Number of entries still in the old hash table of an incremental rehash.
+     */
+    private final int entriesAwaitingRehash;
+
+    /**
+     * Element {@code s} is the number of buckets holding {@code s} entries;
+     * the last element is non-zero.
+     */
+    private final int[] histogram;
+
+    /**
+     * Constructor from a bucket-size histogram.
+     *
+     * @param tableLength
+     *            the number of buckets
+     * @param histogram
+     *            the number of buckets of each size
+     * @param entriesAwaitingRehash
+     *            the number of entries not yet in the hash table
+     * @requires <pre>
+     * tableLength > 0  and  [histogram sums to tableLength]  and
+     * [the last element of histogram is non-zero]  and
+     * entriesAwaitingRehash >= 0
+     * </pre>
+     * @ensures [this describes histogram]
+     */
+    HashTableStatistics(int tableLength, int[] histogram,
+            int entriesAwaitingRehash) {
+        assert tableLength > 0 : "Violation of: tableLength > 0";
+        assert histogram[histogram.length
+                - 1] > 0 : "Violation of: last of histogram is non-zero";
+        this.tableLength = tableLength;
+        this.histogram = histogram.clone();
+        this.entriesAwaitingRehash = entriesAwaitingRehash;
+        int total = 0;
+        for (int s = 1; s < histogram.length; s++) {
+            total += s * histogram[s];
+        }
+        this.entries = total;
+    }
+
+    /**
+     * Reports the number of buckets of the hash table.
+     *
+     * @return the number of buckets
+     */
+    public int tableLength() {
+        return this.tableLength;
+    }
+
+    /**
+     * Reports the number of entries in the hash table.
+     *
+     * @return the number of entries
+     */
+    public int entries() {
+        return this.entries;
+    }
+
+    /**
+     * Reports the number of entries still waiting in the old hash table of an
+     * incremental rehash; they are not counted by the other statistics.
+     *
+     * @return the number of entries awaiting rehash
+     */
+    public int entriesAwaitingRehash() {
+        return this.entriesAwaitingRehash;
+    }
+
+    /**
+     * Reports the ratio of entries to buckets, which is also the mean bucket
+     * size.
+     *
+     * @return the load factor
+     */
+    public double loadFactor() {
+        return (double) this.entries / this.tableLength;
+    }
+
+    /**
+     * Reports the number of empty buckets.
+     *
+     * @return the number of empty buckets
+     */
+    public int emptyBuckets() {
+        return this.histogram[0];
+    }
+
+    /**
+     * Reports the number of entries in the largest bucket.
+     *
+     * @return the largest bucket size
+     */
+    public int maxBucketSize() {
+        return this.histogram.length - 1;
+    }
+
+    /**
+     * Reports the mean number of entries of the non-empty buckets, which is
+     * the mean length of the chain a successful lookup starts on.
+     *
+     * @return the mean size of the non-empty buckets, or 0 if there are none
+     */
+    public double meanNonEmptyBucketSize() {
+        int nonEmpty = this.tableLength - this.histogram[0];
+        if (nonEmpty == 0) {
+            return 0;
+        }
+        return (double) this.entries / nonEmpty;
+    }
+
+    /**
+     * Reports the smallest bucket size {@code s} such that at least a
+     * fraction {@code p} of the buckets hold {@code s} entries or fewer.
+     *
+     * @param p
+     *            the fraction of buckets
+     * @return the p-th quantile of bucket sizes
+     * @requires 0 <= p <= 1
+     */
+    public int percentileBucketSize(double p) {
+        assert 0 <= p && p <= 1 : "Violation of: 0 <= p <= 1";
+        double needed = p * this.tableLength;
+        long buckets = 0;
+        int s = 0;
+        while (s < this.histogram.length - 1
+                && buckets + this.histogram[s] < needed) {
+            buckets += this.histogram[s];
+            s++;
+        }
+        return s;
+    }
+
+    /**
+     * Returns the bucket-size histogram: element {@code s} is the number of
+     * buckets holding {@code s} entries, up to the largest bucket.
+     *
+     * @return a copy of the histogram
+     */
+    public int[] histogram() {
+        return this.histogram.clone();
+    }
+
+    /**
+     * Reports Pearson's chi-squared statistic of the bucket sizes against
+     * the mean bucket size. For uniformly hashed keys it is close to
+     * {@code tableLength() - 1}; much larger values mean the keys cluster.
+     *
+     * @return the chi-squared statistic, or 0 if the table is empty
+     */
+    public double chiSquared() {
+        if (this.entries == 0) {
+            return 0;
+        }
+        double expected = this.loadFactor();
+        double result = 0;
+        for (int s = 0; s < this.histogram.length; s++) {
+            double deviation = s - expected;
+            result += this.histogram[s] * deviation * deviation;
+        }
+        return result / expected;
+    }
+
+    @Override
+    public String toString() {
+        return "tableLength=" + this.tableLength + ", entries=" + this.entries
+                + ", entriesAwaitingRehash=" + this.entriesAwaitingRehash
+                + ", loadFactor=" + this.loadFactor() + ", emptyBuckets="
+                + this.emptyBuckets() + ", maxBucketSize="
+                + this.maxBucketSize() + ", chiSquared=" + this.chiSquared()
+                + ", histogram=" + Arrays.toString(this.histogram);
+    }
+
+}
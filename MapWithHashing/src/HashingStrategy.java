@@ -0,0 +1,156 @@
+import java.util.Arrays;
+
+/**
+ * Hash function and equivalence relation for keys of a hash table, used in
+ * place of the keys' own {@code hashCode} and {@code equals}. This lets a
+ * {@code Map4} be keyed by types whose {@code equals} is identity (such as
+ * arrays), by keys under a coarser equivalence (such as case-insensitive
+ * strings), or with a hash function that suits the keys better than their
+ * {@code hashCode}, without wrapping each key in another object.
+ *
+ * @param <K>
+ *            type of keys
+ *
+ * @author Jackson Jiang
+ * @author Jimmy Yuan
+ *
+ */
+public interface HashingStrategy<K> {
+
+    /**
+     * Multiplier of the polynomial hash of {@code String.hashCode}.
+     */
+    int HASH_MULTIPLIER = 31;
+
+    /**
+     * Reports the hash code of {@code key}.
+     *
+     * @param key
+     *            the key
+     * @return the hash code of key
+     * @requires key /= null
+     * @ensures <pre>
+     * for all k: K
+     *     where (equivalent(key, k))
+     *   (hash = [the hash code of k])
+     * </pre>
+     */
+    int hash(K key);
+
+    /**
+     * Reports whether {@code a} and {@code b} are equivalent keys. The
+     * relation must be reflexive, symmetric and transitive.
+     *
+     * @param a
+     *            the first key
+     * @param b
+     *            the second key
+     * @return true iff a and b are equivalent
+     * @requires a /= null  and  b /= null
+     */
+    boolean equivalent(K a, K b);
+
+    /**
+     * Reports whether this strategy is {@code hashCode} and {@code equals}
+     * themselves. A hash table may then also order keys with
+     * {@code compareTo}, which it cannot do under another equivalence.
+     *
+     * @return true iff hash is hashCode and equivalent is equals
+     */
+    default boolean isNatural() {
+        return false;
+    }
+
+    /**
+     * Returns the strategy of {@code hashCode} and {@code equals}.
+     *
+     * @param <K>
+     *            type of keys
+     * @return the natural strategy
+     * @ensures <pre>
+     * natural.hash(k) = k.hashCode()  and
+     * natural.equivalent(a, b) = a.equals(b)
+     * </pre>
+     */
+    @SuppressWarnings("unchecked")
+    static <K> HashingStrategy<K> natural() {
+        return (HashingStrategy<K>) NaturalHashingStrategy.INSTANCE;
+    }
+
+    /**
+     * Returns the strategy comparing {@code byte[]} keys by content.
+     *
+     * @return the strategy of Arrays.hashCode and Arrays.equals
+     */
+    static HashingStrategy<byte[]> byteArrays() {
+        return new HashingStrategy<byte[]>() {
+
+            @Override
+            public int hash(byte[] key) {
+                return Arrays.hashCode(key);
+            }
+
+            @Override
+            public boolean equivalent(byte[] a, byte[] b) {
+                return Arrays.equals(a, b);
+            }
+
+        };
+    }
+
+    /**
+     * Returns the strategy comparing {@code int[]} keys by content.
+     *
+     * @return the strategy of Arrays.hashCode and Arrays.equals
+     */
+    static HashingStrategy<int[]> intArrays() {
+        return new HashingStrategy<int[]>() {
+
+            @Override
+            public int hash(int[] key) {
+                return Arrays.hashCode(key);
+            }
+
+            @Override
+            public boolean equivalent(int[] a, int[] b) {
+                return Arrays.equals(a, b);
+            }
+
+        };
+    }
+
+    /**
+     * Returns the strategy comparing {@code String} keys without regard to
+     * case.
+     *
+     * @return the strategy of equalsIgnoreCase
+     */
+    static HashingStrategy<String> caseInsensitive() {
+        return new HashingStrategy<String>() {
+
+            @Override
+            public int hash(String key) {
+                /*
+                 * Folds each code point the way equalsIgnoreCase compares it,
+                 * which includes supplementary code points.
+                 */
+                int result = 0;
+                int i = 0;
+                while (i < key.length()) {
+                    int c = key.codePointAt(i);
+                    result = HASH_MULTIPLIER * result
+                            + Character.toLowerCase(Character.toUpperCase(c));
+                    i += Character.charCount(c);
+                }
+                return result;
+            }
+
+            @Override
+            public boolean equivalent(String a, String b) {
+                return a.equalsIgnoreCase(b);
+            }
+
+        };
+    }
+
+}
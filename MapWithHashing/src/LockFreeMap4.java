@@ -0,0 +1,757 @@
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.VarHandle;
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.List;
+import java.util.NoSuchElementException;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.LongAdder;
+
+import components.map.Map;
+import components.map.MapSecondary;
+
+/**
+ * {@code Map} represented as a hash table of chained bins that may be used by
+ * several threads at once, with readers that never block or write shared
+ * memory.
+ *
+ * <p>
+ * {@code hasKey} and {@code value} read bins with acquire loads and follow
+ * {@code volatile} chain links without taking any lock. A writer publishes a
+ * node into an empty bin with a compare-and-set, and otherwise locks the first
+ * node of the bin while it changes the chain; keys and hashes of nodes never
+ * change, so a reader racing with a writer sees the chain either before or
+ * after the change. The size is kept in a striped counter.
+ *
+ * <p>
+ * The table size is a power of two. When it is outgrown, one writer doubles
+ * it: bin by bin, it locks the bin, copies its nodes into the two bins of the
+ * new table they split into, and replaces the old bin with a forwarding node.
+ * Readers and writers that meet a forwarding node continue in the new table,
+ * so neither waits for the resize. Iterators work on a weakly consistent
+ * snapshot. {@code clear} and {@code transferFrom} must not run concurrently
+ * with other methods on the maps involved.
+ *
+ * <p>
+ * Keys are hashed and compared by a {@code HashingStrategy}, which is
+ * {@code hashCode} and {@code equals} unless one is given to the constructor.
+ *
+ * @param <K>
+ *            type of {@code Map} domain (key) entries
+ * @param <V>
+ *            type of {@code Map} range (associated value) entries
+ * @convention <pre>
+ * |$this.table| is a power of two  and  |$this.table| >= MIN_TABLE_SIZE  and
+ * [every node reachable from bin i of $this.table, or of a table reached
+ *  through forwarding nodes, has spread($this.strategy.hash(key)) = hash and
+ *  is in the bin that hash selects]  and
+ * [no two reachable keys are equivalent under $this.strategy]  and
+ * [when no write is in progress, $this.size = number of reachable nodes]
+ * </pre>
+ * @correspondence <pre>
+ * this = {(k, v): (K, V)
+ *   where ([some node reachable from $this.table has key k and value v])}
+ * </pre>
+ *
+ * @author Jackson Jiang
+ * @author Jimmy Yuan
+ *
+ */
+public class LockFreeMap4<K, V> extends MapSecondary<K, V> {
+
+    /*
+     * Private members --------------------------------------------------------
+     */
+
+    /**
+     * Default size of the table.
+     */
+    private static final int DEFAULT_TABLE_SIZE = 16;
+
+    /**
+     * Smallest size of the table.
+     */
+    private static final int MIN_TABLE_SIZE = 2;
+
+    /**
+     * Maximum ratio of size to table size before resizing.
+     */
+    private static final double MAX_LOAD_FACTOR = 0.75;
+
+    /**
+     * Number of bits the high half of a hash code is shifted to spread it.
+     */
+    private static final int SPREAD_SHIFT = 16;
+
+    /**
+     * Hash of forwarding nodes, which never matches a spread hash.
+     */
+    private static final int MOVED = -1;
+
+    /**
+     * Access to the bins of a table with acquire/release semantics.
+     */
+    private static final VarHandle BINS = MethodHandles
+            .arrayElementVarHandle(Node[].class);
+
+    /**
+     * Chain node.
+     *
+     * @param <K>
+     *            type of key
+     * @param <V>
+     *            type of value
+     */
+    private static class Node<K, V> {
+
+        /**
+         * Spread hash of {@code key}.
+         */
+        private final int hash;
+
+        /**
+         * The key.
+         */
+        private final K key;
+
+        /**
+         * The value.
+         */
+        private final V value;
+
+        /**
+         * Next node in the chain.
+         */
+        private volatile Node<K, V> next;
+
+        /**
+         * Constructor.
+         *
+         * @param hash
+         *            spread hash of key
+         * @param key
+         *            the key
+         * @param value
+         *            the value
+         * @param next
+         *            next node in the chain
+         */
+        Node(int hash, K key, V value, Node<K, V> next) {
+            this.hash = hash;
+            this.key = key;
+            this.value = value;
+            this.next = next;
+        }
+
+    }
+
+    /**
+     * Node placed in a bin of a table whose contents have moved to
+     * {@code nextTable}.
+     *
+     * @param <K>
+     *            type of key
+     * @param <V>
+     *            type of value
+     */
+    private static final class ForwardingNode<K, V> extends Node<K, V> {
+
+        /**
+         * Table the bin's nodes have moved to.
+         */
+        private final Node<K, V>[] nextTable;
+
+        /**
+         * Constructor.
+         *
+         * @param nextTable
+         *            table the bin's nodes have moved to
+         */
+        ForwardingNode(Node<K, V>[] nextTable) {
+            super(MOVED, null, null, null);
+            this.nextTable = nextTable;
+        }
+
+    }
+
+    /**
+     * Current table.
+     */
+    private volatile Node<K, V>[] table;
+
+    /**
+     * Whether a writer is resizing the table.
+     */
+    private final AtomicBoolean resizing = new AtomicBoolean();
+
+    /**
+     * Total size of abstract {@code this}.
+     */
+    private LongAdder size;
+
+    /**
+     * Hash function and equivalence of keys.
+     */
+    private HashingStrategy<? super K> strategy;
+
+    /**
+     * Hint that every bin of the current table before this one is probably
+     * empty; {@code removeAny} starts its scan here. It is read and written
+     * without synchronization, so it may be stale: {@code add} lowers it and
+     * {@code removeAny} raises it, and {@code removeAny} rescans from bin 0
+     * before concluding that there is nothing to remove.
+     */
+    private int firstCandidate;
+
+    /**
+     * Spreads the high bits of {@code hashCode} into the low bits used to
+     * select a bin, and clears the sign bit so no hash equals {@code MOVED}.
+     *
+     * @param hashCode
+     *            the hash code
+     * @return the spread hash
+     */
+    private static int spread(int hashCode) {
+        return (hashCode ^ (hashCode >>> SPREAD_SHIFT)) & Integer.MAX_VALUE;
+    }
+
+    /**
+     * Returns a new table of {@code n} empty bins.
+     *
+     * @param <K>
+     *            type of key
+     * @param <V>
+     *            type of value
+     * @param n
+     *            the number of bins
+     * @return the table
+     */
+    @SuppressWarnings("unchecked")
+    private static <K, V> Node<K, V>[] newTable(int n) {
+        return (Node<K, V>[]) new Node<?, ?>[n];
+    }
+
+    /**
+     * Reads bin {@code i} of {@code tab} with acquire semantics.
+     *
+     * @param <K>
+     *            type of key
+     * @param <V>
+     *            type of value
+     * @param tab
+     *            the table
+     * @param i
+     *            the bin
+     * @return the first node of the bin
+     */
+    @SuppressWarnings("unchecked")
+    private static <K, V> Node<K, V> binAt(Node<K, V>[] tab, int i) {
+        return (Node<K, V>) BINS.getAcquire(tab, i);
+    }
+
+    /**
+     * Writes bin {@code i} of {@code tab} with release semantics.
+     *
+     * @param <K>
+     *            type of key
+     * @param <V>
+     *            type of value
+     * @param tab
+     *            the table
+     * @param i
+     *            the bin
+     * @param node
+     *            the new first node
+     */
+    private static <K, V> void setBinAt(Node<K, V>[] tab, int i,
+            Node<K, V> node) {
+        BINS.setRelease(tab, i, node);
+    }
+
+    /**
+     * Atomically sets bin {@code i} of {@code tab} to {@code node} if it is
+     * {@code expected}.
+     *
+     * @param <K>
+     *            type of key
+     * @param <V>
+     *            type of value
+     * @param tab
+     *            the table
+     * @param i
+     *            the bin
+     * @param expected
+     *            the expected first node
+     * @param node
+     *            the new first node
+     * @return whether the bin was set
+     */
+    private static <K, V> boolean casBinAt(Node<K, V>[] tab, int i,
+            Node<K, V> expected, Node<K, V> node) {
+        return BINS.compareAndSet(tab, i, expected, node);
+    }
+
+    /**
+     * Returns the node with key {@code key}, or {@code null}, without locking.
+     *
+     * @param key
+     *            the key
+     * @return the node of key, or null
+     */
+    private Node<K, V> find(K key) {
+        int h = spread(this.strategy.hash(key));
+        Node<K, V>[] tab = this.table;
+        Node<K, V> e = binAt(tab, h & (tab.length - 1));
+        while (e != null) {
+            if (e instanceof ForwardingNode) {
+                tab = ((ForwardingNode<K, V>) e).nextTable;
+                e = binAt(tab, h & (tab.length - 1));
+            } else {
+                if (e.hash == h && this.strategy.equivalent(key, e.key)) {
+                    return e;
+                }
+                e = e.next;
+            }
+        }
+        return null;
+    }
+
+    /**
+     * Doubles the table if the size of {@code this} exceeds the maximum load
+     * factor and no other writer is already resizing it.
+     *
+     * @ensures this = #this
+     */
+    private void growIfNeeded() {
+        Node<K, V>[] tab = this.table;
+        if (this.size.sum() > MAX_LOAD_FACTOR * tab.length
+                && this.resizing.compareAndSet(false, true)) {
+            try {
+                if (tab == this.table) {
+                    this.transfer(tab);
+                }
+            } finally {
+                this.resizing.set(false);
+            }
+        }
+    }
+
+    /**
+     * Moves every bin of {@code tab} into a table twice its size, leaving a
+     * forwarding node in each old bin, then makes the new table current.
+     *
+     * @param tab
+     *            the current table
+     * @requires [the current thread is the only one resizing]
+     * @ensures this = #this
+     */
+    private void transfer(Node<K, V>[] tab) {
+        int n = tab.length;
+        Node<K, V>[] nextTable = newTable(2 * n);
+        ForwardingNode<K, V> forward = new ForwardingNode<K, V>(nextTable);
+        for (int i = 0; i < n; i++) {
+            boolean moved = false;
+            while (!moved) {
+                Node<K, V> f = binAt(tab, i);
+                if (f == null) {
+                    moved = casBinAt(tab, i, null, forward);
+                } else {
+                    synchronized (f) {
+                        if (binAt(tab, i) == f) {
+                            /*
+                             * Nodes of old bin i go to new bin i or i + n
+                             * depending on one more bit of their hash. Copies
+                             * are made so that readers still walking the old
+                             * chain are not disturbed.
+                             */
+                            Node<K, V> lo = null;
+                            Node<K, V> hi = null;
+                            for (Node<K, V> e = f; e != null; e = e.next) {
+                                if ((e.hash & n) == 0) {
+                                    lo = new Node<K, V>(e.hash, e.key, e.value,
+                                            lo);
+                                } else {
+                                    hi = new Node<K, V>(e.hash, e.key, e.value,
+                                            hi);
+                                }
+                            }
+                            setBinAt(nextTable, i, lo);
+                            setBinAt(nextTable, i + n, hi);
+                            setBinAt(tab, i, forward);
+                            moved = true;
+                        }
+                    }
+                }
+            }
+        }
+        this.table = nextTable;
+    }
+
+    /**
+     * Adds every pair reachable from bin {@code i} of {@code tab} to
+     * {@code out}, following forwarding nodes.
+     *
+     * @param <K>
+     *            type of key
+     * @param <V>
+     *            type of value
+     * @param tab
+     *            the table
+     * @param i
+     *            the bin
+     * @param out
+     *            the list of pairs
+     * @updates out
+     */
+    private static <K, V> void collect(Node<K, V>[] tab, int i,
+            List<Pair<K, V>> out) {
+        Node<K, V> e = binAt(tab, i);
+        if (e instanceof ForwardingNode) {
+            Node<K, V>[] nextTable = ((ForwardingNode<K, V>) e).nextTable;
+            collect(nextTable, i, out);
+            collect(nextTable, i + tab.length, out);
+        } else {
+            while (e != null) {
+                out.add(new SimplePair<K, V>(e.key, e.value));
+                e = e.next;
+            }
+        }
+    }
+
+    /**
+     * Creator of initial representation.
+     *
+     * @param tableSize
+     *            the number of bins
+     * @requires tableSize is a power of two  and  tableSize >= MIN_TABLE_SIZE
+     * @ensures this = {}
+     */
+    private void createNewRep(int tableSize) {
+        this.size = new LongAdder();
+        this.firstCandidate = 0;
+        this.table = newTable(tableSize);
+    }
+
+    /**
+     * Removes the first node of the first non-empty bin of {@code tab} at or
+     * after bin {@code start}, skipping bins that have moved to a new table,
+     * and returns its pair, or {@code null} if there is none.
+     *
+     * @param tab
+     *            the table
+     * @param start
+     *            the first bin to look at
+     * @return the pair removed, or null
+     * @updates this
+     */
+    private Pair<K, V> removeFirstFrom(Node<K, V>[] tab, int start) {
+        for (int i = start; i < tab.length; i++) {
+            Node<K, V> f = binAt(tab, i);
+            if (f != null && !(f instanceof ForwardingNode)) {
+                synchronized (f) {
+                    if (binAt(tab, i) == f) {
+                        setBinAt(tab, i, f.next);
+                        this.firstCandidate = i;
+                        this.size.decrement();
+                        return new SimplePair<K, V>(f.key, f.value);
+                    }
+                }
+            }
+        }
+        return null;
+    }
+
+    /*
+     * Constructors -----------------------------------------------------------
+     */
+
+    /**
+     * No-argument constructor.
+     */
+    public LockFreeMap4() {
+
+        this(DEFAULT_TABLE_SIZE, HashingStrategy.natural());
+
+    }
+
+    /**
+     * Constructor resulting in a table of at least {@code tableSize} bins.
+     *
+     * @param tableSize
+     *            initial number of bins
+     * @requires 0 < tableSize <= 2^30
+     * @ensures this = {}
+     */
+    public LockFreeMap4(int tableSize) {
+
+        this(tableSize, HashingStrategy.natural());
+
+    }
+
+    /**
+     * Constructor resulting in keys being hashed and compared by
+     * {@code strategy}.
+     *
+     * @param strategy
+     *            hash function and equivalence of keys
+     * @ensures this = {}
+     */
+    public LockFreeMap4(HashingStrategy<? super K> strategy) {
+
+        this(DEFAULT_TABLE_SIZE, strategy);
+
+    }
+
+    /**
+     * Constructor resulting in a table of at least {@code tableSize} bins
+     * whose keys are hashed and compared by {@code strategy}.
+     *
+     * @param tableSize
+     *            initial number of bins
+     * @param strategy
+     *            hash function and equivalence of keys
+     * @requires 0 < tableSize <= 2^30
+     * @ensures this = {}
+     */
+    public LockFreeMap4(int tableSize, HashingStrategy<? super K> strategy) {
+        assert tableSize > 0 : "Violation of: tableSize > 0";
+        assert strategy != null : "Violation of: strategy is not null";
+
+        this.strategy = strategy;
+        int n = MIN_TABLE_SIZE;
+        while (n < tableSize) {
+            n *= 2;
+        }
+        this.createNewRep(n);
+
+    }
+
+    /*
+     * Standard methods -------------------------------------------------------
+     */
+
+    @SuppressWarnings("unchecked")
+    @Override
+    public final Map<K, V> newInstance() {
+        try {
+            return this.getClass().getConstructor().newInstance();
+        } catch (ReflectiveOperationException e) {
+            throw new AssertionError(
+                    "Cannot construct object of type " + this.getClass());
+        }
+    }
+
+    @Override
+    public final void clear() {
+        this.createNewRep(DEFAULT_TABLE_SIZE);
+    }
+
+    @Override
+    public final void transferFrom(Map<K, V> source) {
+        assert source != null : "Violation of: source is not null";
+        assert source != this : "Violation of: source is not this";
+        assert source instanceof LockFreeMap4<?, ?> : ""
+                + "Violation of: source is of dynamic type LockFreeMap4<?,?>";
+        /*
+         * This cast cannot fail since the assert above would have stopped
+         * execution in that case: source must be of dynamic type
+         * LockFreeMap4<?,?>, and the ?,? must be K,V or the call would not have
+         * compiled.
+         */
+        LockFreeMap4<K, V> localSource = (LockFreeMap4<K, V>) source;
+        this.size = localSource.size;
+        this.strategy = localSource.strategy;
+        this.firstCandidate = localSource.firstCandidate;
+        this.table = localSource.table;
+        localSource.createNewRep(DEFAULT_TABLE_SIZE);
+    }
+
+    /*
+     * Kernel methods ---------------------------------------------------------
+     */
+
+    @Override
+    public final void add(K key, V value) {
+        assert key != null : "Violation of: key is not null";
+        assert value != null : "Violation of: value is not null";
+        assert !this.hasKey(key) : "Violation of: key is not in DOMAIN(this)";
+
+        int h = spread(this.strategy.hash(key));
+        Node<K, V>[] tab = this.table;
+        boolean added = false;
+        while (!added) {
+            int i = h & (tab.length - 1);
+            Node<K, V> f = binAt(tab, i);
+            if (f == null) {
+                added = casBinAt(tab, i, null,
+                        new Node<K, V>(h, key, value, null));
+                if (added && i < this.firstCandidate) {
+                    this.firstCandidate = i;
+                }
+            } else if (f instanceof ForwardingNode) {
+                tab = ((ForwardingNode<K, V>) f).nextTable;
+            } else {
+                synchronized (f) {
+                    if (binAt(tab, i) == f) {
+                        Node<K, V> last = f;
+                        while (last.next != null) {
+                            last = last.next;
+                        }
+                        last.next = new Node<K, V>(h, key, value, null);
+                        added = true;
+                    }
+                }
+            }
+        }
+        this.size.increment();
+        this.growIfNeeded();
+    }
+
+    @Override
+    public final Pair<K, V> remove(K key) {
+        assert key != null : "Violation of: key is not null";
+        assert this.hasKey(key) : "Violation of: key is in DOMAIN(this)";
+
+        int h = spread(this.strategy.hash(key));
+        Node<K, V>[] tab = this.table;
+        while (true) {
+            int i = h & (tab.length - 1);
+            Node<K, V> f = binAt(tab, i);
+            if (f instanceof ForwardingNode) {
+                tab = ((ForwardingNode<K, V>) f).nextTable;
+            } else {
+                synchronized (f) {
+                    if (binAt(tab, i) == f) {
+                        Node<K, V> pred = null;
+                        Node<K, V> e = f;
+                        while (!(e.hash == h
+                                && this.strategy.equivalent(key, e.key))) {
+                            pred = e;
+                            e = e.next;
+                        }
+                        if (pred == null) {
+                            setBinAt(tab, i, e.next);
+                        } else {
+                            pred.next = e.next;
+                        }
+                        this.size.decrement();
+                        return new SimplePair<K, V>(e.key, e.value);
+                    }
+                }
+            }
+        }
+    }
+
+    @Override
+    public final Pair<K, V> removeAny() {
+        assert this.size() > 0 : "Violation of: this /= empty_set";
+
+        /*
+         * Other threads may empty this map after the caller checked its size,
+         * so the scan gives up, rather than spinning, once a full pass finds
+         * no node while the size is 0.
+         */
+        while (true) {
+            Node<K, V>[] tab = this.table;
+            int start = this.firstCandidate;
+            Pair<K, V> result = null;
+            if (start < tab.length) {
+                result = this.removeFirstFrom(tab, start);
+            }
+            if (result == null && start > 0) {
+                result = this.removeFirstFrom(tab, 0);
+            }
+            if (result != null) {
+                return result;
+            }
+            if (this.size.sum() == 0) {
+                throw new NoSuchElementException(
+                        "Violation of: this /= empty_set");
+            }
+            /*
+             * Some bins had moved to a new table, or a removal has not yet
+             * decremented the size; look again in the current table.
+             */
+        }
+    }
+
+    @Override
+    public final V value(K key) {
+        assert key != null : "Violation of: key is not null";
+
+        Node<K, V> e = this.find(key);
+        assert e != null : "Violation of: key is in DOMAIN(this)";
+        return e.value;
+    }
+
+    @Override
+    public final boolean hasKey(K key) {
+        assert key != null : "Violation of: key is not null";
+
+        return this.find(key) != null;
+    }
+
+    @Override
+    public final int size() {
+        return (int) this.size.sum();
+    }
+
+    @Override
+    public final Iterator<Pair<K, V>> iterator() {
+        List<Pair<K, V>> snapshot = new ArrayList<Pair<K, V>>();
+        Node<K, V>[] tab = this.table;
+        for (int i = 0; i < tab.length; i++) {
+            collect(tab, i, snapshot);
+        }
+        return new LockFreeMap4Iterator(snapshot.iterator());
+    }
+
+    /**
+     * Implementation of {@code Iterator} interface for {@code LockFreeMap4}
+     * over a snapshot of its entries.
+     */
+    private final class LockFreeMap4Iterator implements Iterator<Pair<K, V>> {
+
+        /**
+         * Iterator over the snapshot.
+         */
+        private final Iterator<Pair<K, V>> snapshotIterator;
+
+        /**
+         * Constructor from an iterator over a snapshot.
+         *
+         * @param snapshotIterator
+         *            iterator over the snapshot
+         */
+        LockFreeMap4Iterator(Iterator<Pair<K, V>> snapshotIterator) {
+            this.snapshotIterator = snapshotIterator;
+        }
+
+        @Override
+        public boolean hasNext() {
+            return this.snapshotIterator.hasNext();
+        }
+
+        @Override
+        public Pair<K, V> next() {
+            assert this.hasNext() : "Violation of: ~this.unseen /= <>";
+            if (!this.hasNext()) {
+                /*
+                 * Exception is supposed to be thrown in this case, but with
+                 * assertion-checking enabled it cannot happen because of assert
+                 * above.
+                 */
+                throw new NoSuchElementException();
+            }
+            return this.snapshotIterator.next();
+        }
+
+        @Override
+        public void remove() {
+            throw new UnsupportedOperationException(
+                    "remove operation not supported");
+        }
+
+    }
+
+}
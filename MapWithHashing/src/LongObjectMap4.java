@@ -0,0 +1,446 @@
+import java.util.Arrays;
+
+/**
+ * Map from {@code long} keys to object values represented as a hash table with
+ * chained buckets, like {@code Map4}, but with the keys and chain links kept in
+ * primitive arrays and the values in a parallel array, so that no operation
+ * boxes a key or allocates an object except when the arrays grow.
+ *
+ * <p>
+ * Entries are stored densely in positions {@code [0, size())} of the entry
+ * arrays, and each bucket of the hash table holds the position of the first
+ * entry of its chain. Removing an entry moves the last entry into its
+ * position, so entries can be visited without allocation with
+ * {@code keyAt(i)} and {@code valueAt(i)} for {@code 0 <= i < size()}.
+ *
+ * @param <V>
+ *            type of range (associated value) entries
+ * @mathsubtypes <pre>
+ * PARTIAL_FUNCTION is finite set of (key: integer, value: V)
+ *  exemplar f
+ *  constraint
+ *   for all key1, key2: integer, value1, value2: V
+ *       where ((key1, value1) is in f  and  (key2, value2) is in f)
+ *     (if key1 = key2 then value1 = value2)
+ * </pre>
+ * @mathmodel type LongObjectMap4<V> is modeled by PARTIAL_FUNCTION
+ * @initially <pre>
+ * ():
+ *  ensures
+ *   this = {}
+ * </pre>
+ * @convention <pre>
+ * |$this.hashTable| > 0  and
+ * 0 <= $this.size <= |$this.keys|  and
+ * |$this.keys| = |$this.values| = |$this.next|  and
+ * $this.maxLoadFactor > 0  and
+ * $this.size <= $this.maxLoadFactor * |$this.hashTable|  and
+ * [$this.keys[0, $this.size) has no duplicates]  and
+ * for all b: integer
+ *     where (0 <= b  and  b < |$this.hashTable|)
+ *   ([the chain starting at $this.hashTable[b] and following $this.next
+ *     until -1 visits exactly the positions i in [0, $this.size) with
+ *     [computed result of Long.hashCode($this.keys[i])] mod
+ *       |$this.hashTable| = b])
+ * </pre>
+ * @correspondence <pre>
+ * this = {(k, v): (integer, V)
+ *   where (there exists i: integer
+ *            (0 <= i  and  i < $this.size  and
+ *             k = $this.keys[i]  and  v = $this.values[i]))}
+ * </pre>
+ *
+ * @author Jackson Jiang
+ * @author Jimmy Yuan
+ *
+ */
+public class LongObjectMap4<V> {
+
+    /*
+     * Private members --------------------------------------------------------
+     */
+
+    /**
+     * Default size of hash table.
+     */
+    private static final int DEFAULT_HASH_TABLE_SIZE = 101;
+
+    /**
+     * Default maximum ratio of size to hash table size before rehashing.
+     */
+    private static final double DEFAULT_MAX_LOAD_FACTOR = 0.75;
+
+    /**
+     * Marks the end of a chain or an empty bucket.
+     */
+    private static final int NONE = -1;
+
+    /**
+     * Buckets for hashing: position of the first entry of each chain.
+     */
+    private int[] hashTable;
+
+    /**
+     * Position of the next entry in the same chain.
+     */
+    private int[] next;
+
+    /**
+     * Keys, dense in positions [0, size).
+     */
+    private long[] keys;
+
+    /**
+     * Values, parallel to {@code keys}.
+     */
+    private Object[] values;
+
+    /**
+     * Total size of abstract {@code this}.
+     */
+    private int size;
+
+    /**
+     * Maximum ratio of size to hash table size before rehashing.
+     */
+    private double maxLoadFactor;
+
+    /**
+     * Computes {@code a} mod {@code b} as % should have been defined to work.
+     *
+     * @param a
+     *            the number being reduced
+     * @param b
+     *            the modulus
+     * @return the result of a mod b, which satisfies 0 <= {@code mod} < b
+     * @requires b > 0
+     * @ensures <pre>
+     * 0 <= mod  and  mod < b  and
+     * there exists k: integer (a = k * b + mod)
+     * </pre>
+     */
+    private static int mod(int a, int b) {
+        assert b > 0 : "Violation of: b > 0";
+
+        int result = a % b;
+        if (result < 0) {
+            result += b;
+        }
+        return result;
+    }
+
+    /**
+     * Creator of initial representation.
+     *
+     * @param hashTableSize
+     *            the size of the hash table
+     * @requires hashTableSize > 0
+     * @ensures <pre>
+     * |$this.hashTable| = hashTableSize  and  [every bucket is empty]  and
+     * $this.size = 0
+     * </pre>
+     */
+    private void createNewRep(int hashTableSize) {
+        int capacity = (int) (this.maxLoadFactor * hashTableSize) + 1;
+        this.hashTable = new int[hashTableSize];
+        Arrays.fill(this.hashTable, NONE);
+        this.next = new int[capacity];
+        this.keys = new long[capacity];
+        this.values = new Object[capacity];
+        this.size = 0;
+    }
+
+    /**
+     * Rebuilds the chains for a hash table of size {@code hashTableSize}.
+     *
+     * @param hashTableSize
+     *            the size of the new hash table
+     * @updates $this.hashTable, $this.next
+     * @requires hashTableSize > 0
+     * @ensures |$this.hashTable| = hashTableSize  and  this = #this
+     */
+    private void rehash(int hashTableSize) {
+        this.hashTable = new int[hashTableSize];
+        Arrays.fill(this.hashTable, NONE);
+        for (int i = 0; i < this.size; i++) {
+            int b = mod(Long.hashCode(this.keys[i]), hashTableSize);
+            this.next[i] = this.hashTable[b];
+            this.hashTable[b] = i;
+        }
+    }
+
+    /**
+     * Returns the position of the entry with key {@code key}, or -1 if there
+     * is none.
+     *
+     * @param key
+     *            the key
+     * @return the position of {@code key}, or -1
+     * @ensures <pre>
+     * if key is in DOMAIN(this)
+     * then $this.keys[find] = key
+     * else find = -1
+     * </pre>
+     */
+    private int find(long key) {
+        int i = this.hashTable[mod(Long.hashCode(key), this.hashTable.length)];
+        while (i != NONE && this.keys[i] != key) {
+            i = this.next[i];
+        }
+        return i;
+    }
+
+    /**
+     * Removes the entry at position {@code i} from its chain, leaving the
+     * entry arrays unchanged.
+     *
+     * @param i
+     *            the position of the entry
+     * @updates $this.hashTable, $this.next
+     * @requires 0 <= i < $this.size
+     * @ensures [no chain visits position i]
+     */
+    private void unlink(int i) {
+        int b = mod(Long.hashCode(this.keys[i]), this.hashTable.length);
+        if (this.hashTable[b] == i) {
+            this.hashTable[b] = this.next[i];
+        } else {
+            int p = this.hashTable[b];
+            while (this.next[p] != i) {
+                p = this.next[p];
+            }
+            this.next[p] = this.next[i];
+        }
+    }
+
+    /**
+     * Removes the entry at position {@code i}, moving the last entry into its
+     * place.
+     *
+     * @param i
+     *            the position of the entry
+     * @updates $this
+     * @requires 0 <= i < $this.size
+     * @ensures this = #this \ {(#$this.keys[i], #$this.values[i])}
+     */
+    private void removeAt(int i) {
+        this.unlink(i);
+        int last = this.size - 1;
+        if (i != last) {
+            /*
+             * Redirect whichever link pointed at the last entry to position i.
+             */
+            int b = mod(Long.hashCode(this.keys[last]), this.hashTable.length);
+            if (this.hashTable[b] == last) {
+                this.hashTable[b] = i;
+            } else {
+                int p = this.hashTable[b];
+                while (this.next[p] != last) {
+                    p = this.next[p];
+                }
+                this.next[p] = i;
+            }
+            this.keys[i] = this.keys[last];
+            this.values[i] = this.values[last];
+            this.next[i] = this.next[last];
+        }
+        this.values[last] = null;
+        this.size = last;
+    }
+
+    /*
+     * Constructors -----------------------------------------------------------
+     */
+
+    /**
+     * No-argument constructor.
+     */
+    public LongObjectMap4() {
+
+        this(DEFAULT_HASH_TABLE_SIZE);
+
+    }
+
+    /**
+     * Constructor resulting in a hash table of size {@code hashTableSize}.
+     *
+     * @param hashTableSize
+     *            size of hash table
+     * @requires hashTableSize > 0
+     * @ensures this = {}
+     */
+    public LongObjectMap4(int hashTableSize) {
+        assert hashTableSize > 0 : "Violation of: hashTableSize > 0";
+
+        this.maxLoadFactor = DEFAULT_MAX_LOAD_FACTOR;
+        this.createNewRep(hashTableSize);
+
+    }
+
+    /*
+     * Methods ----------------------------------------------------------------
+     */
+
+    /**
+     * Resets {@code this} to an initial value.
+     *
+     * @clears this
+     */
+    public final void clear() {
+        this.createNewRep(DEFAULT_HASH_TABLE_SIZE);
+    }
+
+    /**
+     * Adds the pair ({@code key}, {@code value}) to this.
+     *
+     * @param key
+     *            the key to be added
+     * @param value
+     *            the associated value to be added
+     * @updates this
+     * @requires value is not null  and  key is not in DOMAIN(this)
+     * @ensures this = #this union {(key, value)}
+     */
+    public final void add(long key, V value) {
+        assert value != null : "Violation of: value is not null";
+        assert !this.hasKey(key) : "Violation of: key is not in DOMAIN(this)";
+
+        if (this.size == this.keys.length) {
+            int capacity = 2 * this.keys.length;
+            this.next = Arrays.copyOf(this.next, capacity);
+            this.keys = Arrays.copyOf(this.keys, capacity);
+            this.values = Arrays.copyOf(this.values, capacity);
+        }
+        int b = mod(Long.hashCode(key), this.hashTable.length);
+        this.keys[this.size] = key;
+        this.values[this.size] = value;
+        this.next[this.size] = this.hashTable[b];
+        this.hashTable[b] = this.size;
+        this.size++;
+        if (this.size > this.maxLoadFactor * this.hashTable.length) {
+            this.rehash(2 * this.hashTable.length + 1);
+        }
+    }
+
+    /**
+     * Removes the pair whose first component is {@code key} and returns its
+     * second component.
+     *
+     * @param key
+     *            the key to be removed
+     * @return the value removed
+     * @updates this
+     * @requires key is in DOMAIN(this)
+     * @ensures <pre>
+     * (key, remove) is in #this  and
+     * this = #this \ {(key, remove)}
+     * </pre>
+     */
+    @SuppressWarnings("unchecked")
+    public final V remove(long key) {
+        int i = this.find(key);
+        assert i != NONE : "Violation of: key is in DOMAIN(this)";
+
+        V result = (V) this.values[i];
+        this.removeAt(i);
+        return result;
+    }
+
+    /**
+     * Removes the pair at position {@code size() - 1} (see {@link #keyAt})
+     * and returns its key. The value may be read with {@code valueAt} before
+     * the call.
+     *
+     * @return the key removed
+     * @updates this
+     * @requires |this| > 0
+     * @ensures <pre>
+     * removeAny = #this.keyAt(|#this| - 1)  and
+     * this = #this \ {(removeAny, #this.valueAt(|#this| - 1))}
+     * </pre>
+     */
+    public final long removeAny() {
+        assert this.size > 0 : "Violation of: this /= empty_set";
+
+        int last = this.size - 1;
+        long result = this.keys[last];
+        this.unlink(last);
+        this.values[last] = null;
+        this.size = last;
+        return result;
+    }
+
+    /**
+     * Reports the value associated with {@code key} in {@code this}.
+     *
+     * @param key
+     *            the key whose associated value is to be reported
+     * @return the value associated with key
+     * @requires key is in DOMAIN(this)
+     * @ensures (key, value) is in this
+     */
+    @SuppressWarnings("unchecked")
+    public final V value(long key) {
+        int i = this.find(key);
+        assert i != NONE : "Violation of: key is in DOMAIN(this)";
+
+        return (V) this.values[i];
+    }
+
+    /**
+     * Reports whether there is a pair in {@code this} whose first component is
+     * {@code key}.
+     *
+     * @param key
+     *            the key to be checked
+     * @return true iff there is a pair in this whose first component is key
+     * @ensures hasKey = (key is in DOMAIN(this))
+     */
+    public final boolean hasKey(long key) {
+        return this.find(key) != NONE;
+    }
+
+    /**
+     * Reports the size of {@code this}.
+     *
+     * @return the number of pairs in this
+     * @ensures size = |this|
+     */
+    public final int size() {
+        return this.size;
+    }
+
+    /**
+     * Reports the key of the pair at position {@code i}. Positions
+     * {@code 0 <= i < size()} visit every pair of {@code this} exactly once,
+     * in no particular order, until {@code this} is next changed.
+     *
+     * @param i
+     *            the position
+     * @return the key at position i
+     * @requires 0 <= i < |this|
+     * @ensures (keyAt, valueAt(i)) is in this
+     */
+    public final long keyAt(int i) {
+        assert 0 <= i && i < this.size : "Violation of: 0 <= i < |this|";
+
+        return this.keys[i];
+    }
+
+    /**
+     * Reports the value of the pair at position {@code i}.
+     *
+     * @param i
+     *            the position
+     * @return the value at position i
+     * @requires 0 <= i < |this|
+     * @ensures (keyAt(i), valueAt) is in this
+     */
+    @SuppressWarnings("unchecked")
+    public final V valueAt(int i) {
+        assert 0 <= i && i < this.size : "Violation of: 0 <= i < |this|";
+
+        return (V) this.values[i];
+    }
+
+}
@@ -0,0 +1,428 @@
+import java.util.Iterator;
+import java.util.NoSuchElementException;
+
+import components.map.Map.Pair;
+
+/**
+ * Cache of at most {@code maximumSize} pairs that evicts the least recently
+ * used pair when a new one would exceed the limit, built on {@code Map4}.
+ *
+ * <p>
+ * The {@code Map4} maps each key to an entry that is also a node of a
+ * circular doubly linked list in order of access, from least to most
+ * recently used, with a sentinel node closing the circle. A hit moves its
+ * entry to the most recent end, and eviction unlinks the entry after the
+ * sentinel, so {@code get}, {@code put} and eviction take constant time. Each
+ * entry keeps the hash code of its key, so every operation hashes at most
+ * one key: evicting an entry removes it from the {@code Map4} with its stored
+ * hash code.
+ *
+ * @param <K>
+ *            type of keys
+ * @param <V>
+ *            type of values
+ * @convention <pre>
+ * $this.maximumSize > 0  and
+ * |$this.map| <= $this.maximumSize  and
+ * [the list from $this.sentinel.after following after back to
+ *  $this.sentinel visits exactly the entries that are values of $this.map,
+ *  and before is the reverse of after]  and
+ * for all (k, e) in $this.map
+ *   (e.key = k  and  e.hash = $this.map.hashOf(k)  and  e.value /= null)
+ * </pre>
+ * @correspondence <pre>
+ * this = {(k, v): (K, V) where ((k, e) is in $this.map  and  e.value = v)}
+ * and
+ * [the recency order of this is the order of the list from
+ *  $this.sentinel.after, least recently used first]
+ * </pre>
+ *
+ * @author Jackson Jiang
+ * @author Jimmy Yuan
+ *
+ */
+public class LruCache4<K, V> implements Iterable<Pair<K, V>> {
+
+    /*
+     * Private members --------------------------------------------------------
+     */
+
+    /**
+     * Entry of the cache and node of the access-order list.
+     *
+     * @param <K>
+     *            type of key
+     * @param <V>
+     *            type of value
+     */
+    private static final class Entry<K, V> {
+
+        /**
+         * The key, or {@code null} in the sentinel.
+         */
+        private final K key;
+
+        /**
+         * The hash code of {@code key} in the {@code Map4}.
+         */
+        private final int hash;
+
+        /**
+         * The value associated with {@code key}.
+         */
+        private V value;
+
+        /**
+         * Next less recently used entry, or the sentinel.
+         */
+        private Entry<K, V> before;
+
+        /**
+         * Next more recently used entry, or the sentinel.
+         */
+        private Entry<K, V> after;
+
+        /**
+         * Constructor.
+         *
+         * @param key
+         *            the key
+         * @param hash
+         *            the hash code of key
+         * @param value
+         *            the value
+         */
+        Entry(K key, int hash, V value) {
+            this.key = key;
+            this.hash = hash;
+            this.value = value;
+        }
+
+    }
+
+    /**
+     * Entries of the cache by key.
+     */
+    private final Map4<K, Entry<K, V>> map;
+
+    /**
+     * Node before the least recently used entry and after the most recently
+     * used one.
+     */
+    private final Entry<K, V> sentinel;
+
+    /**
+     * Maximum number of pairs.
+     */
+    private final int maximumSize;
+
+    /**
+     * Unlinks {@code e} from the access-order list.
+     *
+     * @param <K>
+     *            type of key
+     * @param <V>
+     *            type of value
+     * @param e
+     *            the entry
+     * @requires [e is in the list]
+     * @ensures [e is not in the list, the order of the others is unchanged]
+     */
+    private static <K, V> void unlink(Entry<K, V> e) {
+        e.before.after = e.after;
+        e.after.before = e.before;
+    }
+
+    /**
+     * Links {@code e} into the access-order list as the most recently used
+     * entry.
+     *
+     * @param e
+     *            the entry
+     * @requires [e is not in the list]
+     * @ensures [e is the last entry of the list]
+     */
+    private void linkLast(Entry<K, V> e) {
+        e.after = this.sentinel;
+        e.before = this.sentinel.before;
+        this.sentinel.before.after = e;
+        this.sentinel.before = e;
+    }
+
+    /**
+     * Removes the least recently used entry from the list and the map.
+     *
+     * @return the entry removed
+     * @requires |this| > 0
+     */
+    private Entry<K, V> evictEldest() {
+        Entry<K, V> eldest = this.sentinel.after;
+        unlink(eldest);
+        this.map.removeValue(eldest.key, eldest.hash);
+        return eldest;
+    }
+
+    /*
+     * Constructors -----------------------------------------------------------
+     */
+
+    /**
+     * Constructor resulting in an empty cache of at most {@code maximumSize}
+     * pairs.
+     *
+     * @param maximumSize
+     *            the maximum number of pairs
+     * @requires maximumSize > 0
+     * @ensures this = {}
+     */
+    public LruCache4(int maximumSize) {
+        this(maximumSize, HashingStrategy.natural());
+    }
+
+    /**
+     * Constructor resulting in an empty cache of at most {@code maximumSize}
+     * pairs whose keys are hashed and compared by {@code strategy}.
+     *
+     * @param maximumSize
+     *            the maximum number of pairs
+     * @param strategy
+     *            hash function and equivalence of keys
+     * @requires maximumSize > 0
+     * @ensures this = {}
+     */
+    public LruCache4(int maximumSize, HashingStrategy<? super K> strategy) {
+        assert maximumSize > 0 : "Violation of: maximumSize > 0";
+        assert strategy != null : "Violation of: strategy is not null";
+
+        this.maximumSize = maximumSize;
+        this.map = new Map4<K, Entry<K, V>>(strategy);
+        this.sentinel = new Entry<K, V>(null, 0, null);
+        this.sentinel.before = this.sentinel;
+        this.sentinel.after = this.sentinel;
+    }
+
+    /*
+     * Methods ----------------------------------------------------------------
+     */
+
+    /**
+     * Reports the value of {@code key}, or {@code null} if it is not cached,
+     * and makes {@code key} the most recently used key.
+     *
+     * @param key
+     *            the key
+     * @return the value of key, or null
+     * @updates this
+     * @requires key /= null
+     * @ensures <pre>
+     * this = #this  and
+     * if key is in DOMAIN(this)
+     * then (key, get) is in this  and  [key is the most recently used key]
+     * else get = null
+     * </pre>
+     */
+    public final V get(K key) {
+        assert key != null : "Violation of: key is not null";
+
+        Entry<K, V> e = this.map.valueOrDefault(key, this.map.hashOf(key),
+                null);
+        if (e == null) {
+            return null;
+        }
+        unlink(e);
+        this.linkLast(e);
+        return e.value;
+    }
+
+    /**
+     * Associates {@code value} with {@code key} and makes {@code key} the most
+     * recently used key. If {@code key} was not cached and the cache was
+     * full, the least recently used pair is evicted to make room.
+     *
+     * @param key
+     *            the key
+     * @param value
+     *            the value
+     * @return the value previously associated with key, or null
+     * @updates this
+     * @requires key /= null  and  value /= null
+     * @ensures <pre>
+     * [put is the value of key in #this, or null if it had none]  and
+     * (key, value) is in this  and  [key is the most recently used key]  and
+     * if key is not in DOMAIN(#this)  and  |#this| = maximumSize
+     * then this = (#this \ {the least recently used pair of #this})
+     *             union {(key, value)}
+     * </pre>
+     */
+    public final V put(K key, V value) {
+        assert key != null : "Violation of: key is not null";
+        assert value != null : "Violation of: value is not null";
+
+        int hash = this.map.hashOf(key);
+        Entry<K, V> e = this.map.valueOrDefault(key, hash, null);
+        if (e != null) {
+            V previous = e.value;
+            e.value = value;
+            unlink(e);
+            this.linkLast(e);
+            return previous;
+        }
+        if (this.map.size() == this.maximumSize) {
+            this.evictEldest();
+        }
+        e = new Entry<K, V>(key, hash, value);
+        this.map.add(key, hash, e);
+        this.linkLast(e);
+        return null;
+    }
+
+    /**
+     * Removes the pair with key {@code key}, if any, and reports it.
+     *
+     * @param key
+     *            the key
+     * @return the pair removed, or null
+     * @updates this
+     * @requires key /= null
+     * @ensures <pre>
+     * if key is in DOMAIN(#this)
+     * then remove.key = key  and  remove is in #this  and
+     *      this = #this \ {remove}
+     * else this = #this  and  remove = null
+     * </pre>
+     */
+    public final Pair<K, V> remove(K key) {
+        assert key != null : "Violation of: key is not null";
+
+        Entry<K, V> e = this.map.removeValue(key, this.map.hashOf(key));
+        if (e == null) {
+            return null;
+        }
+        unlink(e);
+        return new SimplePair<K, V>(e.key, e.value);
+    }
+
+    /**
+     * Removes and reports the least recently used pair.
+     *
+     * @return the pair removed
+     * @updates this
+     * @requires |this| > 0
+     * @ensures <pre>
+     * evict is in #this  and  this = #this \ {evict}  and
+     * [evict was the least recently used pair of #this]
+     * </pre>
+     */
+    public final Pair<K, V> evict() {
+        assert this.size() > 0 : "Violation of: |this| > 0";
+
+        Entry<K, V> e = this.evictEldest();
+        return new SimplePair<K, V>(e.key, e.value);
+    }
+
+    /**
+     * Reports whether {@code key} is cached, without changing the order of
+     * use.
+     *
+     * @param key
+     *            the key
+     * @return true iff key is in DOMAIN(this)
+     * @requires key /= null
+     * @ensures hasKey = (key is in DOMAIN(this))
+     */
+    public final boolean hasKey(K key) {
+        assert key != null : "Violation of: key is not null";
+
+        return this.map.valueOrDefault(key, this.map.hashOf(key),
+                null) != null;
+    }
+
+    /**
+     * Reports the number of cached pairs.
+     *
+     * @return |this|
+     * @ensures size = |this|
+     */
+    public final int size() {
+        return this.map.size();
+    }
+
+    /**
+     * Reports the maximum number of cached pairs.
+     *
+     * @return the maximum size
+     */
+    public final int maximumSize() {
+        return this.maximumSize;
+    }
+
+    /**
+     * Removes every pair.
+     *
+     * @clears this
+     */
+    public final void clear() {
+        this.map.clear();
+        this.sentinel.before = this.sentinel;
+        this.sentinel.after = this.sentinel;
+    }
+
+    /**
+     * Returns an iterator over the pairs of {@code this} from the least to
+     * the most recently used, without changing the order of use.
+     * {@code this} must not be changed while it is in use.
+     *
+     * @return an iterator over the pairs in order of use
+     */
+    @Override
+    public final Iterator<Pair<K, V>> iterator() {
+        return new LruCache4Iterator();
+    }
+
+    /**
+     * Implementation of {@code Iterator} interface for {@code LruCache4}.
+     */
+    private final class LruCache4Iterator implements Iterator<Pair<K, V>> {
+
+        /**
+         * Entry of the next pair, or the sentinel if there is none.
+         */
+        private Entry<K, V> nextEntry;
+
+        /**
+         * No-argument constructor.
+         */
+        LruCache4Iterator() {
+            this.nextEntry = LruCache4.this.sentinel.after;
+        }
+
+        @Override
+        public boolean hasNext() {
+            return this.nextEntry != LruCache4.this.sentinel;
+        }
+
+        @Override
+        public Pair<K, V> next() {
+            assert this.hasNext() : "Violation of: ~this.unseen /= <>";
+            if (!this.hasNext()) {
+                /*
+                 * Exception is supposed to be thrown in this case, but with
+                 * assertion-checking enabled it cannot happen because of assert
+                 * above.
+                 */
+                throw new NoSuchElementException();
+            }
+            Entry<K, V> e = this.nextEntry;
+            this.nextEntry = e.after;
+            return new SimplePair<K, V>(e.key, e.value);
+        }
+
+        @Override
+        public void remove() {
+            throw new UnsupportedOperationException(
+                    "remove operation not supported");
+        }
+
+    }
+
+}
@@ -1,15 +1,71 @@
+import java.io.IOException;
+import java.nio.channels.ReadableByteChannel;
+import java.nio.channels.WritableByteChannel;
+import java.util.Arrays;
 import java.util.Iterator;
 import java.util.NoSuchElementException;
+import java.util.Spliterator;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveTask;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.function.BiConsumer;
+import java.util.function.BiFunction;
+import java.util.function.BinaryOperator;
+import java.util.function.Consumer;
+import java.util.function.Function;
+import java.util.function.LongBinaryOperator;
+import java.util.function.ToLongBiFunction;
+import java.util.stream.Stream;
+import java.util.stream.StreamSupport;
 
 import components.array.Array;
 import components.array.Array1L;
 import components.map.Map;
-import components.map.Map2;
 import components.map.MapSecondary;
 
 /**
- * {@code Map} represented as a hash table using {@code Map}s for the buckets,
- * with implementations of primary methods.
+ * {@code Map} represented as a hash table using chains of entries for the
+ * buckets, with implementations of primary methods.
+ *
+ * <p>
+ * Besides the kernel methods, {@code Map4} has operations that find the bucket
+ * of a key and the entry in it once, such as {@code valueOrDefault} and
+ * {@code putIfAbsent}, for callers that would otherwise call {@code hasKey}
+ * before {@code value}, {@code add} or {@code remove}. Operations such as
+ * {@code compute} and {@code merge} likewise update the value of an entry in
+ * place, where a caller would otherwise {@code remove} and {@code add} it.
+ *
+ * <p>
+ * Each hash table has a bitmap of its non-empty buckets, so {@code removeAny}
+ * and iterators skip runs of empty buckets 64 at a time instead of visiting
+ * each of them.
+ *
+ * <p>
+ * {@code spliterator} splits the buckets into ranges that report their exact
+ * sizes, so {@code parallelStream} divides the entries evenly between threads.
+ * The bulk operations {@code forEach}, {@code search}, {@code reduce} and
+ * {@code reduceToLong} split the buckets the same way on the common
+ * {@code ForkJoinPool} once there are at least
+ * {@code parallelismThreshold} entries to share.
+ *
+ * <p>
+ * By default the bucket of a key is its hash code mod the hash table size.
+ * A {@code Map4} constructed with {@code powerOfTwoSize} true instead
+ * keeps the hash table size a power of two and selects the bucket by
+ * multiplying the hash code by a Fibonacci constant, folding the high half
+ * into the low half, and masking, which avoids the division and spreads
+ * hash codes that differ only in their high bits.
+ *
+ * <p>
+ * Each entry keeps the hash code of its key, so {@code hashCode} is called
+ * once per operation and never while rehashing, and {@code equals} is only
+ * called on keys whose hash codes match.
+ *
+ * <p>
+ * A {@code Map4} may be constructed with a {@code HashingStrategy}, whose
+ * {@code hash} and {@code equivalent} are then used instead of the keys'
+ * {@code hashCode} and {@code equals} throughout; the mathematical model
+ * below then identifies keys that are equivalent.
  *
  * @param <K>
  *            type of {@code Map} domain (key) entries
@@ -21,18 +77,62 @@ import components.map.MapSecondary;
  *     where (0 <= i  and  i < |$this.hashTable.entries|  and
  *            <pf> = $this.hashTable.entries[i, i+1)  and
  *            x is in DOMAIN(pf))
- *   ([computed result of x.hashCode()] mod |$this.hashTable.entries| = i))  and
- * |$this.hashTable.examinableIndices| = |$this.hashTable.entries|  and
- * $this.size = sum i: integer, pf: PARTIAL_FUNCTION
+ *   (index(x, |$this.hashTable.entries|) = i))  and
+ * [a bucket of $this.hashTable or $this.oldHashTable whose index is not in
+ *  its examinableIndices is empty, and every non-empty bucket's index is]  and
+ * $this.size = (sum i: integer, pf: PARTIAL_FUNCTION
  *     where (0 <= i  and  i < |$this.hashTable.entries|  and
  *            <pf> = $this.hashTable.entries[i, i+1))
- *   (|pf|)
+ *   (|pf|)) + (sum i: integer, pf: PARTIAL_FUNCTION
+ *     where ($this.oldHashTable /= null  and
+ *            $this.rehashIndex <= i  and
+ *            i < |$this.oldHashTable.entries|  and
+ *            <pf> = $this.oldHashTable.entries[i, i+1))
+ *   (|pf|))  and
+ * $this.maxLoadFactor > 0  and
+ * $this.growthFactor > 1  and
+ * $this.rehashStepSize > 0  and
+ * $this.size <= $this.maxLoadFactor * |$this.hashTable.entries|  and
+ * if $this.oldHashTable /= null then
+ *  ($this.incrementalRehash  and
+ *   0 <= $this.rehashIndex < |$this.oldHashTable.entries|  and
+ *   $this.rehashStepSize *
+ *     (floor($this.maxLoadFactor * |$this.hashTable.entries|) -
+ *      $this.size + 1) >=
+ *     |$this.oldHashTable.entries| - $this.rehashIndex  and
+ *   for all i: integer, pf: PARTIAL_FUNCTION, x: K
+ *       where ($this.rehashIndex <= i  and
+ *              i < |$this.oldHashTable.entries|  and
+ *              <pf> = $this.oldHashTable.entries[i, i+1)  and
+ *              x is in DOMAIN(pf))
+ *     (index(x, |$this.oldHashTable.entries|) = i)  and
+ *   [the DOMAINs of all buckets of $this.hashTable and of
+ *    $this.oldHashTable.entries[$this.rehashIndex,
+ *      |$this.oldHashTable.entries|) are pairwise disjoint])  and
+ * [$this.occupied describes which buckets of $this.hashTable are non-empty,
+ *  and $this.oldOccupied, when $this.oldHashTable /= null, which buckets of
+ *  $this.oldHashTable are non-empty]  and
+ * [each bucket of a hash table has the occupancy bitmap of that table and its
+ *  own index in it]  and
+ * if $this.powerOfTwoSize
+ * then ([|$this.hashTable.entries| and |$this.oldHashTable.entries| are
+ *        powers of two]  and
+ *       [index(x, n) = computed result of
+ *          indexFor($this.strategy.hash(x), n)])
+ * else [index(x, n) = computed result of $this.strategy.hash(x) mod n]  and
+ * [every entry's hash is the computed result of $this.strategy.hash of its
+ *  key]
  * </pre>
  * @correspondence <pre>
- * this = union i: integer, pf: PARTIAL_FUNCTION
+ * this = (union i: integer, pf: PARTIAL_FUNCTION
  *            where (0 <= i  and  i < |$this.hashTable.entries|  and
  *                   <pf> = $this.hashTable.entries[i, i+1))
- *          (pf)
+ *          (pf)) union (union i: integer, pf: PARTIAL_FUNCTION
+ *            where ($this.oldHashTable /= null  and
+ *                   $this.rehashIndex <= i  and
+ *                   i < |$this.oldHashTable.entries|  and
+ *                   <pf> = $this.oldHashTable.entries[i, i+1))
+ *          (pf))
  * </pre>
  *
  * @author Jackson Jiang
@@ -41,197 +141,2589 @@ import components.map.MapSecondary;
  */
 public class Map4<K, V> extends MapSecondary<K, V> {
 
-    /*
-     * Private members --------------------------------------------------------
+    /*
+     * Private members --------------------------------------------------------
+     */
+
+    /**
+     * Default size of hash table.
+     */
+    private static final int DEFAULT_HASH_TABLE_SIZE = 101;
+
+    /**
+     * Default maximum ratio of size to hash table size before rehashing.
+     */
+    private static final double DEFAULT_MAX_LOAD_FACTOR = 0.75;
+
+    /**
+     * Default factor by which the hash table grows when it is rehashed.
+     */
+    private static final int DEFAULT_GROWTH_FACTOR = 2;
+
+    /**
+     * Least number of buckets of the old hash table migrated by each
+     * incremental rehash step.
+     */
+    private static final int REHASH_BUCKETS_PER_STEP = 4;
+
+    /**
+     * 2^32 divided by the golden ratio, the multiplier of Fibonacci hashing.
+     */
+    private static final int FIBONACCI_MULTIPLIER = 0x9E3779B9;
+
+    /**
+     * Number of bits the high half of a mixed hash code is shifted to fold it
+     * into the low half.
+     */
+    private static final int HALF_INT_BITS = 16;
+
+    /**
+     * Identifies a snapshot written by {@code writeSnapshot}.
+     */
+    private static final int SNAPSHOT_MAGIC = 0x4D345353;
+
+    /**
+     * Version of the snapshot layout.
+     */
+    private static final int SNAPSHOT_VERSION = 2;
+
+    /**
+     * Largest hash table size a snapshot may record or need.
+     */
+    private static final int SNAPSHOT_MAX_TABLE_LENGTH = 1 << 30;
+
+    /**
+     * Entry of a bucket. Its fields are not private so that they are visible
+     * in {@code TreeNode}.
+     *
+     * @param <K>
+     *            type of key
+     * @param <V>
+     *            type of value
+     */
+    private static class Node<K, V> {
+
+        /**
+         * The key.
+         */
+        final K key;
+
+        /**
+         * The value associated with {@code key}.
+         */
+        V value;
+
+        /**
+         * The hash code of {@code key}.
+         */
+        final int hash;
+
+        /**
+         * Next entry of the same bucket.
+         */
+        Node<K, V> next;
+
+        /**
+         * Constructor.
+         *
+         * @param key
+         *            the key
+         * @param value
+         *            the value
+         * @param hash
+         *            the hash code of key
+         */
+        Node(K key, V value, int hash) {
+            this.key = key;
+            this.value = value;
+            this.hash = hash;
+        }
+
+    }
+
+    /**
+     * Bitmap of the non-empty buckets of a hash table, with bit {@code i % 64}
+     * of {@code words[i / 64]} set iff bucket {@code i} is non-empty.
+     *
+     * @convention <pre>
+     * 0 <= $this.firstWord <= |$this.words|  and
+     * [every word of $this.words before $this.firstWord is 0]
+     * </pre>
+     */
+    private static final class Occupancy {
+
+        /**
+         * Number of bits in a word.
+         */
+        private static final int WORD_BITS = 64;
+
+        /**
+         * Base-2 logarithm of {@code WORD_BITS}.
+         */
+        private static final int LOG_WORD_BITS = 6;
+
+        /**
+         * The bits.
+         */
+        private final long[] words;
+
+        /**
+         * Index of a word such that every word before it is 0.
+         */
+        private int firstWord;
+
+        /**
+         * Constructor resulting in every bit clear.
+         *
+         * @param bucketCount
+         *            the number of buckets
+         */
+        Occupancy(int bucketCount) {
+            this.words = new long[(bucketCount + WORD_BITS - 1) / WORD_BITS];
+            this.firstWord = this.words.length;
+        }
+
+        /**
+         * Marks bucket {@code i} non-empty.
+         *
+         * @param i
+         *            the bucket
+         */
+        void set(int i) {
+            int w = i >>> LOG_WORD_BITS;
+            this.words[w] |= 1L << i;
+            if (w < this.firstWord) {
+                this.firstWord = w;
+            }
+        }
+
+        /**
+         * Marks bucket {@code i} empty.
+         *
+         * @param i
+         *            the bucket
+         */
+        void clear(int i) {
+            this.words[i >>> LOG_WORD_BITS] &= ~(1L << i);
+        }
+
+        /**
+         * Returns the first non-empty bucket at or after {@code from}, or -1 if
+         * there is none.
+         *
+         * @param from
+         *            the bucket to start from
+         * @return the first non-empty bucket at or after from, or -1
+         * @requires from >= 0
+         */
+        int next(int from) {
+            int w = from >>> LOG_WORD_BITS;
+            if (w >= this.words.length) {
+                return -1;
+            }
+            long word = this.words[w] & (-1L << from);
+            while (word == 0) {
+                w++;
+                if (w == this.words.length) {
+                    return -1;
+                }
+                word = this.words[w];
+            }
+            return (w << LOG_WORD_BITS) + Long.numberOfTrailingZeros(word);
+        }
+
+        /**
+         * Returns the first non-empty bucket, or -1 if there is none. Draining
+         * a table by repeatedly emptying its first non-empty bucket costs
+         * amortized constant time per call.
+         *
+         * @return the first non-empty bucket, or -1
+         */
+        int first() {
+            while (this.firstWord < this.words.length
+                    && this.words[this.firstWord] == 0) {
+                this.firstWord++;
+            }
+            if (this.firstWord == this.words.length) {
+                return -1;
+            }
+            return (this.firstWord << LOG_WORD_BITS)
+                    + Long.numberOfTrailingZeros(this.words[this.firstWord]);
+        }
+
+    }
+
+    /**
+     * Entry of a bucket that has been converted to a tree. The entries of such
+     * a bucket are still chained through {@code next}, with {@code prev}
+     * linking back, and are also the nodes of an AVL tree ordered by
+     * {@code treeOrder}.
+     *
+     * @param <K>
+     *            type of key
+     * @param <V>
+     *            type of value
+     */
+    private static final class TreeNode<K, V> extends Node<K, V> {
+
+        /**
+         * Previous entry of the chain.
+         */
+        private TreeNode<K, V> prev;
+
+        /**
+         * Left subtree.
+         */
+        private TreeNode<K, V> left;
+
+        /**
+         * Right subtree.
+         */
+        private TreeNode<K, V> right;
+
+        /**
+         * Height of the subtree rooted here.
+         */
+        private int height;
+
+        /**
+         * Position in the order of insertion into the tree, used to order
+         * entries that nothing else distinguishes.
+         */
+        private int sequence;
+
+        /**
+         * Constructor from a chained entry.
+         *
+         * @param node
+         *            the entry to copy
+         */
+        TreeNode(Node<K, V> node) {
+            super(node.key, node.value, node.hash);
+        }
+
+    }
+
+    /**
+     * Bucket of the hash table, modeled by the {@code PARTIAL_FUNCTION} of the
+     * (key, value) pairs of its entries. A lookup returns the entry itself, so
+     * an operation can find a key once and then read, replace or unlink its
+     * entry without searching the bucket again.
+     *
+     * <p>
+     * A bucket is a plain chain until it has more than
+     * {@code TREEIFY_THRESHOLD} entries. It then also indexes its entries with
+     * an AVL tree ordered by hash, then class name, then {@code compareTo} for
+     * keys of the same {@code Comparable} class, so that many keys with
+     * colliding hash codes are found in logarithmic time. Once it shrinks to
+     * {@code UNTREEIFY_THRESHOLD} entries it goes back to a plain chain.
+     *
+     * @param <K>
+     *            type of key
+     * @param <V>
+     *            type of value
+     * @convention <pre>
+     * [the chain of entries starting at $this.head and following next until
+     *  null has exactly $this.size entries, with no two keys equal]  and
+     * [bit $this.index of $this.occupancy is set iff $this.size > 0]  and
+     * if $this.root /= null
+     * then ($this.size > UNTREEIFY_THRESHOLD  and
+     *       [every entry of the chain is a TreeNode, prev is the reverse of
+     *        next, and the tree at $this.root is an AVL tree of exactly the
+     *        entries of the chain, in treeOrder, with distinct sequence
+     *        numbers below $this.nextSequence])
+     * else $this.size <= TREEIFY_THRESHOLD
+     * </pre>
+     */
+    private static final class Bucket<K, V> {
+
+        /**
+         * Number of entries above which a bucket is converted to a tree.
+         */
+        private static final int TREEIFY_THRESHOLD = 8;
+
+        /**
+         * Number of entries at or below which a tree bucket is converted back
+         * to a plain chain.
+         */
+        private static final int UNTREEIFY_THRESHOLD = 6;
+
+        /**
+         * Occupancy bitmap of the hash table this bucket belongs to.
+         */
+        private final Occupancy occupancy;
+
+        /**
+         * Index of this bucket in its hash table.
+         */
+        private final int index;
+
+        /**
+         * First entry of the chain, or {@code null} if the bucket is empty.
+         */
+        private Node<K, V> head;
+
+        /**
+         * Number of entries in the chain.
+         */
+        private int size;
+
+        /**
+         * Root of the tree, or {@code null} if the bucket is a plain chain.
+         */
+        private TreeNode<K, V> root;
+
+        /**
+         * Sequence number for the next entry inserted into the tree.
+         */
+        private int nextSequence;
+
+        /**
+         * Constructor resulting in an empty bucket.
+         *
+         * @param occupancy
+         *            occupancy bitmap of the hash table
+         * @param index
+         *            index of the bucket in its hash table
+         */
+        Bucket(Occupancy occupancy, int index) {
+            this.occupancy = occupancy;
+            this.index = index;
+        }
+
+        /**
+         * Compares {@code a} and {@code b} by {@code compareTo} if they are of
+         * the same class and that class is {@code Comparable}, and otherwise
+         * reports them as unordered.
+         *
+         * @param a
+         *            the first key
+         * @param b
+         *            the second key
+         * @return the result of a.compareTo(b), or 0 if they are not comparable
+         */
+        @SuppressWarnings({ "unchecked", "rawtypes" })
+        private static int compareKeys(Object a, Object b) {
+            if (a.getClass() == b.getClass() && a instanceof Comparable) {
+                return ((Comparable) a).compareTo(b);
+            }
+            return 0;
+        }
+
+        /**
+         * Total order of the entries of a tree: by hash, then by class name of
+         * the key, then by {@code compareKeys}, then by sequence number.
+         *
+         * @param a
+         *            the first entry
+         * @param b
+         *            the second entry
+         * @return negative, zero or positive as a is before, is, or is after b
+         */
+        private static int treeOrder(TreeNode<?, ?> a, TreeNode<?, ?> b) {
+            int result = Integer.compare(a.hash, b.hash);
+            if (result == 0) {
+                result = a.key.getClass().getName()
+                        .compareTo(b.key.getClass().getName());
+            }
+            if (result == 0) {
+                result = compareKeys(a.key, b.key);
+            }
+            if (result == 0) {
+                result = Integer.compare(a.sequence, b.sequence);
+            }
+            return result;
+        }
+
+        /**
+         * Returns the height of the tree {@code t}.
+         *
+         * @param t
+         *            the tree
+         * @return the height of t, or 0 if t is null
+         */
+        private static int height(TreeNode<?, ?> t) {
+            if (t == null) {
+                return 0;
+            }
+            return t.height;
+        }
+
+        /**
+         * Rotates the tree {@code t} left.
+         *
+         * @param <K>
+         *            type of key
+         * @param <V>
+         *            type of value
+         * @param t
+         *            the tree
+         * @return the new root
+         * @requires t.right /= null
+         */
+        private static <K, V> TreeNode<K, V> rotateLeft(TreeNode<K, V> t) {
+            TreeNode<K, V> r = t.right;
+            t.right = r.left;
+            r.left = t;
+            t.height = 1 + Math.max(height(t.left), height(t.right));
+            r.height = 1 + Math.max(height(r.left), height(r.right));
+            return r;
+        }
+
+        /**
+         * Rotates the tree {@code t} right.
+         *
+         * @param <K>
+         *            type of key
+         * @param <V>
+         *            type of value
+         * @param t
+         *            the tree
+         * @return the new root
+         * @requires t.left /= null
+         */
+        private static <K, V> TreeNode<K, V> rotateRight(TreeNode<K, V> t) {
+            TreeNode<K, V> l = t.left;
+            t.left = l.right;
+            l.right = t;
+            t.height = 1 + Math.max(height(t.left), height(t.right));
+            l.height = 1 + Math.max(height(l.left), height(l.right));
+            return l;
+        }
+
+        /**
+         * Restores the AVL balance of {@code t}, whose subtrees are balanced
+         * and differ in height by at most 2.
+         *
+         * @param <K>
+         *            type of key
+         * @param <V>
+         *            type of value
+         * @param t
+         *            the tree
+         * @return the new root
+         */
+        private static <K, V> TreeNode<K, V> balance(TreeNode<K, V> t) {
+            int difference = height(t.left) - height(t.right);
+            if (difference > 1) {
+                if (height(t.left.left) < height(t.left.right)) {
+                    t.left = rotateLeft(t.left);
+                }
+                return rotateRight(t);
+            } else if (difference < -1) {
+                if (height(t.right.right) < height(t.right.left)) {
+                    t.right = rotateRight(t.right);
+                }
+                return rotateLeft(t);
+            }
+            t.height = 1 + Math.max(height(t.left), height(t.right));
+            return t;
+        }
+
+        /**
+         * Inserts {@code node} into the tree {@code t}.
+         *
+         * @param <K>
+         *            type of key
+         * @param <V>
+         *            type of value
+         * @param t
+         *            the tree
+         * @param node
+         *            the entry to insert, with no subtrees
+         * @return the new root
+         */
+        private static <K, V> TreeNode<K, V> insert(TreeNode<K, V> t,
+                TreeNode<K, V> node) {
+            if (t == null) {
+                return node;
+            }
+            if (treeOrder(node, t) < 0) {
+                t.left = insert(t.left, node);
+            } else {
+                t.right = insert(t.right, node);
+            }
+            return balance(t);
+        }
+
+        /**
+         * Removes the leftmost entry of the tree {@code t}.
+         *
+         * @param <K>
+         *            type of key
+         * @param <V>
+         *            type of value
+         * @param t
+         *            the tree
+         * @return the new root
+         * @requires t /= null
+         */
+        private static <K, V> TreeNode<K, V> deleteMin(TreeNode<K, V> t) {
+            if (t.left == null) {
+                return t.right;
+            }
+            t.left = deleteMin(t.left);
+            return balance(t);
+        }
+
+        /**
+         * Removes {@code node} from the tree {@code t}.
+         *
+         * @param <K>
+         *            type of key
+         * @param <V>
+         *            type of value
+         * @param t
+         *            the tree
+         * @param node
+         *            the entry to remove
+         * @return the new root
+         * @requires [node is in the tree t]
+         */
+        private static <K, V> TreeNode<K, V> delete(TreeNode<K, V> t,
+                TreeNode<K, V> node) {
+            int order = treeOrder(node, t);
+            if (order < 0) {
+                t.left = delete(t.left, node);
+            } else if (order > 0) {
+                t.right = delete(t.right, node);
+            } else {
+                if (t.left == null) {
+                    return t.right;
+                } else if (t.right == null) {
+                    return t.left;
+                }
+                TreeNode<K, V> successor = t.right;
+                while (successor.left != null) {
+                    successor = successor.left;
+                }
+                successor.right = deleteMin(t.right);
+                successor.left = t.left;
+                return balance(successor);
+            }
+            return balance(t);
+        }
+
+        /**
+         * Returns the entry of the tree {@code t} with key {@code key}, or
+         * {@code null} if there is none. Where the order of the tree cannot
+         * tell which subtree would hold the key, both are searched; keys are
+         * only told apart by {@code compareTo} under the natural strategy.
+         *
+         * @param <K>
+         *            type of key
+         * @param <V>
+         *            type of value
+         * @param t
+         *            the tree
+         * @param key
+         *            the key
+         * @param hash
+         *            the hash code of key
+         * @param strategy
+         *            the hashing strategy
+         * @return the entry of key, or null
+         */
+        private static <K, V> TreeNode<K, V> treeFind(TreeNode<K, V> t, K key,
+                int hash, HashingStrategy<? super K> strategy) {
+            TreeNode<K, V> node = t;
+            while (node != null) {
+                if (hash != node.hash) {
+                    if (hash < node.hash) {
+                        node = node.left;
+                    } else {
+                        node = node.right;
+                    }
+                } else if (strategy.equivalent(key, node.key)) {
+                    return node;
+                } else {
+                    int order = 0;
+                    if (strategy.isNatural()) {
+                        order = compareKeys(key, node.key);
+                    }
+                    if (order < 0) {
+                        node = node.left;
+                    } else if (order > 0) {
+                        node = node.right;
+                    } else {
+                        TreeNode<K, V> found = treeFind(node.right, key, hash,
+                                strategy);
+                        if (found != null) {
+                            return found;
+                        }
+                        node = node.left;
+                    }
+                }
+            }
+            return null;
+        }
+
+        /**
+         * Links {@code node} at the front of the chain and inserts it into the
+         * tree.
+         *
+         * @param node
+         *            the entry to add
+         * @requires $this.root /= null  or  $this.size = 0
+         */
+        private void addToTree(TreeNode<K, V> node) {
+            node.left = null;
+            node.right = null;
+            node.height = 1;
+            node.sequence = this.nextSequence;
+            this.nextSequence++;
+            node.prev = null;
+            node.next = this.head;
+            if (this.head != null) {
+                ((TreeNode<K, V>) this.head).prev = node;
+            }
+            this.head = node;
+            this.root = insert(this.root, node);
+        }
+
+        /**
+         * Converts the plain chain into a tree of copies of its entries.
+         *
+         * @requires $this.root = null
+         */
+        private void treeify() {
+            Node<K, V> node = this.head;
+            this.head = null;
+            this.nextSequence = 0;
+            while (node != null) {
+                Node<K, V> next = node.next;
+                this.addToTree(new TreeNode<K, V>(node));
+                node = next;
+            }
+        }
+
+        /**
+         * Unlinks {@code node} from the chain and the tree, and goes back to a
+         * plain chain if few entries remain.
+         *
+         * @param node
+         *            the entry to remove
+         * @requires $this.root /= null  and  [node is an entry of this]
+         */
+        private void removeFromTree(TreeNode<K, V> node) {
+            if (node.prev == null) {
+                this.head = node.next;
+            } else {
+                node.prev.next = node.next;
+            }
+            if (node.next != null) {
+                ((TreeNode<K, V>) node.next).prev = node.prev;
+            }
+            this.root = delete(this.root, node);
+            node.next = null;
+            node.prev = null;
+            if (this.size - 1 <= UNTREEIFY_THRESHOLD) {
+                /*
+                 * The chain is left as it is; prev and the tree links are
+                 * ignored until the bucket is converted again.
+                 */
+                this.root = null;
+            }
+        }
+
+        /**
+         * Returns the entry with key {@code key}, or {@code null} if there is
+         * none. {@code strategy.equivalent} is only called on keys with hash
+         * {@code hash}.
+         *
+         * @param key
+         *            the key
+         * @param hash
+         *            the hash code of key
+         * @param strategy
+         *            the hashing strategy
+         * @return the entry of key, or null
+         */
+        Node<K, V> find(K key, int hash, HashingStrategy<? super K> strategy) {
+            if (this.root != null) {
+                return treeFind(this.root, key, hash, strategy);
+            }
+            Node<K, V> node = this.head;
+            while (node != null && !(node.hash == hash
+                    && strategy.equivalent(key, node.key))) {
+                node = node.next;
+            }
+            return node;
+        }
+
+        /**
+         * Adds {@code node} to the bucket. If the bucket is a tree, a copy of
+         * {@code node} may be added instead, so {@code node} should not be
+         * used afterwards.
+         *
+         * @param node
+         *            the entry to add
+         * @requires [node.key is not the key of an entry of this]
+         */
+        void add(Node<K, V> node) {
+            if (this.size == 0) {
+                this.occupancy.set(this.index);
+            }
+            if (this.root != null) {
+                TreeNode<K, V> treeNode;
+                if (node instanceof TreeNode) {
+                    treeNode = (TreeNode<K, V>) node;
+                } else {
+                    treeNode = new TreeNode<K, V>(node);
+                }
+                this.addToTree(treeNode);
+            } else {
+                node.next = this.head;
+                this.head = node;
+            }
+            this.size++;
+            if (this.root == null && this.size > TREEIFY_THRESHOLD) {
+                this.treeify();
+            }
+        }
+
+        /**
+         * Decrements the size after an entry has been unlinked.
+         */
+        private void shrink() {
+            this.size--;
+            if (this.size == 0) {
+                this.occupancy.clear(this.index);
+            }
+        }
+
+        /**
+         * Unlinks and returns the entry with key {@code key}, or returns
+         * {@code null} if there is none.
+         *
+         * @param key
+         *            the key
+         * @param hash
+         *            the hash code of key
+         * @param strategy
+         *            the hashing strategy
+         * @return the entry removed, or null
+         */
+        Node<K, V> remove(K key, int hash,
+                HashingStrategy<? super K> strategy) {
+            if (this.root != null) {
+                TreeNode<K, V> node = treeFind(this.root, key, hash, strategy);
+                if (node != null) {
+                    this.removeFromTree(node);
+                    this.shrink();
+                }
+                return node;
+            }
+            Node<K, V> previous = null;
+            Node<K, V> node = this.head;
+            while (node != null && !(node.hash == hash
+                    && strategy.equivalent(key, node.key))) {
+                previous = node;
+                node = node.next;
+            }
+            if (node != null) {
+                if (previous == null) {
+                    this.head = node.next;
+                } else {
+                    previous.next = node.next;
+                }
+                node.next = null;
+                this.shrink();
+            }
+            return node;
+        }
+
+        /**
+         * Unlinks {@code node}, found by identity rather than by comparing
+         * keys.
+         *
+         * @param node
+         *            the entry to unlink
+         * @requires [node is an entry of this]
+         */
+        void unlink(Node<K, V> node) {
+            if (this.root != null) {
+                this.removeFromTree((TreeNode<K, V>) node);
+            } else if (this.head == node) {
+                this.head = node.next;
+                node.next = null;
+            } else {
+                Node<K, V> previous = this.head;
+                while (previous.next != node) {
+                    previous = previous.next;
+                }
+                previous.next = node.next;
+                node.next = null;
+            }
+            this.shrink();
+        }
+
+        /**
+         * Removes every entry of the bucket, leaving the bucket for reuse.
+         *
+         * @clears this
+         */
+        void clear() {
+            this.head = null;
+            this.root = null;
+            this.size = 0;
+            this.occupancy.clear(this.index);
+        }
+
+        /**
+         * Unlinks and returns the first entry of the chain.
+         *
+         * @return the entry removed
+         * @requires this.size > 0
+         */
+        Node<K, V> removeFirst() {
+            assert this.size > 0 : "Violation of: this /= empty_set";
+
+            Node<K, V> node = this.head;
+            if (this.root != null) {
+                this.removeFromTree((TreeNode<K, V>) node);
+            } else {
+                this.head = node.next;
+                node.next = null;
+            }
+            this.shrink();
+            return node;
+        }
+
+    }
+
+    /**
+     * Buckets for hashing.
+     */
+    private Array<Bucket<K, V>> hashTable;
+
+    /**
+     * Which buckets of {@code hashTable} are non-empty.
+     */
+    private Occupancy occupied;
+
+    /**
+     * Total size of abstract {@code this}.
+     */
+    private int size;
+
+    /**
+     * Maximum ratio of size to hash table size before rehashing.
+     */
+    private double maxLoadFactor;
+
+    /**
+     * Factor by which the hash table grows when it is rehashed.
+     */
+    private int growthFactor;
+
+    /**
+     * Whether the hash table is rehashed a few buckets at a time rather than
+     * all at once.
+     */
+    private boolean incrementalRehash;
+
+    /**
+     * Whether hash table sizes are powers of two, with buckets selected by
+     * mixing and masking hash codes rather than by mod.
+     */
+    private boolean powerOfTwoSize;
+
+    /**
+     * Hash function and equivalence of keys.
+     */
+    private HashingStrategy<? super K> strategy;
+
+    /**
+     * Hash table being migrated into {@code hashTable} by an incremental
+     * rehash, or {@code null} if no rehash is in progress.
+     */
+    private Array<Bucket<K, V>> oldHashTable;
+
+    /**
+     * Which buckets of {@code oldHashTable} are non-empty, or {@code null} if
+     * no rehash is in progress.
+     */
+    private Occupancy oldOccupied;
+
+    /**
+     * Index of the next bucket of {@code oldHashTable} to be migrated; every
+     * bucket before it is empty.
+     */
+    private int rehashIndex;
+
+    /**
+     * Number of buckets of {@code oldHashTable} migrated by each operation,
+     * chosen when the rehash starts so that it ends before the next growth.
+     */
+    private int rehashStepSize;
+
+    /**
+     * Computes {@code a} mod {@code b} as % should have been defined to work.
+     *
+     * @param a
+     *            the number being reduced
+     * @param b
+     *            the modulus
+     * @return the result of a mod b, which satisfies 0 <= {@code mod} < b
+     * @requires b > 0
+     * @ensures <pre>
+     * 0 <= mod  and  mod < b  and
+     * there exists k: integer (a = k * b + mod)
+     * </pre>
+     */
+    private static int mod(int a, int b) {
+        assert b > 0 : "Violation of: b > 0";
+
+        int result = a % b;
+        if (result < 0) {
+            result += b;
+        }
+        return result;
+    }
+
+    /**
+     * Returns the smallest power of two that is at least {@code n}.
+     *
+     * @param n
+     *            the lower bound
+     * @return the smallest power of two >= n
+     * @requires 0 < n <= 2^30
+     * @ensures <pre>
+     * [ceilingPowerOfTwo is a power of two]  and
+     * n <= ceilingPowerOfTwo < 2 * n
+     * </pre>
+     */
+    private static int ceilingPowerOfTwo(int n) {
+        assert n > 0 : "Violation of: n > 0";
+
+        int result = Integer.highestOneBit(n);
+        if (result < n) {
+            result <<= 1;
+        }
+        return result;
+    }
+
+    /**
+     * Returns the index of the bucket for hash code {@code hashCode} in a hash
+     * table of size {@code length}.
+     *
+     * @param hashCode
+     *            the hash code
+     * @param length
+     *            the size of the hash table
+     * @return the index of the bucket
+     * @requires <pre>
+     * length > 0  and
+     * if $this.powerOfTwoSize then [length is a power of two]
+     * </pre>
+     * @ensures 0 <= indexFor < length
+     */
+    private int indexFor(int hashCode, int length) {
+        if (this.powerOfTwoSize) {
+            int mixed = hashCode * FIBONACCI_MULTIPLIER;
+            return (mixed ^ (mixed >>> HALF_INT_BITS)) & (length - 1);
+        }
+        return mod(hashCode, length);
+    }
+
+    /**
+     * Returns the size of a hash table requested to be of size
+     * {@code hashTableSize}, rounded up to a power of two if
+     * {@code $this.powerOfTwoSize}.
+     *
+     * @param hashTableSize
+     *            the requested size
+     * @return the size to use
+     * @requires hashTableSize > 0
+     * @ensures <pre>
+     * if $this.powerOfTwoSize
+     * then tableLength = ceilingPowerOfTwo(hashTableSize)
+     * else tableLength = hashTableSize
+     * </pre>
+     */
+    private int tableLength(int hashTableSize) {
+        if (this.powerOfTwoSize) {
+            return ceilingPowerOfTwo(hashTableSize);
+        }
+        return hashTableSize;
+    }
+
+    /**
+     * Creates a hash table of size {@code hashTableSize} with every bucket
+     * empty. Buckets are created by {@code bucketIn} on first insertion, so
+     * the new table costs little more than its array.
+     *
+     * @param <K>
+     *            type of {@code Map} domain (key) entries
+     * @param <V>
+     *            type of {@code Map} range (associated value) entries
+     * @param hashTableSize
+     *            the size of the hash table
+     * @return the new hash table
+     * @requires hashTableSize > 0
+     * @ensures <pre>
+     * |newHashTable.entries| = hashTableSize  and
+     * newHashTable.examinableIndices = {}
+     * </pre>
+     */
+    private static <K, V> Array<Bucket<K, V>> newHashTable(int hashTableSize) {
+        return new Array1L<Bucket<K, V>>(hashTableSize);
+    }
+
+    /**
+     * Returns bucket {@code index} of {@code hashTable}, creating it if it
+     * has not been created yet.
+     *
+     * @param <K>
+     *            type of {@code Map} domain (key) entries
+     * @param <V>
+     *            type of {@code Map} range (associated value) entries
+     * @param hashTable
+     *            the hash table
+     * @param occupancy
+     *            the occupancy bitmap of the hash table
+     * @param index
+     *            the index of the bucket
+     * @return the bucket at index
+     * @updates hashTable
+     * @requires 0 <= index < |hashTable.entries|
+     * @ensures <pre>
+     * index is in hashTable.examinableIndices  and
+     * bucketIn = hashTable.entries at index
+     * </pre>
+     */
+    private static <K, V> Bucket<K, V> bucketIn(Array<Bucket<K, V>> hashTable,
+            Occupancy occupancy, int index) {
+        if (!hashTable.mayBeExamined(index)) {
+            hashTable.setEntry(index, new Bucket<K, V>(occupancy, index));
+        }
+        return hashTable.entry(index);
+    }
+
+    /**
+     * Creator of initial representation.
+     *
+     * @param hashTableSize
+     *            the requested size of the hash table
+     * @requires hashTableSize > 0
+     * @ensures <pre>
+     * |$this.hashTable.entries| = tableLength(hashTableSize)  and
+     * for all i: integer
+     *     where (0 <= i  and  i < |$this.hashTable.entries|)
+     *   ($this.hashTable.entries[i, i+1) = <{}>)  and
+     * $this.size = 0
+     * </pre>
+     */
+    private void createNewRep(int hashTableSize) {
+        int length = this.tableLength(hashTableSize);
+        this.occupied = new Occupancy(length);
+        this.hashTable = newHashTable(length);
+        this.oldHashTable = null;
+        this.oldOccupied = null;
+        this.rehashIndex = 0;
+        this.rehashStepSize = REHASH_BUCKETS_PER_STEP;
+        this.size = 0;
+    }
+
+    /**
+     * Moves every entry of {@code bucket} into its bucket in
+     * {@code $this.hashTable}.
+     *
+     * @param bucket
+     *            the bucket to empty
+     * @updates bucket, $this.hashTable
+     * @requires bucket is not a bucket of $this.hashTable
+     * @ensures <pre>
+     * bucket = {}  and
+     * [the entries of #bucket are in their buckets of $this.hashTable]
+     * </pre>
+     */
+    private void moveEntries(Bucket<K, V> bucket) {
+        int length = this.hashTable.length();
+        while (bucket.size > 0) {
+            Node<K, V> node = bucket.removeFirst();
+            int index = this.indexFor(node.hash, length);
+            bucketIn(this.hashTable, this.occupied, index).add(node);
+        }
+    }
+
+    /**
+     * Moves every entry of {@code this} into a new hash table of size
+     * {@code hashTableSize}.
+     *
+     * @param hashTableSize
+     *            the size of the new hash table
+     * @updates $this.hashTable
+     * @requires hashTableSize > 0
+     * @ensures <pre>
+     * |$this.hashTable.entries| = hashTableSize  and
+     * this = #this
+     * </pre>
+     */
+    private void rehash(int hashTableSize) {
+        Array<Bucket<K, V>> previousHashTable = this.hashTable;
+        Occupancy previousOccupied = this.occupied;
+        this.occupied = new Occupancy(hashTableSize);
+        this.hashTable = newHashTable(hashTableSize);
+        int i = previousOccupied.next(0);
+        while (i >= 0) {
+            this.moveEntries(previousHashTable.entry(i));
+            i = previousOccupied.next(i + 1);
+        }
+    }
+
+    /**
+     * Migrates up to {@code bucketCount} buckets of {@code $this.oldHashTable}
+     * into {@code $this.hashTable}, ending the incremental rehash once every
+     * bucket has been migrated.
+     *
+     * @param bucketCount
+     *            the maximum number of buckets to migrate
+     * @updates $this.hashTable, $this.oldHashTable, $this.rehashIndex
+     * @requires bucketCount > 0
+     * @ensures this = #this
+     */
+    private void rehashStep(int bucketCount) {
+        assert bucketCount > 0 : "Violation of: bucketCount > 0";
+
+        if (this.oldHashTable != null) {
+            int oldLength = this.oldHashTable.length();
+            int end = Math.min(oldLength, this.rehashIndex + bucketCount);
+            while (this.rehashIndex < end) {
+                if (this.oldHashTable.mayBeExamined(this.rehashIndex)) {
+                    this.moveEntries(
+                            this.oldHashTable.entry(this.rehashIndex));
+                }
+                this.rehashIndex++;
+            }
+            if (this.rehashIndex == oldLength) {
+                this.oldHashTable = null;
+                this.oldOccupied = null;
+                this.rehashIndex = 0;
+            }
+        }
+    }
+
+    /**
+     * Grows and rehashes the hash table if {@code this.size} exceeds the
+     * maximum load factor.
+     *
+     * @updates $this.hashTable
+     * @ensures <pre>
+     * $this.size <= $this.maxLoadFactor * |$this.hashTable.entries|  and
+     * this = #this
+     * </pre>
+     */
+    private void growIfNeeded() {
+        int length = this.hashTable.length();
+        if (this.size > this.maxLoadFactor * length) {
+            while (this.size > this.maxLoadFactor * length) {
+                length = length * this.growthFactor;
+                if (this.powerOfTwoSize) {
+                    length = ceilingPowerOfTwo(length);
+                } else {
+                    length++;
+                }
+            }
+            if (this.incrementalRehash) {
+                /*
+                 * Every operation that can grow the table migrates a step
+                 * first, and the step size leaves one step for each entry
+                 * that can be added before the next growth, so the previous
+                 * rehash has ended by now.
+                 */
+                assert this.oldHashTable == null : ""
+                        + "Violation of: rehash ended before the next growth";
+                int oldLength = this.hashTable.length();
+                long headroom = (long) Math.floor(this.maxLoadFactor * length)
+                        - this.size + 1;
+                this.oldHashTable = this.hashTable;
+                this.oldOccupied = this.occupied;
+                this.rehashIndex = 0;
+                this.rehashStepSize = (int) Math.max(REHASH_BUCKETS_PER_STEP,
+                        (oldLength + headroom - 1) / headroom);
+                this.occupied = new Occupancy(length);
+                this.hashTable = newHashTable(length);
+            } else {
+                this.rehash(length);
+            }
+        }
+    }
+
+    /**
+     * Returns the bucket in which keys with hash code {@code hashCode} belong,
+     * creating it if it has not been created yet. Lookups that cannot add an
+     * entry use {@code existingBucket} instead.
+     *
+     * @param hashCode
+     *            the hash code of the key
+     * @return the bucket for the key
+     * @updates $this.hashTable, $this.oldHashTable
+     * @ensures <pre>
+     * if $this.oldHashTable /= null  and
+     *    $this.rehashIndex <= index(key, |$this.oldHashTable.entries|)
+     * then bucket = $this.oldHashTable.entries at that index
+     * else bucket = $this.hashTable.entries at
+     *   index(key, |$this.hashTable.entries|)
+     * </pre>
+     */
+    private Bucket<K, V> bucket(int hashCode) {
+        if (this.oldHashTable != null) {
+            int oldIndex = this.indexFor(hashCode,
+                    this.oldHashTable.length());
+            if (oldIndex >= this.rehashIndex) {
+                return bucketIn(this.oldHashTable, this.oldOccupied,
+                        oldIndex);
+            }
+        }
+        return bucketIn(this.hashTable, this.occupied,
+                this.indexFor(hashCode, this.hashTable.length()));
+    }
+
+    /**
+     * Returns the bucket in which keys with hash code {@code hashCode} belong,
+     * or {@code null} if it has not been created, in which case it is empty.
+     *
+     * @param hashCode
+     *            the hash code of the key
+     * @return the bucket for the key, or null
+     * @ensures <pre>
+     * existingBucket = null  or
+     * existingBucket = [the bucket reported by bucket(hashCode)]
+     * </pre>
+     */
+    private Bucket<K, V> existingBucket(int hashCode) {
+        Array<Bucket<K, V>> table = this.hashTable;
+        if (this.oldHashTable != null && this.indexFor(hashCode,
+                this.oldHashTable.length()) >= this.rehashIndex) {
+            table = this.oldHashTable;
+        }
+        int index = this.indexFor(hashCode, table.length());
+        if (!table.mayBeExamined(index)) {
+            return null;
+        }
+        return table.entry(index);
+    }
+
+    /**
+     * Returns the entry of {@code this} with key {@code key}, or {@code null}
+     * if {@code key} is not in {@code DOMAIN(this)}.
+     *
+     * @param key
+     *            the key
+     * @param hash
+     *            the hash code of key
+     * @return the entry of key, or null
+     */
+    private Node<K, V> find(K key, int hash) {
+        Bucket<K, V> bucket = this.existingBucket(hash);
+        if (bucket == null) {
+            return null;
+        }
+        return bucket.find(key, hash, this.strategy);
+    }
+
+    /**
+     * Removes and returns the entry of {@code this} with key {@code key}, or
+     * returns {@code null} if {@code key} is not in {@code DOMAIN(this)}.
+     *
+     * @param key
+     *            the key
+     * @param hash
+     *            the hash code of key
+     * @return the entry removed, or null
+     * @updates this
+     * @ensures <pre>
+     * if key is in DOMAIN(#this)
+     * then this = #this \ {(removeNode.key, removeNode.value)}
+     * else this = #this  and  removeNode = null
+     * </pre>
+     */
+    private Node<K, V> removeNode(K key, int hash) {
+        this.rehashStep(this.rehashStepSize);
+        Bucket<K, V> bucket = this.existingBucket(hash);
+        if (bucket == null) {
+            return null;
+        }
+        Node<K, V> node = bucket.remove(key, hash, this.strategy);
+        if (node != null) {
+            this.size--;
+        }
+        return node;
+    }
+
+    /**
+     * Returns the number of positions in the order of {@code bucketAt}.
+     *
+     * @return the number of buckets that may hold entries of this
+     * @ensures <pre>
+     * bucketPositions = |$this.hashTable.entries| +
+     *   [number of buckets of $this.oldHashTable not yet migrated]
+     * </pre>
+     */
+    private int bucketPositions() {
+        int result = this.hashTable.length();
+        if (this.oldHashTable != null) {
+            result += this.oldHashTable.length() - this.rehashIndex;
+        }
+        return result;
+    }
+
+    /**
+     * Returns the position, in the order of {@code bucketAt}, of the first
+     * non-empty bucket at or after {@code position}, or
+     * {@code bucketPositions()} if there is none.
+     *
+     * @param position
+     *            the position to start from
+     * @return the position of the first non-empty bucket at or after position
+     * @requires 0 <= position
+     */
+    private int nextOccupied(int position) {
+        int length = this.hashTable.length();
+        if (position < length) {
+            int i = this.occupied.next(position);
+            if (i >= 0) {
+                return i;
+            }
+        }
+        if (this.oldHashTable != null) {
+            int from = this.rehashIndex + Math.max(position - length, 0);
+            int oldIndex = this.oldOccupied.next(from);
+            if (oldIndex >= 0) {
+                return oldIndex - this.rehashIndex + length;
+            }
+        }
+        return this.bucketPositions();
+    }
+
+    /**
+     * Computation over the buckets at a range of positions.
+     *
+     * @param <R>
+     *            type of the result
+     */
+    private interface RangeFunction<R> {
+
+        /**
+         * Computes the result for the buckets at positions {@code [from, to)}
+         * in the order of {@code bucketAt}.
+         *
+         * @param from
+         *            the first position
+         * @param to
+         *            the position after the last
+         * @return the result for those buckets
+         */
+        R apply(int from, int to);
+
+    }
+
+    /**
+     * Runs {@code leaf} on ranges of bucket positions covering every bucket
+     * of {@code this}, splitting the positions in half on the common
+     * {@code ForkJoinPool} while a range has an estimated
+     * {@code parallelismThreshold} entries or more, and combines the results
+     * of adjacent ranges with {@code combiner}.
+     *
+     * @param <R>
+     *            type of the result
+     * @param parallelismThreshold
+     *            the estimated number of entries for which to split a range
+     * @param leaf
+     *            the computation for one range
+     * @param combiner
+     *            the combination of the results of two ranges
+     * @return the combined result
+     * @requires parallelismThreshold > 0
+     */
+    private <R> R invoke(long parallelismThreshold, RangeFunction<R> leaf,
+            BinaryOperator<R> combiner) {
+        BulkTask<R> task = new BulkTask<R>(0, this.bucketPositions(),
+                parallelismThreshold, leaf, combiner);
+        if (this.size < parallelismThreshold) {
+            return task.compute();
+        }
+        return ForkJoinPool.commonPool().invoke(task);
+    }
+
+    /**
+     * Estimates the number of entries in the buckets at positions
+     * {@code [from, to)} from the average number of entries per bucket.
+     *
+     * @param from
+     *            the first position
+     * @param to
+     *            the position after the last
+     * @return the estimated number of entries in those buckets
+     * @requires 0 <= from <= to <= bucketPositions()
+     */
+    private long estimatedEntriesBetween(int from, int to) {
+        return (long) (to - from) * this.size / this.bucketPositions();
+    }
+
+    /**
+     * Returns the number of entries in the buckets at positions
+     * {@code [from, to)} in the order of {@code bucketAt}.
+     *
+     * @param from
+     *            the first position
+     * @param to
+     *            the position after the last
+     * @return the number of entries in those buckets
+     * @requires 0 <= from <= to <= bucketPositions()
+     */
+    private int entriesBetween(int from, int to) {
+        int result = 0;
+        int position = this.nextOccupied(from);
+        while (position < to) {
+            result += this.bucketAt(position).size;
+            position = this.nextOccupied(position + 1);
+        }
+        return result;
+    }
+
+    /**
+     * Returns the bucket at position {@code position} in the sequence of
+     * buckets that may hold entries of {@code this}: every bucket of
+     * {@code $this.hashTable} followed by the buckets of
+     * {@code $this.oldHashTable} not yet migrated.
+     *
+     * @param position
+     *            the position of the bucket
+     * @return the bucket at {@code position}
+     * @requires <pre>
+     * 0 <= position  and
+     * position < |$this.hashTable.entries| +
+     *   [number of buckets of $this.oldHashTable not yet migrated]
+     * </pre>
+     */
+    private Bucket<K, V> bucketAt(int position) {
+        int length = this.hashTable.length();
+        if (position < length) {
+            return this.hashTable.entry(position);
+        }
+        return this.oldHashTable.entry(this.rehashIndex + position - length);
+    }
+
+    /*
+     * Constructors -----------------------------------------------------------
+     */
+
+    /**
+     * No-argument constructor.
+     */
+    public Map4() {
+
+        this(DEFAULT_HASH_TABLE_SIZE);
+
+    }
+
+    /**
+     * Constructor resulting in a hash table of size {@code hashTableSize}.
+     *
+     * @param hashTableSize
+     *            size of hash table
+     * @requires hashTableSize > 0
+     * @ensures this = {}
+     */
+    public Map4(int hashTableSize) {
+
+        this(hashTableSize, DEFAULT_MAX_LOAD_FACTOR, DEFAULT_GROWTH_FACTOR);
+
+    }
+
+    /**
+     * Constructor resulting in a hash table of initial size
+     * {@code hashTableSize} that is grown by a factor of {@code growthFactor}
+     * and rehashed whenever the ratio of the size of {@code this} to the size
+     * of the hash table exceeds {@code maxLoadFactor}.
+     *
+     * @param hashTableSize
+     *            initial size of hash table
+     * @param maxLoadFactor
+     *            maximum ratio of size to hash table size
+     * @param growthFactor
+     *            factor by which the hash table grows when rehashed
+     * @requires hashTableSize > 0  and  maxLoadFactor > 0  and
+     *           growthFactor > 1
+     * @ensures this = {}
+     */
+    public Map4(int hashTableSize, double maxLoadFactor, int growthFactor) {
+
+        this(hashTableSize, maxLoadFactor, growthFactor, false);
+
+    }
+
+    /**
+     * Constructor resulting in a hash table of initial size
+     * {@code hashTableSize} that is grown by a factor of {@code growthFactor}
+     * whenever the ratio of the size of {@code this} to the size of the hash
+     * table exceeds {@code maxLoadFactor}. If {@code incrementalRehash} is
+     * true, entries are migrated to the grown table a few buckets at a time on
+     * each call to {@code add}, {@code remove} and {@code removeAny} instead
+     * of all at once, so no single call pays for rehashing the whole table.
+     *
+     * @param hashTableSize
+     *            initial size of hash table
+     * @param maxLoadFactor
+     *            maximum ratio of size to hash table size
+     * @param growthFactor
+     *            factor by which the hash table grows when rehashed
+     * @param incrementalRehash
+     *            whether to rehash incrementally
+     * @requires hashTableSize > 0  and  maxLoadFactor > 0  and
+     *           growthFactor > 1
+     * @ensures this = {}
+     */
+    public Map4(int hashTableSize, double maxLoadFactor, int growthFactor,
+            boolean incrementalRehash) {
+
+        this(hashTableSize, maxLoadFactor, growthFactor, incrementalRehash,
+                false);
+
+    }
+
+    /**
+     * Constructor resulting in a hash table of initial size
+     * {@code hashTableSize}, rehashed as for
+     * {@link #Map4(int, double, int, boolean)}. If {@code powerOfTwoSize} is
+     * true, every hash table size is rounded up to a power of two and buckets
+     * are selected by Fibonacci hashing and a bit mask instead of by mod.
+     *
+     * @param hashTableSize
+     *            initial size of hash table
+     * @param maxLoadFactor
+     *            maximum ratio of size to hash table size
+     * @param growthFactor
+     *            factor by which the hash table grows when rehashed
+     * @param incrementalRehash
+     *            whether to rehash incrementally
+     * @param powerOfTwoSize
+     *            whether hash table sizes are powers of two
+     * @requires <pre>
+     * 0 < hashTableSize <= 2^30  and  maxLoadFactor > 0  and
+     * growthFactor > 1
+     * </pre>
+     * @ensures this = {}
+     */
+    public Map4(int hashTableSize, double maxLoadFactor, int growthFactor,
+            boolean incrementalRehash, boolean powerOfTwoSize) {
+
+        this(hashTableSize, maxLoadFactor, growthFactor, incrementalRehash,
+                powerOfTwoSize, HashingStrategy.natural());
+
+    }
+
+    /**
+     * Constructor resulting in a hash table of default size whose keys are
+     * hashed and compared by {@code strategy}.
+     *
+     * @param strategy
+     *            hash function and equivalence of keys
+     * @ensures this = {}
+     */
+    public Map4(HashingStrategy<? super K> strategy) {
+
+        this(DEFAULT_HASH_TABLE_SIZE, DEFAULT_MAX_LOAD_FACTOR,
+                DEFAULT_GROWTH_FACTOR, false, false, strategy);
+
+    }
+
+    /**
+     * Constructor resulting in a hash table configured as for
+     * {@link #Map4(int, double, int, boolean, boolean)} whose keys are hashed
+     * and compared by {@code strategy} instead of {@code hashCode} and
+     * {@code equals}.
+     *
+     * @param hashTableSize
+     *            initial size of hash table
+     * @param maxLoadFactor
+     *            maximum ratio of size to hash table size
+     * @param growthFactor
+     *            factor by which the hash table grows when rehashed
+     * @param incrementalRehash
+     *            whether to rehash incrementally
+     * @param powerOfTwoSize
+     *            whether hash table sizes are powers of two
+     * @param strategy
+     *            hash function and equivalence of keys
+     * @requires <pre>
+     * 0 < hashTableSize <= 2^30  and  maxLoadFactor > 0  and
+     * growthFactor > 1
+     * </pre>
+     * @ensures this = {}
+     */
+    public Map4(int hashTableSize, double maxLoadFactor, int growthFactor,
+            boolean incrementalRehash, boolean powerOfTwoSize,
+            HashingStrategy<? super K> strategy) {
+        assert hashTableSize > 0 : "Violation of: hashTableSize > 0";
+        assert maxLoadFactor > 0 : "Violation of: maxLoadFactor > 0";
+        assert growthFactor > 1 : "Violation of: growthFactor > 1";
+        assert strategy != null : "Violation of: strategy is not null";
+
+        this.maxLoadFactor = maxLoadFactor;
+        this.growthFactor = growthFactor;
+        this.incrementalRehash = incrementalRehash;
+        this.powerOfTwoSize = powerOfTwoSize;
+        this.strategy = strategy;
+        this.createNewRep(hashTableSize);
+
+    }
+
+    /*
+     * Standard methods -------------------------------------------------------
+     */
+
+    @SuppressWarnings("unchecked")
+    @Override
+    public final Map<K, V> newInstance() {
+        try {
+            return this.getClass().getConstructor().newInstance();
+        } catch (ReflectiveOperationException e) {
+            throw new AssertionError(
+                    "Cannot construct object of type " + this.getClass());
+        }
+    }
+
+    @Override
+    public final void clear() {
+        /*
+         * Empty the buckets in place rather than allocating a new table, so
+         * a map that is filled and cleared repeatedly reuses its table and
+         * buckets.
+         */
+        int i = this.occupied.next(0);
+        while (i >= 0) {
+            this.hashTable.entry(i).clear();
+            i = this.occupied.next(i + 1);
+        }
+        this.oldHashTable = null;
+        this.oldOccupied = null;
+        this.rehashIndex = 0;
+        this.rehashStepSize = REHASH_BUCKETS_PER_STEP;
+        this.size = 0;
+    }
+
+    @Override
+    public final void transferFrom(Map<K, V> source) {
+        assert source != null : "Violation of: source is not null";
+        assert source != this : "Violation of: source is not this";
+        assert source instanceof Map4<?, ?> : ""
+                + "Violation of: source is of dynamic type Map4<?,?>";
+        /*
+         * This cast cannot fail since the assert above would have stopped
+         * execution in that case: source must be of dynamic type Map4<?,?>, and
+         * the ?,? must be K,V or the call would not have compiled.
+         */
+        Map4<K, V> localSource = (Map4<K, V>) source;
+        /*
+         * Hand the emptied table of this to source instead of allocating a new
+         * one, unless its length does not suit source's table mode.
+         */
+        this.clear();
+        Array<Bucket<K, V>> spareHashTable = this.hashTable;
+        Occupancy spareOccupied = this.occupied;
+        this.hashTable = localSource.hashTable;
+        this.occupied = localSource.occupied;
+        this.size = localSource.size;
+        this.maxLoadFactor = localSource.maxLoadFactor;
+        this.growthFactor = localSource.growthFactor;
+        this.incrementalRehash = localSource.incrementalRehash;
+        this.powerOfTwoSize = localSource.powerOfTwoSize;
+        this.strategy = localSource.strategy;
+        this.oldHashTable = localSource.oldHashTable;
+        this.oldOccupied = localSource.oldOccupied;
+        this.rehashIndex = localSource.rehashIndex;
+        this.rehashStepSize = localSource.rehashStepSize;
+        if (!localSource.powerOfTwoSize
+                || Integer.bitCount(spareHashTable.length()) == 1) {
+            localSource.hashTable = spareHashTable;
+            localSource.occupied = spareOccupied;
+            localSource.oldHashTable = null;
+            localSource.oldOccupied = null;
+            localSource.rehashIndex = 0;
+            localSource.size = 0;
+        } else {
+            localSource.createNewRep(DEFAULT_HASH_TABLE_SIZE);
+        }
+    }
+
+    /*
+     * Kernel methods ---------------------------------------------------------
+     */
+
+    @Override
+    public final void add(K key, V value) {
+        assert key != null : "Violation of: key is not null";
+        assert value != null : "Violation of: value is not null";
+
+        this.add(key, this.strategy.hash(key), value);
+    }
+
+    @Override
+    public final Pair<K, V> remove(K key) {
+        assert key != null : "Violation of: key is not null";
+        this.rehashStep(this.rehashStepSize);
+        int hash = this.strategy.hash(key);
+        Node<K, V> node = this.bucket(hash).remove(key, hash, this.strategy);
+        assert node != null : "Violation of: key is in DOMAIN(this)";
+        //Decrement the size.
+        this.size--;
+        return new SimplePair<K, V>(node.key, node.value);
+    }
+
+    @Override
+    public final Pair<K, V> removeAny() {
+        assert this.size() > 0 : "Violation of: this /= empty_set";
+        this.rehashStep(this.rehashStepSize);
+        //Reduce the size by one.
+        this.size--;
+        Bucket<K, V> bucket;
+        int i = this.occupied.first();
+        if (i >= 0) {
+            bucket = this.hashTable.entry(i);
+        } else {
+            bucket = this.oldHashTable.entry(this.oldOccupied.first());
+        }
+        Node<K, V> node = bucket.removeFirst();
+        return new SimplePair<K, V>(node.key, node.value);
+    }
+
+    @Override
+    public final V value(K key) {
+        assert key != null : "Violation of: key is not null";
+        /*
+         * No rehash step here: value may legally be called while this is being
+         * iterated over, and migrating buckets would disturb the iterator.
+         */
+        int hash = this.strategy.hash(key);
+        Node<K, V> node = this.find(key, hash);
+        assert node != null : "Violation of: key is in DOMAIN(this)";
+        return node.value;
+    }
+
+    @Override
+    public final boolean hasKey(K key) {
+        assert key != null : "Violation of: key is not null";
+        int hash = this.strategy.hash(key);
+        return this.find(key, hash) != null;
+    }
+
+    @Override
+    public final int size() {
+        return this.size;
+    }
+
+    @Override
+    public final Iterator<Pair<K, V>> iterator() {
+        return new Map4Iterator();
+    }
+
+    @Override
+    public final Spliterator<Pair<K, V>> spliterator() {
+        return new Map4Spliterator(0, this.bucketPositions(), this.size);
+    }
+
+    /*
+     * Other methods ----------------------------------------------------------
+     */
+
+    /**
+     * Returns a sequential {@code Stream} of the pairs of {@code this}.
+     * {@code this} must not be changed while the stream is in use.
+     *
+     * @return a stream of the pairs in this
+     * @ensures [stream has exactly the pairs in this]
+     */
+    public final Stream<Pair<K, V>> stream() {
+        return StreamSupport.stream(this.spliterator(), false);
+    }
+
+    /**
+     * Returns a parallel {@code Stream} of the pairs of {@code this}, split by
+     * ranges of buckets. {@code this} must not be changed while the stream is
+     * in use.
+     *
+     * @return a possibly parallel stream of the pairs in this
+     * @ensures [parallelStream has exactly the pairs in this]
+     */
+    public final Stream<Pair<K, V>> parallelStream() {
+        return StreamSupport.stream(this.spliterator(), true);
+    }
+
+    /**
+     * Reports the value associated with {@code key} in {@code this}, or
+     * {@code defaultValue} if {@code key} is not in {@code DOMAIN(this)}.
+     *
+     * @param key
+     *            the key whose associated value is to be reported
+     * @param defaultValue
+     *            the value to report if key is not in DOMAIN(this)
+     * @return the value associated with key, or defaultValue
+     * @ensures <pre>
+     * if key is in DOMAIN(this)
+     * then (key, valueOrDefault) is in this
+     * else valueOrDefault = defaultValue
+     * </pre>
+     */
+    public final V valueOrDefault(K key, V defaultValue) {
+        assert key != null : "Violation of: key is not null";
+
+        return this.valueOrDefault(key, this.strategy.hash(key),
+                defaultValue);
+    }
+
+    /**
+     * Adds the pair ({@code key}, {@code value}) to {@code this} unless
+     * {@code key} is already in {@code DOMAIN(this)}, in which case the value
+     * already associated with it is reported.
+     *
+     * @param key
+     *            the key to be added
+     * @param value
+     *            the associated value to be added
+     * @return the value already associated with key, or null if key was added
+     * @updates this
+     * @ensures <pre>
+     * if key is in DOMAIN(#this)
+     * then this = #this  and  (key, putIfAbsent) is in #this
+     * else this = #this union {(key, value)}  and  putIfAbsent = null
+     * </pre>
+     */
+    public final V putIfAbsent(K key, V value) {
+        assert key != null : "Violation of: key is not null";
+        assert value != null : "Violation of: value is not null";
+        this.rehashStep(this.rehashStepSize);
+        int hash = this.strategy.hash(key);
+        Bucket<K, V> bucket = this.bucket(hash);
+        Node<K, V> node = bucket.find(key, hash, this.strategy);
+        if (node != null) {
+            return node.value;
+        }
+        this.size++;
+        bucket.add(new Node<K, V>(key, value, hash));
+        this.growIfNeeded();
+        return null;
+    }
+
+    /**
+     * Replaces the value associated with {@code key} by {@code value} if
+     * {@code key} is in {@code DOMAIN(this)}, and reports the value it
+     * replaced. Like {@code value}, this does not disturb iterators over
+     * {@code this}.
+     *
+     * @param key
+     *            the key whose associated value is to be replaced
+     * @param value
+     *            the new associated value
+     * @return the value replaced, or null if key is not in DOMAIN(this)
+     * @updates this
+     * @ensures <pre>
+     * if key is in DOMAIN(#this)
+     * then (key, replace) is in #this  and
+     *      this = (#this \ {(key, replace)}) union {(key, value)}
+     * else this = #this  and  replace = null
+     * </pre>
+     */
+    public final V replace(K key, V value) {
+        assert key != null : "Violation of: key is not null";
+        assert value != null : "Violation of: value is not null";
+
+        int hash = this.strategy.hash(key);
+        Node<K, V> node = this.find(key, hash);
+        if (node == null) {
+            return null;
+        }
+        V result = node.value;
+        node.value = value;
+        return result;
+    }
+
+    /**
+     * Removes the pair whose first component is {@code key}, if there is one,
+     * and returns it.
+     *
+     * @param key
+     *            the key to be removed
+     * @return the pair removed, or null if key is not in DOMAIN(this)
+     * @updates this
+     * @ensures <pre>
+     * if key is in DOMAIN(#this)
+     * then removeIfPresent.key = key  and
+     *      removeIfPresent is in #this  and
+     *      this = #this \ {removeIfPresent}
+     * else this = #this  and  removeIfPresent = null
+     * </pre>
+     */
+    public final Pair<K, V> removeIfPresent(K key) {
+        assert key != null : "Violation of: key is not null";
+
+        Node<K, V> node = this.removeNode(key, this.strategy.hash(key));
+        if (node == null) {
+            return null;
+        }
+        return new SimplePair<K, V>(node.key, node.value);
+    }
+
+    /**
+     * Computes a new value for {@code key} from {@code key} and its current
+     * value, or {@code null} if it has none, and associates it with
+     * {@code key}; if the new value is {@code null}, {@code key} is removed
+     * instead. The value of an existing entry is updated in place.
+     *
+     * @param key
+     *            the key whose value is to be computed
+     * @param remappingFunction
+     *            the function computing the new value
+     * @return the new value associated with key, or null if there is none
+     * @updates this
+     * @requires [remappingFunction does not change this]
+     * @ensures <pre>
+     * [r = remappingFunction(key, the value associated with key in #this, or
+     *  null if key is not in DOMAIN(#this))]  and
+     * compute = r  and
+     * if r = null
+     * then this = #this \ {(key, v): V}
+     * else this = (#this \ {(key, v): V}) union {(key, r)}
+     * </pre>
+     */
+    public final V compute(K key,
+            BiFunction<? super K, ? super V, ? extends V> remappingFunction) {
+        assert key != null : "Violation of: key is not null";
+        assert remappingFunction != null : ""
+                + "Violation of: remappingFunction is not null";
+        this.rehashStep(this.rehashStepSize);
+        int hash = this.strategy.hash(key);
+        Bucket<K, V> bucket = this.bucket(hash);
+        Node<K, V> node = bucket.find(key, hash, this.strategy);
+        V result;
+        if (node == null) {
+            result = remappingFunction.apply(key, null);
+            if (result != null) {
+                this.size++;
+                bucket.add(new Node<K, V>(key, result, hash));
+                this.growIfNeeded();
+            }
+        } else {
+            result = remappingFunction.apply(key, node.value);
+            if (result == null) {
+                this.size--;
+                bucket.unlink(node);
+            } else {
+                node.value = result;
+            }
+        }
+        return result;
+    }
+
+    /**
+     * Reports the value associated with {@code key}; if there is none, computes
+     * one from {@code key} and, unless it is {@code null}, adds it.
+     *
+     * @param key
+     *            the key whose value is to be reported
+     * @param mappingFunction
+     *            the function computing a value for an absent key
+     * @return the value associated with key, or null if there is none
+     * @updates this
+     * @requires [mappingFunction does not change this]
+     * @ensures <pre>
+     * if key is in DOMAIN(#this)
+     * then this = #this  and  (key, computeIfAbsent) is in #this
+     * else computeIfAbsent = mappingFunction(key)  and
+     *      if computeIfAbsent = null
+     *      then this = #this
+     *      else this = #this union {(key, computeIfAbsent)}
+     * </pre>
+     */
+    public final V computeIfAbsent(K key,
+            Function<? super K, ? extends V> mappingFunction) {
+        assert key != null : "Violation of: key is not null";
+        assert mappingFunction != null : ""
+                + "Violation of: mappingFunction is not null";
+        this.rehashStep(this.rehashStepSize);
+        int hash = this.strategy.hash(key);
+        Bucket<K, V> bucket = this.bucket(hash);
+        Node<K, V> node = bucket.find(key, hash, this.strategy);
+        if (node != null) {
+            return node.value;
+        }
+        V result = mappingFunction.apply(key);
+        if (result != null) {
+            this.size++;
+            bucket.add(new Node<K, V>(key, result, hash));
+            this.growIfNeeded();
+        }
+        return result;
+    }
+
+    /**
+     * If {@code key} is in {@code DOMAIN(this)}, computes a new value for it
+     * from {@code key} and its current value and updates it in place; if the
+     * new value is {@code null}, {@code key} is removed instead.
+     *
+     * @param key
+     *            the key whose value is to be computed
+     * @param remappingFunction
+     *            the function computing the new value
+     * @return the new value associated with key, or null if there is none
+     * @updates this
+     * @requires [remappingFunction does not change this]
+     * @ensures <pre>
+     * if key is in DOMAIN(#this)
+     * then [r = remappingFunction(key, the value associated with key in
+     *       #this)]  and
+     *      computeIfPresent = r  and
+     *      if r = null
+     *      then this = #this \ {(key, v): V}
+     *      else this = (#this \ {(key, v): V}) union {(key, r)}
+     * else this = #this  and  computeIfPresent = null
+     * </pre>
+     */
+    public final V computeIfPresent(K key,
+            BiFunction<? super K, ? super V, ? extends V> remappingFunction) {
+        assert key != null : "Violation of: key is not null";
+        assert remappingFunction != null : ""
+                + "Violation of: remappingFunction is not null";
+        this.rehashStep(this.rehashStepSize);
+        int hash = this.strategy.hash(key);
+        Bucket<K, V> bucket = this.existingBucket(hash);
+        if (bucket == null) {
+            return null;
+        }
+        Node<K, V> node = bucket.find(key, hash, this.strategy);
+        if (node == null) {
+            return null;
+        }
+        V result = remappingFunction.apply(key, node.value);
+        if (result == null) {
+            this.size--;
+            bucket.unlink(node);
+        } else {
+            node.value = result;
+        }
+        return result;
+    }
+
+    /**
+     * Associates {@code value} with {@code key} if {@code key} is not in
+     * {@code DOMAIN(this)}; otherwise combines the current value with
+     * {@code value} and updates it in place, or removes {@code key} if the
+     * combination is {@code null}.
+     *
+     * @param key
+     *            the key whose value is to be merged
+     * @param value
+     *            the value to merge
+     * @param remappingFunction
+     *            the function combining the current value with value
+     * @return the new value associated with key, or null if there is none
+     * @updates this
+     * @requires [remappingFunction does not change this]
+     * @ensures <pre>
+     * if key is in DOMAIN(#this)
+     * then [r = remappingFunction(the value associated with key in #this,
+     *       value)]  and
+     *      merge = r  and
+     *      if r = null
+     *      then this = #this \ {(key, v): V}
+     *      else this = (#this \ {(key, v): V}) union {(key, r)}
+     * else this = #this union {(key, value)}  and  merge = value
+     * </pre>
      */
+    public final V merge(K key, V value,
+            BiFunction<? super V, ? super V, ? extends V> remappingFunction) {
+        assert key != null : "Violation of: key is not null";
+        assert value != null : "Violation of: value is not null";
+        assert remappingFunction != null : ""
+                + "Violation of: remappingFunction is not null";
+        this.rehashStep(this.rehashStepSize);
+        int hash = this.strategy.hash(key);
+        Bucket<K, V> bucket = this.bucket(hash);
+        Node<K, V> node = bucket.find(key, hash, this.strategy);
+        if (node == null) {
+            this.size++;
+            bucket.add(new Node<K, V>(key, value, hash));
+            this.growIfNeeded();
+            return value;
+        }
+        V result = remappingFunction.apply(node.value, value);
+        if (result == null) {
+            this.size--;
+            bucket.unlink(node);
+        } else {
+            node.value = result;
+        }
+        return result;
+    }
 
     /**
-     * Default size of hash table.
+     * Performs {@code action} on each pair of {@code this}, in parallel if
+     * there are at least {@code parallelismThreshold} pairs. {@code this} must
+     * not be changed until the call returns.
+     *
+     * @param parallelismThreshold
+     *            the estimated number of pairs for which to split the work
+     * @param action
+     *            the action
+     * @requires parallelismThreshold > 0  and  [action does not change this]
+     * @ensures [action has been performed once on each pair of this]
      */
-    private static final int DEFAULT_HASH_TABLE_SIZE = 101;
+    public final void forEach(long parallelismThreshold,
+            BiConsumer<? super K, ? super V> action) {
+        assert parallelismThreshold > 0 : ""
+                + "Violation of: parallelismThreshold > 0";
+        assert action != null : "Violation of: action is not null";
+
+        this.invoke(parallelismThreshold, (from, to) -> {
+            int position = this.nextOccupied(from);
+            while (position < to) {
+                for (Node<K, V> node = this.bucketAt(position).head;
+                        node != null; node = node.next) {
+                    action.accept(node.key, node.value);
+                }
+                position = this.nextOccupied(position + 1);
+            }
+            return null;
+        }, (a, b) -> null);
+    }
 
     /**
-     * Buckets for hashing.
+     * Returns a non-null result of {@code searchFunction} on some pair of
+     * {@code this}, or {@code null} if there is none, searching in parallel if
+     * there are at least {@code parallelismThreshold} pairs. Once a result is
+     * found, the rest of the search is abandoned. {@code this} must not be
+     * changed until the call returns.
+     *
+     * @param <U>
+     *            type of the result
+     * @param parallelismThreshold
+     *            the estimated number of pairs for which to split the work
+     * @param searchFunction
+     *            the function to apply to pairs
+     * @return a non-null result of searchFunction, or null
+     * @requires <pre>
+     * parallelismThreshold > 0  and  [searchFunction does not change this]
+     * </pre>
+     * @ensures <pre>
+     * if [searchFunction(k, v) = null for every (k, v) in this]
+     * then search = null
+     * else [search = searchFunction(k, v) for some (k, v) in this]
+     * </pre>
      */
-    private Array<Map<K, V>> hashTable;
+    public final <U> U search(long parallelismThreshold,
+            BiFunction<? super K, ? super V, ? extends U> searchFunction) {
+        assert parallelismThreshold > 0 : ""
+                + "Violation of: parallelismThreshold > 0";
+        assert searchFunction != null : ""
+                + "Violation of: searchFunction is not null";
+
+        AtomicReference<U> found = new AtomicReference<U>();
+        this.invoke(parallelismThreshold, (from, to) -> {
+            int position = this.nextOccupied(from);
+            while (position < to && found.get() == null) {
+                for (Node<K, V> node = this.bucketAt(position).head;
+                        node != null; node = node.next) {
+                    U result = searchFunction.apply(node.key, node.value);
+                    if (result != null) {
+                        found.compareAndSet(null, result);
+                        return null;
+                    }
+                }
+                position = this.nextOccupied(position + 1);
+            }
+            return null;
+        }, (a, b) -> null);
+        return found.get();
+    }
 
     /**
-     * Total size of abstract {@code this}.
+     * Returns the result of combining with {@code reducer} the non-null
+     * results of {@code transformer} on the pairs of {@code this}, or
+     * {@code null} if there are none, in parallel if there are at least
+     * {@code parallelismThreshold} pairs. {@code this} must not be changed
+     * until the call returns.
+     *
+     * @param <U>
+     *            type of the result
+     * @param parallelismThreshold
+     *            the estimated number of pairs for which to split the work
+     * @param transformer
+     *            the function to apply to pairs
+     * @param reducer
+     *            an associative and commutative combining function
+     * @return the combined results, or null
+     * @requires <pre>
+     * parallelismThreshold > 0  and
+     * [transformer and reducer do not change this]
+     * </pre>
+     * @ensures <pre>
+     * reduce = [reducer applied, in some order, to the non-null values of
+     *           transformer(k, v) for (k, v) in this, or null if there are
+     *           none]
+     * </pre>
      */
-    private int size;
+    public final <U> U reduce(long parallelismThreshold,
+            BiFunction<? super K, ? super V, ? extends U> transformer,
+            BiFunction<? super U, ? super U, ? extends U> reducer) {
+        assert parallelismThreshold > 0 : ""
+                + "Violation of: parallelismThreshold > 0";
+        assert transformer != null : "Violation of: transformer is not null";
+        assert reducer != null : "Violation of: reducer is not null";
+
+        return this.invoke(parallelismThreshold, (from, to) -> {
+            U result = null;
+            int position = this.nextOccupied(from);
+            while (position < to) {
+                for (Node<K, V> node = this.bucketAt(position).head;
+                        node != null; node = node.next) {
+                    U u = transformer.apply(node.key, node.value);
+                    if (u != null) {
+                        result = (result == null) ? u
+                                : reducer.apply(result, u);
+                    }
+                }
+                position = this.nextOccupied(position + 1);
+            }
+            return result;
+        }, (a, b) -> {
+            if (a == null) {
+                return b;
+            } else if (b == null) {
+                return a;
+            }
+            return reducer.apply(a, b);
+        });
+    }
 
     /**
-     * Computes {@code a} mod {@code b} as % should have been defined to work.
+     * Returns the result of combining with {@code reducer} the results of
+     * {@code transformer} on the pairs of {@code this}, starting from
+     * {@code basis}, in parallel if there are at least
+     * {@code parallelismThreshold} pairs. {@code this} must not be changed
+     * until the call returns.
      *
-     * @param a
-     *            the number being reduced
-     * @param b
-     *            the modulus
-     * @return the result of a mod b, which satisfies 0 <= {@code mod} < b
-     * @requires b > 0
+     * @param parallelismThreshold
+     *            the estimated number of pairs for which to split the work
+     * @param transformer
+     *            the function to apply to pairs
+     * @param basis
+     *            the identity value of reducer
+     * @param reducer
+     *            an associative and commutative combining function
+     * @return the combined results
+     * @requires <pre>
+     * parallelismThreshold > 0  and
+     * [transformer does not change this]  and
+     * [reducer(basis, x) = x for every x]
+     * </pre>
      * @ensures <pre>
-     * 0 <= mod  and  mod < b  and
-     * there exists k: integer (a = k * b + mod)
+     * reduceToLong = [reducer applied, in some order, to basis and the values
+     *                 of transformer(k, v) for (k, v) in this]
      * </pre>
      */
-    private static int mod(int a, int b) {
-        assert b > 0 : "Violation of: b > 0";
+    public final long reduceToLong(long parallelismThreshold,
+            ToLongBiFunction<? super K, ? super V> transformer, long basis,
+            LongBinaryOperator reducer) {
+        assert parallelismThreshold > 0 : ""
+                + "Violation of: parallelismThreshold > 0";
+        assert transformer != null : "Violation of: transformer is not null";
+        assert reducer != null : "Violation of: reducer is not null";
 
-        int result = a % b;
-        if (result < 0) {
-            result += b;
-        }
+        Long result = this.invoke(parallelismThreshold, (from, to) -> {
+            long r = basis;
+            int position = this.nextOccupied(from);
+            while (position < to) {
+                for (Node<K, V> node = this.bucketAt(position).head;
+                        node != null; node = node.next) {
+                    r = reducer.applyAsLong(r,
+                            transformer.applyAsLong(node.key, node.value));
+                }
+                position = this.nextOccupied(position + 1);
+            }
+            return r;
+        }, (a, b) -> reducer.applyAsLong(a, b));
         return result;
     }
 
     /**
-     * Creator of initial representation.
+     * Returns a snapshot of how the entries of {@code this} are distributed
+     * over the buckets of {@code $this.hashTable}. It visits only the
+     * non-empty buckets and does not change {@code this}, so it may be polled
+     * on a live map. Entries still in the old hash table of an incremental
+     * rehash are counted separately and left out of the distribution.
      *
-     * @param hashTableSize
-     *            the size of the hash table
-     * @requires hashTableSize > 0
+     * @return the bucket distribution of this
      * @ensures <pre>
-     * |$this.hashTable.entries| = hashTableSize  and
-     * for all i: integer
-     *     where (0 <= i  and  i < |$this.hashTable.entries|)
-     *   ($this.hashTable.entries[i, i+1) = <{}>  and
-     *    i is in $this.hashTable.examinableIndices)  and
-     * $this.size = 0
+     * statistics.tableLength() = |$this.hashTable.entries|  and
+     * statistics.entries() + statistics.entriesAwaitingRehash() = |this|
      * </pre>
      */
-    private void createNewRep(int hashTableSize) {
-        //Initialize the array and every bucket inside of it.
-        this.hashTable = new Array1L<Map<K, V>>(hashTableSize);
-        for (int i = 0; i < hashTableSize; i++) {
-            this.hashTable.setEntry(i, new Map2<K, V>());
+    public final HashTableStatistics statistics() {
+        int[] histogram = new int[1];
+        int nonEmpty = 0;
+        int entries = 0;
+        int i = this.occupied.next(0);
+        while (i >= 0) {
+            int bucketSize = this.hashTable.entry(i).size;
+            if (bucketSize >= histogram.length) {
+                histogram = Arrays.copyOf(histogram,
+                        Math.max(bucketSize + 1, 2 * histogram.length));
+            }
+            histogram[bucketSize]++;
+            nonEmpty++;
+            entries += bucketSize;
+            i = this.occupied.next(i + 1);
         }
-        this.size = 0;
+        int length = this.hashTable.length();
+        histogram[0] = length - nonEmpty;
+        int last = histogram.length - 1;
+        while (histogram[last] == 0) {
+            last--;
+        }
+        return new HashTableStatistics(length,
+                Arrays.copyOf(histogram, last + 1), this.size - entries);
     }
 
-    /*
-     * Constructors -----------------------------------------------------------
-     */
-
     /**
-     * No-argument constructor.
+     * Writes a snapshot of {@code this} to {@code channel}, to be read back by
+     * {@code loadSnapshot}. The snapshot records the hash table size, the
+     * number of entries and of non-empty buckets, and then, for each
+     * non-empty bucket, its number of entries followed by the
+     * encoded key and value of each entry, every field prefixed by its
+     * length. Hash codes are not written, since they need not be the same in
+     * another run. Any incremental rehash in progress is finished first.
+     *
+     * @param channel
+     *            the blocking channel to write to
+     * @param keyCodec
+     *            the encoding of keys
+     * @param valueCodec
+     *            the encoding of values
+     * @throws IOException
+     *             if the channel cannot be written
+     * @updates $this.hashTable, $this.oldHashTable
+     * @ensures <pre>
+     * this = #this  and
+     * [a snapshot of this has been written to channel]
+     * </pre>
      */
-    public Map4() {
-
-        this.createNewRep(DEFAULT_HASH_TABLE_SIZE);
+    public final void writeSnapshot(WritableByteChannel channel,
+            SnapshotCodec<? super K> keyCodec,
+            SnapshotCodec<? super V> valueCodec) throws IOException {
+        assert channel != null : "Violation of: channel is not null";
+        assert keyCodec != null : "Violation of: keyCodec is not null";
+        assert valueCodec != null : "Violation of: valueCodec is not null";
 
+        if (this.oldHashTable != null) {
+            this.rehashStep(this.oldHashTable.length());
+        }
+        int occupiedBuckets = 0;
+        int i = this.occupied.next(0);
+        while (i >= 0) {
+            occupiedBuckets++;
+            i = this.occupied.next(i + 1);
+        }
+        SnapshotChannels.Writer out = new SnapshotChannels.Writer(channel);
+        out.writeInt(SNAPSHOT_MAGIC);
+        out.writeInt(SNAPSHOT_VERSION);
+        out.writeInt(this.hashTable.length());
+        out.writeInt(this.size);
+        out.writeInt(occupiedBuckets);
+        i = this.occupied.next(0);
+        while (i >= 0) {
+            Bucket<K, V> bucket = this.hashTable.entry(i);
+            out.writeInt(bucket.size);
+            for (Node<K, V> node = bucket.head; node != null;
+                    node = node.next) {
+                out.writeBytes(keyCodec.encode(node.key));
+                out.writeBytes(valueCodec.encode(node.value));
+            }
+            i = this.occupied.next(i + 1);
+        }
+        out.flush();
     }
 
     /**
-     * Constructor resulting in a hash table of size {@code hashTableSize}.
+     * Replaces {@code this} by the map in the snapshot read from
+     * {@code channel}. The hash table is sized up front from the snapshot,
+     * and each entry is put straight into its bucket without checking for an
+     * existing entry with the same key, so loading costs one hash and one
+     * decode per entry and never rehashes. Buckets are read in the order they
+     * were written; when the table has the snapshot's size and the keys hash
+     * as they did when it was written, each fills one bucket in turn. The
+     * reader may consume bytes of {@code channel} past the end of the
+     * snapshot. Nothing is changed unless the whole snapshot is read.
      *
-     * @param hashTableSize
-     *            size of hash table
-     * @requires hashTableSize > 0
-     * @ensures this = {}
+     * @param channel
+     *            the blocking channel to read from
+     * @param keyCodec
+     *            the decoding of keys
+     * @param valueCodec
+     *            the decoding of values
+     * @throws IOException
+     *             if the channel cannot be read or does not start with a
+     *             snapshot, in which case this is unchanged
+     * @replaces this
+     * @requires <pre>
+     * [channel starts with a snapshot written by writeSnapshot with codecs
+     *  matching keyCodec and valueCodec]  and
+     * [the keys of the snapshot are pairwise not equivalent under the
+     *  hashing strategy of this]
+     * </pre>
+     * @ensures this = [the map in the snapshot]
      */
-    public Map4(int hashTableSize) {
-
-        this.createNewRep(hashTableSize);
+    public final void loadSnapshot(ReadableByteChannel channel,
+            SnapshotCodec<? extends K> keyCodec,
+            SnapshotCodec<? extends V> valueCodec) throws IOException {
+        assert channel != null : "Violation of: channel is not null";
+        assert keyCodec != null : "Violation of: keyCodec is not null";
+        assert valueCodec != null : "Violation of: valueCodec is not null";
 
+        SnapshotChannels.Reader in = new SnapshotChannels.Reader(channel);
+        if (in.readInt() != SNAPSHOT_MAGIC
+                || in.readInt() != SNAPSHOT_VERSION) {
+            throw new IOException("Not a Map4 snapshot");
+        }
+        int tableLength = in.readInt();
+        int entries = in.readInt();
+        int occupiedBuckets = in.readInt();
+        if (tableLength <= 0 || tableLength > SNAPSHOT_MAX_TABLE_LENGTH
+                || entries < 0 || occupiedBuckets < 0) {
+            throw new IOException("Corrupt Map4 snapshot");
+        }
+        int neededLength = (int) Math.min(SNAPSHOT_MAX_TABLE_LENGTH,
+                (long) Math.ceil(entries / this.maxLoadFactor));
+        int length = this.tableLength(Math.max(tableLength, neededLength));
+        Array<Bucket<K, V>> table = newHashTable(length);
+        Occupancy occupancy = new Occupancy(length);
+        int count = 0;
+        for (int b = 0; b < occupiedBuckets; b++) {
+            int bucketSize = in.readInt();
+            if (bucketSize <= 0) {
+                throw new IOException("Corrupt Map4 snapshot");
+            }
+            for (int e = 0; e < bucketSize; e++) {
+                K key = keyCodec.decode(in.readBytes());
+                V value = valueCodec.decode(in.readBytes());
+                int hash = this.strategy.hash(key);
+                bucketIn(table, occupancy, this.indexFor(hash, length))
+                        .add(new Node<K, V>(key, value, hash));
+                count++;
+            }
+        }
+        if (count != entries) {
+            throw new IOException("Corrupt Map4 snapshot");
+        }
+        this.hashTable = table;
+        this.occupied = occupancy;
+        this.size = count;
+        this.oldHashTable = null;
+        this.oldOccupied = null;
+        this.rehashIndex = 0;
     }
 
     /*
-     * Standard methods -------------------------------------------------------
+     * Package-private methods ------------------------------------------------
      */
 
-    @SuppressWarnings("unchecked")
-    @Override
-    public final Map<K, V> newInstance() {
-        try {
-            return this.getClass().getConstructor().newInstance();
-        } catch (ReflectiveOperationException e) {
-            throw new AssertionError(
-                    "Cannot construct object of type " + this.getClass());
-        }
-    }
-
-    @Override
-    public final void clear() {
-        this.createNewRep(DEFAULT_HASH_TABLE_SIZE);
-    }
-
-    @Override
-    public final void transferFrom(Map<K, V> source) {
-        assert source != null : "Violation of: source is not null";
-        assert source != this : "Violation of: source is not this";
-        assert source instanceof Map4<?, ?> : ""
-                + "Violation of: source is of dynamic type Map4<?,?>";
-        /*
-         * This cast cannot fail since the assert above would have stopped
-         * execution in that case: source must be of dynamic type Map4<?,?>, and
-         * the ?,? must be K,V or the call would not have compiled.
-         */
-        Map4<K, V> localSource = (Map4<K, V>) source;
-        this.hashTable = localSource.hashTable;
-        this.size = localSource.size;
-        localSource.createNewRep(DEFAULT_HASH_TABLE_SIZE);
+    /**
+     * Reports the hash code of {@code key} under the hashing strategy of
+     * {@code this}, to be passed to the operations below. They let classes
+     * built on {@code Map4}, such as {@code LruCache4}, hash each key once
+     * per operation even when they touch the map more than once.
+     *
+     * @param key
+     *            the key
+     * @return the hash code of key
+     * @requires key /= null
+     */
+    final int hashOf(K key) {
+        return this.strategy.hash(key);
     }
 
-    /*
-     * Kernel methods ---------------------------------------------------------
+    /**
+     * Adds the pair ({@code key}, {@code value}) to {@code this}, like
+     * {@code add(key, value)} but without hashing {@code key}.
+     *
+     * @param key
+     *            the key to be added
+     * @param hash
+     *            the hash code of key
+     * @param value
+     *            the associated value to be added
+     * @updates this
+     * @requires <pre>
+     * key is not in DOMAIN(this)  and  hash = hashOf(key)  and
+     * value /= null
+     * </pre>
+     * @ensures this = #this union {(key, value)}
      */
-
-    @Override
-    public final void add(K key, V value) {
-        assert key != null : "Violation of: key is not null";
-        assert value != null : "Violation of: value is not null";
-        assert !this.hasKey(key) : "Violation of: key is not in DOMAIN(this)";
+    final void add(K key, int hash, V value) {
+        this.rehashStep(this.rehashStepSize);
+        Bucket<K, V> bucket = this.bucket(hash);
+        assert bucket.find(key, hash, this.strategy)
+                == null : "Violation of: key is not in DOMAIN(this)";
         //Increment the size.
         this.size++;
-        int index = mod(key.hashCode(), this.hashTable.length());
-        this.hashTable.entry(index).add(key, value);
-    }
-
-    @Override
-    public final Pair<K, V> remove(K key) {
-        assert key != null : "Violation of: key is not null";
-        assert this.hasKey(key) : "Violation of: key is in DOMAIN(this)";
-        //Decrement the size.
-        this.size--;
-        int index = mod(key.hashCode(), this.hashTable.length());
-        return this.hashTable.entry(index).remove(key);
+        bucket.add(new Node<K, V>(key, value, hash));
+        this.growIfNeeded();
     }
 
-    @Override
-    public final Pair<K, V> removeAny() {
-        assert this.size() > 0 : "Violation of: this /= empty_set";
-        //Reduce the size by one.
-        this.size--;
-        int index = 0;
-        while (this.hashTable.entry(index).size() == 0) {
-            index++;
+    /**
+     * Reports the value of {@code key}, or {@code defaultValue} if it has
+     * none, like {@code valueOrDefault(key, defaultValue)} but without hashing
+     * {@code key}.
+     *
+     * @param key
+     *            the key
+     * @param hash
+     *            the hash code of key
+     * @param defaultValue
+     *            the value to report if key is not in DOMAIN(this)
+     * @return the value associated with key, or defaultValue
+     * @requires hash = hashOf(key)
+     * @ensures <pre>
+     * if key is in DOMAIN(this)
+     * then (key, valueOrDefault) is in this
+     * else valueOrDefault = defaultValue
+     * </pre>
+     */
+    final V valueOrDefault(K key, int hash, V defaultValue) {
+        Node<K, V> node = this.find(key, hash);
+        if (node == null) {
+            return defaultValue;
         }
-        return this.hashTable.entry(index).removeAny();
-    }
-
-    @Override
-    public final V value(K key) {
-        assert key != null : "Violation of: key is not null";
-        assert this.hasKey(key) : "Violation of: key is in DOMAIN(this)";
-        int index = mod(key.hashCode(), this.hashTable.length());
-        return this.hashTable.entry(index).value(key);
+        return node.value;
     }
 
-    @Override
-    public final boolean hasKey(K key) {
-        assert key != null : "Violation of: key is not null";
-        int index = mod(key.hashCode(), this.hashTable.length());
-        return this.hashTable.entry(index).hasKey(key);
-    }
-
-    @Override
-    public final int size() {
-        return this.size;
-    }
-
-    @Override
-    public final Iterator<Pair<K, V>> iterator() {
-        return new Map4Iterator();
+    /**
+     * Removes the pair with key {@code key} from {@code this} and reports its
+     * value, or reports {@code null} if there is none, without hashing
+     * {@code key}.
+     *
+     * @param key
+     *            the key
+     * @param hash
+     *            the hash code of key
+     * @return the value removed, or null
+     * @updates this
+     * @requires hash = hashOf(key)
+     * @ensures <pre>
+     * if key is in DOMAIN(#this)
+     * then (key, removeValue) is in #this  and
+     *      this = #this \ {(key, removeValue)}
+     * else this = #this  and  removeValue = null
+     * </pre>
+     */
+    final V removeValue(K key, int hash) {
+        Node<K, V> node = this.removeNode(key, hash);
+        if (node == null) {
+            return null;
+        }
+        return node.value;
     }
 
     /**
@@ -245,22 +2737,23 @@ public class Map4<K, V> extends MapSecondary<K, V> {
         private int numberSeen;
 
         /**
-         * Bucket from which current bucket iterator comes.
+         * Position (in the order of {@code bucketAt}) of the current bucket.
          */
         private int currentBucket;
 
         /**
-         * Bucket iterator from which next element will come.
+         * Entry of the current bucket from which next element will come, or
+         * {@code null} if the rest of the current bucket has been seen.
          */
-        private Iterator<Pair<K, V>> bucketIterator;
+        private Node<K, V> nextNode;
 
         /**
          * No-argument constructor.
          */
         Map4Iterator() {
             this.numberSeen = 0;
-            this.currentBucket = 0;
-            this.bucketIterator = Map4.this.hashTable.entry(0).iterator();
+            this.currentBucket = -1;
+            this.nextNode = null;
         }
 
         @Override
@@ -280,15 +2773,14 @@ public class Map4<K, V> extends MapSecondary<K, V> {
                 throw new NoSuchElementException();
             }
             this.numberSeen++;
-            if (this.bucketIterator.hasNext()) {
-                return this.bucketIterator.next();
-            }
-            while (!this.bucketIterator.hasNext()) {
-                this.currentBucket++;
-                this.bucketIterator = Map4.this.hashTable
-                        .entry(this.currentBucket).iterator();
+            if (this.nextNode == null) {
+                this.currentBucket = Map4.this
+                        .nextOccupied(this.currentBucket + 1);
+                this.nextNode = Map4.this.bucketAt(this.currentBucket).head;
             }
-            return this.bucketIterator.next();
+            Node<K, V> node = this.nextNode;
+            this.nextNode = node.next;
+            return new SimplePair<K, V>(node.key, node.value);
         }
 
         @Override
@@ -299,4 +2791,190 @@ public class Map4<K, V> extends MapSecondary<K, V> {
 
     }
 
+    /**
+     * Implementation of {@code Spliterator} interface for {@code Map4}, over
+     * the entries of a range of bucket positions in the order of
+     * {@code bucketAt}. Splitting halves the range of positions not yet
+     * started and counts the entries of one half, so every spliterator knows
+     * exactly how many entries it has left.
+     */
+    private final class Map4Spliterator implements Spliterator<Pair<K, V>> {
+
+        /**
+         * Position of the next bucket to start.
+         */
+        private int position;
+
+        /**
+         * Position after the last bucket of the range.
+         */
+        private final int fence;
+
+        /**
+         * Number of entries not yet visited.
+         */
+        private int remaining;
+
+        /**
+         * Next entry of the bucket started last, or {@code null} if the rest
+         * of that bucket has been visited.
+         */
+        private Node<K, V> nextNode;
+
+        /**
+         * Constructor from a range of positions and its number of entries.
+         *
+         * @param position
+         *            the first position
+         * @param fence
+         *            the position after the last
+         * @param remaining
+         *            the number of entries in the range
+         */
+        Map4Spliterator(int position, int fence, int remaining) {
+            this.position = position;
+            this.fence = fence;
+            this.remaining = remaining;
+            this.nextNode = null;
+        }
+
+        @Override
+        public boolean tryAdvance(Consumer<? super Pair<K, V>> action) {
+            assert action != null : "Violation of: action is not null";
+
+            if (this.remaining == 0) {
+                return false;
+            }
+            if (this.nextNode == null) {
+                int occupied = Map4.this.nextOccupied(this.position);
+                this.nextNode = Map4.this.bucketAt(occupied).head;
+                this.position = occupied + 1;
+            }
+            Node<K, V> node = this.nextNode;
+            this.nextNode = node.next;
+            this.remaining--;
+            action.accept(new SimplePair<K, V>(node.key, node.value));
+            return true;
+        }
+
+        @Override
+        public void forEachRemaining(Consumer<? super Pair<K, V>> action) {
+            assert action != null : "Violation of: action is not null";
+
+            while (this.tryAdvance(action)) {
+                /*
+                 * Each call visits one entry.
+                 */
+            }
+        }
+
+        @Override
+        public Spliterator<Pair<K, V>> trySplit() {
+            int mid = (this.position + this.fence) >>> 1;
+            if (mid <= this.position) {
+                return null;
+            }
+            int prefixEntries = Map4.this.entriesBetween(this.position, mid);
+            Map4Spliterator prefix = new Map4Spliterator(this.position, mid,
+                    prefixEntries);
+            this.position = mid;
+            this.remaining -= prefixEntries;
+            return prefix;
+        }
+
+        @Override
+        public long estimateSize() {
+            return this.remaining;
+        }
+
+        @Override
+        public int characteristics() {
+            return Spliterator.SIZED | Spliterator.SUBSIZED
+                    | Spliterator.DISTINCT | Spliterator.NONNULL;
+        }
+
+    }
+
+    /**
+     * {@code RecursiveTask} running a {@code RangeFunction} over a range of
+     * bucket positions, forking the left half of the range while it is
+     * estimated to hold at least {@code parallelismThreshold} entries.
+     *
+     * @param <R>
+     *            type of the result
+     */
+    private final class BulkTask<R> extends RecursiveTask<R> {
+
+        /**
+         * Serial version UID, since {@code RecursiveTask} is
+         * {@code Serializable}.
+         */
+        private static final long serialVersionUID = 1L;
+
+        /**
+         * The first position.
+         */
+        private final int from;
+
+        /**
+         * The position after the last.
+         */
+        private final int to;
+
+        /**
+         * Estimated number of entries for which to split the range.
+         */
+        private final long parallelismThreshold;
+
+        /**
+         * The computation for one range.
+         */
+        private final RangeFunction<R> leaf;
+
+        /**
+         * The combination of the results of two ranges.
+         */
+        private final BinaryOperator<R> combiner;
+
+        /**
+         * Constructor.
+         *
+         * @param from
+         *            the first position
+         * @param to
+         *            the position after the last
+         * @param parallelismThreshold
+         *            the estimated number of entries for which to split
+         * @param leaf
+         *            the computation for one range
+         * @param combiner
+         *            the combination of the results of two ranges
+         */
+        BulkTask(int from, int to, long parallelismThreshold,
+                RangeFunction<R> leaf, BinaryOperator<R> combiner) {
+            this.from = from;
+            this.to = to;
+            this.parallelismThreshold = parallelismThreshold;
+            this.leaf = leaf;
+            this.combiner = combiner;
+        }
+
+        @Override
+        protected R compute() {
+            if (this.to - this.from > 1 && Map4.this.estimatedEntriesBetween(
+                    this.from, this.to) >= this.parallelismThreshold) {
+                int mid = (this.from + this.to) >>> 1;
+                BulkTask<R> left = new BulkTask<R>(this.from, mid,
+                        this.parallelismThreshold, this.leaf, this.combiner);
+                left.fork();
+                R right = new BulkTask<R>(mid, this.to,
+                        this.parallelismThreshold, this.leaf, this.combiner)
+                                .compute();
+                return this.combiner.apply(left.join(), right);
+            }
+            return this.leaf.apply(this.from, this.to);
+        }
+
+    }
+
 }
@@ -0,0 +1,465 @@
+import java.util.Iterator;
+import java.util.NoSuchElementException;
+
+import components.map.Map;
+import components.map.MapSecondary;
+
+/**
+ * {@code Map} represented as an open-addressing hash table with linear
+ * probing, keeping keys and values in parallel arrays, with implementations
+ * of primary methods.
+ *
+ * @param <K>
+ *            type of {@code Map} domain (key) entries
+ * @param <V>
+ *            type of {@code Map} range (associated value) entries
+ * @convention <pre>
+ * |$this.keys| = |$this.values|  and
+ * |$this.keys| = 2^(32 - $this.shift)  and
+ * |$this.keys| >= MIN_CAPACITY  and
+ * $this.size = [number of non-null entries of $this.keys]  and
+ * 2 * $this.size <= |$this.keys|  and
+ * for all i: integer
+ *     where (0 <= i  and  i < |$this.keys|)
+ *   (($this.keys[i] = null) = ($this.values[i] = null))  and
+ * for all i: integer
+ *     where (0 <= i  and  i < |$this.keys|  and  $this.keys[i] /= null)
+ *   ([$this.keys[i] is not equal to any other non-null entry of
+ *     $this.keys]  and
+ *    [every slot from home($this.keys[i]) cyclically up to, but not
+ *     including, i has a non-null key])  and
+ * 0 <= $this.firstCandidate <= |$this.keys|  and
+ * for all i: integer
+ *     where (0 <= i  and  i < $this.firstCandidate)
+ *   ($this.keys[i] = null)
+ * where home(x) = ([computed result of x.hashCode()] * HASH_MULTIPLIER)
+ *   [unsigned] >> $this.shift
+ * </pre>
+ * @correspondence <pre>
+ * this = {(k, v): (K, V)
+ *   where (there exists i: integer
+ *            (0 <= i  and  i < |$this.keys|  and
+ *             k = $this.keys[i]  and  v = $this.values[i]  and
+ *             k /= null))}
+ * </pre>
+ *
+ * @author Jackson Jiang
+ * @author Jimmy Yuan
+ *
+ */
+public class Map5<K, V> extends MapSecondary<K, V> {
+
+    /*
+     * Private members --------------------------------------------------------
+     */
+
+    /**
+     * Default number of slots.
+     */
+    private static final int DEFAULT_CAPACITY = 16;
+
+    /**
+     * Smallest number of slots.
+     */
+    private static final int MIN_CAPACITY = 4;
+
+    /**
+     * Largest number of slots.
+     */
+    private static final int MAX_CAPACITY = 1 << 30;
+
+    /**
+     * Fibonacci hashing multiplier (2^32 divided by the golden ratio).
+     */
+    private static final int HASH_MULTIPLIER = 0x9E3779B9;
+
+    /**
+     * Number of bits in an {@code int}.
+     */
+    private static final int INT_BITS = 32;
+
+    /**
+     * Keys, {@code null} in empty slots.
+     */
+    private Object[] keys;
+
+    /**
+     * Values, parallel to {@code keys}.
+     */
+    private Object[] values;
+
+    /**
+     * Shift that maps a multiplied hash code to a slot index.
+     */
+    private int shift;
+
+    /**
+     * Total size of abstract {@code this}.
+     */
+    private int size;
+
+    /**
+     * Every slot before this index is empty; {@code removeAny} starts its
+     * scan here.
+     */
+    private int firstCandidate;
+
+    /**
+     * Returns the smallest power of two that is at least {@code n} and at
+     * least {@code MIN_CAPACITY}.
+     *
+     * @param n
+     *            the lower bound
+     * @return the capacity
+     * @requires n <= MAX_CAPACITY
+     * @ensures <pre>
+     * capacityFor >= n  and  capacityFor >= MIN_CAPACITY  and
+     * [capacityFor is the smallest such power of two]
+     * </pre>
+     */
+    private static int capacityFor(int n) {
+        assert n <= MAX_CAPACITY : "Violation of: n <= MAX_CAPACITY";
+
+        int capacity = MIN_CAPACITY;
+        while (capacity < n) {
+            capacity *= 2;
+        }
+        return capacity;
+    }
+
+    /**
+     * Creator of initial representation.
+     *
+     * @param capacity
+     *            the number of slots
+     * @requires capacity is a power of two  and  capacity >= MIN_CAPACITY
+     * @ensures <pre>
+     * |$this.keys| = capacity  and  |$this.values| = capacity  and
+     * [every slot is empty]  and  $this.size = 0
+     * </pre>
+     */
+    private void createNewRep(int capacity) {
+        this.keys = new Object[capacity];
+        this.values = new Object[capacity];
+        this.shift = INT_BITS - Integer.numberOfTrailingZeros(capacity);
+        this.size = 0;
+        this.firstCandidate = capacity;
+    }
+
+    /**
+     * Returns the slot at which the probe sequence for {@code key} starts.
+     *
+     * @param key
+     *            the key
+     * @return the home slot of {@code key}
+     * @ensures home = home(key)
+     */
+    private int home(Object key) {
+        return (key.hashCode() * HASH_MULTIPLIER) >>> this.shift;
+    }
+
+    /**
+     * Returns the slot holding {@code key}, or -1 if there is none.
+     *
+     * @param key
+     *            the key
+     * @return the slot of {@code key}, or -1
+     * @ensures <pre>
+     * if key is in DOMAIN(this)
+     * then $this.keys[find] = key
+     * else find = -1
+     * </pre>
+     */
+    private int find(Object key) {
+        int mask = this.keys.length - 1;
+        int i = this.home(key);
+        Object k = this.keys[i];
+        while (k != null) {
+            if (k.equals(key)) {
+                return i;
+            }
+            i = (i + 1) & mask;
+            k = this.keys[i];
+        }
+        return -1;
+    }
+
+    /**
+     * Stores {@code key} and {@code value} in the first empty slot of the
+     * probe sequence for {@code key}.
+     *
+     * @param key
+     *            the key
+     * @param value
+     *            the value
+     * @updates $this.keys, $this.values, $this.firstCandidate
+     * @requires key is not in DOMAIN(this)  and  [there is an empty slot]
+     * @ensures this = #this union {(key, value)}
+     */
+    private void insert(Object key, Object value) {
+        int mask = this.keys.length - 1;
+        int i = this.home(key);
+        while (this.keys[i] != null) {
+            i = (i + 1) & mask;
+        }
+        this.keys[i] = key;
+        this.values[i] = value;
+        if (i < this.firstCandidate) {
+            this.firstCandidate = i;
+        }
+    }
+
+    /**
+     * Empties slot {@code slot}, shifting later entries of the same probe run
+     * back so that no tombstone is needed.
+     *
+     * @param slot
+     *            the slot to empty
+     * @updates $this.keys, $this.values
+     * @requires $this.keys[slot] /= null
+     * @ensures this = #this \ {($this.keys[slot], $this.values[slot])}
+     */
+    private void deleteSlot(int slot) {
+        int mask = this.keys.length - 1;
+        int hole = slot;
+        int i = (hole + 1) & mask;
+        Object k = this.keys[i];
+        while (k != null) {
+            /*
+             * The entry at i may fill the hole only if the hole lies between
+             * its home slot and i, i.e., it is no closer to i than home is.
+             */
+            int home = this.home(k);
+            if (((i - home) & mask) >= ((i - hole) & mask)) {
+                this.keys[hole] = k;
+                this.values[hole] = this.values[i];
+                hole = i;
+            }
+            i = (i + 1) & mask;
+            k = this.keys[i];
+        }
+        this.keys[hole] = null;
+        this.values[hole] = null;
+    }
+
+    /**
+     * Doubles the number of slots, reinserting every entry.
+     *
+     * @updates $this.keys, $this.values, $this.shift, $this.firstCandidate
+     * @requires |$this.keys| < MAX_CAPACITY
+     * @ensures |$this.keys| = 2 * |#$this.keys|  and  this = #this
+     */
+    private void grow() {
+        Object[] oldKeys = this.keys;
+        Object[] oldValues = this.values;
+        int oldSize = this.size;
+        this.createNewRep(2 * oldKeys.length);
+        this.size = oldSize;
+        for (int i = 0; i < oldKeys.length; i++) {
+            if (oldKeys[i] != null) {
+                this.insert(oldKeys[i], oldValues[i]);
+            }
+        }
+    }
+
+    /*
+     * Constructors -----------------------------------------------------------
+     */
+
+    /**
+     * No-argument constructor.
+     */
+    public Map5() {
+
+        this.createNewRep(DEFAULT_CAPACITY);
+
+    }
+
+    /**
+     * Constructor resulting in a table with at least {@code capacity} slots.
+     *
+     * @param capacity
+     *            initial number of slots
+     * @requires 0 < capacity <= MAX_CAPACITY
+     * @ensures this = {}
+     */
+    public Map5(int capacity) {
+        assert capacity > 0 : "Violation of: capacity > 0";
+
+        this.createNewRep(capacityFor(capacity));
+
+    }
+
+    /*
+     * Standard methods -------------------------------------------------------
+     */
+
+    @SuppressWarnings("unchecked")
+    @Override
+    public final Map<K, V> newInstance() {
+        try {
+            return this.getClass().getConstructor().newInstance();
+        } catch (ReflectiveOperationException e) {
+            throw new AssertionError(
+                    "Cannot construct object of type " + this.getClass());
+        }
+    }
+
+    @Override
+    public final void clear() {
+        this.createNewRep(DEFAULT_CAPACITY);
+    }
+
+    @Override
+    public final void transferFrom(Map<K, V> source) {
+        assert source != null : "Violation of: source is not null";
+        assert source != this : "Violation of: source is not this";
+        assert source instanceof Map5<?, ?> : ""
+                + "Violation of: source is of dynamic type Map5<?,?>";
+        /*
+         * This cast cannot fail since the assert above would have stopped
+         * execution in that case: source must be of dynamic type Map5<?,?>, and
+         * the ?,? must be K,V or the call would not have compiled.
+         */
+        Map5<K, V> localSource = (Map5<K, V>) source;
+        this.keys = localSource.keys;
+        this.values = localSource.values;
+        this.shift = localSource.shift;
+        this.size = localSource.size;
+        this.firstCandidate = localSource.firstCandidate;
+        localSource.createNewRep(DEFAULT_CAPACITY);
+    }
+
+    /*
+     * Kernel methods ---------------------------------------------------------
+     */
+
+    @Override
+    public final void add(K key, V value) {
+        assert key != null : "Violation of: key is not null";
+        assert value != null : "Violation of: value is not null";
+        assert !this.hasKey(key) : "Violation of: key is not in DOMAIN(this)";
+
+        if (2 * (this.size + 1) > this.keys.length) {
+            this.grow();
+        }
+        this.insert(key, value);
+        this.size++;
+    }
+
+    @SuppressWarnings("unchecked")
+    @Override
+    public final Pair<K, V> remove(K key) {
+        assert key != null : "Violation of: key is not null";
+        assert this.hasKey(key) : "Violation of: key is in DOMAIN(this)";
+
+        int slot = this.find(key);
+        Pair<K, V> result = new SimplePair<K, V>((K) this.keys[slot],
+                (V) this.values[slot]);
+        this.deleteSlot(slot);
+        this.size--;
+        return result;
+    }
+
+    @SuppressWarnings("unchecked")
+    @Override
+    public final Pair<K, V> removeAny() {
+        assert this.size() > 0 : "Violation of: this /= empty_set";
+
+        int slot = this.firstCandidate;
+        while (this.keys[slot] == null) {
+            slot++;
+        }
+        this.firstCandidate = slot;
+        Pair<K, V> result = new SimplePair<K, V>((K) this.keys[slot],
+                (V) this.values[slot]);
+        this.deleteSlot(slot);
+        this.size--;
+        return result;
+    }
+
+    @SuppressWarnings("unchecked")
+    @Override
+    public final V value(K key) {
+        assert key != null : "Violation of: key is not null";
+        assert this.hasKey(key) : "Violation of: key is in DOMAIN(this)";
+
+        return (V) this.values[this.find(key)];
+    }
+
+    @Override
+    public final boolean hasKey(K key) {
+        assert key != null : "Violation of: key is not null";
+
+        return this.find(key) >= 0;
+    }
+
+    @Override
+    public final int size() {
+        return this.size;
+    }
+
+    @Override
+    public final Iterator<Pair<K, V>> iterator() {
+        return new Map5Iterator();
+    }
+
+    /**
+     * Implementation of {@code Iterator} interface for {@code Map5}.
+     */
+    private final class Map5Iterator implements Iterator<Pair<K, V>> {
+
+        /**
+         * Number of elements seen already (i.e., |~this.seen|).
+         */
+        private int numberSeen;
+
+        /**
+         * Slot at which the search for the next element starts.
+         */
+        private int nextSlot;
+
+        /**
+         * No-argument constructor.
+         */
+        Map5Iterator() {
+            this.numberSeen = 0;
+            this.nextSlot = 0;
+        }
+
+        @Override
+        public boolean hasNext() {
+            return this.numberSeen < Map5.this.size;
+        }
+
+        @SuppressWarnings("unchecked")
+        @Override
+        public Pair<K, V> next() {
+            assert this.hasNext() : "Violation of: ~this.unseen /= <>";
+            if (!this.hasNext()) {
+                /*
+                 * Exception is supposed to be thrown in this case, but with
+                 * assertion-checking enabled it cannot happen because of assert
+                 * above.
+                 */
+                throw new NoSuchElementException();
+            }
+            this.numberSeen++;
+            while (Map5.this.keys[this.nextSlot] == null) {
+                this.nextSlot++;
+            }
+            int slot = this.nextSlot;
+            this.nextSlot++;
+            return new SimplePair<K, V>((K) Map5.this.keys[slot],
+                    (V) Map5.this.values[slot]);
+        }
+
+        @Override
+        public void remove() {
+            throw new UnsupportedOperationException(
+                    "remove operation not supported");
+        }
+
+    }
+
+}
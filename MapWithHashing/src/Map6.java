@@ -0,0 +1,577 @@
+import java.util.Iterator;
+import java.util.NoSuchElementException;
+
+import components.map.Map;
+import components.map.MapSecondary;
+
+/**
+ * {@code Map} represented as an open-addressing hash table with Robin Hood
+ * linear probing, keeping keys, values and probe distances in parallel arrays,
+ * with implementations of primary methods.
+ *
+ * <p>
+ * On insertion, an entry that has probed further than the entry occupying a
+ * slot takes that slot, and the displaced entry continues probing. This keeps
+ * the variance of probe distances low even at high load factors, and lets an
+ * unsuccessful search stop as soon as it meets an entry closer to its home
+ * slot than the search has come.
+ *
+ * @param <K>
+ *            type of {@code Map} domain (key) entries
+ * @param <V>
+ *            type of {@code Map} range (associated value) entries
+ * @convention <pre>
+ * |$this.keys| = |$this.values| = |$this.distances|  and
+ * |$this.keys| = 2^(32 - $this.shift)  and
+ * |$this.keys| >= MIN_CAPACITY  and
+ * 0 < $this.maxLoadFactor < 1  and
+ * $this.size = [number of non-null entries of $this.keys]  and
+ * $this.size <= $this.maxLoadFactor * |$this.keys|  and
+ * for all i: integer
+ *     where (0 <= i  and  i < |$this.keys|)
+ *   (($this.keys[i] = null) = ($this.values[i] = null))  and
+ * for all i: integer
+ *     where (0 <= i  and  i < |$this.keys|  and  $this.keys[i] /= null)
+ *   ([$this.keys[i] is not equal to any other non-null entry of
+ *     $this.keys]  and
+ *    $this.distances[i] = (i - home($this.keys[i])) mod |$this.keys|  and
+ *    [every slot from home($this.keys[i]) cyclically up to, but not
+ *     including, i has a non-null key]  and
+ *    [the slot after i is empty or its distance is at most
+ *     $this.distances[i] + 1])  and
+ * 0 <= $this.firstCandidate <= |$this.keys|  and
+ * for all i: integer
+ *     where (0 <= i  and  i < $this.firstCandidate)
+ *   ($this.keys[i] = null)
+ * where home(x) = ([computed result of x.hashCode()] * HASH_MULTIPLIER)
+ *   [unsigned] >> $this.shift
+ * </pre>
+ * @correspondence <pre>
+ * this = {(k, v): (K, V)
+ *   where (there exists i: integer
+ *            (0 <= i  and  i < |$this.keys|  and
+ *             k = $this.keys[i]  and  v = $this.values[i]  and
+ *             k /= null))}
+ * </pre>
+ *
+ * @author Jackson Jiang
+ * @author Jimmy Yuan
+ *
+ */
+public class Map6<K, V> extends MapSecondary<K, V> {
+
+    /*
+     * Private members --------------------------------------------------------
+     */
+
+    /**
+     * Default number of slots.
+     */
+    private static final int DEFAULT_CAPACITY = 16;
+
+    /**
+     * Default maximum ratio of size to number of slots.
+     */
+    private static final double DEFAULT_MAX_LOAD_FACTOR = 0.875;
+
+    /**
+     * Smallest number of slots.
+     */
+    private static final int MIN_CAPACITY = 4;
+
+    /**
+     * Largest number of slots.
+     */
+    private static final int MAX_CAPACITY = 1 << 30;
+
+    /**
+     * Fibonacci hashing multiplier (2^32 divided by the golden ratio).
+     */
+    private static final int HASH_MULTIPLIER = 0x9E3779B9;
+
+    /**
+     * Number of bits in an {@code int}.
+     */
+    private static final int INT_BITS = 32;
+
+    /**
+     * Keys, {@code null} in empty slots.
+     */
+    private Object[] keys;
+
+    /**
+     * Values, parallel to {@code keys}.
+     */
+    private Object[] values;
+
+    /**
+     * Distance of each entry from its home slot, parallel to {@code keys}.
+     */
+    private int[] distances;
+
+    /**
+     * Shift that maps a multiplied hash code to a slot index.
+     */
+    private int shift;
+
+    /**
+     * Maximum ratio of size to number of slots.
+     */
+    private double maxLoadFactor;
+
+    /**
+     * Total size of abstract {@code this}.
+     */
+    private int size;
+
+    /**
+     * Every slot before this index is empty; {@code removeAny} starts its
+     * scan here.
+     */
+    private int firstCandidate;
+
+    /**
+     * Returns the smallest power of two that is at least {@code n} and at
+     * least {@code MIN_CAPACITY}.
+     *
+     * @param n
+     *            the lower bound
+     * @return the capacity
+     * @requires n <= MAX_CAPACITY
+     * @ensures <pre>
+     * capacityFor >= n  and  capacityFor >= MIN_CAPACITY  and
+     * [capacityFor is the smallest such power of two]
+     * </pre>
+     */
+    private static int capacityFor(int n) {
+        assert n <= MAX_CAPACITY : "Violation of: n <= MAX_CAPACITY";
+
+        int capacity = MIN_CAPACITY;
+        while (capacity < n) {
+            capacity *= 2;
+        }
+        return capacity;
+    }
+
+    /**
+     * Creator of initial representation.
+     *
+     * @param capacity
+     *            the number of slots
+     * @requires capacity is a power of two  and  capacity >= MIN_CAPACITY
+     * @ensures <pre>
+     * |$this.keys| = capacity  and  [every slot is empty]  and
+     * $this.size = 0
+     * </pre>
+     */
+    private void createNewRep(int capacity) {
+        this.keys = new Object[capacity];
+        this.values = new Object[capacity];
+        this.distances = new int[capacity];
+        this.shift = INT_BITS - Integer.numberOfTrailingZeros(capacity);
+        this.size = 0;
+        this.firstCandidate = capacity;
+    }
+
+    /**
+     * Returns the slot at which the probe sequence for {@code key} starts.
+     *
+     * @param key
+     *            the key
+     * @return the home slot of {@code key}
+     * @ensures home = home(key)
+     */
+    private int home(Object key) {
+        return (key.hashCode() * HASH_MULTIPLIER) >>> this.shift;
+    }
+
+    /**
+     * Returns the slot holding {@code key}, or -1 if there is none.
+     *
+     * @param key
+     *            the key
+     * @return the slot of {@code key}, or -1
+     * @ensures <pre>
+     * if key is in DOMAIN(this)
+     * then $this.keys[find] = key
+     * else find = -1
+     * </pre>
+     */
+    private int find(Object key) {
+        int mask = this.keys.length - 1;
+        int i = this.home(key);
+        int distance = 0;
+        /*
+         * Once the entry in slot i is closer to its home than key would be,
+         * key cannot be further along: it would have displaced that entry.
+         */
+        while (this.keys[i] != null && this.distances[i] >= distance) {
+            if (this.distances[i] == distance && this.keys[i].equals(key)) {
+                return i;
+            }
+            i = (i + 1) & mask;
+            distance++;
+        }
+        return -1;
+    }
+
+    /**
+     * Inserts {@code key} and {@code value}, displacing entries that are
+     * closer to their home slots than the entry being placed.
+     *
+     * @param key
+     *            the key
+     * @param value
+     *            the value
+     * @updates $this.keys, $this.values, $this.distances,
+     *          $this.firstCandidate
+     * @requires key is not in DOMAIN(this)  and  [there is an empty slot]
+     * @ensures this = #this union {(key, value)}
+     */
+    private void insert(Object key, Object value) {
+        int mask = this.keys.length - 1;
+        int i = this.home(key);
+        Object k = key;
+        Object v = value;
+        int distance = 0;
+        while (this.keys[i] != null) {
+            if (this.distances[i] < distance) {
+                Object displacedKey = this.keys[i];
+                Object displacedValue = this.values[i];
+                int displacedDistance = this.distances[i];
+                this.keys[i] = k;
+                this.values[i] = v;
+                this.distances[i] = distance;
+                k = displacedKey;
+                v = displacedValue;
+                distance = displacedDistance;
+            }
+            i = (i + 1) & mask;
+            distance++;
+        }
+        this.keys[i] = k;
+        this.values[i] = v;
+        this.distances[i] = distance;
+        if (i < this.firstCandidate) {
+            this.firstCandidate = i;
+        }
+    }
+
+    /**
+     * Empties slot {@code slot}, shifting the rest of its probe run back one
+     * slot so that no tombstone is needed.
+     *
+     * @param slot
+     *            the slot to empty
+     * @updates $this.keys, $this.values, $this.distances
+     * @requires $this.keys[slot] /= null
+     * @ensures this = #this \ {($this.keys[slot], $this.values[slot])}
+     */
+    private void deleteSlot(int slot) {
+        int mask = this.keys.length - 1;
+        int hole = slot;
+        int next = (hole + 1) & mask;
+        while (this.keys[next] != null && this.distances[next] > 0) {
+            this.keys[hole] = this.keys[next];
+            this.values[hole] = this.values[next];
+            this.distances[hole] = this.distances[next] - 1;
+            hole = next;
+            next = (next + 1) & mask;
+        }
+        this.keys[hole] = null;
+        this.values[hole] = null;
+        this.distances[hole] = 0;
+    }
+
+    /**
+     * Doubles the number of slots, reinserting every entry.
+     *
+     * @updates $this
+     * @requires |$this.keys| < MAX_CAPACITY
+     * @ensures |$this.keys| = 2 * |#$this.keys|  and  this = #this
+     */
+    private void grow() {
+        Object[] oldKeys = this.keys;
+        Object[] oldValues = this.values;
+        int oldSize = this.size;
+        this.createNewRep(2 * oldKeys.length);
+        this.size = oldSize;
+        for (int i = 0; i < oldKeys.length; i++) {
+            if (oldKeys[i] != null) {
+                this.insert(oldKeys[i], oldValues[i]);
+            }
+        }
+    }
+
+    /*
+     * Constructors -----------------------------------------------------------
+     */
+
+    /**
+     * No-argument constructor.
+     */
+    public Map6() {
+
+        this(DEFAULT_CAPACITY, DEFAULT_MAX_LOAD_FACTOR);
+
+    }
+
+    /**
+     * Constructor resulting in a table with at least {@code capacity} slots.
+     *
+     * @param capacity
+     *            initial number of slots
+     * @requires 0 < capacity <= MAX_CAPACITY
+     * @ensures this = {}
+     */
+    public Map6(int capacity) {
+
+        this(capacity, DEFAULT_MAX_LOAD_FACTOR);
+
+    }
+
+    /**
+     * Constructor resulting in a table with at least {@code capacity} slots
+     * that doubles whenever the ratio of the size of {@code this} to the
+     * number of slots would exceed {@code maxLoadFactor}.
+     *
+     * @param capacity
+     *            initial number of slots
+     * @param maxLoadFactor
+     *            maximum ratio of size to number of slots
+     * @requires 0 < capacity <= MAX_CAPACITY  and  0 < maxLoadFactor < 1
+     * @ensures this = {}
+     */
+    public Map6(int capacity, double maxLoadFactor) {
+        assert capacity > 0 : "Violation of: capacity > 0";
+        assert 0 < maxLoadFactor
+                && maxLoadFactor < 1 : "Violation of: 0 < maxLoadFactor < 1";
+
+        this.maxLoadFactor = maxLoadFactor;
+        this.createNewRep(capacityFor(capacity));
+
+    }
+
+    /*
+     * Standard methods -------------------------------------------------------
+     */
+
+    @SuppressWarnings("unchecked")
+    @Override
+    public final Map<K, V> newInstance() {
+        try {
+            return this.getClass().getConstructor().newInstance();
+        } catch (ReflectiveOperationException e) {
+            throw new AssertionError(
+                    "Cannot construct object of type " + this.getClass());
+        }
+    }
+
+    @Override
+    public final void clear() {
+        this.createNewRep(DEFAULT_CAPACITY);
+    }
+
+    @Override
+    public final void transferFrom(Map<K, V> source) {
+        assert source != null : "Violation of: source is not null";
+        assert source != this : "Violation of: source is not this";
+        assert source instanceof Map6<?, ?> : ""
+                + "Violation of: source is of dynamic type Map6<?,?>";
+        /*
+         * This cast cannot fail since the assert above would have stopped
+         * execution in that case: source must be of dynamic type Map6<?,?>, and
+         * the ?,? must be K,V or the call would not have compiled.
+         */
+        Map6<K, V> localSource = (Map6<K, V>) source;
+        this.keys = localSource.keys;
+        this.values = localSource.values;
+        this.distances = localSource.distances;
+        this.shift = localSource.shift;
+        this.maxLoadFactor = localSource.maxLoadFactor;
+        this.size = localSource.size;
+        this.firstCandidate = localSource.firstCandidate;
+        localSource.createNewRep(DEFAULT_CAPACITY);
+    }
+
+    /*
+     * Kernel methods ---------------------------------------------------------
+     */
+
+    @Override
+    public final void add(K key, V value) {
+        assert key != null : "Violation of: key is not null";
+        assert value != null : "Violation of: value is not null";
+        assert !this.hasKey(key) : "Violation of: key is not in DOMAIN(this)";
+
+        if (this.size + 1 > this.maxLoadFactor * this.keys.length) {
+            this.grow();
+        }
+        this.insert(key, value);
+        this.size++;
+    }
+
+    @SuppressWarnings("unchecked")
+    @Override
+    public final Pair<K, V> remove(K key) {
+        assert key != null : "Violation of: key is not null";
+        assert this.hasKey(key) : "Violation of: key is in DOMAIN(this)";
+
+        int slot = this.find(key);
+        Pair<K, V> result = new SimplePair<K, V>((K) this.keys[slot],
+                (V) this.values[slot]);
+        this.deleteSlot(slot);
+        this.size--;
+        return result;
+    }
+
+    @SuppressWarnings("unchecked")
+    @Override
+    public final Pair<K, V> removeAny() {
+        assert this.size() > 0 : "Violation of: this /= empty_set";
+
+        int slot = this.firstCandidate;
+        while (this.keys[slot] == null) {
+            slot++;
+        }
+        this.firstCandidate = slot;
+        Pair<K, V> result = new SimplePair<K, V>((K) this.keys[slot],
+                (V) this.values[slot]);
+        this.deleteSlot(slot);
+        this.size--;
+        return result;
+    }
+
+    @SuppressWarnings("unchecked")
+    @Override
+    public final V value(K key) {
+        assert key != null : "Violation of: key is not null";
+        assert this.hasKey(key) : "Violation of: key is in DOMAIN(this)";
+
+        return (V) this.values[this.find(key)];
+    }
+
+    @Override
+    public final boolean hasKey(K key) {
+        assert key != null : "Violation of: key is not null";
+
+        return this.find(key) >= 0;
+    }
+
+    @Override
+    public final int size() {
+        return this.size;
+    }
+
+    @Override
+    public final Iterator<Pair<K, V>> iterator() {
+        return new Map6Iterator();
+    }
+
+    /*
+     * Other methods ----------------------------------------------------------
+     */
+
+    /**
+     * Reports the largest distance of any entry of {@code this} from its home
+     * slot, i.e., one less than the longest successful probe sequence. Takes
+     * time proportional to the number of slots.
+     *
+     * @return the maximum probe distance
+     * @ensures <pre>
+     * maxProbeDistance = [maximum distance of an entry from its home slot,
+     *   or 0 if this = {}]
+     * </pre>
+     */
+    public final int maxProbeDistance() {
+        int max = 0;
+        for (int i = 0; i < this.keys.length; i++) {
+            if (this.keys[i] != null && this.distances[i] > max) {
+                max = this.distances[i];
+            }
+        }
+        return max;
+    }
+
+    /**
+     * Reports the mean distance of the entries of {@code this} from their home
+     * slots. Takes time proportional to the number of slots.
+     *
+     * @return the mean probe distance
+     * @ensures <pre>
+     * meanProbeDistance = [mean distance of an entry from its home slot,
+     *   or 0 if this = {}]
+     * </pre>
+     */
+    public final double meanProbeDistance() {
+        if (this.size == 0) {
+            return 0;
+        }
+        long total = 0;
+        for (int i = 0; i < this.keys.length; i++) {
+            if (this.keys[i] != null) {
+                total += this.distances[i];
+            }
+        }
+        return (double) total / this.size;
+    }
+
+    /**
+     * Implementation of {@code Iterator} interface for {@code Map6}.
+     */
+    private final class Map6Iterator implements Iterator<Pair<K, V>> {
+
+        /**
+         * Number of elements seen already (i.e., |~this.seen|).
+         */
+        private int numberSeen;
+
+        /**
+         * Slot at which the search for the next element starts.
+         */
+        private int nextSlot;
+
+        /**
+         * No-argument constructor.
+         */
+        Map6Iterator() {
+            this.numberSeen = 0;
+            this.nextSlot = 0;
+        }
+
+        @Override
+        public boolean hasNext() {
+            return this.numberSeen < Map6.this.size;
+        }
+
+        @SuppressWarnings("unchecked")
+        @Override
+        public Pair<K, V> next() {
+            assert this.hasNext() : "Violation of: ~this.unseen /= <>";
+            if (!this.hasNext()) {
+                /*
+                 * Exception is supposed to be thrown in this case, but with
+                 * assertion-checking enabled it cannot happen because of assert
+                 * above.
+                 */
+                throw new NoSuchElementException();
+            }
+            this.numberSeen++;
+            while (Map6.this.keys[this.nextSlot] == null) {
+                this.nextSlot++;
+            }
+            int slot = this.nextSlot;
+            this.nextSlot++;
+            return new SimplePair<K, V>((K) Map6.this.keys[slot],
+                    (V) Map6.this.values[slot]);
+        }
+
+        @Override
+        public void remove() {
+            throw new UnsupportedOperationException(
+                    "remove operation not supported");
+        }
+
+    }
+
+}
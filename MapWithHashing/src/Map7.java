@@ -0,0 +1,637 @@
+import java.util.Arrays;
+import java.util.Iterator;
+import java.util.NoSuchElementException;
+
+import components.map.Map;
+import components.map.MapSecondary;
+
+/**
+ * {@code Map} represented as an open-addressing hash table in the style of a
+ * Swiss table, with implementations of primary methods.
+ *
+ * <p>
+ * Slots are arranged in groups of eight. Each slot has a control byte, and
+ * the eight control bytes of a group are packed into one {@code long}. A
+ * control byte is {@code EMPTY}, {@code DELETED}, or, for a full slot, the
+ * low seven bits of the hash of its key. A probe for a key compares all
+ * eight control bytes of a group against the key's seven hash bits at once
+ * with word-level (SWAR) arithmetic, so both hits and misses usually touch
+ * one control word and at most one key. Groups are probed quadratically,
+ * and the table is kept at most seven-eighths full.
+ *
+ * @param <K>
+ *            type of {@code Map} domain (key) entries
+ * @param <V>
+ *            type of {@code Map} range (associated value) entries
+ * @convention <pre>
+ * |$this.control| is a power of two  and  |$this.control| > 0  and
+ * |$this.keys| = |$this.values| = GROUP_WIDTH * |$this.control|  and
+ * for all i: integer
+ *     where (0 <= i  and  i < |$this.keys|)
+ *   (if ctrl(i) is EMPTY or DELETED
+ *    then $this.keys[i] = null  and  $this.values[i] = null
+ *    else $this.keys[i] /= null  and  $this.values[i] /= null  and
+ *         ctrl(i) = h2($this.keys[i])  and
+ *         [$this.keys[i] is not equal to any other non-null entry of
+ *          $this.keys]  and
+ *         [no group probed for $this.keys[i] before the group of slot i
+ *          has an EMPTY slot])  and
+ * $this.size = [number of full slots]  and
+ * $this.size + [number of DELETED slots] + $this.growthLeft =
+ *   |$this.keys| * 7 / 8  and
+ * $this.growthLeft >= 0  and
+ * 0 <= $this.firstCandidate <= |$this.control|  and
+ * [every group before $this.firstCandidate has no full slot]
+ * where ctrl(i) = byte (i mod GROUP_WIDTH) of $this.control[i / GROUP_WIDTH]
+ * </pre>
+ * @correspondence <pre>
+ * this = {(k, v): (K, V)
+ *   where (there exists i: integer
+ *            (0 <= i  and  i < |$this.keys|  and
+ *             k = $this.keys[i]  and  v = $this.values[i]  and
+ *             k /= null))}
+ * </pre>
+ *
+ * @author Jackson Jiang
+ * @author Jimmy Yuan
+ *
+ */
+public class Map7<K, V> extends MapSecondary<K, V> {
+
+    /*
+     * Private members --------------------------------------------------------
+     */
+
+    /**
+     * Number of slots in a group, i.e., control bytes in a {@code long}.
+     */
+    private static final int GROUP_WIDTH = 8;
+
+    /**
+     * log2 of {@code GROUP_WIDTH}.
+     */
+    private static final int GROUP_SHIFT = 3;
+
+    /**
+     * Default number of groups.
+     */
+    private static final int DEFAULT_GROUPS = 2;
+
+    /**
+     * Largest number of groups.
+     */
+    private static final int MAX_GROUPS = 1 << 26;
+
+    /**
+     * Control byte of a slot that has never been full since the last rehash.
+     */
+    private static final int EMPTY = 0x80;
+
+    /**
+     * Control byte of a slot whose entry has been removed (a tombstone).
+     */
+    private static final int DELETED = 0xFE;
+
+    /**
+     * Number of bits in a byte.
+     */
+    private static final int BYTE_BITS = 8;
+
+    /**
+     * Mask of the bits of a byte.
+     */
+    private static final int BYTE_MASK = 0xFF;
+
+    /**
+     * Mask of the bits of a control byte holding a hash fragment.
+     */
+    private static final int H2_MASK = 0x7F;
+
+    /**
+     * Number of hash bits used for the hash fragment.
+     */
+    private static final int H2_BITS = 7;
+
+    /**
+     * The low bit of every byte of a {@code long}.
+     */
+    private static final long LSBS = 0x0101010101010101L;
+
+    /**
+     * The high bit of every byte of a {@code long}.
+     */
+    private static final long MSBS = 0x8080808080808080L;
+
+    /**
+     * A group in which every slot is {@code EMPTY}.
+     */
+    private static final long EMPTY_GROUP = EMPTY * LSBS;
+
+    /**
+     * Control bytes, eight per group.
+     */
+    private long[] control;
+
+    /**
+     * Keys, {@code null} in slots that are not full.
+     */
+    private Object[] keys;
+
+    /**
+     * Values, parallel to {@code keys}.
+     */
+    private Object[] values;
+
+    /**
+     * Total size of abstract {@code this}.
+     */
+    private int size;
+
+    /**
+     * Number of {@code EMPTY} slots that may still be filled before the table
+     * must be rehashed.
+     */
+    private int growthLeft;
+
+    /**
+     * Every group before this index has no full slot; {@code removeAny}
+     * starts its scan here.
+     */
+    private int firstCandidate;
+
+    /**
+     * Scrambles the bits of {@code hashCode} so that both the group index and
+     * the hash fragment depend on all of them (the MurmurHash3 finalizer).
+     *
+     * @param hashCode
+     *            the hash code
+     * @return the scrambled hash
+     */
+    private static int hash(int hashCode) {
+        final int shift1 = 16;
+        final int shift2 = 13;
+        final int multiplier1 = 0x85EBCA6B;
+        final int multiplier2 = 0xC2B2AE35;
+        int h = hashCode;
+        h ^= h >>> shift1;
+        h *= multiplier1;
+        h ^= h >>> shift2;
+        h *= multiplier2;
+        h ^= h >>> shift1;
+        return h;
+    }
+
+    /**
+     * Returns the bytes of {@code group} equal to {@code h2}, as a word with
+     * the high bit of each such byte set. May also report a byte immediately
+     * above a matching byte; callers check the key anyway.
+     *
+     * @param group
+     *            the control word
+     * @param h2
+     *            the hash fragment
+     * @return the match word
+     */
+    private static long matchByte(long group, int h2) {
+        long x = group ^ (h2 * LSBS);
+        return (x - LSBS) & ~x & MSBS;
+    }
+
+    /**
+     * Returns the {@code EMPTY} bytes of {@code group}, as a word with the
+     * high bit of each such byte set.
+     *
+     * @param group
+     *            the control word
+     * @return the match word
+     */
+    private static long matchEmpty(long group) {
+        final int shift = 6;
+        return group & (~group << shift) & MSBS;
+    }
+
+    /**
+     * Returns the {@code EMPTY} and {@code DELETED} bytes of {@code group}, as
+     * a word with the high bit of each such byte set.
+     *
+     * @param group
+     *            the control word
+     * @return the match word
+     */
+    private static long matchEmptyOrDeleted(long group) {
+        final int shift = 7;
+        return group & (~group << shift) & MSBS;
+    }
+
+    /**
+     * Returns the full bytes of {@code group}, as a word with the high bit of
+     * each such byte set.
+     *
+     * @param group
+     *            the control word
+     * @return the match word
+     */
+    private static long matchFull(long group) {
+        return ~group & MSBS;
+    }
+
+    /**
+     * Returns the position within its group of the lowest byte reported in
+     * {@code match}.
+     *
+     * @param match
+     *            a nonzero match word
+     * @return the byte position
+     */
+    private static int lowestByte(long match) {
+        return Long.numberOfTrailingZeros(match) >>> GROUP_SHIFT;
+    }
+
+    /**
+     * Creator of initial representation.
+     *
+     * @param groups
+     *            the number of groups
+     * @requires groups is a power of two  and  0 < groups <= MAX_GROUPS
+     * @ensures <pre>
+     * |$this.control| = groups  and  [every slot is EMPTY]  and
+     * $this.size = 0  and  $this.growthLeft = |$this.keys| * 7 / 8
+     * </pre>
+     */
+    private void createNewRep(int groups) {
+        this.control = new long[groups];
+        Arrays.fill(this.control, EMPTY_GROUP);
+        this.keys = new Object[groups * GROUP_WIDTH];
+        this.values = new Object[groups * GROUP_WIDTH];
+        this.size = 0;
+        this.growthLeft = groups * (GROUP_WIDTH - 1);
+        this.firstCandidate = groups;
+    }
+
+    /**
+     * Returns the control byte of slot {@code slot}.
+     *
+     * @param slot
+     *            the slot
+     * @return ctrl(slot)
+     */
+    private int controlAt(int slot) {
+        int bit = (slot & (GROUP_WIDTH - 1)) * BYTE_BITS;
+        return (int) (this.control[slot >>> GROUP_SHIFT] >>> bit) & BYTE_MASK;
+    }
+
+    /**
+     * Sets the control byte of slot {@code slot} to {@code ctrl}.
+     *
+     * @param slot
+     *            the slot
+     * @param ctrl
+     *            the new control byte
+     * @updates $this.control
+     * @ensures ctrl(slot) = ctrl
+     */
+    private void setControl(int slot, int ctrl) {
+        int group = slot >>> GROUP_SHIFT;
+        int bit = (slot & (GROUP_WIDTH - 1)) * BYTE_BITS;
+        long byteMask = (long) BYTE_MASK << bit;
+        this.control[group] = (this.control[group] & ~byteMask)
+                | ((long) ctrl << bit);
+    }
+
+    /**
+     * Returns the slot holding {@code key}, or -1 if there is none.
+     *
+     * @param key
+     *            the key
+     * @return the slot of {@code key}, or -1
+     * @ensures <pre>
+     * if key is in DOMAIN(this)
+     * then $this.keys[find] = key
+     * else find = -1
+     * </pre>
+     */
+    private int find(Object key) {
+        int h = hash(key.hashCode());
+        int h2 = h & H2_MASK;
+        int groupMask = this.control.length - 1;
+        int group = (h >>> H2_BITS) & groupMask;
+        int step = 0;
+        while (true) {
+            long word = this.control[group];
+            long match = matchByte(word, h2);
+            while (match != 0) {
+                int slot = (group << GROUP_SHIFT) | lowestByte(match);
+                if (key.equals(this.keys[slot])) {
+                    return slot;
+                }
+                match &= match - 1;
+            }
+            if (matchEmpty(word) != 0) {
+                return -1;
+            }
+            step++;
+            group = (group + step) & groupMask;
+        }
+    }
+
+    /**
+     * Stores {@code key} and {@code value} in the first {@code EMPTY} or
+     * {@code DELETED} slot of the probe sequence for {@code key}.
+     *
+     * @param key
+     *            the key
+     * @param value
+     *            the value
+     * @updates $this
+     * @requires <pre>
+     * key is not in DOMAIN(this)  and  $this.growthLeft > 0
+     * </pre>
+     * @ensures this = #this union {(key, value)}
+     */
+    private void insert(Object key, Object value) {
+        int h = hash(key.hashCode());
+        int groupMask = this.control.length - 1;
+        int group = (h >>> H2_BITS) & groupMask;
+        int step = 0;
+        long match = matchEmptyOrDeleted(this.control[group]);
+        while (match == 0) {
+            step++;
+            group = (group + step) & groupMask;
+            match = matchEmptyOrDeleted(this.control[group]);
+        }
+        int slot = (group << GROUP_SHIFT) | lowestByte(match);
+        if (this.controlAt(slot) == EMPTY) {
+            this.growthLeft--;
+        }
+        this.setControl(slot, h & H2_MASK);
+        this.keys[slot] = key;
+        this.values[slot] = value;
+        this.size++;
+        if (group < this.firstCandidate) {
+            this.firstCandidate = group;
+        }
+    }
+
+    /**
+     * Empties slot {@code slot}. The slot becomes {@code EMPTY} if its group
+     * already has an {@code EMPTY} slot, since no probe can then have passed
+     * through the group, and {@code DELETED} otherwise.
+     *
+     * @param slot
+     *            the slot to empty
+     * @updates $this
+     * @requires $this.keys[slot] /= null
+     * @ensures this = #this \ {($this.keys[slot], $this.values[slot])}
+     */
+    private void deleteSlot(int slot) {
+        if (matchEmpty(this.control[slot >>> GROUP_SHIFT]) != 0) {
+            this.setControl(slot, EMPTY);
+            this.growthLeft++;
+        } else {
+            this.setControl(slot, DELETED);
+        }
+        this.keys[slot] = null;
+        this.values[slot] = null;
+        this.size--;
+    }
+
+    /**
+     * Rehashes every entry into a table with enough groups that at least half
+     * of the growth allowance is left, dropping all tombstones.
+     *
+     * @updates $this
+     * @ensures this = #this  and  $this.growthLeft > 0
+     */
+    private void rehash() {
+        long[] oldControl = this.control;
+        Object[] oldKeys = this.keys;
+        Object[] oldValues = this.values;
+        int groups = oldControl.length;
+        if (2 * this.size >= groups * (GROUP_WIDTH - 1)) {
+            assert groups < MAX_GROUPS : "Violation of: table not too big";
+            groups *= 2;
+        }
+        this.createNewRep(groups);
+        for (int g = 0; g < oldControl.length; g++) {
+            long match = matchFull(oldControl[g]);
+            while (match != 0) {
+                int slot = (g << GROUP_SHIFT) | lowestByte(match);
+                this.insert(oldKeys[slot], oldValues[slot]);
+                match &= match - 1;
+            }
+        }
+    }
+
+    /*
+     * Constructors -----------------------------------------------------------
+     */
+
+    /**
+     * No-argument constructor.
+     */
+    public Map7() {
+
+        this.createNewRep(DEFAULT_GROUPS);
+
+    }
+
+    /**
+     * Constructor resulting in a table with at least {@code capacity} slots.
+     *
+     * @param capacity
+     *            initial number of slots
+     * @requires 0 < capacity <= MAX_GROUPS * GROUP_WIDTH
+     * @ensures this = {}
+     */
+    public Map7(int capacity) {
+        assert capacity > 0 : "Violation of: capacity > 0";
+
+        int groups = 1;
+        while (groups * GROUP_WIDTH < capacity) {
+            groups *= 2;
+        }
+        this.createNewRep(groups);
+
+    }
+
+    /*
+     * Standard methods -------------------------------------------------------
+     */
+
+    @SuppressWarnings("unchecked")
+    @Override
+    public final Map<K, V> newInstance() {
+        try {
+            return this.getClass().getConstructor().newInstance();
+        } catch (ReflectiveOperationException e) {
+            throw new AssertionError(
+                    "Cannot construct object of type " + this.getClass());
+        }
+    }
+
+    @Override
+    public final void clear() {
+        this.createNewRep(DEFAULT_GROUPS);
+    }
+
+    @Override
+    public final void transferFrom(Map<K, V> source) {
+        assert source != null : "Violation of: source is not null";
+        assert source != this : "Violation of: source is not this";
+        assert source instanceof Map7<?, ?> : ""
+                + "Violation of: source is of dynamic type Map7<?,?>";
+        /*
+         * This cast cannot fail since the assert above would have stopped
+         * execution in that case: source must be of dynamic type Map7<?,?>, and
+         * the ?,? must be K,V or the call would not have compiled.
+         */
+        Map7<K, V> localSource = (Map7<K, V>) source;
+        this.control = localSource.control;
+        this.keys = localSource.keys;
+        this.values = localSource.values;
+        this.size = localSource.size;
+        this.growthLeft = localSource.growthLeft;
+        this.firstCandidate = localSource.firstCandidate;
+        localSource.createNewRep(DEFAULT_GROUPS);
+    }
+
+    /*
+     * Kernel methods ---------------------------------------------------------
+     */
+
+    @Override
+    public final void add(K key, V value) {
+        assert key != null : "Violation of: key is not null";
+        assert value != null : "Violation of: value is not null";
+        assert !this.hasKey(key) : "Violation of: key is not in DOMAIN(this)";
+
+        if (this.growthLeft == 0) {
+            this.rehash();
+        }
+        this.insert(key, value);
+    }
+
+    @SuppressWarnings("unchecked")
+    @Override
+    public final Pair<K, V> remove(K key) {
+        assert key != null : "Violation of: key is not null";
+        assert this.hasKey(key) : "Violation of: key is in DOMAIN(this)";
+
+        int slot = this.find(key);
+        Pair<K, V> result = new SimplePair<K, V>((K) this.keys[slot],
+                (V) this.values[slot]);
+        this.deleteSlot(slot);
+        return result;
+    }
+
+    @SuppressWarnings("unchecked")
+    @Override
+    public final Pair<K, V> removeAny() {
+        assert this.size() > 0 : "Violation of: this /= empty_set";
+
+        int group = this.firstCandidate;
+        long match = matchFull(this.control[group]);
+        while (match == 0) {
+            group++;
+            match = matchFull(this.control[group]);
+        }
+        this.firstCandidate = group;
+        int slot = (group << GROUP_SHIFT) | lowestByte(match);
+        Pair<K, V> result = new SimplePair<K, V>((K) this.keys[slot],
+                (V) this.values[slot]);
+        this.deleteSlot(slot);
+        return result;
+    }
+
+    @SuppressWarnings("unchecked")
+    @Override
+    public final V value(K key) {
+        assert key != null : "Violation of: key is not null";
+        assert this.hasKey(key) : "Violation of: key is in DOMAIN(this)";
+
+        return (V) this.values[this.find(key)];
+    }
+
+    @Override
+    public final boolean hasKey(K key) {
+        assert key != null : "Violation of: key is not null";
+
+        return this.find(key) >= 0;
+    }
+
+    @Override
+    public final int size() {
+        return this.size;
+    }
+
+    @Override
+    public final Iterator<Pair<K, V>> iterator() {
+        return new Map7Iterator();
+    }
+
+    /**
+     * Implementation of {@code Iterator} interface for {@code Map7}.
+     */
+    private final class Map7Iterator implements Iterator<Pair<K, V>> {
+
+        /**
+         * Number of elements seen already (i.e., |~this.seen|).
+         */
+        private int numberSeen;
+
+        /**
+         * Group from which the next element will come.
+         */
+        private int group;
+
+        /**
+         * Full slots of {@code group} not yet returned, as a match word.
+         */
+        private long remaining;
+
+        /**
+         * No-argument constructor.
+         */
+        Map7Iterator() {
+            this.numberSeen = 0;
+            this.group = 0;
+            this.remaining = matchFull(Map7.this.control[0]);
+        }
+
+        @Override
+        public boolean hasNext() {
+            return this.numberSeen < Map7.this.size;
+        }
+
+        @SuppressWarnings("unchecked")
+        @Override
+        public Pair<K, V> next() {
+            assert this.hasNext() : "Violation of: ~this.unseen /= <>";
+            if (!this.hasNext()) {
+                /*
+                 * Exception is supposed to be thrown in this case, but with
+                 * assertion-checking enabled it cannot happen because of assert
+                 * above.
+                 */
+                throw new NoSuchElementException();
+            }
+            this.numberSeen++;
+            while (this.remaining == 0) {
+                this.group++;
+                this.remaining = matchFull(Map7.this.control[this.group]);
+            }
+            int slot = (this.group << GROUP_SHIFT) | lowestByte(this.remaining);
+            this.remaining &= this.remaining - 1;
+            return new SimplePair<K, V>((K) Map7.this.keys[slot],
+                    (V) Map7.this.values[slot]);
+        }
+
+        @Override
+        public void remove() {
+            throw new UnsupportedOperationException(
+                    "remove operation not supported");
+        }
+
+    }
+
+}
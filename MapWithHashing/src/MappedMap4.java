@@ -0,0 +1,857 @@
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.Arrays;
+import java.util.Iterator;
+import java.util.NoSuchElementException;
+
+import components.map.Map.Pair;
+
+/**
+ * Persistent map from {@code byte[]} keys to {@code byte[]} values
+ * represented, like {@code Map4}, as a hash table with chained buckets, but
+ * with the buckets and entries living in a memory-mapped file. Reopening the
+ * file serves lookups immediately from the page cache instead of re-adding
+ * every entry.
+ *
+ * <p>
+ * The file starts with a header, followed by entries and bucket arrays in the
+ * order they were written. A bucket holds the file offset of the first entry
+ * of its chain, and an entry holds the offset of the next entry, the hash of
+ * its key, the key and value lengths, and the key and value bytes. When the
+ * load factor is exceeded, a larger bucket array is appended and the chains
+ * are relinked using the stored hashes, without reading any key. Space used
+ * by removed entries and old bucket arrays is not reclaimed. A file can be
+ * at most {@code Integer.MAX_VALUE} bytes, the limit of a single mapping.
+ *
+ * <p>
+ * Changes reach the file through the mapping; {@code flush} forces them to
+ * the storage device. {@code close} flushes and releases the file, after
+ * which no other method may be called. Changes are not atomic: {@code add}
+ * and {@code remove} update chains and header fields one at a time, and a
+ * rehash relinks entries in place. <b>The file is therefore only valid after
+ * a {@code flush} or a clean {@code close}, with no change since.</b> The
+ * header carries a clean flag: the first change after a flush clears it (and
+ * forces the header to the device before anything else is written), and
+ * {@code flush} and {@code close} set it again once every change has been
+ * forced. Opening a file whose flag is clear, such as one left by a process
+ * killed while changing the map, fails with an {@code IOException} rather
+ * than serving a possibly damaged table.
+ *
+ * @convention <pre>
+ * [$this.buffer maps the first |$this.buffer| bytes of $this.channel]  and
+ * [the header of $this.buffer has MAGIC and VERSION]  and
+ * $this.dirty = (header.state /= CLEAN)  and
+ * HEADER_BYTES <= header.end <= |$this.buffer|  and
+ * header.bucketCount > 0  and
+ * header.size <= MAX_LOAD_FACTOR * header.bucketCount  and
+ * [header.bucketsOffset is the start of header.bucketCount 8-byte buckets
+ *  before header.end]  and
+ * for all b: integer
+ *     where (0 <= b  and  b < header.bucketCount)
+ *   ([the chain from bucket b visits exactly the live entries whose stored
+ *     hash mod header.bucketCount = b, and each stored hash is the hash of
+ *     its entry's key])  and
+ * header.size = [number of entries in all chains]  and
+ * [no two entries in chains have equal keys]  and
+ * 0 <= $this.firstCandidate <= header.bucketCount  and
+ * [every bucket before $this.firstCandidate is empty]
+ * </pre>
+ * @correspondence <pre>
+ * this = {(k, v): (byte[], byte[])
+ *   where ([some entry in a chain has key bytes k and value bytes v])}
+ * </pre>
+ *
+ * @author Jackson Jiang
+ * @author Jimmy Yuan
+ *
+ */
+public class MappedMap4 implements Iterable<Pair<byte[], byte[]>>,
+        AutoCloseable {
+
+    /*
+     * Private members --------------------------------------------------------
+     */
+
+    /**
+     * Identifies a file written by this class.
+     */
+    private static final int MAGIC = 0x4D617034;
+
+    /**
+     * Version of the file layout.
+     */
+    private static final int VERSION = 2;
+
+    /**
+     * Header offset of the magic number.
+     */
+    private static final int MAGIC_OFFSET = 0;
+
+    /**
+     * Header offset of the version.
+     */
+    private static final int VERSION_OFFSET = 4;
+
+    /**
+     * Header offset of the offset of the current bucket array.
+     */
+    private static final int BUCKETS_OFFSET = 8;
+
+    /**
+     * Header offset of the number of buckets.
+     */
+    private static final int BUCKET_COUNT_OFFSET = 16;
+
+    /**
+     * Header offset of the number of entries.
+     */
+    private static final int SIZE_OFFSET = 20;
+
+    /**
+     * Header offset of the offset of the first unused byte.
+     */
+    private static final int END_OFFSET = 24;
+
+    /**
+     * Header offset of the state: {@code CLEAN} or {@code DIRTY}.
+     */
+    private static final int STATE_OFFSET = 32;
+
+    /**
+     * Bytes in the header.
+     */
+    private static final int HEADER_BYTES = 40;
+
+    /**
+     * State of a file whose every change has been forced to the device.
+     */
+    private static final int CLEAN = 1;
+
+    /**
+     * State of a file that may have changes not yet forced to the device.
+     */
+    private static final int DIRTY = 0;
+
+    /**
+     * Entry offset of the offset of the next entry in the chain.
+     */
+    private static final int NEXT_FIELD = 0;
+
+    /**
+     * Entry offset of the hash of the key.
+     */
+    private static final int HASH_FIELD = 8;
+
+    /**
+     * Entry offset of the key length.
+     */
+    private static final int KEY_LENGTH_FIELD = 12;
+
+    /**
+     * Entry offset of the value length.
+     */
+    private static final int VALUE_LENGTH_FIELD = 16;
+
+    /**
+     * Bytes in an entry before the key.
+     */
+    private static final int ENTRY_HEADER_BYTES = 20;
+
+    /**
+     * Bytes in a bucket.
+     */
+    private static final int BUCKET_BYTES = Long.BYTES;
+
+    /**
+     * Number of buckets in a new file.
+     */
+    private static final int DEFAULT_HASH_TABLE_SIZE = 101;
+
+    /**
+     * Maximum ratio of size to number of buckets before rehashing.
+     */
+    private static final double MAX_LOAD_FACTOR = 0.75;
+
+    /**
+     * Smallest mapping created.
+     */
+    private static final int MIN_MAPPING_BYTES = 1 << 16;
+
+    /**
+     * Marks the end of a chain or an empty bucket.
+     */
+    private static final long NONE = 0;
+
+    /**
+     * Channel of the backing file.
+     */
+    private FileChannel channel;
+
+    /**
+     * Mapping of the backing file.
+     */
+    private MappedByteBuffer buffer;
+
+    /**
+     * Whether the file has been changed since it was last marked clean.
+     */
+    private boolean dirty;
+
+    /**
+     * Every bucket before this one is empty; {@code removeAny} starts its
+     * scan here.
+     */
+    private int firstCandidate;
+
+    /**
+     * Computes {@code a} mod {@code b} as % should have been defined to work.
+     *
+     * @param a
+     *            the number being reduced
+     * @param b
+     *            the modulus
+     * @return the result of a mod b, which satisfies 0 <= {@code mod} < b
+     * @requires b > 0
+     * @ensures <pre>
+     * 0 <= mod  and  mod < b  and
+     * there exists k: integer (a = k * b + mod)
+     * </pre>
+     */
+    private static int mod(int a, int b) {
+        assert b > 0 : "Violation of: b > 0";
+
+        int result = a % b;
+        if (result < 0) {
+            result += b;
+        }
+        return result;
+    }
+
+    /**
+     * Maps the first {@code bytes} bytes of the file, growing it if needed.
+     *
+     * @param bytes
+     *            number of bytes to map
+     * @updates $this.buffer
+     */
+    private void map(long bytes) {
+        try {
+            this.buffer = this.channel.map(FileChannel.MapMode.READ_WRITE, 0,
+                    bytes);
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    /**
+     * Makes sure {@code extra} more bytes past the end can be written,
+     * remapping a larger region of the file if necessary.
+     *
+     * @param extra
+     *            number of bytes about to be appended
+     * @updates $this.buffer
+     */
+    private void ensureRoom(long extra) {
+        long needed = this.end() + extra;
+        if (needed > Integer.MAX_VALUE) {
+            throw new IllegalStateException("MappedMap4 file is full");
+        }
+        if (needed > this.buffer.capacity()) {
+            long bytes = Math.min(Integer.MAX_VALUE,
+                    Math.max(needed, 2L * this.buffer.capacity()));
+            this.map(bytes);
+        }
+    }
+
+    /**
+     * Returns the offset of the first unused byte.
+     *
+     * @return header.end
+     */
+    private long end() {
+        return this.buffer.getLong(END_OFFSET);
+    }
+
+    /**
+     * Returns the number of buckets.
+     *
+     * @return header.bucketCount
+     */
+    private int bucketCount() {
+        return this.buffer.getInt(BUCKET_COUNT_OFFSET);
+    }
+
+    /**
+     * Returns the file offset of bucket {@code b}.
+     *
+     * @param b
+     *            the bucket
+     * @return the offset of bucket b
+     */
+    private int bucketOffset(int b) {
+        return (int) this.buffer.getLong(BUCKETS_OFFSET) + b * BUCKET_BYTES;
+    }
+
+    /**
+     * Returns the offset of the first entry of bucket {@code b}.
+     *
+     * @param b
+     *            the bucket
+     * @return the head of bucket b's chain
+     */
+    private long head(int b) {
+        return this.buffer.getLong(this.bucketOffset(b));
+    }
+
+    /**
+     * Returns the offset of the entry after {@code entry} in its chain.
+     *
+     * @param entry
+     *            offset of an entry
+     * @return offset of the next entry
+     */
+    private long next(long entry) {
+        return this.buffer.getLong((int) entry + NEXT_FIELD);
+    }
+
+    /**
+     * Marks the file dirty, and forces that mark to the device, before its
+     * first change since it was last marked clean.
+     *
+     * @updates $this.buffer, $this.dirty
+     * @ensures $this.dirty
+     */
+    private void markDirty() {
+        if (!this.dirty) {
+            this.buffer.putInt(STATE_OFFSET, DIRTY);
+            this.buffer.force(STATE_OFFSET, Integer.BYTES);
+            this.dirty = true;
+        }
+    }
+
+    /**
+     * Forces every change to the device, then marks the file clean and
+     * forces that mark too.
+     *
+     * @updates $this.buffer, $this.dirty
+     * @ensures not $this.dirty
+     */
+    private void markClean() {
+        if (this.dirty) {
+            this.buffer.force();
+            this.buffer.putInt(STATE_OFFSET, CLEAN);
+            this.buffer.force(STATE_OFFSET, Integer.BYTES);
+            this.dirty = false;
+        }
+    }
+
+    /**
+     * Appends an empty bucket array of {@code bucketCount} buckets and makes
+     * it current, without relinking any entries.
+     *
+     * @param bucketCount
+     *            the number of buckets
+     * @updates $this.buffer
+     */
+    private void appendBuckets(int bucketCount) {
+        this.ensureRoom((long) bucketCount * BUCKET_BYTES);
+        long offset = this.end();
+        for (int b = 0; b < bucketCount; b++) {
+            this.buffer.putLong((int) offset + b * BUCKET_BYTES, NONE);
+        }
+        this.buffer.putLong(BUCKETS_OFFSET, offset);
+        this.buffer.putInt(BUCKET_COUNT_OFFSET, bucketCount);
+        this.buffer.putLong(END_OFFSET,
+                offset + (long) bucketCount * BUCKET_BYTES);
+        this.firstCandidate = bucketCount;
+    }
+
+    /**
+     * Writes a new, empty map at the start of the file.
+     *
+     * @updates $this.buffer, $this.dirty
+     * @ensures this = {}  and  $this.dirty
+     */
+    private void createNewRep() {
+        this.markDirty();
+        this.buffer.putInt(MAGIC_OFFSET, MAGIC);
+        this.buffer.putInt(VERSION_OFFSET, VERSION);
+        this.buffer.putInt(SIZE_OFFSET, 0);
+        this.buffer.putLong(END_OFFSET, HEADER_BYTES);
+        this.appendBuckets(DEFAULT_HASH_TABLE_SIZE);
+    }
+
+    /**
+     * Links {@code entry} at the head of the chain of its bucket.
+     *
+     * @param entry
+     *            offset of an entry not in any chain
+     * @updates $this.buffer
+     */
+    private void link(long entry) {
+        int hash = this.buffer.getInt((int) entry + HASH_FIELD);
+        int b = mod(hash, this.bucketCount());
+        int bucket = this.bucketOffset(b);
+        this.buffer.putLong((int) entry + NEXT_FIELD,
+                this.buffer.getLong(bucket));
+        this.buffer.putLong(bucket, entry);
+        if (b < this.firstCandidate) {
+            this.firstCandidate = b;
+        }
+    }
+
+    /**
+     * Replaces the bucket array with one of {@code bucketCount} buckets and
+     * relinks every entry using its stored hash.
+     *
+     * @param bucketCount
+     *            the new number of buckets
+     * @updates $this.buffer
+     * @ensures this = #this
+     */
+    private void rehash(int bucketCount) {
+        int oldBucketCount = this.bucketCount();
+        long oldBuckets = this.buffer.getLong(BUCKETS_OFFSET);
+        this.appendBuckets(bucketCount);
+        for (int b = 0; b < oldBucketCount; b++) {
+            long entry = this.buffer
+                    .getLong((int) oldBuckets + b * BUCKET_BYTES);
+            while (entry != NONE) {
+                long following = this.next(entry);
+                this.link(entry);
+                entry = following;
+            }
+        }
+    }
+
+    /**
+     * Reports whether the key of {@code entry} has the same bytes as
+     * {@code key}.
+     *
+     * @param entry
+     *            offset of an entry
+     * @param key
+     *            the key
+     * @return true iff the keys are equal
+     */
+    private boolean keyEquals(long entry, byte[] key) {
+        int e = (int) entry;
+        if (this.buffer.getInt(e + KEY_LENGTH_FIELD) != key.length) {
+            return false;
+        }
+        int start = e + ENTRY_HEADER_BYTES;
+        for (int i = 0; i < key.length; i++) {
+            if (this.buffer.get(start + i) != key[i]) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * Returns the offset of the entry with key {@code key}, or {@code NONE}.
+     *
+     * @param key
+     *            the key
+     * @return the entry of key, or NONE
+     */
+    private long find(byte[] key) {
+        int hash = Arrays.hashCode(key);
+        long entry = this.head(mod(hash, this.bucketCount()));
+        while (entry != NONE && !(this.buffer.getInt((int) entry
+                + HASH_FIELD) == hash && this.keyEquals(entry, key))) {
+            entry = this.next(entry);
+        }
+        return entry;
+    }
+
+    /**
+     * Returns a read-only view of the value bytes of {@code entry}.
+     *
+     * @param entry
+     *            offset of an entry
+     * @return the value bytes
+     */
+    private ByteBuffer valueView(long entry) {
+        int e = (int) entry;
+        int keyLength = this.buffer.getInt(e + KEY_LENGTH_FIELD);
+        int valueLength = this.buffer.getInt(e + VALUE_LENGTH_FIELD);
+        return this.buffer
+                .slice(e + ENTRY_HEADER_BYTES + keyLength, valueLength)
+                .asReadOnlyBuffer();
+    }
+
+    /**
+     * Copies the pair stored in {@code entry} onto the heap.
+     *
+     * @param entry
+     *            offset of an entry
+     * @return the pair
+     */
+    private Pair<byte[], byte[]> readPair(long entry) {
+        int e = (int) entry;
+        byte[] key = new byte[this.buffer.getInt(e + KEY_LENGTH_FIELD)];
+        byte[] value = new byte[this.buffer.getInt(e + VALUE_LENGTH_FIELD)];
+        this.buffer.get(e + ENTRY_HEADER_BYTES, key);
+        this.buffer.get(e + ENTRY_HEADER_BYTES + key.length, value);
+        return new SimplePair<byte[], byte[]>(key, value);
+    }
+
+    /**
+     * Unlinks {@code entry} from the chain of bucket {@code b} and returns
+     * its pair.
+     *
+     * @param b
+     *            the bucket
+     * @param entry
+     *            offset of an entry in the chain of bucket b
+     * @return the pair removed
+     * @updates this
+     */
+    private Pair<byte[], byte[]> unlink(int b, long entry) {
+        Pair<byte[], byte[]> result = this.readPair(entry);
+        int bucket = this.bucketOffset(b);
+        long p = this.buffer.getLong(bucket);
+        if (p == entry) {
+            this.buffer.putLong(bucket, this.next(entry));
+        } else {
+            while (this.next(p) != entry) {
+                p = this.next(p);
+            }
+            this.buffer.putLong((int) p + NEXT_FIELD, this.next(entry));
+        }
+        this.buffer.putInt(SIZE_OFFSET, this.size() - 1);
+        return result;
+    }
+
+    /**
+     * Checks that {@code this} has not been closed.
+     */
+    private void assertOpen() {
+        assert this.buffer != null : "Violation of: this is not closed";
+    }
+
+    /*
+     * Constructors -----------------------------------------------------------
+     */
+
+    /**
+     * Constructor opening the map stored in {@code file}, creating an empty
+     * one if the file does not exist or is empty.
+     *
+     * @param file
+     *            the backing file
+     * @throws IOException
+     *             if the file cannot be opened or mapped, is not a
+     *             {@code MappedMap4} file, or was not flushed or closed
+     *             after its last change
+     * @ensures <pre>
+     * if [file held a MappedMap4]
+     * then this = [the map stored in file]
+     * else this = {}
+     * </pre>
+     */
+    public MappedMap4(Path file) throws IOException {
+        this.channel = FileChannel.open(file, StandardOpenOption.CREATE,
+                StandardOpenOption.READ, StandardOpenOption.WRITE);
+        long fileSize = this.channel.size();
+        if (fileSize == 0) {
+            this.map(MIN_MAPPING_BYTES);
+            this.createNewRep();
+        } else {
+            if (fileSize < HEADER_BYTES || fileSize > Integer.MAX_VALUE) {
+                this.channel.close();
+                throw new IOException("Not a MappedMap4 file: " + file);
+            }
+            this.map(fileSize);
+            if (this.buffer.getInt(MAGIC_OFFSET) != MAGIC
+                    || this.buffer.getInt(VERSION_OFFSET) != VERSION) {
+                this.buffer = null;
+                this.channel.close();
+                throw new IOException("Not a MappedMap4 file: " + file);
+            }
+            if (this.buffer.getInt(STATE_OFFSET) != CLEAN) {
+                this.buffer = null;
+                this.channel.close();
+                throw new IOException(
+                        "MappedMap4 file was not closed cleanly: " + file);
+            }
+            this.dirty = false;
+            this.firstCandidate = 0;
+        }
+    }
+
+    /*
+     * Methods ----------------------------------------------------------------
+     */
+
+    /**
+     * Resets {@code this} to an initial value. The file is rewritten from the
+     * start but not truncated.
+     *
+     * @clears this
+     */
+    public final void clear() {
+        this.assertOpen();
+
+        this.createNewRep();
+    }
+
+    /**
+     * Forces all changes to {@code this} to the storage device holding the
+     * backing file and marks the file clean, so that it can be reopened
+     * should the process die before the next change.
+     */
+    public final void flush() {
+        this.assertOpen();
+
+        this.markClean();
+    }
+
+    /**
+     * Flushes {@code this} and closes the backing file. No other method may be
+     * called afterwards.
+     *
+     * @throws IOException
+     *             if the file cannot be closed
+     */
+    @Override
+    public final void close() throws IOException {
+        if (this.buffer != null) {
+            this.markClean();
+            this.buffer = null;
+            this.channel.close();
+        }
+    }
+
+    /**
+     * Adds the pair ({@code key}, {@code value}) to this. The bytes of both
+     * are copied into the file.
+     *
+     * @param key
+     *            the key to be added
+     * @param value
+     *            the associated value to be added
+     * @updates this
+     * @requires key is not in DOMAIN(this)
+     * @ensures this = #this union {(key, value)}
+     */
+    public final void add(byte[] key, byte[] value) {
+        this.assertOpen();
+        assert key != null : "Violation of: key is not null";
+        assert value != null : "Violation of: value is not null";
+        assert !this.hasKey(key) : "Violation of: key is not in DOMAIN(this)";
+
+        this.markDirty();
+        int length = ENTRY_HEADER_BYTES + key.length + value.length;
+        this.ensureRoom(length);
+        int entry = (int) this.end();
+        this.buffer.putInt(entry + HASH_FIELD, Arrays.hashCode(key));
+        this.buffer.putInt(entry + KEY_LENGTH_FIELD, key.length);
+        this.buffer.putInt(entry + VALUE_LENGTH_FIELD, value.length);
+        this.buffer.put(entry + ENTRY_HEADER_BYTES, key);
+        this.buffer.put(entry + ENTRY_HEADER_BYTES + key.length, value);
+        this.buffer.putLong(END_OFFSET, (long) entry + length);
+        this.link(entry);
+        int size = this.size() + 1;
+        this.buffer.putInt(SIZE_OFFSET, size);
+        int bucketCount = this.bucketCount();
+        if (size > MAX_LOAD_FACTOR * bucketCount) {
+            this.rehash(2 * bucketCount + 1);
+        }
+    }
+
+    /**
+     * Removes the pair whose first component is {@code key} and returns it.
+     *
+     * @param key
+     *            the key to be removed
+     * @return the pair removed
+     * @updates this
+     * @requires key is in DOMAIN(this)
+     * @ensures <pre>
+     * remove.key = key  and
+     * remove is in #this  and
+     * this = #this \ {remove}
+     * </pre>
+     */
+    public final Pair<byte[], byte[]> remove(byte[] key) {
+        this.assertOpen();
+        assert key != null : "Violation of: key is not null";
+        long entry = this.find(key);
+        assert entry != NONE : "Violation of: key is in DOMAIN(this)";
+
+        this.markDirty();
+        int b = mod(this.buffer.getInt((int) entry + HASH_FIELD),
+                this.bucketCount());
+        return this.unlink(b, entry);
+    }
+
+    /**
+     * Removes and returns an arbitrary pair from {@code this}.
+     *
+     * @return the pair removed from this
+     * @updates this
+     * @requires |this| > 0
+     * @ensures <pre>
+     * removeAny is in #this  and
+     * this = #this \ {removeAny}
+     * </pre>
+     */
+    public final Pair<byte[], byte[]> removeAny() {
+        this.assertOpen();
+        assert this.size() > 0 : "Violation of: this /= empty_set";
+
+        this.markDirty();
+        int b = this.firstCandidate;
+        while (this.head(b) == NONE) {
+            b++;
+        }
+        this.firstCandidate = b;
+        return this.unlink(b, this.head(b));
+    }
+
+    /**
+     * Reports (a copy of) the value associated with {@code key} in
+     * {@code this}.
+     *
+     * @param key
+     *            the key whose associated value is to be reported
+     * @return the value associated with key
+     * @requires key is in DOMAIN(this)
+     * @ensures (key, value) is in this
+     */
+    public final byte[] value(byte[] key) {
+        ByteBuffer view = this.valueBuffer(key);
+        byte[] value = new byte[view.remaining()];
+        view.get(value);
+        return value;
+    }
+
+    /**
+     * Reports the value associated with {@code key} in {@code this} as a
+     * read-only view of the mapped file, without copying it. The view is
+     * valid until {@code this} is next changed.
+     *
+     * @param key
+     *            the key whose associated value is to be reported
+     * @return a view of the value associated with key
+     * @requires key is in DOMAIN(this)
+     * @ensures [the remaining bytes of valueBuffer are the value associated
+     *          with key]
+     */
+    public final ByteBuffer valueBuffer(byte[] key) {
+        this.assertOpen();
+        assert key != null : "Violation of: key is not null";
+        long entry = this.find(key);
+        assert entry != NONE : "Violation of: key is in DOMAIN(this)";
+
+        return this.valueView(entry);
+    }
+
+    /**
+     * Reports whether there is a pair in {@code this} whose first component is
+     * {@code key}.
+     *
+     * @param key
+     *            the key to be checked
+     * @return true iff there is a pair in this whose first component is key
+     * @ensures hasKey = (key is in DOMAIN(this))
+     */
+    public final boolean hasKey(byte[] key) {
+        this.assertOpen();
+        assert key != null : "Violation of: key is not null";
+
+        return this.find(key) != NONE;
+    }
+
+    /**
+     * Reports the size of {@code this}.
+     *
+     * @return the number of pairs in this
+     * @ensures size = |this|
+     */
+    public final int size() {
+        this.assertOpen();
+
+        return this.buffer.getInt(SIZE_OFFSET);
+    }
+
+    @Override
+    public final Iterator<Pair<byte[], byte[]>> iterator() {
+        this.assertOpen();
+
+        return new MappedMap4Iterator();
+    }
+
+    /**
+     * Implementation of {@code Iterator} interface for {@code MappedMap4}.
+     */
+    private final class MappedMap4Iterator
+            implements Iterator<Pair<byte[], byte[]>> {
+
+        /**
+         * Number of elements seen already (i.e., |~this.seen|).
+         */
+        private int numberSeen;
+
+        /**
+         * Bucket whose chain holds the next element.
+         */
+        private int currentBucket;
+
+        /**
+         * Offset of the next element in the chain of {@code currentBucket},
+         * or {@code NONE}.
+         */
+        private long nextEntry;
+
+        /**
+         * No-argument constructor.
+         */
+        MappedMap4Iterator() {
+            this.numberSeen = 0;
+            this.currentBucket = 0;
+            this.nextEntry = MappedMap4.this.head(0);
+        }
+
+        @Override
+        public boolean hasNext() {
+            return this.numberSeen < MappedMap4.this.size();
+        }
+
+        @Override
+        public Pair<byte[], byte[]> next() {
+            assert this.hasNext() : "Violation of: ~this.unseen /= <>";
+            if (!this.hasNext()) {
+                /*
+                 * Exception is supposed to be thrown in this case, but with
+                 * assertion-checking enabled it cannot happen because of assert
+                 * above.
+                 */
+                throw new NoSuchElementException();
+            }
+            this.numberSeen++;
+            while (this.nextEntry == NONE) {
+                this.currentBucket++;
+                this.nextEntry = MappedMap4.this.head(this.currentBucket);
+            }
+            long entry = this.nextEntry;
+            this.nextEntry = MappedMap4.this.next(entry);
+            return MappedMap4.this.readPair(entry);
+        }
+
+        @Override
+        public void remove() {
+            throw new UnsupportedOperationException(
+                    "remove operation not supported");
+        }
+
+    }
+
+}
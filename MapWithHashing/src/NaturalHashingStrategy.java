@@ -0,0 +1,37 @@
+/**
+ * The strategy of {@code hashCode} and {@code equals}, returned by
+ * {@code HashingStrategy.natural()}.
+ *
+ * @author Jackson Jiang
+ * @author Jimmy Yuan
+ *
+ */
+final class NaturalHashingStrategy implements HashingStrategy<Object> {
+
+    /**
+     * The only instance.
+     */
+    static final NaturalHashingStrategy INSTANCE = new NaturalHashingStrategy();
+
+    /**
+     * Private constructor so no other instances can be created.
+     */
+    private NaturalHashingStrategy() {
+    }
+
+    @Override
+    public int hash(Object key) {
+        return key.hashCode();
+    }
+
+    @Override
+    public boolean equivalent(Object a, Object b) {
+        return a.equals(b);
+    }
+
+    @Override
+    public boolean isNatural() {
+        return true;
+    }
+
+}
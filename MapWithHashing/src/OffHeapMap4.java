@@ -0,0 +1,857 @@
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Iterator;
+import java.util.List;
+import java.util.NoSuchElementException;
+
+import components.map.Map.Pair;
+
+/**
+ * Map from {@code byte[]} keys to {@code byte[]} values whose entries are
+ * stored outside the Java heap, so that the garbage collector sees only a
+ * handful of buffer objects however many entries there are.
+ *
+ * <p>
+ * Entries are appended to direct {@code ByteBuffer} slabs as a key length, a
+ * value length, the key bytes and the value bytes. The hash index is itself
+ * held in direct buffers: an open-addressing table with linear probing whose
+ * slots hold the location of an entry and the hash of its key. The slots are
+ * split into segments of at most {@code 2^20} slots, one buffer each, so no
+ * single buffer comes near the 2 GiB limit of a {@code ByteBuffer}; the index
+ * has at most {@code MAX_CAPACITY = 2^30} slots, so a map holds at most
+ * {@code 2^29} pairs. Removing an entry leaves its bytes dead in its slab;
+ * once dead bytes outweigh live ones, the live entries are copied, slab to
+ * slab, into fresh slabs. Keys and values are copied in on {@code add} and
+ * copied out by {@code value}, {@code remove}, {@code removeAny} and
+ * iteration, and are compared by content.
+ *
+ * <p>
+ * {@code close} drops every buffer, but Java 17 offers no supported way to
+ * free a direct buffer on demand: the native memory is returned only when the
+ * garbage collector finds the buffer objects unreachable and runs their
+ * cleaners, which may be much later. No other method may be called on a
+ * closed map.
+ *
+ * @convention <pre>
+ * $this.slabs /= null  and  $this.index /= null  and
+ * $this.indexCapacity is a power of two  and
+ * $this.indexCapacity <= MAX_CAPACITY  and
+ * [$this.index holds max(1, $this.indexCapacity / INDEX_SEGMENT_SLOTS)
+ *  buffers of min($this.indexCapacity, INDEX_SEGMENT_SLOTS)
+ *  * INDEX_SLOT_BYTES bytes each, slot i being in buffer
+ *  i / INDEX_SEGMENT_SLOTS]  and
+ * $this.size = [number of occupied index slots]  and
+ * 2 * $this.size <= $this.indexCapacity  and
+ * [every occupied index slot refers to a live entry in $this.slabs whose
+ *  key has the hash stored in the slot, and no two refer to entries with
+ *  equal keys]  and
+ * [every slot from the home slot of an occupied slot's hash cyclically up
+ *  to that slot is occupied]  and
+ * $this.liveBytes = [total bytes of live entries]  and
+ * $this.deadBytes = [total bytes of removed entries still in $this.slabs]
+ * </pre>
+ * @correspondence <pre>
+ * this = {(k, v): (byte[], byte[])
+ *   where ([some occupied index slot refers to an entry with key bytes k
+ *           and value bytes v])}
+ * </pre>
+ *
+ * @author Jackson Jiang
+ * @author Jimmy Yuan
+ *
+ */
+public class OffHeapMap4 implements Iterable<Pair<byte[], byte[]>>,
+        AutoCloseable {
+
+    /*
+     * Private members --------------------------------------------------------
+     */
+
+    /**
+     * Default number of bytes in a slab.
+     */
+    private static final int DEFAULT_SLAB_SIZE = 1 << 20;
+
+    /**
+     * Initial number of index slots.
+     */
+    private static final int INITIAL_INDEX_CAPACITY = 16;
+
+    /**
+     * Bytes in an index slot: an entry reference and a hash.
+     */
+    private static final int INDEX_SLOT_BYTES = Long.BYTES + Integer.BYTES;
+
+    /**
+     * Base-2 logarithm of the largest number of index slots in one buffer.
+     */
+    private static final int INDEX_SEGMENT_BITS = 20;
+
+    /**
+     * Largest number of index slots in one buffer.
+     */
+    private static final int INDEX_SEGMENT_SLOTS = 1 << INDEX_SEGMENT_BITS;
+
+    /**
+     * Largest number of index slots.
+     */
+    private static final int MAX_CAPACITY = 1 << 30;
+
+    /**
+     * Bytes in an entry header: the key length and the value length.
+     */
+    private static final int HEADER_BYTES = 2 * Integer.BYTES;
+
+    /**
+     * Fibonacci hashing multiplier (2^32 divided by the golden ratio).
+     */
+    private static final int HASH_MULTIPLIER = 0x9E3779B9;
+
+    /**
+     * Number of bits in an {@code int}.
+     */
+    private static final int INT_BITS = 32;
+
+    /**
+     * Mask of the low 32 bits of a {@code long}.
+     */
+    private static final long LOW_BITS = 0xFFFFFFFFL;
+
+    /**
+     * Number of bytes in each slab (larger entries get a slab of their own).
+     */
+    private final int slabSize;
+
+    /**
+     * Slabs holding entries; new entries are appended to the last one.
+     */
+    private List<ByteBuffer> slabs;
+
+    /**
+     * Hash index: {@code indexCapacity} slots in segments of at most
+     * {@code INDEX_SEGMENT_SLOTS}, each slot holding an entry reference (0 if
+     * the slot is empty) followed by the hash of its key.
+     */
+    private ByteBuffer[] index;
+
+    /**
+     * Number of slots in {@code index}.
+     */
+    private int indexCapacity;
+
+    /**
+     * Shift that maps a multiplied hash to an index slot.
+     */
+    private int shift;
+
+    /**
+     * Total size of abstract {@code this}.
+     */
+    private int size;
+
+    /**
+     * Bytes of slab space used by live entries.
+     */
+    private long liveBytes;
+
+    /**
+     * Bytes of slab space used by removed entries.
+     */
+    private long deadBytes;
+
+    /**
+     * Every index slot before this one is empty; {@code removeAny} starts its
+     * scan here.
+     */
+    private int firstCandidate;
+
+    /**
+     * Computes the hash of the bytes of {@code key}.
+     *
+     * @param key
+     *            the key
+     * @return the hash of key
+     */
+    private static int hash(byte[] key) {
+        return Arrays.hashCode(key) * HASH_MULTIPLIER;
+    }
+
+    /**
+     * Returns a reference to the entry at {@code offset} in slab {@code slab}.
+     * References are never 0.
+     *
+     * @param slab
+     *            the slab number
+     * @param offset
+     *            the offset in the slab
+     * @return the reference
+     */
+    private static long reference(int slab, int offset) {
+        return ((long) (slab + 1) << INT_BITS) | offset;
+    }
+
+    /**
+     * Creator of initial representation.
+     *
+     * @ensures this = {}
+     */
+    private void createNewRep() {
+        this.slabs = new ArrayList<ByteBuffer>();
+        this.slabs.add(ByteBuffer.allocateDirect(this.slabSize));
+        this.createIndex(INITIAL_INDEX_CAPACITY);
+        this.size = 0;
+        this.liveBytes = 0;
+        this.deadBytes = 0;
+    }
+
+    /**
+     * Replaces the index with an empty one of {@code capacity} slots.
+     *
+     * @param capacity
+     *            the number of slots
+     * @requires <pre>
+     * capacity is a power of two  and  1 < capacity <= MAX_CAPACITY
+     * </pre>
+     * @ensures [$this.index is empty with capacity slots]
+     */
+    private void createIndex(int capacity) {
+        int segmentSlots = Math.min(capacity, INDEX_SEGMENT_SLOTS);
+        this.index = new ByteBuffer[capacity / segmentSlots];
+        for (int i = 0; i < this.index.length; i++) {
+            this.index[i] = ByteBuffer
+                    .allocateDirect(segmentSlots * INDEX_SLOT_BYTES);
+        }
+        this.indexCapacity = capacity;
+        this.shift = INT_BITS - Integer.numberOfTrailingZeros(capacity);
+        this.firstCandidate = capacity;
+    }
+
+    /**
+     * Returns the byte offset of index slot {@code slot} in its segment.
+     *
+     * @param slot
+     *            the slot
+     * @return the offset of slot in index[slot >> INDEX_SEGMENT_BITS]
+     */
+    private static int slotOffset(int slot) {
+        return (slot & (INDEX_SEGMENT_SLOTS - 1)) * INDEX_SLOT_BYTES;
+    }
+
+    /**
+     * Returns the entry reference in slot {@code slot} of {@code index}.
+     *
+     * @param index
+     *            the segments of the index
+     * @param slot
+     *            the slot
+     * @return the reference, or 0 if the slot is empty
+     */
+    private static long refAt(ByteBuffer[] index, int slot) {
+        return index[slot >>> INDEX_SEGMENT_BITS].getLong(slotOffset(slot));
+    }
+
+    /**
+     * Returns the hash stored in slot {@code slot} of {@code index}.
+     *
+     * @param index
+     *            the segments of the index
+     * @param slot
+     *            the slot
+     * @return the hash
+     */
+    private static int hashAt(ByteBuffer[] index, int slot) {
+        return index[slot >>> INDEX_SEGMENT_BITS]
+                .getInt(slotOffset(slot) + Long.BYTES);
+    }
+
+    /**
+     * Returns the entry reference in index slot {@code slot}.
+     *
+     * @param slot
+     *            the slot
+     * @return the reference, or 0 if the slot is empty
+     */
+    private long refAt(int slot) {
+        return refAt(this.index, slot);
+    }
+
+    /**
+     * Returns the hash stored in index slot {@code slot}.
+     *
+     * @param slot
+     *            the slot
+     * @return the hash
+     */
+    private int hashAt(int slot) {
+        return hashAt(this.index, slot);
+    }
+
+    /**
+     * Stores {@code ref} and {@code hash} in index slot {@code slot}.
+     *
+     * @param slot
+     *            the slot
+     * @param ref
+     *            the entry reference
+     * @param hash
+     *            the hash
+     * @updates $this.index
+     */
+    private void setSlot(int slot, long ref, int hash) {
+        ByteBuffer segment = this.index[slot >>> INDEX_SEGMENT_BITS];
+        int offset = slotOffset(slot);
+        segment.putLong(offset, ref);
+        segment.putInt(offset + Long.BYTES, hash);
+    }
+
+    /**
+     * Returns the index slot at which the probe sequence for {@code hash}
+     * starts.
+     *
+     * @param hash
+     *            the hash
+     * @return the home slot
+     */
+    private int home(int hash) {
+        return hash >>> this.shift;
+    }
+
+    /**
+     * Returns the slab holding the entry {@code ref}.
+     *
+     * @param ref
+     *            the entry reference
+     * @return the slab
+     */
+    private ByteBuffer slabOf(long ref) {
+        return this.slabs.get((int) (ref >>> INT_BITS) - 1);
+    }
+
+    /**
+     * Returns the total number of slab bytes used by the entry {@code ref}.
+     *
+     * @param ref
+     *            the entry reference
+     * @return the length of the entry
+     */
+    private int entryLength(long ref) {
+        ByteBuffer slab = this.slabOf(ref);
+        int offset = (int) (ref & LOW_BITS);
+        return HEADER_BYTES + slab.getInt(offset)
+                + slab.getInt(offset + Integer.BYTES);
+    }
+
+    /**
+     * Reports whether the key of entry {@code ref} has the same bytes as
+     * {@code key}.
+     *
+     * @param ref
+     *            the entry reference
+     * @param key
+     *            the key
+     * @return true iff the keys are equal
+     */
+    private boolean keyEquals(long ref, byte[] key) {
+        ByteBuffer slab = this.slabOf(ref);
+        int offset = (int) (ref & LOW_BITS);
+        if (slab.getInt(offset) != key.length) {
+            return false;
+        }
+        int start = offset + HEADER_BYTES;
+        for (int i = 0; i < key.length; i++) {
+            if (slab.get(start + i) != key[i]) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * Copies the key of entry {@code ref} onto the heap.
+     *
+     * @param ref
+     *            the entry reference
+     * @return the key bytes
+     */
+    private byte[] readKey(long ref) {
+        ByteBuffer slab = this.slabOf(ref);
+        int offset = (int) (ref & LOW_BITS);
+        byte[] key = new byte[slab.getInt(offset)];
+        slab.get(offset + HEADER_BYTES, key);
+        return key;
+    }
+
+    /**
+     * Copies the value of entry {@code ref} onto the heap.
+     *
+     * @param ref
+     *            the entry reference
+     * @return the value bytes
+     */
+    private byte[] readValue(long ref) {
+        ByteBuffer slab = this.slabOf(ref);
+        int offset = (int) (ref & LOW_BITS);
+        int keyLength = slab.getInt(offset);
+        byte[] value = new byte[slab.getInt(offset + Integer.BYTES)];
+        slab.get(offset + HEADER_BYTES + keyLength, value);
+        return value;
+    }
+
+    /**
+     * Returns the slab to append an entry of {@code length} bytes to,
+     * starting a new slab if the last one is too full.
+     *
+     * @param length
+     *            the number of bytes of the entry
+     * @return the last slab, with at least length bytes remaining
+     * @updates $this.slabs
+     */
+    private ByteBuffer slabFor(int length) {
+        ByteBuffer slab = this.slabs.get(this.slabs.size() - 1);
+        if (slab.remaining() < length) {
+            slab = ByteBuffer.allocateDirect(Math.max(this.slabSize, length));
+            this.slabs.add(slab);
+        }
+        return slab;
+    }
+
+    /**
+     * Appends an entry to the slabs.
+     *
+     * @param key
+     *            the key bytes
+     * @param value
+     *            the value bytes
+     * @return the reference of the new entry
+     * @updates $this.slabs
+     */
+    private long append(byte[] key, byte[] value) {
+        int length = HEADER_BYTES + key.length + value.length;
+        ByteBuffer slab = this.slabFor(length);
+        int offset = slab.position();
+        slab.putInt(key.length);
+        slab.putInt(value.length);
+        slab.put(key);
+        slab.put(value);
+        return reference(this.slabs.size() - 1, offset);
+    }
+
+    /**
+     * Appends a copy of the {@code length} bytes of an entry at
+     * {@code offset} in {@code source} to the slabs, without copying them
+     * onto the heap.
+     *
+     * @param source
+     *            the slab holding the entry
+     * @param offset
+     *            the offset of the entry in source
+     * @param length
+     *            the length of the entry
+     * @return the reference of the copy
+     * @updates $this.slabs
+     */
+    private long appendCopy(ByteBuffer source, int offset, int length) {
+        ByteBuffer slab = this.slabFor(length);
+        int position = slab.position();
+        slab.put(position, source, offset, length);
+        slab.position(position + length);
+        return reference(this.slabs.size() - 1, position);
+    }
+
+    /**
+     * Returns the index slot referring to {@code key}, or -1 if there is none.
+     *
+     * @param key
+     *            the key
+     * @param hash
+     *            the hash of key
+     * @return the slot of key, or -1
+     */
+    private int find(byte[] key, int hash) {
+        int mask = this.indexCapacity - 1;
+        int slot = this.home(hash);
+        long ref = this.refAt(slot);
+        while (ref != 0) {
+            if (this.hashAt(slot) == hash && this.keyEquals(ref, key)) {
+                return slot;
+            }
+            slot = (slot + 1) & mask;
+            ref = this.refAt(slot);
+        }
+        return -1;
+    }
+
+    /**
+     * Stores {@code ref} and {@code hash} in the first empty index slot of the
+     * probe sequence for {@code hash}.
+     *
+     * @param ref
+     *            the entry reference
+     * @param hash
+     *            the hash of its key
+     * @updates $this.index, $this.firstCandidate
+     * @requires [the index has an empty slot]
+     */
+    private void insert(long ref, int hash) {
+        int mask = this.indexCapacity - 1;
+        int slot = this.home(hash);
+        while (this.refAt(slot) != 0) {
+            slot = (slot + 1) & mask;
+        }
+        this.setSlot(slot, ref, hash);
+        if (slot < this.firstCandidate) {
+            this.firstCandidate = slot;
+        }
+    }
+
+    /**
+     * Empties index slot {@code slot}, shifting later slots of the same probe
+     * run back so that no tombstone is needed.
+     *
+     * @param slot
+     *            the slot to empty
+     * @updates $this.index
+     * @requires [slot is occupied]
+     */
+    private void deleteSlot(int slot) {
+        int mask = this.indexCapacity - 1;
+        int hole = slot;
+        int i = (hole + 1) & mask;
+        long ref = this.refAt(i);
+        while (ref != 0) {
+            int hash = this.hashAt(i);
+            int home = this.home(hash);
+            if (((i - home) & mask) >= ((i - hole) & mask)) {
+                this.setSlot(hole, ref, hash);
+                hole = i;
+            }
+            i = (i + 1) & mask;
+            ref = this.refAt(i);
+        }
+        this.setSlot(hole, 0, 0);
+    }
+
+    /**
+     * Doubles the number of index slots, reinserting every slot using its
+     * stored hash; no key is read.
+     *
+     * @updates $this.index, $this.indexCapacity, $this.shift
+     * @requires $this.indexCapacity < MAX_CAPACITY
+     * @ensures this = #this
+     */
+    private void growIndex() {
+        ByteBuffer[] oldIndex = this.index;
+        int oldCapacity = this.indexCapacity;
+        this.createIndex(2 * oldCapacity);
+        for (int slot = 0; slot < oldCapacity; slot++) {
+            long ref = refAt(oldIndex, slot);
+            if (ref != 0) {
+                this.insert(ref, hashAt(oldIndex, slot));
+            }
+        }
+    }
+
+    /**
+     * Removes the entry in index slot {@code slot}, compacting the slabs if
+     * removed entries now take more space than live ones.
+     *
+     * @param slot
+     *            the slot
+     * @return the removed entry
+     * @updates this
+     * @requires [slot is occupied]
+     */
+    private Pair<byte[], byte[]> removeSlot(int slot) {
+        long ref = this.refAt(slot);
+        Pair<byte[], byte[]> result = new SimplePair<byte[], byte[]>(
+                this.readKey(ref), this.readValue(ref));
+        int length = this.entryLength(ref);
+        this.liveBytes -= length;
+        this.deadBytes += length;
+        this.deleteSlot(slot);
+        this.size--;
+        if (this.deadBytes > this.liveBytes
+                && this.deadBytes > this.slabSize) {
+            this.compact();
+        }
+        return result;
+    }
+
+    /**
+     * Copies every live entry into fresh slabs, buffer to buffer, and updates
+     * the index to refer to the copies.
+     *
+     * @updates $this.slabs, $this.index
+     * @ensures this = #this  and  $this.deadBytes = 0
+     */
+    private void compact() {
+        List<ByteBuffer> oldSlabs = this.slabs;
+        this.slabs = new ArrayList<ByteBuffer>();
+        this.slabs.add(ByteBuffer.allocateDirect(this.slabSize));
+        for (int slot = 0; slot < this.indexCapacity; slot++) {
+            long ref = this.refAt(slot);
+            if (ref != 0) {
+                ByteBuffer oldSlab = oldSlabs.get((int) (ref >>> INT_BITS) - 1);
+                int offset = (int) (ref & LOW_BITS);
+                int length = HEADER_BYTES + oldSlab.getInt(offset)
+                        + oldSlab.getInt(offset + Integer.BYTES);
+                this.setSlot(slot, this.appendCopy(oldSlab, offset, length),
+                        this.hashAt(slot));
+            }
+        }
+        this.deadBytes = 0;
+    }
+
+    /**
+     * Checks that {@code this} has not been closed.
+     */
+    private void assertOpen() {
+        assert this.index != null : "Violation of: this is not closed";
+    }
+
+    /*
+     * Constructors -----------------------------------------------------------
+     */
+
+    /**
+     * No-argument constructor.
+     */
+    public OffHeapMap4() {
+
+        this(DEFAULT_SLAB_SIZE);
+
+    }
+
+    /**
+     * Constructor resulting in entries being stored in slabs of
+     * {@code slabSize} bytes.
+     *
+     * @param slabSize
+     *            number of bytes in a slab
+     * @requires slabSize > 0
+     * @ensures this = {}
+     */
+    public OffHeapMap4(int slabSize) {
+        assert slabSize > 0 : "Violation of: slabSize > 0";
+
+        this.slabSize = slabSize;
+        this.createNewRep();
+
+    }
+
+    /*
+     * Methods ----------------------------------------------------------------
+     */
+
+    /**
+     * Resets {@code this} to an initial value.
+     *
+     * @clears this
+     */
+    public final void clear() {
+        this.assertOpen();
+
+        this.createNewRep();
+    }
+
+    /**
+     * Drops the buffers holding the entries of {@code this}. No other method
+     * may be called afterwards. Java 17 cannot free a direct buffer on
+     * demand, so the native memory is released only once the garbage
+     * collector has found the buffers unreachable and run their cleaners.
+     */
+    @Override
+    public final void close() {
+        this.slabs = null;
+        this.index = null;
+        this.size = 0;
+    }
+
+    /**
+     * Adds the pair ({@code key}, {@code value}) to this. The bytes of both
+     * are copied.
+     *
+     * @param key
+     *            the key to be added
+     * @param value
+     *            the associated value to be added
+     * @updates this
+     * @requires key is not in DOMAIN(this)  and  |this| < MAX_CAPACITY / 2
+     * @ensures this = #this union {(key, value)}
+     */
+    public final void add(byte[] key, byte[] value) {
+        this.assertOpen();
+        assert key != null : "Violation of: key is not null";
+        assert value != null : "Violation of: value is not null";
+        assert !this.hasKey(key) : "Violation of: key is not in DOMAIN(this)";
+        assert this.size < MAX_CAPACITY / 2
+                : "Violation of: |this| < MAX_CAPACITY / 2";
+
+        if (2 * (this.size + 1) > this.indexCapacity) {
+            this.growIndex();
+        }
+        long ref = this.append(key, value);
+        this.insert(ref, hash(key));
+        this.liveBytes += HEADER_BYTES + key.length + value.length;
+        this.size++;
+    }
+
+    /**
+     * Removes the pair whose first component is {@code key} and returns it.
+     *
+     * @param key
+     *            the key to be removed
+     * @return the pair removed
+     * @updates this
+     * @requires key is in DOMAIN(this)
+     * @ensures <pre>
+     * remove.key = key  and
+     * remove is in #this  and
+     * this = #this \ {remove}
+     * </pre>
+     */
+    public final Pair<byte[], byte[]> remove(byte[] key) {
+        this.assertOpen();
+        assert key != null : "Violation of: key is not null";
+        int slot = this.find(key, hash(key));
+        assert slot >= 0 : "Violation of: key is in DOMAIN(this)";
+
+        return this.removeSlot(slot);
+    }
+
+    /**
+     * Removes and returns an arbitrary pair from {@code this}.
+     *
+     * @return the pair removed from this
+     * @updates this
+     * @requires |this| > 0
+     * @ensures <pre>
+     * removeAny is in #this  and
+     * this = #this \ {removeAny}
+     * </pre>
+     */
+    public final Pair<byte[], byte[]> removeAny() {
+        this.assertOpen();
+        assert this.size > 0 : "Violation of: this /= empty_set";
+
+        int slot = this.firstCandidate;
+        while (this.refAt(slot) == 0) {
+            slot++;
+        }
+        this.firstCandidate = slot;
+        return this.removeSlot(slot);
+    }
+
+    /**
+     * Reports (a copy of) the value associated with {@code key} in
+     * {@code this}.
+     *
+     * @param key
+     *            the key whose associated value is to be reported
+     * @return the value associated with key
+     * @requires key is in DOMAIN(this)
+     * @ensures (key, value) is in this
+     */
+    public final byte[] value(byte[] key) {
+        this.assertOpen();
+        assert key != null : "Violation of: key is not null";
+        int slot = this.find(key, hash(key));
+        assert slot >= 0 : "Violation of: key is in DOMAIN(this)";
+
+        return this.readValue(this.refAt(slot));
+    }
+
+    /**
+     * Reports whether there is a pair in {@code this} whose first component is
+     * {@code key}.
+     *
+     * @param key
+     *            the key to be checked
+     * @return true iff there is a pair in this whose first component is key
+     * @ensures hasKey = (key is in DOMAIN(this))
+     */
+    public final boolean hasKey(byte[] key) {
+        this.assertOpen();
+        assert key != null : "Violation of: key is not null";
+
+        return this.find(key, hash(key)) >= 0;
+    }
+
+    /**
+     * Reports the size of {@code this}.
+     *
+     * @return the number of pairs in this
+     * @ensures size = |this|
+     */
+    public final int size() {
+        return this.size;
+    }
+
+    @Override
+    public final Iterator<Pair<byte[], byte[]>> iterator() {
+        this.assertOpen();
+
+        return new OffHeapMap4Iterator();
+    }
+
+    /**
+     * Implementation of {@code Iterator} interface for {@code OffHeapMap4}.
+     */
+    private final class OffHeapMap4Iterator
+            implements Iterator<Pair<byte[], byte[]>> {
+
+        /**
+         * Number of elements seen already (i.e., |~this.seen|).
+         */
+        private int numberSeen;
+
+        /**
+         * Index slot at which the search for the next element starts.
+         */
+        private int nextSlot;
+
+        /**
+         * No-argument constructor.
+         */
+        OffHeapMap4Iterator() {
+            this.numberSeen = 0;
+            this.nextSlot = 0;
+        }
+
+        @Override
+        public boolean hasNext() {
+            return this.numberSeen < OffHeapMap4.this.size;
+        }
+
+        @Override
+        public Pair<byte[], byte[]> next() {
+            assert this.hasNext() : "Violation of: ~this.unseen /= <>";
+            if (!this.hasNext()) {
+                /*
+                 * Exception is supposed to be thrown in this case, but with
+                 * assertion-checking enabled it cannot happen because of assert
+                 * above.
+                 */
+                throw new NoSuchElementException();
+            }
+            this.numberSeen++;
+            while (OffHeapMap4.this.refAt(this.nextSlot) == 0) {
+                this.nextSlot++;
+            }
+            long ref = OffHeapMap4.this.refAt(this.nextSlot);
+            this.nextSlot++;
+            return new SimplePair<byte[], byte[]>(
+                    OffHeapMap4.this.readKey(ref),
+                    OffHeapMap4.this.readValue(ref));
+        }
+
+        @Override
+        public void remove() {
+            throw new UnsupportedOperationException(
+                    "remove operation not supported");
+        }
+
+    }
+
+}
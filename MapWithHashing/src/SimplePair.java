@@ -0,0 +1,76 @@
+import components.map.Map.Pair;
+
+/**
+ * Immutable {@code Pair} used by the hash map implementations in this
+ * directory to report entries.
+ *
+ * @param <K>
+ *            type of {@code Pair} key
+ * @param <V>
+ *            type of {@code Pair} value
+ *
+ * @author Jackson Jiang
+ * @author Jimmy Yuan
+ *
+ */
+final class SimplePair<K, V> implements Pair<K, V> {
+
+    /**
+     * The key.
+     */
+    private final K key;
+
+    /**
+     * The value.
+     */
+    private final V value;
+
+    /**
+     * Constructor from key and value.
+     *
+     * @param key
+     *            the key
+     * @param value
+     *            the value
+     * @requires key /= null  and  value /= null
+     * @ensures this = (key, value)
+     */
+    SimplePair(K key, V value) {
+        this.key = key;
+        this.value = value;
+    }
+
+    @Override
+    public K key() {
+        return this.key;
+    }
+
+    @Override
+    public V value() {
+        return this.value;
+    }
+
+    @Override
+    public boolean equals(Object obj) {
+        if (obj == this) {
+            return true;
+        }
+        if (!(obj instanceof Pair<?, ?>)) {
+            return false;
+        }
+        Pair<?, ?> p = (Pair<?, ?>) obj;
+        return this.key.equals(p.key()) && this.value.equals(p.value());
+    }
+
+    @Override
+    public int hashCode() {
+        final int a = 37;
+        return a * this.key.hashCode() + this.value.hashCode();
+    }
+
+    @Override
+    public String toString() {
+        return "(" + this.key + "," + this.value + ")";
+    }
+
+}
@@ -0,0 +1,198 @@
+import java.io.EOFException;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.ReadableByteChannel;
+import java.nio.channels.WritableByteChannel;
+
+/**
+ * Buffered reading and writing of the {@code int}s and length-prefixed byte
+ * arrays that make up a {@code Map4} snapshot, so that a snapshot costs one
+ * channel call per buffer rather than per field. The channels must be in
+ * blocking mode.
+ *
+ * @author Jackson Jiang
+ * @author Jimmy Yuan
+ *
+ */
+final class SnapshotChannels {
+
+    /**
+     * Bytes buffered between channel calls.
+     */
+    private static final int BUFFER_BYTES = 1 << 16;
+
+    /**
+     * Private constructor so this utility class cannot be instantiated.
+     */
+    private SnapshotChannels() {
+    }
+
+    /**
+     * Buffered writer of snapshot fields to a channel.
+     */
+    static final class Writer {
+
+        /**
+         * The channel written to.
+         */
+        private final WritableByteChannel channel;
+
+        /**
+         * Bytes not yet written to the channel, between 0 and position.
+         */
+        private final ByteBuffer buffer = ByteBuffer.allocate(BUFFER_BYTES);
+
+        /**
+         * Constructor from the channel.
+         *
+         * @param channel
+         *            the channel to write to
+         */
+        Writer(WritableByteChannel channel) {
+            this.channel = channel;
+        }
+
+        /**
+         * Writes {@code x}.
+         *
+         * @param x
+         *            the int to write
+         * @throws IOException
+         *             if the channel cannot be written
+         */
+        void writeInt(int x) throws IOException {
+            if (this.buffer.remaining() < Integer.BYTES) {
+                this.flush();
+            }
+            this.buffer.putInt(x);
+        }
+
+        /**
+         * Writes the length of {@code bytes} followed by {@code bytes}.
+         * Arrays larger than the buffer go to the channel directly.
+         *
+         * @param bytes
+         *            the bytes to write
+         * @throws IOException
+         *             if the channel cannot be written
+         */
+        void writeBytes(byte[] bytes) throws IOException {
+            this.writeInt(bytes.length);
+            if (bytes.length > this.buffer.remaining()) {
+                this.flush();
+            }
+            if (bytes.length <= this.buffer.remaining()) {
+                this.buffer.put(bytes);
+            } else {
+                writeFully(this.channel, ByteBuffer.wrap(bytes));
+            }
+        }
+
+        /**
+         * Writes every buffered byte to the channel.
+         *
+         * @throws IOException
+         *             if the channel cannot be written
+         */
+        void flush() throws IOException {
+            this.buffer.flip();
+            writeFully(this.channel, this.buffer);
+            this.buffer.clear();
+        }
+
+    }
+
+    /**
+     * Buffered reader of snapshot fields from a channel. It may read past the
+     * end of the snapshot.
+     */
+    static final class Reader {
+
+        /**
+         * The channel read from.
+         */
+        private final ReadableByteChannel channel;
+
+        /**
+         * Bytes read from the channel but not yet consumed, between position
+         * and limit.
+         */
+        private final ByteBuffer buffer = ByteBuffer.allocate(BUFFER_BYTES);
+
+        /**
+         * Constructor from the channel.
+         *
+         * @param channel
+         *            the channel to read from
+         */
+        Reader(ReadableByteChannel channel) {
+            this.channel = channel;
+            this.buffer.flip();
+        }
+
+        /**
+         * Reads an {@code int}.
+         *
+         * @return the int read
+         * @throws IOException
+         *             if the channel cannot be read or ends first
+         */
+        int readInt() throws IOException {
+            if (this.buffer.remaining() < Integer.BYTES) {
+                this.buffer.compact();
+                while (this.buffer.position() < Integer.BYTES) {
+                    if (this.channel.read(this.buffer) < 0) {
+                        throw new EOFException("Truncated Map4 snapshot");
+                    }
+                }
+                this.buffer.flip();
+            }
+            return this.buffer.getInt();
+        }
+
+        /**
+         * Reads a length followed by that many bytes.
+         *
+         * @return the bytes read
+         * @throws IOException
+         *             if the channel cannot be read or ends first, or the
+         *             length is negative
+         */
+        byte[] readBytes() throws IOException {
+            int length = this.readInt();
+            if (length < 0) {
+                throw new IOException("Corrupt Map4 snapshot");
+            }
+            byte[] result = new byte[length];
+            int buffered = Math.min(length, this.buffer.remaining());
+            this.buffer.get(result, 0, buffered);
+            ByteBuffer rest = ByteBuffer.wrap(result, buffered,
+                    length - buffered);
+            while (rest.hasRemaining()) {
+                if (this.channel.read(rest) < 0) {
+                    throw new EOFException("Truncated Map4 snapshot");
+                }
+            }
+            return result;
+        }
+
+    }
+
+    /**
+     * Writes every remaining byte of {@code bytes} to {@code channel}.
+     *
+     * @param channel
+     *            the channel to write to
+     * @param bytes
+     *            the bytes to write
+     * @throws IOException
+     *             if the channel cannot be written
+     */
+    private static void writeFully(WritableByteChannel channel,
+            ByteBuffer bytes) throws IOException {
+        while (bytes.hasRemaining()) {
+            channel.write(bytes);
+        }
+    }
+
+}
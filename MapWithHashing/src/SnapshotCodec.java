@@ -0,0 +1,123 @@
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+
+/**
+ * Conversion of keys or values to and from bytes, used by
+ * {@code Map4.writeSnapshot} and {@code Map4.loadSnapshot}.
+ *
+ * @param <T>
+ *            type of the encoded objects
+ *
+ * @author Jackson Jiang
+ * @author Jimmy Yuan
+ *
+ */
+public interface SnapshotCodec<T> {
+
+    /**
+     * Returns the bytes of {@code x}.
+     *
+     * @param x
+     *            the object to encode
+     * @return the bytes of x
+     * @requires x /= null
+     * @ensures decode(encode) = x
+     */
+    byte[] encode(T x);
+
+    /**
+     * Returns the object whose bytes are {@code bytes}.
+     *
+     * @param bytes
+     *            the bytes to decode
+     * @return the object of bytes
+     * @requires [bytes were returned by encode]
+     * @ensures decode /= null
+     */
+    T decode(byte[] bytes);
+
+    /**
+     * Returns the codec of {@code byte[]} that uses the bytes themselves.
+     *
+     * @return the identity codec
+     */
+    static SnapshotCodec<byte[]> bytes() {
+        return new SnapshotCodec<byte[]>() {
+
+            @Override
+            public byte[] encode(byte[] x) {
+                return x;
+            }
+
+            @Override
+            public byte[] decode(byte[] bytes) {
+                return bytes;
+            }
+
+        };
+    }
+
+    /**
+     * Returns the codec of {@code String} as UTF-8.
+     *
+     * @return the UTF-8 codec
+     */
+    static SnapshotCodec<String> utf8() {
+        return new SnapshotCodec<String>() {
+
+            @Override
+            public byte[] encode(String x) {
+                return x.getBytes(StandardCharsets.UTF_8);
+            }
+
+            @Override
+            public String decode(byte[] bytes) {
+                return new String(bytes, StandardCharsets.UTF_8);
+            }
+
+        };
+    }
+
+    /**
+     * Returns the codec of {@code Integer} as four big-endian bytes.
+     *
+     * @return the Integer codec
+     */
+    static SnapshotCodec<Integer> integers() {
+        return new SnapshotCodec<Integer>() {
+
+            @Override
+            public byte[] encode(Integer x) {
+                return ByteBuffer.allocate(Integer.BYTES).putInt(x).array();
+            }
+
+            @Override
+            public Integer decode(byte[] bytes) {
+                return ByteBuffer.wrap(bytes).getInt();
+            }
+
+        };
+    }
+
+    /**
+     * Returns the codec of {@code Long} as eight big-endian bytes.
+     *
+     * @return the Long codec
+     */
+    static SnapshotCodec<Long> longs() {
+        return new SnapshotCodec<Long>() {
+
+            @Override
+            public byte[] encode(Long x) {
+                return ByteBuffer.allocate(Long.BYTES).putLong(x).array();
+            }
+
+            @Override
+            public Long decode(byte[] bytes) {
+                return ByteBuffer.wrap(bytes).getLong();
+            }
+
+        };
+    }
+
+}
@@ -0,0 +1,789 @@
+import java.util.Iterator;
+import java.util.NoSuchElementException;
+import java.util.function.ToIntBiFunction;
+
+import components.map.Map.Pair;
+
+/**
+ * Cache bounded by a total weight that decides what to keep with the
+ * W-TinyLFU policy, built on {@code Map4}.
+ *
+ * <p>
+ * New pairs enter a small LRU window holding about 1% of the maximum
+ * weight. A pair pushed out of the window becomes a candidate for the main
+ * region, which is a segmented LRU: pairs start in its probation segment and
+ * move to its protected segment, about 80% of the main region, when used
+ * again. When the cache is over its maximum weight, the candidate is
+ * compared with the least recently used pair of the probation segment, and
+ * the one a {@code FrequencySketch} of recent accesses rates less popular is
+ * evicted. Scans of keys used once therefore pass through the window without
+ * displacing popular pairs, while a key that becomes popular is soon
+ * admitted.
+ *
+ * <p>
+ * Each pair has a weight given by the weigher, for example its size in
+ * bytes, and the cache keeps the sum of the weights at or below the maximum
+ * weight. Hits, misses and evictions are counted. As in {@code LruCache4},
+ * each region is a circular doubly linked list threaded through the entries
+ * stored in the {@code Map4}, and each entry keeps the hash code of its key,
+ * so every operation hashes at most one key.
+ *
+ * @param <K>
+ *            type of keys
+ * @param <V>
+ *            type of values
+ * @convention <pre>
+ * $this.maximumWeight > 0  and
+ * [$this.windowMaximum is about 1% of $this.maximumWeight, and
+ *  $this.protectedMaximum about 80% of the rest]  and
+ * [the lists from the sentinels of $this.sentinels together visit exactly
+ *  the entries that are values of $this.map, each entry in the list of its
+ *  region]  and
+ * $this.weight = [sum of the weights of the entries]  and
+ * $this.windowWeight = [sum of the weights of the window entries]  and
+ * $this.protectedWeight = [sum of the weights of the protected entries]  and
+ * $this.weight <= $this.maximumWeight  and
+ * $this.protectedWeight <= $this.protectedMaximum  and
+ * for all (k, e) in $this.map
+ *   (e.key = k  and  e.hash = $this.map.hashOf(k)  and  e.weight >= 0)
+ * </pre>
+ * @correspondence <pre>
+ * this = {(k, v): (K, V) where ((k, e) is in $this.map  and  e.value = v)}
+ * </pre>
+ *
+ * @author Jackson Jiang
+ * @author Jimmy Yuan
+ *
+ */
+public class TinyLfuCache4<K, V> implements Iterable<Pair<K, V>> {
+
+    /*
+     * Private members --------------------------------------------------------
+     */
+
+    /**
+     * Percentage of the maximum weight given to the main region.
+     */
+    private static final int MAIN_PERCENT = 99;
+
+    /**
+     * Percentage of the main region given to the protected segment.
+     */
+    private static final int PROTECTED_PERCENT = 80;
+
+    /**
+     * Percent denominator.
+     */
+    private static final int PERCENT = 100;
+
+    /**
+     * Region of new entries.
+     */
+    private static final int WINDOW = 0;
+
+    /**
+     * Region of entries admitted to the main region but not used since.
+     */
+    private static final int PROBATION = 1;
+
+    /**
+     * Region of entries used again while in the main region.
+     */
+    private static final int PROTECTED = 2;
+
+    /**
+     * Entry of the cache and node of the list of its region.
+     *
+     * @param <K>
+     *            type of key
+     * @param <V>
+     *            type of value
+     */
+    private static final class Entry<K, V> {
+
+        /**
+         * The key, or {@code null} in a sentinel.
+         */
+        private final K key;
+
+        /**
+         * The hash code of {@code key} in the {@code Map4}.
+         */
+        private final int hash;
+
+        /**
+         * The value associated with {@code key}.
+         */
+        private V value;
+
+        /**
+         * The weight of the pair.
+         */
+        private int weight;
+
+        /**
+         * The region: {@code WINDOW}, {@code PROBATION} or {@code PROTECTED}.
+         */
+        private int region;
+
+        /**
+         * Next less recently used entry of the region, or the sentinel.
+         */
+        private Entry<K, V> before;
+
+        /**
+         * Next more recently used entry of the region, or the sentinel.
+         */
+        private Entry<K, V> after;
+
+        /**
+         * Constructor.
+         *
+         * @param key
+         *            the key
+         * @param hash
+         *            the hash code of key
+         * @param value
+         *            the value
+         * @param weight
+         *            the weight of the pair
+         */
+        Entry(K key, int hash, V value, int weight) {
+            this.key = key;
+            this.hash = hash;
+            this.value = value;
+            this.weight = weight;
+            this.before = this;
+            this.after = this;
+        }
+
+    }
+
+    /**
+     * Entries of the cache by key.
+     */
+    private final Map4<K, Entry<K, V>> map;
+
+    /**
+     * Estimated frequencies of recently accessed keys.
+     */
+    private final FrequencySketch sketch;
+
+    /**
+     * Weight of each pair.
+     */
+    private final ToIntBiFunction<? super K, ? super V> weigher;
+
+    /**
+     * Sentinels of the lists of the regions, indexed by region.
+     */
+    private final Entry<K, V>[] sentinels;
+
+    /**
+     * Maximum total weight.
+     */
+    private final long maximumWeight;
+
+    /**
+     * Weight of the window above which its entries become candidates.
+     */
+    private final long windowMaximum;
+
+    /**
+     * Maximum weight of the protected segment.
+     */
+    private final long protectedMaximum;
+
+    /**
+     * Total weight.
+     */
+    private long weight;
+
+    /**
+     * Weight of the window.
+     */
+    private long windowWeight;
+
+    /**
+     * Weight of the protected segment.
+     */
+    private long protectedWeight;
+
+    /**
+     * Number of lookups that found their key.
+     */
+    private long hitCount;
+
+    /**
+     * Number of lookups that did not find their key.
+     */
+    private long missCount;
+
+    /**
+     * Number of pairs evicted.
+     */
+    private long evictionCount;
+
+    /**
+     * Total weight of the pairs evicted.
+     */
+    private long evictionWeight;
+
+    /**
+     * Unlinks {@code e} from the list of its region.
+     *
+     * @param <K>
+     *            type of key
+     * @param <V>
+     *            type of value
+     * @param e
+     *            the entry
+     * @requires [e is in a list]
+     * @ensures [e is not in a list, the order of the others is unchanged]
+     */
+    private static <K, V> void unlink(Entry<K, V> e) {
+        e.before.after = e.after;
+        e.after.before = e.before;
+    }
+
+    /**
+     * Links {@code e} as the most recently used entry of region
+     * {@code region}, adjusting the weights of the regions.
+     *
+     * @param e
+     *            the entry
+     * @param region
+     *            the region
+     * @requires [e is not in a list]
+     * @ensures e.region = region  and  [e is the last entry of that list]
+     */
+    private void linkLast(Entry<K, V> e, int region) {
+        Entry<K, V> sentinel = this.sentinels[region];
+        e.region = region;
+        e.after = sentinel;
+        e.before = sentinel.before;
+        sentinel.before.after = e;
+        sentinel.before = e;
+        if (region == WINDOW) {
+            this.windowWeight += e.weight;
+        } else if (region == PROTECTED) {
+            this.protectedWeight += e.weight;
+        }
+    }
+
+    /**
+     * Unlinks {@code e} from the list of its region, adjusting the weights of
+     * the regions.
+     *
+     * @param e
+     *            the entry
+     * @requires [e is in a list]
+     */
+    private void detach(Entry<K, V> e) {
+        unlink(e);
+        if (e.region == WINDOW) {
+            this.windowWeight -= e.weight;
+        } else if (e.region == PROTECTED) {
+            this.protectedWeight -= e.weight;
+        }
+    }
+
+    /**
+     * Returns the least recently used entry of region {@code region}, or
+     * {@code null} if the region is empty.
+     *
+     * @param region
+     *            the region
+     * @return the first entry of the region, or null
+     */
+    private Entry<K, V> first(int region) {
+        Entry<K, V> sentinel = this.sentinels[region];
+        if (sentinel.after == sentinel) {
+            return null;
+        }
+        return sentinel.after;
+    }
+
+    /**
+     * Records a use of {@code e}: a window entry becomes the most recent of
+     * the window, and a main entry the most recent of the protected segment,
+     * demoting the least recent protected entries to probation while the
+     * protected segment is over its maximum.
+     *
+     * @param e
+     *            the entry used
+     * @updates this
+     */
+    private void onAccess(Entry<K, V> e) {
+        if (e.region == WINDOW) {
+            this.detach(e);
+            this.linkLast(e, WINDOW);
+        } else {
+            this.detach(e);
+            this.linkLast(e, PROTECTED);
+            while (this.protectedWeight > this.protectedMaximum) {
+                Entry<K, V> demoted = this.first(PROTECTED);
+                this.detach(demoted);
+                this.linkLast(demoted, PROBATION);
+            }
+        }
+    }
+
+    /**
+     * Removes {@code e} from its region and the map, counting it as evicted.
+     *
+     * @param e
+     *            the entry
+     * @updates this
+     */
+    private void evictEntry(Entry<K, V> e) {
+        this.detach(e);
+        this.map.removeValue(e.key, e.hash);
+        this.weight -= e.weight;
+        this.evictionCount++;
+        this.evictionWeight += e.weight;
+    }
+
+    /**
+     * Moves the least recent window entries to probation while the window
+     * is over its maximum, evicting at once any that alone weighs more than
+     * the maximum weight, then evicts until the cache is within its maximum
+     * weight. The entries moved by this call are the candidates, oldest
+     * first. Each eviction compares the oldest remaining candidate with the
+     * least recent probation entry, the victim, and evicts the one the
+     * sketch rates less frequent, the candidate on a tie. Once no candidate
+     * remains, the victim is evicted.
+     *
+     * @updates this
+     * @ensures $this.weight <= $this.maximumWeight
+     */
+    private void evict() {
+        Entry<K, V> candidate = null;
+        int candidates = 0;
+        while (this.windowWeight > this.windowMaximum) {
+            Entry<K, V> e = this.first(WINDOW);
+            if (e.weight > this.maximumWeight) {
+                this.evictEntry(e);
+            } else {
+                this.detach(e);
+                this.linkLast(e, PROBATION);
+                if (candidate == null) {
+                    candidate = e;
+                }
+                candidates++;
+            }
+        }
+        /*
+         * The candidates stay the last entries of probation: only the oldest
+         * candidate and the first probation entry are ever evicted.
+         */
+        while (this.weight > this.maximumWeight) {
+            Entry<K, V> victim = this.first(PROBATION);
+            if (candidates == 0) {
+                if (victim == null) {
+                    victim = this.first(PROTECTED);
+                    if (victim == null) {
+                        victim = this.first(WINDOW);
+                    }
+                }
+                this.evictEntry(victim);
+            } else if (candidate == victim
+                    || this.sketch.frequency(candidate.hash) <= this.sketch
+                            .frequency(victim.hash)) {
+                Entry<K, V> next = candidate.after;
+                this.evictEntry(candidate);
+                candidates--;
+                candidate = next;
+            } else {
+                this.evictEntry(victim);
+            }
+        }
+    }
+
+    /**
+     * Reports the weight of ({@code key}, {@code value}).
+     *
+     * @param key
+     *            the key
+     * @param value
+     *            the value
+     * @return the weight of the pair
+     * @ensures weigh >= 0
+     */
+    private int weigh(K key, V value) {
+        int result = this.weigher.applyAsInt(key, value);
+        assert result >= 0 : "Violation of: weigher reports weights >= 0";
+        return result;
+    }
+
+    /*
+     * Constructors -----------------------------------------------------------
+     */
+
+    /**
+     * Constructor resulting in an empty cache of at most {@code maximumSize}
+     * pairs.
+     *
+     * @param maximumSize
+     *            the maximum number of pairs
+     * @requires maximumSize > 0
+     * @ensures this = {}
+     */
+    public TinyLfuCache4(long maximumSize) {
+        this(maximumSize, (k, v) -> 1, HashingStrategy.natural());
+    }
+
+    /**
+     * Constructor resulting in an empty cache whose pairs weigh at most
+     * {@code maximumWeight} in total, each weighing what {@code weigher}
+     * reports for it when it is put.
+     *
+     * @param maximumWeight
+     *            the maximum total weight
+     * @param weigher
+     *            the weight of each pair
+     * @requires maximumWeight > 0  and  [weigher reports weights >= 0]
+     * @ensures this = {}
+     */
+    public TinyLfuCache4(long maximumWeight,
+            ToIntBiFunction<? super K, ? super V> weigher) {
+        this(maximumWeight, weigher, HashingStrategy.natural());
+    }
+
+    /**
+     * Constructor resulting in an empty cache whose pairs weigh at most
+     * {@code maximumWeight} in total and whose keys are hashed and compared
+     * by {@code strategy}.
+     *
+     * @param maximumWeight
+     *            the maximum total weight
+     * @param weigher
+     *            the weight of each pair
+     * @param strategy
+     *            hash function and equivalence of keys
+     * @requires maximumWeight > 0  and  [weigher reports weights >= 0]
+     * @ensures this = {}
+     */
+    @SuppressWarnings("unchecked")
+    public TinyLfuCache4(long maximumWeight,
+            ToIntBiFunction<? super K, ? super V> weigher,
+            HashingStrategy<? super K> strategy) {
+        assert maximumWeight > 0 : "Violation of: maximumWeight > 0";
+        assert weigher != null : "Violation of: weigher is not null";
+        assert strategy != null : "Violation of: strategy is not null";
+
+        long mainMaximum = maximumWeight / PERCENT * MAIN_PERCENT
+                + maximumWeight % PERCENT * MAIN_PERCENT / PERCENT;
+        this.maximumWeight = maximumWeight;
+        this.windowMaximum = maximumWeight - mainMaximum;
+        this.protectedMaximum = mainMaximum / PERCENT * PROTECTED_PERCENT
+                + mainMaximum % PERCENT * PROTECTED_PERCENT / PERCENT;
+        this.weigher = weigher;
+        this.map = new Map4<K, Entry<K, V>>(strategy);
+        this.sketch = new FrequencySketch();
+        this.sentinels = (Entry<K, V>[]) new Entry<?, ?>[PROTECTED + 1];
+        for (int region = WINDOW; region <= PROTECTED; region++) {
+            this.sentinels[region] = new Entry<K, V>(null, 0, null, 0);
+        }
+    }
+
+    /*
+     * Methods ----------------------------------------------------------------
+     */
+
+    /**
+     * Reports the value of {@code key}, or {@code null} if it is not cached,
+     * recording the access and counting a hit or a miss.
+     *
+     * @param key
+     *            the key
+     * @return the value of key, or null
+     * @updates this
+     * @requires key /= null
+     * @ensures <pre>
+     * this = #this  and
+     * if key is in DOMAIN(this)
+     * then (key, get) is in this
+     * else get = null
+     * </pre>
+     */
+    public final V get(K key) {
+        assert key != null : "Violation of: key is not null";
+
+        int hash = this.map.hashOf(key);
+        this.sketch.increment(hash);
+        Entry<K, V> e = this.map.valueOrDefault(key, hash, null);
+        if (e == null) {
+            this.missCount++;
+            return null;
+        }
+        this.hitCount++;
+        this.onAccess(e);
+        return e.value;
+    }
+
+    /**
+     * Associates {@code value} with {@code key}, recording the access, then
+     * evicts pairs until the cache is within its maximum weight. The pair
+     * just put may itself be evicted if it is heavy or its key is rarely
+     * used.
+     *
+     * @param key
+     *            the key
+     * @param value
+     *            the value
+     * @return the value previously associated with key, or null
+     * @updates this
+     * @requires key /= null  and  value /= null
+     * @ensures <pre>
+     * [put is the value of key in #this, or null if it had none]  and
+     * this is a subset of ((#this \ {(key, put)}) union {(key, value)})  and
+     * [the sum of the weights of the pairs of this] <= maximumWeight
+     * </pre>
+     */
+    public final V put(K key, V value) {
+        assert key != null : "Violation of: key is not null";
+        assert value != null : "Violation of: value is not null";
+
+        int hash = this.map.hashOf(key);
+        int w = this.weigh(key, value);
+        this.sketch.increment(hash);
+        Entry<K, V> e = this.map.valueOrDefault(key, hash, null);
+        V previous = null;
+        if (e != null) {
+            previous = e.value;
+            this.detach(e);
+            this.weight += w - e.weight;
+            e.value = value;
+            e.weight = w;
+            this.linkLast(e, e.region);
+            this.onAccess(e);
+        } else {
+            e = new Entry<K, V>(key, hash, value, w);
+            this.map.add(key, hash, e);
+            this.weight += w;
+            this.linkLast(e, WINDOW);
+            this.sketch.ensureCapacity(this.map.size());
+        }
+        this.evict();
+        return previous;
+    }
+
+    /**
+     * Removes the pair with key {@code key}, if any, and reports it. This is
+     * not counted as an eviction.
+     *
+     * @param key
+     *            the key
+     * @return the pair removed, or null
+     * @updates this
+     * @requires key /= null
+     * @ensures <pre>
+     * if key is in DOMAIN(#this)
+     * then remove.key = key  and  remove is in #this  and
+     *      this = #this \ {remove}
+     * else this = #this  and  remove = null
+     * </pre>
+     */
+    public final Pair<K, V> remove(K key) {
+        assert key != null : "Violation of: key is not null";
+
+        Entry<K, V> e = this.map.removeValue(key, this.map.hashOf(key));
+        if (e == null) {
+            return null;
+        }
+        this.detach(e);
+        this.weight -= e.weight;
+        return new SimplePair<K, V>(e.key, e.value);
+    }
+
+    /**
+     * Reports whether {@code key} is cached, without recording an access.
+     *
+     * @param key
+     *            the key
+     * @return true iff key is in DOMAIN(this)
+     * @requires key /= null
+     * @ensures hasKey = (key is in DOMAIN(this))
+     */
+    public final boolean hasKey(K key) {
+        assert key != null : "Violation of: key is not null";
+
+        return this.map.valueOrDefault(key, this.map.hashOf(key),
+                null) != null;
+    }
+
+    /**
+     * Reports the number of cached pairs.
+     *
+     * @return |this|
+     * @ensures size = |this|
+     */
+    public final int size() {
+        return this.map.size();
+    }
+
+    /**
+     * Reports the sum of the weights of the cached pairs.
+     *
+     * @return the total weight of this
+     */
+    public final long weightedSize() {
+        return this.weight;
+    }
+
+    /**
+     * Reports the maximum total weight.
+     *
+     * @return the maximum weight
+     */
+    public final long maximumWeight() {
+        return this.maximumWeight;
+    }
+
+    /**
+     * Reports the number of calls of {@code get} that found their key.
+     *
+     * @return the number of hits
+     */
+    public final long hitCount() {
+        return this.hitCount;
+    }
+
+    /**
+     * Reports the number of calls of {@code get} that did not find their key.
+     *
+     * @return the number of misses
+     */
+    public final long missCount() {
+        return this.missCount;
+    }
+
+    /**
+     * Reports the fraction of calls of {@code get} that found their key.
+     *
+     * @return the hit rate, or 1 if get has not been called
+     */
+    public final double hitRate() {
+        long requests = this.hitCount + this.missCount;
+        if (requests == 0) {
+            return 1;
+        }
+        return (double) this.hitCount / requests;
+    }
+
+    /**
+     * Reports the number of pairs evicted to stay within the maximum weight.
+     *
+     * @return the number of evictions
+     */
+    public final long evictionCount() {
+        return this.evictionCount;
+    }
+
+    /**
+     * Reports the total weight of the pairs evicted.
+     *
+     * @return the evicted weight
+     */
+    public final long evictionWeight() {
+        return this.evictionWeight;
+    }
+
+    /**
+     * Removes every pair. The counters and the access frequencies are kept.
+     *
+     * @clears this
+     */
+    public final void clear() {
+        this.map.clear();
+        for (Entry<K, V> sentinel : this.sentinels) {
+            sentinel.before = sentinel;
+            sentinel.after = sentinel;
+        }
+        this.weight = 0;
+        this.windowWeight = 0;
+        this.protectedWeight = 0;
+    }
+
+    /**
+     * Returns an iterator over the pairs of {@code this}, without recording
+     * accesses. {@code this} must not be changed while it is in use.
+     *
+     * @return an iterator over the pairs
+     */
+    @Override
+    public final Iterator<Pair<K, V>> iterator() {
+        return new TinyLfuCache4Iterator();
+    }
+
+    /**
+     * Implementation of {@code Iterator} interface for {@code TinyLfuCache4},
+     * visiting the window, then probation, then the protected segment.
+     */
+    private final class TinyLfuCache4Iterator
+            implements Iterator<Pair<K, V>> {
+
+        /**
+         * Region of the next pair.
+         */
+        private int region;
+
+        /**
+         * Entry of the next pair, or the sentinel of {@code region} if that
+         * region has no more.
+         */
+        private Entry<K, V> nextEntry;
+
+        /**
+         * No-argument constructor.
+         */
+        TinyLfuCache4Iterator() {
+            this.region = WINDOW;
+            this.nextEntry = TinyLfuCache4.this.sentinels[WINDOW].after;
+            this.skipSentinels();
+        }
+
+        /**
+         * Advances past the sentinels of exhausted regions.
+         */
+        private void skipSentinels() {
+            Entry<K, V>[] sentinels = TinyLfuCache4.this.sentinels;
+            while (this.region < PROTECTED
+                    && this.nextEntry == sentinels[this.region]) {
+                this.region++;
+                this.nextEntry = sentinels[this.region].after;
+            }
+        }
+
+        @Override
+        public boolean hasNext() {
+            return this.nextEntry != TinyLfuCache4.this.sentinels[this.region];
+        }
+
+        @Override
+        public Pair<K, V> next() {
+            assert this.hasNext() : "Violation of: ~this.unseen /= <>";
+            if (!this.hasNext()) {
+                /*
+                 * Exception is supposed to be thrown in this case, but with
+                 * assertion-checking enabled it cannot happen because of assert
+                 * above.
+                 */
+                throw new NoSuchElementException();
+            }
+            Entry<K, V> e = this.nextEntry;
+            this.nextEntry = e.after;
+            this.skipSentinels();
+            return new SimplePair<K, V>(e.key, e.value);
+        }
+
+        @Override
+        public void remove() {
+            throw new UnsupportedOperationException(
+                    "remove operation not supported");
+        }
+
+    }
+
+}
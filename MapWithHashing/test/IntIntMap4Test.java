@@ -0,0 +1,131 @@
+import static org.junit.Assert.assertEquals;
+
+import java.util.HashMap;
+
+import org.junit.Test;
+
+/**
+ * JUnit test fixture for {@code IntIntMap4}.
+ *
+ * @author Jackson Jiang
+ * @author Jimmy Yuan
+ */
+public class IntIntMap4Test {
+
+    @Test
+    public final void testNoArgumentConstructor() {
+        /*
+         * Set up variables
+         */
+        IntIntMap4 m = new IntIntMap4();
+        /*
+         * Assert that values of variables match expectations
+         */
+        assertEquals(m.size(), 0);
+        assertEquals(m.hasKey(0), false);
+    }
+
+    @Test
+    public final void testAddNegativeAndZero() {
+        /*
+         * Set up variables
+         */
+        IntIntMap4 m = new IntIntMap4(1);
+        /*
+         * Call method under test
+         */
+        m.add(0, 1);
+        m.add(-7, 2);
+        /*
+         * Assert that values of variables match expectations
+         */
+        assertEquals(m.size(), 2);
+        assertEquals(m.value(0), 1);
+        assertEquals(m.value(-7), 2);
+        assertEquals(m.hasKey(7), false);
+    }
+
+    @Test
+    public final void testRemoveMovesLastEntry() {
+        /*
+         * Set up variables
+         */
+        IntIntMap4 m = new IntIntMap4(1);
+        m.add(1, 10);
+        m.add(2, 20);
+        m.add(3, 30);
+        /*
+         * Call method under test
+         */
+        int removed = m.remove(1);
+        /*
+         * Assert that values of variables match expectations
+         */
+        assertEquals(removed, 10);
+        assertEquals(m.size(), 2);
+        assertEquals(m.hasKey(1), false);
+        assertEquals(m.value(2), 20);
+        assertEquals(m.value(3), 30);
+    }
+
+    @Test
+    public final void testRemoveAnyLastPosition() {
+        /*
+         * Set up variables
+         */
+        IntIntMap4 m = new IntIntMap4();
+        m.add(4, 40);
+        m.add(5, 50);
+        int expectedKey = m.keyAt(m.size() - 1);
+        int expectedValue = m.valueAt(m.size() - 1);
+        /*
+         * Call method under test
+         */
+        int removed = m.removeAny();
+        /*
+         * Assert that values of variables match expectations
+         */
+        assertEquals(removed, expectedKey);
+        assertEquals(expectedValue, removed * 10);
+        assertEquals(m.size(), 1);
+        assertEquals(m.hasKey(removed), false);
+    }
+
+    @Test
+    public final void testManyEntriesMatchReference() {
+        /*
+         * Set up variables
+         */
+        final int n = 5000;
+        final int step = 7919;
+        IntIntMap4 m = new IntIntMap4(1);
+        HashMap<Integer, Integer> expected = new HashMap<>();
+        /*
+         * Call method under test
+         */
+        for (int i = 0; i < n; i++) {
+            m.add(i * step, -i);
+            expected.put(i * step, -i);
+        }
+        for (int i = 0; i < n; i += 2) {
+            assertEquals(m.remove(i * step), -i);
+            expected.remove(i * step);
+        }
+        /*
+         * Assert that values of variables match expectations
+         */
+        assertEquals(m.size(), expected.size());
+        HashMap<Integer, Integer> seen = new HashMap<>();
+        for (int i = 0; i < m.size(); i++) {
+            seen.put(m.keyAt(i), m.valueAt(i));
+        }
+        assertEquals(seen, expected);
+        while (m.size() > 0) {
+            int key = m.removeAny();
+            assertEquals(expected.containsKey(key), true);
+            expected.remove(key);
+        }
+        assertEquals(expected.size(), 0);
+    }
+
+}
@@ -0,0 +1,52 @@
+import static org.junit.Assert.assertEquals;
+
+import org.junit.Test;
+
+/**
+ * JUnit test fixture for {@code IntLongMap4}.
+ *
+ * @author Jackson Jiang
+ * @author Jimmy Yuan
+ */
+public class IntLongMap4Test {
+
+    @Test
+    public final void testAddAndValue() {
+        /*
+         * Set up variables
+         */
+        final long big = 1L << 40;
+        IntLongMap4 m = new IntLongMap4(1);
+        /*
+         * Call method under test
+         */
+        m.add(-1, big);
+        m.add(1, -big);
+        /*
+         * Assert that values of variables match expectations
+         */
+        assertEquals(m.size(), 2);
+        assertEquals(m.value(-1), big);
+        assertEquals(m.value(1), -big);
+    }
+
+    @Test
+    public final void testRemoveToEmpty() {
+        /*
+         * Set up variables
+         */
+        IntLongMap4 m = new IntLongMap4();
+        m.add(3, 4L);
+        /*
+         * Call method under test
+         */
+        long removed = m.remove(3);
+        /*
+         * Assert that values of variables match expectations
+         */
+        assertEquals(removed, 4L);
+        assertEquals(m.size(), 0);
+        assertEquals(m.hasKey(3), false);
+    }
+
+}
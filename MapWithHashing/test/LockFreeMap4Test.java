@@ -0,0 +1,167 @@
+import static org.junit.Assert.assertEquals;
+
+import org.junit.Test;
+
+import components.map.Map;
+import components.map.Map.Pair;
+import components.map.Map1L;
+
+/**
+ * Customized JUnit test fixture for {@code LockFreeMap4} using default
+ * constructor.
+ *
+ * @author Jackson Jiang
+ * @author Jimmy Yuan
+ */
+public class LockFreeMap4Test extends MapTest {
+
+    @Override
+    protected final Map<String, String> constructorTest() {
+        return new LockFreeMap4<String, String>();
+    }
+
+    @Override
+    protected final Map<String, String> constructorRef() {
+        return new Map1L<String, String>();
+    }
+
+    @Test
+    public final void testConcurrentAddAndRemove() throws InterruptedException {
+        /*
+         * Set up variables
+         */
+        final int threads = 8;
+        final int perThread = 5000;
+        final LockFreeMap4<Integer, Integer> m = new LockFreeMap4<>(1);
+        Thread[] workers = new Thread[threads];
+        for (int t = 0; t < threads; t++) {
+            final int base = t * perThread;
+            workers[t] = new Thread(() -> {
+                for (int i = base; i < base + perThread; i++) {
+                    m.add(i, -i);
+                }
+                for (int i = base; i < base + perThread; i += 2) {
+                    m.remove(i);
+                }
+            });
+        }
+        /*
+         * Call method under test
+         */
+        for (Thread w : workers) {
+            w.start();
+        }
+        for (Thread w : workers) {
+            w.join();
+        }
+        /*
+         * Assert that values of variables match expectations
+         */
+        assertEquals(m.size(), threads * perThread / 2);
+        for (int i = 0; i < threads * perThread; i++) {
+            assertEquals(m.hasKey(i), i % 2 == 1);
+            if (i % 2 == 1) {
+                assertEquals(m.value(i), Integer.valueOf(-i));
+            }
+        }
+    }
+
+    @Test
+    public final void testReadersDuringResize() throws InterruptedException {
+        /*
+         * Set up variables
+         */
+        final int stable = 1000;
+        final int added = 20000;
+        final LockFreeMap4<Integer, Integer> m = new LockFreeMap4<>(1);
+        for (int i = 0; i < stable; i++) {
+            m.add(i, -i);
+        }
+        final boolean[] failed = new boolean[1];
+        Thread writer = new Thread(() -> {
+            for (int i = stable; i < stable + added; i++) {
+                m.add(i, -i);
+            }
+        });
+        Thread reader = new Thread(() -> {
+            while (writer.isAlive()) {
+                for (int i = 0; i < stable; i++) {
+                    if (!m.hasKey(i) || m.value(i) != -i) {
+                        failed[0] = true;
+                    }
+                }
+            }
+        });
+        /*
+         * Call method under test
+         */
+        writer.start();
+        reader.start();
+        writer.join();
+        reader.join();
+        /*
+         * Assert that values of variables match expectations
+         */
+        assertEquals(failed[0], false);
+        assertEquals(m.size(), stable + added);
+    }
+
+    @Test
+    public final void testCaseInsensitiveStrategy() {
+        /*
+         * Set up variables
+         */
+        final int n = 100;
+        Map<String, String> m = new LockFreeMap4<String, String>(1,
+                HashingStrategy.caseInsensitive());
+        /*
+         * Call method under test
+         */
+        for (int i = 0; i < n; i++) {
+            m.add("Key" + i, "v" + i);
+        }
+        Pair<String, String> removed = m.remove("KEY0");
+        /*
+         * Assert that values of variables match expectations
+         */
+        assertEquals(removed.key(), "Key0");
+        assertEquals(removed.value(), "v0");
+        assertEquals(m.size(), n - 1);
+        assertEquals(m.hasKey("key0"), false);
+        for (int i = 1; i < n; i++) {
+            assertEquals(m.hasKey("kEY" + i), true);
+            assertEquals(m.value("KEY" + i), "v" + i);
+        }
+        assertEquals(m.hasKey("Lock1"), false);
+    }
+
+    @Test
+    public final void testRemoveAnyDrainsLargeMap() {
+        /*
+         * Set up variables
+         */
+        final int n = 200000;
+        Map<Integer, Integer> m = new LockFreeMap4<Integer, Integer>();
+        for (int i = 0; i < n; i++) {
+            m.add(i, -i);
+        }
+        boolean[] seen = new boolean[n];
+        /*
+         * Call method under test
+         */
+        while (m.size() > 0) {
+            Pair<Integer, Integer> p = m.removeAny();
+            seen[p.key()] = true;
+            assertEquals(p.value(), Integer.valueOf(-p.key()));
+        }
+        /*
+         * Assert that values of variables match expectations
+         */
+        for (int i = 0; i < n; i++) {
+            assertEquals(seen[i], true);
+        }
+        m.add(n, -n);
+        assertEquals(m.removeAny().key(), Integer.valueOf(n));
+    }
+
+}
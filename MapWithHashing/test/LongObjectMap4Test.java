@@ -0,0 +1,57 @@
+import static org.junit.Assert.assertEquals;
+
+import org.junit.Test;
+
+/**
+ * JUnit test fixture for {@code LongObjectMap4}.
+ *
+ * @author Jackson Jiang
+ * @author Jimmy Yuan
+ */
+public class LongObjectMap4Test {
+
+    @Test
+    public final void testAddAndValue() {
+        /*
+         * Set up variables
+         */
+        final long big = 1L << 40;
+        LongObjectMap4<String> m = new LongObjectMap4<String>(1);
+        /*
+         * Call method under test
+         */
+        m.add(big, "a");
+        m.add(-big, "b");
+        m.add(0L, "c");
+        /*
+         * Assert that values of variables match expectations
+         */
+        assertEquals(m.size(), 3);
+        assertEquals(m.value(big), "a");
+        assertEquals(m.value(-big), "b");
+        assertEquals(m.value(0L), "c");
+        assertEquals(m.hasKey(1L), false);
+    }
+
+    @Test
+    public final void testRemoveAndRemoveAny() {
+        /*
+         * Set up variables
+         */
+        LongObjectMap4<String> m = new LongObjectMap4<String>();
+        m.add(1L, "one");
+        m.add(2L, "two");
+        /*
+         * Call method under test
+         */
+        String removed = m.remove(1L);
+        long removedKey = m.removeAny();
+        /*
+         * Assert that values of variables match expectations
+         */
+        assertEquals(removed, "one");
+        assertEquals(removedKey, 2L);
+        assertEquals(m.size(), 0);
+    }
+
+}
@@ -0,0 +1,235 @@
+import static org.junit.Assert.assertEquals;
+
+import java.util.Iterator;
+
+import org.junit.Test;
+
+import components.map.Map.Pair;
+
+/**
+ * JUnit test fixture for {@code LruCache4}.
+ *
+ * @author Jackson Jiang
+ * @author Jimmy Yuan
+ */
+public class LruCache4Test {
+
+    @Test
+    public final void testConstructor() {
+        /*
+         * Set up variables
+         */
+        LruCache4<String, String> c = new LruCache4<String, String>(3);
+        /*
+         * Assert that values of variables match expectations
+         */
+        assertEquals(c.size(), 0);
+        assertEquals(c.maximumSize(), 3);
+        assertEquals(c.get("a"), null);
+        assertEquals(c.iterator().hasNext(), false);
+    }
+
+    @Test
+    public final void testPutEvictsLeastRecentlyUsed() {
+        /*
+         * Set up variables
+         */
+        LruCache4<String, String> c = new LruCache4<String, String>(2);
+        c.put("a", "1");
+        c.put("b", "2");
+        /*
+         * Call method under test
+         */
+        c.put("c", "3");
+        /*
+         * Assert that values of variables match expectations
+         */
+        assertEquals(c.size(), 2);
+        assertEquals(c.hasKey("a"), false);
+        assertEquals(c.get("b"), "2");
+        assertEquals(c.get("c"), "3");
+    }
+
+    @Test
+    public final void testGetKeepsKeyResident() {
+        /*
+         * Set up variables
+         */
+        LruCache4<String, String> c = new LruCache4<String, String>(2);
+        c.put("a", "1");
+        c.put("b", "2");
+        /*
+         * Call method under test
+         */
+        String a = c.get("a");
+        c.put("c", "3");
+        /*
+         * Assert that values of variables match expectations
+         */
+        assertEquals(a, "1");
+        assertEquals(c.hasKey("a"), true);
+        assertEquals(c.hasKey("b"), false);
+        assertEquals(c.hasKey("c"), true);
+    }
+
+    @Test
+    public final void testPutExistingKeyReplacesWithoutEviction() {
+        /*
+         * Set up variables
+         */
+        LruCache4<String, String> c = new LruCache4<String, String>(2);
+        c.put("a", "1");
+        c.put("b", "2");
+        /*
+         * Call method under test
+         */
+        String previous = c.put("a", "10");
+        c.put("c", "3");
+        /*
+         * Assert that values of variables match expectations
+         */
+        assertEquals(previous, "1");
+        assertEquals(c.size(), 2);
+        assertEquals(c.get("a"), "10");
+        assertEquals(c.hasKey("b"), false);
+    }
+
+    @Test
+    public final void testHasKeyDoesNotChangeOrder() {
+        /*
+         * Set up variables
+         */
+        LruCache4<String, String> c = new LruCache4<String, String>(2);
+        c.put("a", "1");
+        c.put("b", "2");
+        /*
+         * Call method under test
+         */
+        boolean has = c.hasKey("a");
+        Pair<String, String> evicted = c.evict();
+        /*
+         * Assert that values of variables match expectations
+         */
+        assertEquals(has, true);
+        assertEquals(evicted.key(), "a");
+        assertEquals(evicted.value(), "1");
+        assertEquals(c.size(), 1);
+    }
+
+    @Test
+    public final void testRemove() {
+        /*
+         * Set up variables
+         */
+        LruCache4<String, String> c = new LruCache4<String, String>(3);
+        c.put("a", "1");
+        c.put("b", "2");
+        c.put("c", "3");
+        /*
+         * Call method under test
+         */
+        Pair<String, String> removed = c.remove("b");
+        Pair<String, String> missing = c.remove("z");
+        /*
+         * Assert that values of variables match expectations
+         */
+        assertEquals(removed.key(), "b");
+        assertEquals(removed.value(), "2");
+        assertEquals(missing, null);
+        assertEquals(c.size(), 2);
+        assertEquals(c.evict().key(), "a");
+        assertEquals(c.evict().key(), "c");
+    }
+
+    @Test
+    public final void testIteratorInOrderOfUse() {
+        /*
+         * Set up variables
+         */
+        LruCache4<String, String> c = new LruCache4<String, String>(3);
+        c.put("a", "1");
+        c.put("b", "2");
+        c.put("c", "3");
+        c.get("a");
+        /*
+         * Call method under test
+         */
+        Iterator<Pair<String, String>> it = c.iterator();
+        /*
+         * Assert that values of variables match expectations
+         */
+        assertEquals(it.next().key(), "b");
+        assertEquals(it.next().key(), "c");
+        assertEquals(it.next().key(), "a");
+        assertEquals(it.hasNext(), false);
+    }
+
+    @Test
+    public final void testClear() {
+        /*
+         * Set up variables
+         */
+        LruCache4<String, String> c = new LruCache4<String, String>(2);
+        c.put("a", "1");
+        c.put("b", "2");
+        /*
+         * Call method under test
+         */
+        c.clear();
+        c.put("c", "3");
+        /*
+         * Assert that values of variables match expectations
+         */
+        assertEquals(c.size(), 1);
+        assertEquals(c.hasKey("a"), false);
+        assertEquals(c.evict().key(), "c");
+    }
+
+    @Test
+    public final void testManyKeysStayBounded() {
+        /*
+         * Set up variables
+         */
+        final int maximumSize = 100;
+        final int keys = 1000;
+        LruCache4<Integer, Integer> c = new LruCache4<Integer, Integer>(
+                maximumSize);
+        /*
+         * Call method under test
+         */
+        for (int i = 0; i < keys; i++) {
+            c.put(i, i);
+            c.get(0);
+        }
+        /*
+         * Assert that values of variables match expectations
+         */
+        assertEquals(c.size(), maximumSize);
+        assertEquals(c.get(0), Integer.valueOf(0));
+        for (int i = keys - maximumSize + 1; i < keys; i++) {
+            assertEquals(c.get(i), Integer.valueOf(i));
+        }
+        assertEquals(c.hasKey(keys - maximumSize), false);
+    }
+
+    @Test
+    public final void testCaseInsensitiveStrategy() {
+        /*
+         * Set up variables
+         */
+        LruCache4<String, String> c = new LruCache4<String, String>(2,
+                HashingStrategy.caseInsensitive());
+        c.put("Key", "1");
+        /*
+         * Call method under test
+         */
+        String previous = c.put("KEY", "2");
+        /*
+         * Assert that values of variables match expectations
+         */
+        assertEquals(previous, "1");
+        assertEquals(c.size(), 1);
+        assertEquals(c.get("key"), "2");
+    }
+
+}
@@ -1,4 +1,16 @@
+import static org.junit.Assert.assertEquals;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.nio.channels.Channels;
+import java.util.Spliterator;
+import java.util.concurrent.atomic.LongAdder;
+
+import org.junit.Test;
+
 import components.map.Map;
+import components.map.Map.Pair;
 import components.map.Map1L;
 
 /**
@@ -9,6 +21,45 @@ import components.map.Map1L;
  */
 public class Map4Test extends MapTest {
 
+    /**
+     * Key that counts the calls to its {@code hashCode}.
+     */
+    private static final class CountingKey {
+
+        /**
+         * Number of calls to {@code hashCode} on any {@code CountingKey}.
+         */
+        private static int hashCodeCalls = 0;
+
+        /**
+         * The key's value.
+         */
+        private final int id;
+
+        /**
+         * Constructor.
+         *
+         * @param id
+         *            the key's value
+         */
+        CountingKey(int id) {
+            this.id = id;
+        }
+
+        @Override
+        public int hashCode() {
+            hashCodeCalls++;
+            return this.id;
+        }
+
+        @Override
+        public boolean equals(Object obj) {
+            return obj instanceof CountingKey
+                    && ((CountingKey) obj).id == this.id;
+        }
+
+    }
+
     @Override
     protected final Map<String, String> constructorTest() {
         return new Map4<String, String>();
@@ -19,4 +70,1393 @@ public class Map4Test extends MapTest {
         return new Map1L<String, String>();
     }
 
+    @Test
+    public final void testValueOrDefaultPresent() {
+        /*
+         * Set up variables
+         */
+        Map4<String, String> m = new Map4<String, String>();
+        m.add("red", "1");
+        m.add("blue", "2");
+        /*
+         * Call method under test
+         */
+        String value = m.valueOrDefault("blue", "0");
+        /*
+         * Assert that values of variables match expectations
+         */
+        assertEquals(value, "2");
+        assertEquals(m.size(), 2);
+    }
+
+    @Test
+    public final void testValueOrDefaultAbsent() {
+        /*
+         * Set up variables
+         */
+        Map4<String, String> m = new Map4<String, String>();
+        m.add("red", "1");
+        /*
+         * Call method under test
+         */
+        String value = m.valueOrDefault("blue", "0");
+        /*
+         * Assert that values of variables match expectations
+         */
+        assertEquals(value, "0");
+        assertEquals(m.size(), 1);
+    }
+
+    @Test
+    public final void testPutIfAbsentAdds() {
+        /*
+         * Set up variables
+         */
+        Map4<String, String> m = new Map4<String, String>();
+        m.add("red", "1");
+        /*
+         * Call method under test
+         */
+        String previous = m.putIfAbsent("blue", "2");
+        /*
+         * Assert that values of variables match expectations
+         */
+        assertEquals(previous, null);
+        assertEquals(m.size(), 2);
+        assertEquals(m.value("blue"), "2");
+    }
+
+    @Test
+    public final void testPutIfAbsentPresent() {
+        /*
+         * Set up variables
+         */
+        Map4<String, String> m = new Map4<String, String>();
+        m.add("red", "1");
+        /*
+         * Call method under test
+         */
+        String previous = m.putIfAbsent("red", "2");
+        /*
+         * Assert that values of variables match expectations
+         */
+        assertEquals(previous, "1");
+        assertEquals(m.size(), 1);
+        assertEquals(m.value("red"), "1");
+    }
+
+    @Test
+    public final void testPutIfAbsentGrows() {
+        /*
+         * Set up variables
+         */
+        final int entries = 500;
+        Map4<Integer, Integer> m = new Map4<Integer, Integer>(1);
+        for (int i = 0; i < entries; i++) {
+            m.add(i, -i);
+        }
+        /*
+         * Call method under test
+         */
+        int absent = 0;
+        for (int i = 0; i < 2 * entries; i++) {
+            if (m.putIfAbsent(i, i) == null) {
+                absent++;
+            }
+        }
+        /*
+         * Assert that values of variables match expectations
+         */
+        assertEquals(absent, entries);
+        assertEquals(m.size(), 2 * entries);
+        assertEquals(m.value(0), Integer.valueOf(0));
+        assertEquals(m.value(1), Integer.valueOf(-1));
+        assertEquals(m.value(entries), Integer.valueOf(entries));
+    }
+
+    @Test
+    public final void testReplacePresent() {
+        /*
+         * Set up variables
+         */
+        Map4<String, String> m = new Map4<String, String>();
+        m.add("red", "1");
+        m.add("blue", "2");
+        /*
+         * Call method under test
+         */
+        String previous = m.replace("red", "3");
+        /*
+         * Assert that values of variables match expectations
+         */
+        assertEquals(previous, "1");
+        assertEquals(m.size(), 2);
+        assertEquals(m.value("red"), "3");
+    }
+
+    @Test
+    public final void testReplaceAbsent() {
+        /*
+         * Set up variables
+         */
+        Map4<String, String> m = new Map4<String, String>();
+        m.add("red", "1");
+        /*
+         * Call method under test
+         */
+        String previous = m.replace("blue", "3");
+        /*
+         * Assert that values of variables match expectations
+         */
+        assertEquals(previous, null);
+        assertEquals(m.size(), 1);
+        assertEquals(m.hasKey("blue"), false);
+    }
+
+    @Test
+    public final void testRemoveIfPresentPresent() {
+        /*
+         * Set up variables
+         */
+        Map4<String, String> m = new Map4<String, String>();
+        m.add("red", "1");
+        m.add("blue", "2");
+        /*
+         * Call method under test
+         */
+        Pair<String, String> p = m.removeIfPresent("red");
+        /*
+         * Assert that values of variables match expectations
+         */
+        assertEquals(p.key(), "red");
+        assertEquals(p.value(), "1");
+        assertEquals(m.size(), 1);
+        assertEquals(m.hasKey("red"), false);
+    }
+
+    @Test
+    public final void testRemoveIfPresentAbsent() {
+        /*
+         * Set up variables
+         */
+        Map4<String, String> m = new Map4<String, String>();
+        m.add("red", "1");
+        /*
+         * Call method under test
+         */
+        Pair<String, String> p = m.removeIfPresent("blue");
+        /*
+         * Assert that values of variables match expectations
+         */
+        assertEquals(p, null);
+        assertEquals(m.size(), 1);
+    }
+
+    @Test
+    public final void testComputeAbsentAdds() {
+        /*
+         * Set up variables
+         */
+        Map4<String, String> m = new Map4<String, String>();
+        m.add("red", "1");
+        /*
+         * Call method under test
+         */
+        String value = m.compute("blue", (k, v) -> v == null ? k : v + k);
+        /*
+         * Assert that values of variables match expectations
+         */
+        assertEquals(value, "blue");
+        assertEquals(m.size(), 2);
+        assertEquals(m.value("blue"), "blue");
+    }
+
+    @Test
+    public final void testComputePresentUpdates() {
+        /*
+         * Set up variables
+         */
+        Map4<String, String> m = new Map4<String, String>();
+        m.add("red", "1");
+        /*
+         * Call method under test
+         */
+        String value = m.compute("red", (k, v) -> v == null ? k : v + k);
+        /*
+         * Assert that values of variables match expectations
+         */
+        assertEquals(value, "1red");
+        assertEquals(m.size(), 1);
+        assertEquals(m.value("red"), "1red");
+    }
+
+    @Test
+    public final void testComputePresentRemoves() {
+        /*
+         * Set up variables
+         */
+        Map4<String, String> m = new Map4<String, String>();
+        m.add("red", "1");
+        m.add("blue", "2");
+        /*
+         * Call method under test
+         */
+        String value = m.compute("red", (k, v) -> null);
+        /*
+         * Assert that values of variables match expectations
+         */
+        assertEquals(value, null);
+        assertEquals(m.size(), 1);
+        assertEquals(m.hasKey("red"), false);
+        assertEquals(m.value("blue"), "2");
+    }
+
+    @Test
+    public final void testComputeIfAbsentPresent() {
+        /*
+         * Set up variables
+         */
+        Map4<String, String> m = new Map4<String, String>();
+        m.add("red", "1");
+        /*
+         * Call method under test
+         */
+        String value = m.computeIfAbsent("red", k -> "2");
+        /*
+         * Assert that values of variables match expectations
+         */
+        assertEquals(value, "1");
+        assertEquals(m.size(), 1);
+        assertEquals(m.value("red"), "1");
+    }
+
+    @Test
+    public final void testComputeIfAbsentAbsent() {
+        /*
+         * Set up variables
+         */
+        Map4<String, String> m = new Map4<String, String>();
+        m.add("red", "1");
+        /*
+         * Call method under test
+         */
+        String value = m.computeIfAbsent("blue", k -> "2");
+        String none = m.computeIfAbsent("green", k -> null);
+        /*
+         * Assert that values of variables match expectations
+         */
+        assertEquals(value, "2");
+        assertEquals(none, null);
+        assertEquals(m.size(), 2);
+        assertEquals(m.value("blue"), "2");
+        assertEquals(m.hasKey("green"), false);
+    }
+
+    @Test
+    public final void testComputeIfPresentAbsent() {
+        /*
+         * Set up variables
+         */
+        Map4<String, String> m = new Map4<String, String>();
+        m.add("red", "1");
+        /*
+         * Call method under test
+         */
+        String value = m.computeIfPresent("blue", (k, v) -> v + k);
+        /*
+         * Assert that values of variables match expectations
+         */
+        assertEquals(value, null);
+        assertEquals(m.size(), 1);
+        assertEquals(m.hasKey("blue"), false);
+    }
+
+    @Test
+    public final void testComputeIfPresentPresent() {
+        /*
+         * Set up variables
+         */
+        Map4<String, String> m = new Map4<String, String>();
+        m.add("red", "1");
+        m.add("blue", "2");
+        /*
+         * Call method under test
+         */
+        String value = m.computeIfPresent("red", (k, v) -> v + k);
+        String none = m.computeIfPresent("blue", (k, v) -> null);
+        /*
+         * Assert that values of variables match expectations
+         */
+        assertEquals(value, "1red");
+        assertEquals(none, null);
+        assertEquals(m.size(), 1);
+        assertEquals(m.value("red"), "1red");
+        assertEquals(m.hasKey("blue"), false);
+    }
+
+    @Test
+    public final void testMergeCounts() {
+        /*
+         * Set up variables
+         */
+        final int keys = 50;
+        final int rounds = 7;
+        Map4<Integer, Integer> m = new Map4<Integer, Integer>(1);
+        /*
+         * Call method under test
+         */
+        for (int r = 0; r < rounds; r++) {
+            for (int i = 0; i < keys; i++) {
+                m.merge(i, 1, Integer::sum);
+            }
+        }
+        /*
+         * Assert that values of variables match expectations
+         */
+        assertEquals(m.size(), keys);
+        for (int i = 0; i < keys; i++) {
+            assertEquals(m.value(i), Integer.valueOf(rounds));
+        }
+    }
+
+    @Test
+    public final void testMergeRemoves() {
+        /*
+         * Set up variables
+         */
+        Map4<String, String> m = new Map4<String, String>();
+        m.add("red", "1");
+        /*
+         * Call method under test
+         */
+        String value = m.merge("red", "1", (v, w) -> v.equals(w) ? null : v);
+        /*
+         * Assert that values of variables match expectations
+         */
+        assertEquals(value, null);
+        assertEquals(m.size(), 0);
+        assertEquals(m.hasKey("red"), false);
+    }
+
+    @Test
+    public final void testRemoveAnyDrainsSparseTable() {
+        /*
+         * Set up variables
+         */
+        final int hashTableSize = 100003;
+        final int entries = 200;
+        final int stride = 499;
+        Map4<Integer, Integer> m = new Map4<Integer, Integer>(hashTableSize);
+        for (int i = 0; i < entries; i++) {
+            m.add(i * stride, i);
+        }
+        /*
+         * Call method under test
+         */
+        int sum = 0;
+        while (m.size() > 0) {
+            Pair<Integer, Integer> p = m.removeAny();
+            assertEquals(p.key(), Integer.valueOf(p.value() * stride));
+            sum += p.value();
+        }
+        /*
+         * Assert that values of variables match expectations
+         */
+        assertEquals(sum, entries * (entries - 1) / 2);
+        assertEquals(m.hasKey(0), false);
+    }
+
+    @Test
+    public final void testIteratorSkipsEmptyBuckets() {
+        /*
+         * Set up variables
+         */
+        final int hashTableSize = 100003;
+        final int entries = 200;
+        final int stride = 499;
+        Map4<Integer, Integer> m = new Map4<Integer, Integer>(hashTableSize);
+        for (int i = 0; i < entries; i++) {
+            m.add(i * stride, i);
+        }
+        m.remove(0);
+        m.add(hashTableSize - 1, -1);
+        /*
+         * Call method under test
+         */
+        int count = 0;
+        int sum = 0;
+        for (Pair<Integer, Integer> p : m) {
+            count++;
+            sum += p.value();
+        }
+        /*
+         * Assert that values of variables match expectations
+         */
+        assertEquals(count, entries);
+        assertEquals(sum, entries * (entries - 1) / 2 - 1);
+    }
+
+    @Test
+    public final void testStreamEmpty() {
+        /*
+         * Set up variables
+         */
+        Map4<String, String> m = new Map4<String, String>();
+        /*
+         * Call method under test
+         */
+        long count = m.stream().count();
+        /*
+         * Assert that values of variables match expectations
+         */
+        assertEquals(count, 0);
+    }
+
+    @Test
+    public final void testStreamKeys() {
+        /*
+         * Set up variables
+         */
+        Map4<String, String> m = new Map4<String, String>();
+        m.add("red", "1");
+        m.add("blue", "2");
+        m.add("green", "3");
+        /*
+         * Call method under test
+         */
+        int sum = m.stream().mapToInt(p -> Integer.parseInt(p.value())).sum();
+        long count = m.stream().filter(p -> p.key().length() > 3).count();
+        /*
+         * Assert that values of variables match expectations
+         */
+        assertEquals(sum, 6);
+        assertEquals(count, 2);
+        assertEquals(m.size(), 3);
+    }
+
+    @Test
+    public final void testParallelStreamSum() {
+        /*
+         * Set up variables
+         */
+        final int entries = 100000;
+        Map4<Integer, Integer> m = new Map4<Integer, Integer>();
+        for (int i = 0; i < entries; i++) {
+            m.add(i, i);
+        }
+        /*
+         * Call method under test
+         */
+        long sum = m.parallelStream().mapToLong(p -> p.value()).sum();
+        long count = m.parallelStream().count();
+        /*
+         * Assert that values of variables match expectations
+         */
+        assertEquals(sum, (long) entries * (entries - 1) / 2);
+        assertEquals(count, entries);
+    }
+
+    @Test
+    public final void testParallelStreamDuringIncrementalRehash() {
+        /*
+         * Set up variables
+         */
+        final int entries = 3000;
+        Map4<Integer, Integer> m = new Map4<Integer, Integer>(1, 0.75, 2,
+                true);
+        for (int i = 0; i < entries; i++) {
+            m.add(i, -i);
+        }
+        /*
+         * Call method under test
+         */
+        long sum = m.parallelStream().mapToLong(p -> p.key() + p.value())
+                .sum();
+        long count = m.parallelStream().count();
+        /*
+         * Assert that values of variables match expectations
+         */
+        assertEquals(sum, 0);
+        assertEquals(count, entries);
+    }
+
+    @Test
+    public final void testSpliteratorSplitsExactly() {
+        /*
+         * Set up variables
+         */
+        final int entries = 1000;
+        Map4<Integer, Integer> m = new Map4<Integer, Integer>();
+        for (int i = 0; i < entries; i++) {
+            m.add(i, i);
+        }
+        Spliterator<Pair<Integer, Integer>> suffix = m.spliterator();
+        /*
+         * Call method under test
+         */
+        Spliterator<Pair<Integer, Integer>> prefix = suffix.trySplit();
+        long prefixSize = prefix.getExactSizeIfKnown();
+        long suffixSize = suffix.getExactSizeIfKnown();
+        /*
+         * Assert that values of variables match expectations
+         */
+        long[] visited = new long[1];
+        prefix.forEachRemaining(p -> visited[0]++);
+        assertEquals(visited[0], prefixSize);
+        suffix.forEachRemaining(p -> visited[0]++);
+        assertEquals(visited[0], entries);
+        assertEquals(prefixSize + suffixSize, entries);
+        assertEquals(suffix.hasCharacteristics(Spliterator.SUBSIZED), true);
+    }
+
+    @Test
+    public final void testForEachParallel() {
+        /*
+         * Set up variables
+         */
+        final int entries = 50000;
+        Map4<Integer, Integer> m = new Map4<Integer, Integer>();
+        for (int i = 0; i < entries; i++) {
+            m.add(i, i);
+        }
+        LongAdder sum = new LongAdder();
+        /*
+         * Call method under test
+         */
+        m.forEach(1, (k, v) -> sum.add(k + v));
+        /*
+         * Assert that values of variables match expectations
+         */
+        assertEquals(sum.sum(), (long) entries * (entries - 1));
+        assertEquals(m.size(), entries);
+    }
+
+    @Test
+    public final void testForEachSequential() {
+        /*
+         * Set up variables
+         */
+        Map4<String, String> m = new Map4<String, String>();
+        m.add("red", "1");
+        m.add("blue", "2");
+        StringBuilder keys = new StringBuilder();
+        /*
+         * Call method under test
+         */
+        m.forEach(Long.MAX_VALUE, (k, v) -> keys.append(k.length()));
+        /*
+         * Assert that values of variables match expectations
+         */
+        assertEquals(keys.length(), 2);
+        assertEquals(keys.indexOf("3") >= 0, true);
+        assertEquals(keys.indexOf("4") >= 0, true);
+    }
+
+    @Test
+    public final void testSearchFound() {
+        /*
+         * Set up variables
+         */
+        final int entries = 50000;
+        final int target = 31337;
+        Map4<Integer, Integer> m = new Map4<Integer, Integer>();
+        for (int i = 0; i < entries; i++) {
+            m.add(i, -i);
+        }
+        /*
+         * Call method under test
+         */
+        Integer found = m.search(1, (k, v) -> k == target ? v : null);
+        /*
+         * Assert that values of variables match expectations
+         */
+        assertEquals(found, Integer.valueOf(-target));
+    }
+
+    @Test
+    public final void testSearchNotFound() {
+        /*
+         * Set up variables
+         */
+        final int entries = 50000;
+        Map4<Integer, Integer> m = new Map4<Integer, Integer>();
+        for (int i = 0; i < entries; i++) {
+            m.add(i, -i);
+        }
+        /*
+         * Call method under test
+         */
+        Integer found = m.search(1, (k, v) -> v > 0 ? v : null);
+        /*
+         * Assert that values of variables match expectations
+         */
+        assertEquals(found, null);
+    }
+
+    @Test
+    public final void testReduceMax() {
+        /*
+         * Set up variables
+         */
+        final int entries = 50000;
+        Map4<Integer, Integer> m = new Map4<Integer, Integer>(1);
+        for (int i = 0; i < entries; i++) {
+            m.add(i, i);
+        }
+        /*
+         * Call method under test
+         */
+        Integer max = m.reduce(1, (k, v) -> v % 2 == 0 ? v : null, Math::max);
+        Integer none = m.reduce(1, (k, v) -> null, Math::max);
+        /*
+         * Assert that values of variables match expectations
+         */
+        assertEquals(max, Integer.valueOf(entries - 2));
+        assertEquals(none, null);
+    }
+
+    @Test
+    public final void testReduceToLongSum() {
+        /*
+         * Set up variables
+         */
+        final int entries = 50000;
+        Map4<Integer, Integer> m = new Map4<Integer, Integer>(1, 0.75, 2,
+                true);
+        for (int i = 0; i < entries; i++) {
+            m.add(i, i);
+        }
+        /*
+         * Call method under test
+         */
+        long sum = m.reduceToLong(1, (k, v) -> v, 0L, Long::sum);
+        long empty = new Map4<Integer, Integer>().reduceToLong(1, (k, v) -> v,
+                0L, Long::sum);
+        /*
+         * Assert that values of variables match expectations
+         */
+        assertEquals(sum, (long) entries * (entries - 1) / 2);
+        assertEquals(empty, 0);
+    }
+
+    @Test
+    public final void testHashCodeCalledOncePerOperation() {
+        /*
+         * Set up variables
+         */
+        final int entries = 1000;
+        Map4<CountingKey, Integer> m = new Map4<CountingKey, Integer>(1);
+        CountingKey.hashCodeCalls = 0;
+        /*
+         * Call method under test
+         */
+        for (int i = 0; i < entries; i++) {
+            m.add(new CountingKey(i), i);
+        }
+        Integer value = m.value(new CountingKey(entries / 2));
+        boolean present = m.hasKey(new CountingKey(entries));
+        /*
+         * Assert that values of variables match expectations
+         */
+        assertEquals(CountingKey.hashCodeCalls, entries + 2);
+        assertEquals(value, Integer.valueOf(entries / 2));
+        assertEquals(present, false);
+    }
+
+    @Test
+    public final void testCollidingKeys() {
+        /*
+         * Set up variables
+         */
+        final int bits = 10;
+        final int entries = 1 << bits;
+        Map4<String, String> m = new Map4<String, String>();
+        String[] keys = new String[entries];
+        for (int i = 0; i < entries; i++) {
+            StringBuilder key = new StringBuilder();
+            for (int b = 0; b < bits; b++) {
+                key.append((i >> b & 1) == 0 ? "Aa" : "BB");
+            }
+            keys[i] = key.toString();
+        }
+        /*
+         * Call method under test
+         */
+        for (int i = 0; i < entries; i++) {
+            m.add(keys[i], Integer.toString(i));
+        }
+        for (int i = 0; i < entries; i += 2) {
+            m.remove(keys[i]);
+        }
+        /*
+         * Assert that values of variables match expectations
+         */
+        assertEquals(keys[0].hashCode(), keys[entries - 1].hashCode());
+        assertEquals(m.size(), entries / 2);
+        for (int i = 0; i < entries; i++) {
+            assertEquals(m.hasKey(keys[i]), i % 2 == 1);
+            if (i % 2 == 1) {
+                assertEquals(m.value(keys[i]), Integer.toString(i));
+            }
+        }
+    }
+
+    @Test
+    public final void testCollidingKeysShrinkAndGrow() {
+        /*
+         * Set up variables
+         */
+        final int bits = 5;
+        final int entries = 1 << bits;
+        final int kept = 3;
+        Map4<String, String> m = new Map4<String, String>();
+        String[] keys = new String[entries];
+        for (int i = 0; i < entries; i++) {
+            StringBuilder key = new StringBuilder();
+            for (int b = 0; b < bits; b++) {
+                key.append((i >> b & 1) == 0 ? "Aa" : "BB");
+            }
+            keys[i] = key.toString();
+            m.add(keys[i], keys[i]);
+        }
+        /*
+         * Call method under test
+         */
+        while (m.size() > kept) {
+            m.removeAny();
+        }
+        for (int i = 0; i < entries; i++) {
+            m.putIfAbsent(keys[i], keys[i]);
+        }
+        /*
+         * Assert that values of variables match expectations
+         */
+        assertEquals(m.size(), entries);
+        for (int i = 0; i < entries; i++) {
+            assertEquals(m.value(keys[i]), keys[i]);
+        }
+    }
+
+    @Test
+    public final void testByteArrayKeys() {
+        /*
+         * Set up variables
+         */
+        Map4<byte[], String> m = new Map4<byte[], String>(
+                HashingStrategy.byteArrays());
+        m.add(new byte[] { 1, 2, 3 }, "a");
+        m.add(new byte[] { 3, 2, 1 }, "b");
+        /*
+         * Call method under test
+         */
+        boolean has = m.hasKey(new byte[] { 1, 2, 3 });
+        Pair<byte[], String> p = m.remove(new byte[] { 3, 2, 1 });
+        /*
+         * Assert that values of variables match expectations
+         */
+        assertEquals(has, true);
+        assertEquals(p.value(), "b");
+        assertEquals(m.size(), 1);
+        assertEquals(m.value(new byte[] { 1, 2, 3 }), "a");
+    }
+
+    @Test
+    public final void testCaseInsensitiveKeys() {
+        /*
+         * Set up variables
+         */
+        Map4<String, String> m = new Map4<String, String>(
+                HashingStrategy.caseInsensitive());
+        m.add("Red", "1");
+        /*
+         * Call method under test
+         */
+        String previous = m.putIfAbsent("RED", "2");
+        m.replace("red", "3");
+        /*
+         * Assert that values of variables match expectations
+         */
+        assertEquals(previous, "1");
+        assertEquals(m.size(), 1);
+        assertEquals(m.value("rEd"), "3");
+        assertEquals(m.hasKey("Rose"), false);
+    }
+
+    @Test
+    public final void testCaseInsensitiveSupplementaryKeys() {
+        /*
+         * Set up variables
+         */
+        final String upper = new String(Character.toChars(0x10400));
+        final String lower = new String(Character.toChars(0x10428));
+        HashingStrategy<String> strategy = HashingStrategy.caseInsensitive();
+        Map4<String, String> m = new Map4<String, String>(strategy);
+        m.add("x" + upper, "1");
+        /*
+         * Call method under test
+         */
+        boolean found = m.hasKey("X" + lower);
+        /*
+         * Assert that values of variables match expectations
+         */
+        assertEquals(strategy.equivalent(upper, lower), true);
+        assertEquals(strategy.hash(upper), strategy.hash(lower));
+        assertEquals(found, true);
+        assertEquals(m.value("x" + lower), "1");
+    }
+
+    @Test
+    public final void testIntArrayKeysWithRehash() {
+        /*
+         * Set up variables
+         */
+        final int entries = 1000;
+        Map4<int[], Integer> m = new Map4<int[], Integer>(1, 0.75, 2, true,
+                true, HashingStrategy.intArrays());
+        /*
+         * Call method under test
+         */
+        for (int i = 0; i < entries; i++) {
+            m.add(new int[] { i, -i }, i);
+        }
+        /*
+         * Assert that values of variables match expectations
+         */
+        assertEquals(m.size(), entries);
+        for (int i = 0; i < entries; i++) {
+            assertEquals(m.value(new int[] { i, -i }), Integer.valueOf(i));
+        }
+        assertEquals(m.hasKey(new int[] { 1, 1 }), false);
+    }
+
+    @Test
+    public final void testStrategyWithCollidingHashes() {
+        /*
+         * Set up variables
+         */
+        final int entries = 100;
+        HashingStrategy<String> constant = new HashingStrategy<String>() {
+            @Override
+            public int hash(String key) {
+                return 0;
+            }
+
+            @Override
+            public boolean equivalent(String a, String b) {
+                return a.equalsIgnoreCase(b);
+            }
+        };
+        Map4<String, Integer> m = new Map4<String, Integer>(constant);
+        for (int i = 0; i < entries; i++) {
+            m.add("k" + i, i);
+        }
+        /*
+         * Call method under test
+         */
+        for (int i = 0; i < entries; i += 2) {
+            m.remove("K" + i);
+        }
+        /*
+         * Assert that values of variables match expectations
+         */
+        assertEquals(m.size(), entries / 2);
+        for (int i = 0; i < entries; i++) {
+            assertEquals(m.hasKey("K" + i), i % 2 == 1);
+        }
+    }
+
+    @Test
+    public final void testStatisticsEmpty() {
+        /*
+         * Set up variables
+         */
+        final int length = 7;
+        Map4<Integer, String> m = new Map4<Integer, String>(length);
+        /*
+         * Call method under test
+         */
+        HashTableStatistics stats = m.statistics();
+        /*
+         * Assert that values of variables match expectations
+         */
+        assertEquals(stats.tableLength(), length);
+        assertEquals(stats.entries(), 0);
+        assertEquals(stats.emptyBuckets(), length);
+        assertEquals(stats.maxBucketSize(), 0);
+        assertEquals(stats.chiSquared(), 0.0, 0.0);
+    }
+
+    @Test
+    public final void testStatisticsUniform() {
+        /*
+         * Set up variables
+         */
+        final int length = 7;
+        Map4<Integer, String> m = new Map4<Integer, String>(length, 2.0, 2);
+        for (int i = 0; i < length; i++) {
+            m.add(i, "v");
+        }
+        /*
+         * Call method under test
+         */
+        HashTableStatistics stats = m.statistics();
+        /*
+         * Assert that values of variables match expectations
+         */
+        assertEquals(stats.entries(), length);
+        assertEquals(stats.loadFactor(), 1.0, 0.0);
+        assertEquals(stats.emptyBuckets(), 0);
+        assertEquals(stats.maxBucketSize(), 1);
+        assertEquals(stats.meanNonEmptyBucketSize(), 1.0, 0.0);
+        assertEquals(stats.percentileBucketSize(0.5), 1);
+        assertEquals(stats.chiSquared(), 0.0, 0.0);
+    }
+
+    @Test
+    public final void testStatisticsClustered() {
+        /*
+         * Set up variables
+         */
+        final int length = 7;
+        final double chiSquared = 18.0;
+        final double delta = 1e-9;
+        Map4<Integer, String> m = new Map4<Integer, String>(length, 2.0, 2);
+        m.add(0, "a");
+        m.add(length, "b");
+        m.add(2 * length, "c");
+        /*
+         * Call method under test
+         */
+        HashTableStatistics stats = m.statistics();
+        /*
+         * Assert that values of variables match expectations
+         */
+        int[] histogram = stats.histogram();
+        assertEquals(histogram.length, 4);
+        assertEquals(histogram[0], length - 1);
+        assertEquals(histogram[3], 1);
+        assertEquals(stats.emptyBuckets(), length - 1);
+        assertEquals(stats.maxBucketSize(), 3);
+        assertEquals(stats.meanNonEmptyBucketSize(), 3.0, 0.0);
+        assertEquals(stats.percentileBucketSize(0.5), 0);
+        assertEquals(stats.percentileBucketSize(0.9), 3);
+        assertEquals(stats.chiSquared(), chiSquared, delta);
+    }
+
+    @Test
+    public final void testStatisticsDuringIncrementalRehash() {
+        /*
+         * Set up variables
+         */
+        final int entries = 100;
+        Map4<Integer, String> m = new Map4<Integer, String>(1, 0.75, 2, true);
+        for (int i = 0; i < entries; i++) {
+            m.add(i, "v");
+        }
+        /*
+         * Call method under test
+         */
+        HashTableStatistics stats = m.statistics();
+        /*
+         * Assert that values of variables match expectations
+         */
+        assertEquals(stats.entries() + stats.entriesAwaitingRehash(), entries);
+        assertEquals(m.size(), entries);
+    }
+
+    @Test
+    public final void testIncrementalRehashSmallLoadFactor() {
+        /*
+         * Set up variables
+         */
+        final int entries = 10000;
+        Map4<Integer, String> m = new Map4<Integer, String>(1, 0.1, 2, true);
+        /*
+         * Call method under test
+         */
+        for (int i = 0; i < entries; i++) {
+            m.add(i, "v" + i);
+        }
+        /*
+         * Assert that values of variables match expectations
+         */
+        HashTableStatistics stats = m.statistics();
+        assertEquals(stats.entries() + stats.entriesAwaitingRehash(), entries);
+        assertEquals(m.size(), entries);
+        for (int i = 0; i < entries; i++) {
+            assertEquals(m.value(i), "v" + i);
+        }
+    }
+
+    @Test
+    public final void testLookupsBeforeAnyBucketIsCreated() {
+        /*
+         * Set up variables
+         */
+        Map4<String, String> m = new Map4<String, String>();
+        /*
+         * Call method under test
+         */
+        boolean has = m.hasKey("a");
+        String v = m.valueOrDefault("a", "none");
+        Pair<String, String> p = m.removeIfPresent("a");
+        String c = m.computeIfPresent("a", (k, x) -> x + k);
+        String r = m.replace("a", "b");
+        /*
+         * Assert that values of variables match expectations
+         */
+        assertEquals(has, false);
+        assertEquals(v, "none");
+        assertEquals(p, null);
+        assertEquals(c, null);
+        assertEquals(r, null);
+        assertEquals(m.size(), 0);
+        assertEquals(m.iterator().hasNext(), false);
+    }
+
+    @Test
+    public final void testClearAndRefill() {
+        /*
+         * Set up variables
+         */
+        final int entries = 200;
+        Map4<Integer, Integer> m = new Map4<Integer, Integer>(7);
+        for (int i = 0; i < entries; i++) {
+            m.add(i, i);
+        }
+        /*
+         * Call method under test
+         */
+        m.clear();
+        for (int i = entries; i < 2 * entries; i++) {
+            m.add(i, i);
+        }
+        /*
+         * Assert that values of variables match expectations
+         */
+        assertEquals(m.size(), entries);
+        assertEquals(m.hasKey(0), false);
+        for (int i = entries; i < 2 * entries; i++) {
+            assertEquals(m.value(i), Integer.valueOf(i));
+        }
+    }
+
+    @Test
+    public final void testClearDuringIncrementalRehash() {
+        /*
+         * Set up variables
+         */
+        final int entries = 100;
+        Map4<Integer, Integer> m = new Map4<Integer, Integer>(1, 0.75, 2, true);
+        for (int i = 0; i < entries; i++) {
+            m.add(i, i);
+        }
+        /*
+         * Call method under test
+         */
+        m.clear();
+        m.add(entries, entries);
+        /*
+         * Assert that values of variables match expectations
+         */
+        assertEquals(m.size(), 1);
+        assertEquals(m.hasKey(0), false);
+        assertEquals(m.removeAny().key(), Integer.valueOf(entries));
+        assertEquals(m.iterator().hasNext(), false);
+    }
+
+    @Test
+    public final void testTransferFromReusesTable() {
+        /*
+         * Set up variables
+         */
+        final int entries = 50;
+        Map4<Integer, Integer> m = new Map4<Integer, Integer>();
+        Map4<Integer, Integer> source = new Map4<Integer, Integer>();
+        m.add(-1, -1);
+        for (int i = 0; i < entries; i++) {
+            source.add(i, i);
+        }
+        /*
+         * Call method under test
+         */
+        m.transferFrom(source);
+        for (int i = 0; i < entries; i++) {
+            source.add(-i, i);
+        }
+        /*
+         * Assert that values of variables match expectations
+         */
+        assertEquals(m.size(), entries);
+        assertEquals(m.hasKey(-1), false);
+        assertEquals(source.size(), entries);
+        assertEquals(source.hasKey(entries - 1), false);
+        assertEquals(source.value(-1), Integer.valueOf(1));
+    }
+
+    @Test
+    public final void testTransferFromIntoPowerOfTwoSource() {
+        /*
+         * Set up variables
+         */
+        final int entries = 50;
+        Map4<Integer, Integer> m = new Map4<Integer, Integer>();
+        Map4<Integer, Integer> source = new Map4<Integer, Integer>(1, 0.75, 2,
+                false, true);
+        for (int i = 0; i < entries; i++) {
+            source.add(i, i);
+        }
+        /*
+         * Call method under test
+         */
+        m.transferFrom(source);
+        for (int i = 0; i < entries; i++) {
+            source.add(-i, i);
+        }
+        /*
+         * Assert that values of variables match expectations
+         */
+        assertEquals(m.size(), entries);
+        assertEquals(source.size(), entries);
+        assertEquals(source.statistics().tableLength() % 2, 0);
+        for (int i = 0; i < entries; i++) {
+            assertEquals(source.value(-i), Integer.valueOf(i));
+        }
+    }
+
+    /**
+     * Returns the bytes of a snapshot of {@code m} with UTF-8 keys and values.
+     *
+     * @param m
+     *            the map
+     * @return the snapshot of m
+     * @throws IOException
+     *             if the snapshot cannot be written
+     */
+    private static byte[] snapshot(Map4<String, String> m) throws IOException {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        m.writeSnapshot(Channels.newChannel(out), SnapshotCodec.utf8(),
+                SnapshotCodec.utf8());
+        return out.toByteArray();
+    }
+
+    @Test
+    public final void testSnapshotRoundTrip() throws IOException {
+        /*
+         * Set up variables
+         */
+        final int entries = 500;
+        Map4<String, String> m = new Map4<String, String>(7);
+        Map4<String, String> loaded = new Map4<String, String>();
+        for (int i = 0; i < entries; i++) {
+            m.add("k" + i, "v" + i);
+        }
+        /*
+         * Call method under test
+         */
+        loaded.loadSnapshot(Channels.newChannel(
+                new ByteArrayInputStream(snapshot(m))), SnapshotCodec.utf8(),
+                SnapshotCodec.utf8());
+        /*
+         * Assert that values of variables match expectations
+         */
+        assertEquals(loaded.size(), entries);
+        assertEquals(m.size(), entries);
+        for (int i = 0; i < entries; i++) {
+            assertEquals(loaded.value("k" + i), "v" + i);
+        }
+        assertEquals(loaded.statistics().tableLength(),
+                m.statistics().tableLength());
+    }
+
+    @Test
+    public final void testSnapshotIntoPowerOfTwoMap() throws IOException {
+        /*
+         * Set up variables
+         */
+        final int entries = 100;
+        Map4<String, String> m = new Map4<String, String>(1, 0.75, 2, true);
+        Map4<String, String> loaded = new Map4<String, String>(1, 0.75, 2,
+                false, true);
+        for (int i = 0; i < entries; i++) {
+            m.add("k" + i, "v" + i);
+        }
+        /*
+         * Call method under test
+         */
+        loaded.loadSnapshot(Channels.newChannel(
+                new ByteArrayInputStream(snapshot(m))), SnapshotCodec.utf8(),
+                SnapshotCodec.utf8());
+        loaded.add("extra", "x");
+        /*
+         * Assert that values of variables match expectations
+         */
+        assertEquals(loaded.size(), entries + 1);
+        for (int i = 0; i < entries; i++) {
+            assertEquals(loaded.value("k" + i), "v" + i);
+        }
+        assertEquals(Integer.bitCount(loaded.statistics().tableLength()), 1);
+    }
+
+    @Test
+    public final void testSnapshotLargeValue() throws IOException {
+        /*
+         * Set up variables
+         */
+        final int valueLength = 200000;
+        StringBuilder large = new StringBuilder();
+        for (int i = 0; i < valueLength; i++) {
+            large.append((char) ('a' + i % 26));
+        }
+        Map4<String, String> m = new Map4<String, String>();
+        Map4<String, String> loaded = new Map4<String, String>();
+        m.add("large", large.toString());
+        m.add("small", "s");
+        /*
+         * Call method under test
+         */
+        loaded.loadSnapshot(Channels.newChannel(
+                new ByteArrayInputStream(snapshot(m))), SnapshotCodec.utf8(),
+                SnapshotCodec.utf8());
+        /*
+         * Assert that values of variables match expectations
+         */
+        assertEquals(loaded.size(), 2);
+        assertEquals(loaded.value("large"), large.toString());
+        assertEquals(loaded.value("small"), "s");
+    }
+
+    @Test
+    public final void testSnapshotEmpty() throws IOException {
+        /*
+         * Set up variables
+         */
+        Map4<String, String> m = new Map4<String, String>();
+        Map4<String, String> loaded = new Map4<String, String>();
+        loaded.add("old", "o");
+        /*
+         * Call method under test
+         */
+        loaded.loadSnapshot(Channels.newChannel(
+                new ByteArrayInputStream(snapshot(m))), SnapshotCodec.utf8(),
+                SnapshotCodec.utf8());
+        /*
+         * Assert that values of variables match expectations
+         */
+        assertEquals(loaded.size(), 0);
+        assertEquals(loaded.hasKey("old"), false);
+    }
+
+    @Test
+    public final void testSnapshotTruncated() throws IOException {
+        /*
+         * Set up variables
+         */
+        Map4<String, String> m = new Map4<String, String>();
+        Map4<String, String> loaded = new Map4<String, String>();
+        m.add("key", "value");
+        byte[] bytes = snapshot(m);
+        boolean failed = false;
+        /*
+         * Call method under test
+         */
+        try {
+            loaded.loadSnapshot(
+                    Channels.newChannel(new ByteArrayInputStream(bytes, 0,
+                            bytes.length - 1)),
+                    SnapshotCodec.utf8(), SnapshotCodec.utf8());
+        } catch (IOException e) {
+            failed = true;
+        }
+        /*
+         * Assert that values of variables match expectations
+         */
+        assertEquals(failed, true);
+    }
+
+    @Test
+    public final void testSnapshotTruncatedKeepsMap() throws IOException {
+        /*
+         * Set up variables
+         */
+        Map4<String, String> m = new Map4<String, String>();
+        Map4<String, String> loaded = new Map4<String, String>();
+        m.add("key", "value");
+        m.add("other", "entry");
+        loaded.add("old", "entry");
+        byte[] bytes = snapshot(m);
+        boolean failed = false;
+        /*
+         * Call method under test
+         */
+        try {
+            loaded.loadSnapshot(
+                    Channels.newChannel(new ByteArrayInputStream(bytes, 0,
+                            bytes.length - 1)),
+                    SnapshotCodec.utf8(), SnapshotCodec.utf8());
+        } catch (IOException e) {
+            failed = true;
+        }
+        /*
+         * Assert that values of variables match expectations
+         */
+        assertEquals(failed, true);
+        assertEquals(loaded.size(), 1);
+        assertEquals(loaded.value("old"), "entry");
+        assertEquals(loaded.hasKey("key"), false);
+    }
+
+    @Test
+    public final void testSnapshotHugeTableLength() throws IOException {
+        /*
+         * Set up variables
+         */
+        Map4<String, String> m = new Map4<String, String>();
+        Map4<String, String> loaded = new Map4<String, String>();
+        m.add("key", "value");
+        byte[] bytes = snapshot(m);
+        bytes[8] = (byte) 0x7F;
+        boolean failed = false;
+        /*
+         * Call method under test
+         */
+        try {
+            loaded.loadSnapshot(
+                    Channels.newChannel(new ByteArrayInputStream(bytes)),
+                    SnapshotCodec.utf8(), SnapshotCodec.utf8());
+        } catch (IOException e) {
+            failed = true;
+        }
+        /*
+         * Assert that values of variables match expectations
+         */
+        assertEquals(failed, true);
+        assertEquals(loaded.size(), 0);
+    }
+
+    @Test
+    public final void testSnapshotManyEntriesSmallLoadFactor()
+            throws IOException {
+        /*
+         * Set up variables
+         */
+        Map4<String, String> m = new Map4<String, String>();
+        Map4<String, String> loaded = new Map4<String, String>(1, 0.1, 2,
+                false, true);
+        for (int i = 0; i < 1000; i++) {
+            m.add("k" + i, "v" + i);
+        }
+        /*
+         * Call method under test
+         */
+        loaded.loadSnapshot(
+                Channels.newChannel(new ByteArrayInputStream(snapshot(m))),
+                SnapshotCodec.utf8(), SnapshotCodec.utf8());
+        /*
+         * Assert that values of variables match expectations
+         */
+        assertEquals(loaded.size(), 1000);
+        assertEquals(loaded.value("k999"), "v999");
+    }
+
 }
@@ -0,0 +1,40 @@
+import components.map.Map;
+import components.map.Map1L;
+
+/**
+ * Customized JUnit test fixture for {@code Map4} using non-default constructor
+ * with hash table size 1, maximum load factor 0.75, growth factor 2 and
+ * power-of-two table sizes.
+ *
+ * @author Jackson Jiang
+ * @author Jimmy Yuan
+ */
+public class Map4Test1PowerOfTwo extends MapTest {
+
+    /**
+     * Size of hash table to be used in tests.
+     */
+    private static final int TEST_HASH_TABLE_SIZE = 1;
+
+    /**
+     * Maximum load factor to be used in tests.
+     */
+    private static final double TEST_MAX_LOAD_FACTOR = 0.75;
+
+    /**
+     * Growth factor to be used in tests.
+     */
+    private static final int TEST_GROWTH_FACTOR = 2;
+
+    @Override
+    protected final Map<String, String> constructorTest() {
+        return new Map4<String, String>(TEST_HASH_TABLE_SIZE,
+                TEST_MAX_LOAD_FACTOR, TEST_GROWTH_FACTOR, false, true);
+    }
+
+    @Override
+    protected final Map<String, String> constructorRef() {
+        return new Map1L<String, String>();
+    }
+
+}
@@ -0,0 +1,73 @@
+import static org.junit.Assert.assertEquals;
+
+import org.junit.Test;
+
+import components.map.Map;
+import components.map.Map1L;
+
+/**
+ * Customized JUnit test fixture for {@code Map6} using default constructor.
+ *
+ * @author Jackson Jiang
+ * @author Jimmy Yuan
+ */
+public class Map6Test extends MapTest {
+
+    @Override
+    protected final Map<String, String> constructorTest() {
+        return new Map6<String, String>();
+    }
+
+    @Override
+    protected final Map<String, String> constructorRef() {
+        return new Map1L<String, String>();
+    }
+
+    @Test
+    public final void testProbeDistancesEmpty() {
+        /*
+         * Set up variables
+         */
+        Map6<String, String> m = new Map6<String, String>();
+        /*
+         * Call method under test
+         */
+        int max = m.maxProbeDistance();
+        double mean = m.meanProbeDistance();
+        /*
+         * Assert that values of variables match expectations
+         */
+        assertEquals(max, 0);
+        assertEquals(mean, 0.0, 0.0);
+    }
+
+    @Test
+    public final void testProbeDistancesFullTable() {
+        /*
+         * Set up variables
+         */
+        final int capacity = 1024;
+        final double maxLoadFactor = 0.95;
+        final int entries = 970;
+        Map6<Integer, Integer> m = new Map6<Integer, Integer>(capacity,
+                maxLoadFactor);
+        for (int i = 0; i < entries; i++) {
+            m.add(i, i);
+        }
+        /*
+         * Call method under test
+         */
+        int max = m.maxProbeDistance();
+        double mean = m.meanProbeDistance();
+        /*
+         * Assert that values of variables match expectations
+         */
+        final int maxBound = 64;
+        final double meanBound = 8.0;
+        assertEquals(m.size(), entries);
+        assertEquals(max <= maxBound, true);
+        assertEquals(mean <= meanBound, true);
+        assertEquals(mean <= max, true);
+    }
+
+}
@@ -0,0 +1,204 @@
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+
+import org.junit.Test;
+
+import components.map.Map.Pair;
+
+/**
+ * JUnit test fixture for {@code MappedMap4}.
+ *
+ * @author Jackson Jiang
+ * @author Jimmy Yuan
+ */
+public class MappedMap4Test {
+
+    /**
+     * Returns the bytes of {@code s}.
+     *
+     * @param s
+     *            the string
+     * @return the UTF-8 bytes of s
+     */
+    private static byte[] bytes(String s) {
+        return s.getBytes(StandardCharsets.UTF_8);
+    }
+
+    /**
+     * Returns a new empty temporary file, deleted when the JVM exits.
+     *
+     * @return the file
+     * @throws IOException
+     *             if the file cannot be created
+     */
+    private static Path tempFile() throws IOException {
+        Path file = Files.createTempFile("MappedMap4Test", ".map");
+        file.toFile().deleteOnExit();
+        return file;
+    }
+
+    @Test
+    public final void testAddAndValue() throws IOException {
+        /*
+         * Set up variables
+         */
+        Path file = tempFile();
+        try (MappedMap4 m = new MappedMap4(file)) {
+            /*
+             * Call method under test
+             */
+            m.add(bytes("mee"), bytes("moo"));
+            /*
+             * Assert that values of variables match expectations
+             */
+            assertEquals(m.size(), 1);
+            assertEquals(m.hasKey(bytes("mee")), true);
+            assertEquals(m.hasKey(bytes("moo")), false);
+            assertArrayEquals(m.value(bytes("mee")), bytes("moo"));
+        }
+    }
+
+    @Test
+    public final void testRemoveToEmpty() throws IOException {
+        /*
+         * Set up variables
+         */
+        Path file = tempFile();
+        try (MappedMap4 m = new MappedMap4(file)) {
+            m.add(bytes("mee"), bytes("moo"));
+            /*
+             * Call method under test
+             */
+            Pair<byte[], byte[]> removed = m.remove(bytes("mee"));
+            /*
+             * Assert that values of variables match expectations
+             */
+            assertArrayEquals(removed.key(), bytes("mee"));
+            assertArrayEquals(removed.value(), bytes("moo"));
+            assertEquals(m.size(), 0);
+        }
+    }
+
+    @Test
+    public final void testReopen() throws IOException {
+        /*
+         * Set up variables
+         */
+        final int n = 3000;
+        Path file = tempFile();
+        try (MappedMap4 m = new MappedMap4(file)) {
+            for (int i = 0; i < n; i++) {
+                m.add(bytes("k" + i), bytes("v" + i));
+            }
+            m.remove(bytes("k0"));
+        }
+        /*
+         * Call method under test
+         */
+        try (MappedMap4 m = new MappedMap4(file)) {
+            /*
+             * Assert that values of variables match expectations
+             */
+            assertEquals(m.size(), n - 1);
+            assertEquals(m.hasKey(bytes("k0")), false);
+            for (int i = 1; i < n; i++) {
+                assertArrayEquals(m.value(bytes("k" + i)), bytes("v" + i));
+            }
+            int count = 0;
+            for (Pair<byte[], byte[]> p : m) {
+                assertEquals(m.hasKey(p.key()), true);
+                count++;
+            }
+            assertEquals(count, n - 1);
+            while (m.size() > 0) {
+                m.removeAny();
+            }
+            assertEquals(m.hasKey(bytes("k1")), false);
+        }
+    }
+
+    @Test
+    public final void testValueBuffer() throws IOException {
+        /*
+         * Set up variables
+         */
+        Path file = tempFile();
+        try (MappedMap4 m = new MappedMap4(file)) {
+            m.add(bytes("mee"), bytes("moo"));
+            m.add(bytes("shee"), bytes("shoo"));
+            /*
+             * Call method under test
+             */
+            ByteBuffer view = m.valueBuffer(bytes("shee"));
+            /*
+             * Assert that values of variables match expectations
+             */
+            assertEquals(view.isReadOnly(), true);
+            assertEquals(view.remaining(), bytes("shoo").length);
+            byte[] value = new byte[view.remaining()];
+            view.get(value);
+            assertArrayEquals(value, bytes("shoo"));
+            assertEquals(m.valueBuffer(bytes("mee")), ByteBuffer.wrap(
+                    bytes("moo")));
+        }
+    }
+
+    @Test
+    public final void testReopenUnflushedFails() throws IOException {
+        /*
+         * Set up variables
+         */
+        Path file = tempFile();
+        boolean failed = false;
+        MappedMap4 m = new MappedMap4(file);
+        m.add(bytes("mee"), bytes("moo"));
+        m.flush();
+        m.add(bytes("shee"), bytes("shoo"));
+        /*
+         * Call method under test
+         */
+        try (MappedMap4 reopened = new MappedMap4(file)) {
+            reopened.size();
+        } catch (IOException e) {
+            failed = true;
+        }
+        /*
+         * Assert that values of variables match expectations
+         */
+        assertEquals(failed, true);
+        m.close();
+        try (MappedMap4 reopened = new MappedMap4(file)) {
+            assertEquals(reopened.size(), 2);
+            assertArrayEquals(reopened.value(bytes("shee")), bytes("shoo"));
+        }
+    }
+
+    @Test
+    public final void testReopenAfterFlush() throws IOException {
+        /*
+         * Set up variables
+         */
+        Path file = tempFile();
+        MappedMap4 m = new MappedMap4(file);
+        m.add(bytes("mee"), bytes("moo"));
+        /*
+         * Call method under test
+         */
+        m.flush();
+        /*
+         * Assert that values of variables match expectations
+         */
+        try (MappedMap4 reopened = new MappedMap4(file)) {
+            assertEquals(reopened.size(), 1);
+            assertArrayEquals(reopened.value(bytes("mee")), bytes("moo"));
+        }
+        m.close();
+    }
+
+}
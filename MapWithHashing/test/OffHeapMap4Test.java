@@ -0,0 +1,147 @@
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.HashMap;
+
+import org.junit.Test;
+
+import components.map.Map.Pair;
+
+/**
+ * JUnit test fixture for {@code OffHeapMap4}.
+ *
+ * @author Jackson Jiang
+ * @author Jimmy Yuan
+ */
+public class OffHeapMap4Test {
+
+    /**
+     * Returns the bytes of {@code s}.
+     *
+     * @param s
+     *            the string
+     * @return the UTF-8 bytes of s
+     */
+    private static byte[] bytes(String s) {
+        return s.getBytes(StandardCharsets.UTF_8);
+    }
+
+    @Test
+    public final void testAddAndValue() {
+        /*
+         * Set up variables
+         */
+        OffHeapMap4 m = new OffHeapMap4();
+        /*
+         * Call method under test
+         */
+        m.add(bytes("mee"), bytes("moo"));
+        m.add(new byte[0], bytes("empty"));
+        /*
+         * Assert that values of variables match expectations
+         */
+        assertEquals(m.size(), 2);
+        assertEquals(m.hasKey(bytes("mee")), true);
+        assertEquals(m.hasKey(bytes("me")), false);
+        assertArrayEquals(m.value(bytes("mee")), bytes("moo"));
+        assertArrayEquals(m.value(new byte[0]), bytes("empty"));
+        m.close();
+    }
+
+    @Test
+    public final void testRemove() {
+        /*
+         * Set up variables
+         */
+        OffHeapMap4 m = new OffHeapMap4();
+        m.add(bytes("mee"), bytes("moo"));
+        m.add(bytes("shee"), bytes("shoo"));
+        /*
+         * Call method under test
+         */
+        Pair<byte[], byte[]> removed = m.remove(bytes("shee"));
+        /*
+         * Assert that values of variables match expectations
+         */
+        assertArrayEquals(removed.key(), bytes("shee"));
+        assertArrayEquals(removed.value(), bytes("shoo"));
+        assertEquals(m.size(), 1);
+        assertEquals(m.hasKey(bytes("shee")), false);
+        m.close();
+    }
+
+    @Test
+    public final void testChurnWithSmallSlabs() {
+        /*
+         * Set up variables
+         */
+        final int slabSize = 64;
+        final int n = 2000;
+        OffHeapMap4 m = new OffHeapMap4(slabSize);
+        HashMap<String, String> expected = new HashMap<>();
+        /*
+         * Call method under test
+         */
+        for (int i = 0; i < n; i++) {
+            m.add(bytes("k" + i), bytes("v" + i));
+            expected.put("k" + i, "v" + i);
+            if (i % 3 == 0) {
+                m.remove(bytes("k" + i / 2));
+                expected.remove("k" + i / 2);
+            }
+        }
+        /*
+         * Assert that values of variables match expectations
+         */
+        assertEquals(m.size(), expected.size());
+        HashMap<String, String> seen = new HashMap<>();
+        for (Pair<byte[], byte[]> p : m) {
+            seen.put(new String(p.key(), StandardCharsets.UTF_8),
+                    new String(p.value(), StandardCharsets.UTF_8));
+        }
+        assertEquals(seen, expected);
+        while (m.size() > 0) {
+            Pair<byte[], byte[]> p = m.removeAny();
+            String key = new String(p.key(), StandardCharsets.UTF_8);
+            assertEquals(bytes(expected.remove(key)).length, p.value().length);
+        }
+        assertEquals(expected.size(), 0);
+        m.close();
+    }
+
+    @Test
+    public final void testIndexSpanningSegments() {
+        /*
+         * Set up variables
+         */
+        final int n = 600000;
+        OffHeapMap4 m = new OffHeapMap4();
+        /*
+         * Call method under test
+         */
+        for (int i = 0; i < n; i++) {
+            m.add(ByteBuffer.allocate(Integer.BYTES).putInt(i).array(),
+                    bytes("v" + i));
+        }
+        /*
+         * Assert that values of variables match expectations
+         */
+        assertEquals(m.size(), n);
+        for (int i = 0; i < n; i++) {
+            byte[] key = ByteBuffer.allocate(Integer.BYTES).putInt(i).array();
+            assertArrayEquals(m.value(key), bytes("v" + i));
+        }
+        for (int i = 0; i < n; i += 2) {
+            m.remove(ByteBuffer.allocate(Integer.BYTES).putInt(i).array());
+        }
+        assertEquals(m.size(), n / 2);
+        assertEquals(m.hasKey(ByteBuffer.allocate(Integer.BYTES).putInt(1)
+                .array()), true);
+        assertEquals(m.hasKey(ByteBuffer.allocate(Integer.BYTES).putInt(2)
+                .array()), false);
+        m.close();
+    }
+
+}
@@ -0,0 +1,250 @@
+import static org.junit.Assert.assertEquals;
+
+import org.junit.Test;
+
+import components.map.Map.Pair;
+
+/**
+ * JUnit test fixture for {@code TinyLfuCache4}.
+ *
+ * @author Jackson Jiang
+ * @author Jimmy Yuan
+ */
+public class TinyLfuCache4Test {
+
+    @Test
+    public final void testConstructor() {
+        /*
+         * Set up variables
+         */
+        TinyLfuCache4<String, String> c = new TinyLfuCache4<String, String>(10);
+        /*
+         * Assert that values of variables match expectations
+         */
+        assertEquals(c.size(), 0);
+        assertEquals(c.weightedSize(), 0);
+        assertEquals(c.maximumWeight(), 10);
+        assertEquals(c.hitRate(), 1.0, 0.0);
+        assertEquals(c.iterator().hasNext(), false);
+    }
+
+    @Test
+    public final void testGetCountsHitsAndMisses() {
+        /*
+         * Set up variables
+         */
+        TinyLfuCache4<String, String> c = new TinyLfuCache4<String, String>(10);
+        c.put("a", "1");
+        /*
+         * Call method under test
+         */
+        String hit = c.get("a");
+        String miss = c.get("b");
+        /*
+         * Assert that values of variables match expectations
+         */
+        assertEquals(hit, "1");
+        assertEquals(miss, null);
+        assertEquals(c.hitCount(), 1);
+        assertEquals(c.missCount(), 1);
+        assertEquals(c.hitRate(), 0.5, 0.0);
+    }
+
+    @Test
+    public final void testPutExistingKey() {
+        /*
+         * Set up variables
+         */
+        TinyLfuCache4<String, String> c = new TinyLfuCache4<String, String>(10);
+        c.put("a", "1");
+        /*
+         * Call method under test
+         */
+        String previous = c.put("a", "2");
+        /*
+         * Assert that values of variables match expectations
+         */
+        assertEquals(previous, "1");
+        assertEquals(c.size(), 1);
+        assertEquals(c.get("a"), "2");
+    }
+
+    @Test
+    public final void testSizeStaysBounded() {
+        /*
+         * Set up variables
+         */
+        final int maximumSize = 100;
+        final int keys = 1000;
+        TinyLfuCache4<Integer, Integer> c = new TinyLfuCache4<Integer, Integer>(
+                maximumSize);
+        /*
+         * Call method under test
+         */
+        for (int i = 0; i < keys; i++) {
+            c.put(i, i);
+        }
+        /*
+         * Assert that values of variables match expectations
+         */
+        assertEquals(c.size(), maximumSize);
+        assertEquals(c.evictionCount(), keys - maximumSize);
+        int seen = 0;
+        for (Pair<Integer, Integer> p : c) {
+            assertEquals(c.hasKey(p.key()), true);
+            seen++;
+        }
+        assertEquals(seen, maximumSize);
+    }
+
+    @Test
+    public final void testWeightsStayBounded() {
+        /*
+         * Set up variables
+         */
+        final long maximumWeight = 100;
+        final int entries = 20;
+        final int valueLength = 10;
+        TinyLfuCache4<Integer, String> c = new TinyLfuCache4<Integer, String>(
+                maximumWeight, (k, v) -> v.length());
+        StringBuilder value = new StringBuilder();
+        for (int i = 0; i < valueLength; i++) {
+            value.append('x');
+        }
+        /*
+         * Call method under test
+         */
+        for (int i = 0; i < entries; i++) {
+            c.put(i, value.toString());
+        }
+        /*
+         * Assert that values of variables match expectations
+         */
+        assertEquals(c.weightedSize() <= maximumWeight, true);
+        assertEquals(c.weightedSize() + c.evictionWeight(),
+                (long) entries * valueLength);
+        assertEquals(c.weightedSize(), (long) c.size() * valueLength);
+    }
+
+    @Test
+    public final void testOverweightPairIsNotKept() {
+        /*
+         * Set up variables
+         */
+        final long maximumWeight = 10;
+        TinyLfuCache4<String, String> c = new TinyLfuCache4<String, String>(
+                maximumWeight, (k, v) -> v.length());
+        c.put("a", "1");
+        c.put("b", "2");
+        /*
+         * Call method under test
+         */
+        c.put("big", "0123456789abc");
+        /*
+         * Assert that values of variables match expectations
+         */
+        assertEquals(c.hasKey("big"), false);
+        assertEquals(c.evictionCount(), 1);
+        assertEquals(c.evictionWeight(), 13);
+        assertEquals(c.get("a"), "1");
+        assertEquals(c.get("b"), "2");
+    }
+
+    @Test
+    public final void testHeavierPairEvictsLeastRecentProbation() {
+        /*
+         * Set up variables
+         */
+        final long maximumWeight = 100;
+        final int keys = 10;
+        TinyLfuCache4<String, String> c = new TinyLfuCache4<String, String>(
+                maximumWeight, (k, v) -> v.length());
+        for (int i = 0; i < keys; i++) {
+            c.put("k" + i, "0123456789");
+        }
+        /*
+         * Call method under test
+         */
+        c.put("k9", "0123456789abcdefghij");
+        /*
+         * Assert that values of variables match expectations
+         */
+        assertEquals(c.evictionCount(), 1);
+        assertEquals(c.hasKey("k0"), false);
+        for (int i = 1; i < keys; i++) {
+            assertEquals(c.hasKey("k" + i), true);
+        }
+        assertEquals(c.weightedSize(), maximumWeight);
+    }
+
+    @Test
+    public final void testRemoveAndClear() {
+        /*
+         * Set up variables
+         */
+        TinyLfuCache4<String, String> c = new TinyLfuCache4<String, String>(10);
+        c.put("a", "1");
+        c.put("b", "2");
+        /*
+         * Call method under test
+         */
+        Pair<String, String> removed = c.remove("a");
+        Pair<String, String> missing = c.remove("z");
+        int sizeAfterRemove = c.size();
+        c.clear();
+        /*
+         * Assert that values of variables match expectations
+         */
+        assertEquals(removed.value(), "1");
+        assertEquals(missing, null);
+        assertEquals(sizeAfterRemove, 1);
+        assertEquals(c.size(), 0);
+        assertEquals(c.weightedSize(), 0);
+        assertEquals(c.evictionCount(), 0);
+        assertEquals(c.hasKey("b"), false);
+    }
+
+    @Test
+    public final void testHotKeysSurviveScan() {
+        /*
+         * Set up variables
+         */
+        final int maximumSize = 100;
+        final int hotKeys = 50;
+        final int rounds = 20;
+        final int scan = 20000;
+        final int coldPerHot = 4;
+        final double minimumHitRate = 0.9;
+        TinyLfuCache4<Integer, Integer> c = new TinyLfuCache4<Integer, Integer>(
+                maximumSize);
+        for (int r = 0; r < rounds; r++) {
+            for (int k = 0; k < hotKeys; k++) {
+                if (c.get(k) == null) {
+                    c.put(k, k);
+                }
+            }
+        }
+        long hitsBefore = c.hitCount();
+        long missesBefore = c.missCount();
+        /*
+         * Call method under test
+         */
+        for (int i = 0; i < scan; i++) {
+            c.put(-1 - i, i);
+            if (i % coldPerHot == 0) {
+                int k = i / coldPerHot % hotKeys;
+                if (c.get(k) == null) {
+                    c.put(k, k);
+                }
+            }
+        }
+        /*
+         * Assert that values of variables match expectations
+         */
+        long hits = c.hitCount() - hitsBefore;
+        long misses = c.missCount() - missesBefore;
+        assertEquals((double) hits / (hits + misses) > minimumHitRate, true);
+        assertEquals(c.size() <= maximumSize, true);
+    }
+
+}